@@ -0,0 +1,280 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.accesslog.AccessLog;
+import com.tdberg.apps.leaderboard.export.ExportFormat;
+import com.tdberg.apps.leaderboard.formats.StreamingResponse;
+import com.tdberg.apps.leaderboard.importer.ImportSummary;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+import com.tdberg.apps.leaderboard.profiling.StatementProfiler;
+import com.tdberg.apps.leaderboard.utils.CircuitBreaker;
+import com.tdberg.apps.leaderboard.utils.IdempotencyTable;
+import com.tdberg.apps.leaderboard.utils.SingleFlight;
+
+import com.google.gson.Gson;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spark.Request;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Handles administrative requests, which are not tied to a single leaderboard and are only available to holders of
+ * the admin key (the 'adminKey' property).  Admin requests take the form:
+ *           /lb/ADMIN/<adminKey>/<command>/...
+ * NOTE: If no admin key is configured, all admin requests are rejected.
+ */
+public class AdminHandler {
+    private static Logger logger = LogManager.getLogger(AdminHandler.class);
+
+    private DatabaseHandler dbHandler;
+    private Gson gson;
+    private byte[] adminKey;
+
+    private static String KEY_NOT_FOUND = "ERROR: The key associated with this request could not be found";
+    private static String DATABASE_ERROR = "ERROR: Internal error while processing request";
+    private static String INVALID_REQUEST = "ERROR: Invalid request";
+    private static String PROFILING_DISABLED = "ERROR: Statement profiling is disabled";
+    private static String OK = "OK";
+    private static String STATEMENTS_COMMAND = "STATEMENTS";
+    private static String METRICS_COMMAND = "METRICS";
+    private static String EXPORT_COMMAND = "EXPORT";
+    private static String IMPORT_COMMAND = "IMPORT";
+    private static String GZIP_PARAM = "gzip";
+    private static String RESET = "RESET";
+    private static String ADMIN_RQT_TEMPLATE = "{\"tdberg\": {\"admin\": %s}}";
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler that holds the state reported on by admin requests
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public AdminHandler(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        this.gson = new Gson();
+        String key = cfg.getProperty("adminKey");
+        adminKey = (key == null || key.isEmpty()) ? null : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles an admin request.  The admin key is held at index 3 of the param pathArray, and the command at index 4.
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return String describing the result of the request command
+     */
+    public Object processAdminRequest(final String[] pathArray, final Request request) {
+        if(!isAuthorized(pathArray, request)) {
+            return KEY_NOT_FOUND;
+        }
+        if(pathArray.length < 5) {
+            return INVALID_REQUEST;
+        }
+
+        if(pathArray[4].equalsIgnoreCase(STATEMENTS_COMMAND)) {
+            return getStatementStatistics(pathArray);
+        }else if(pathArray[4].equalsIgnoreCase(METRICS_COMMAND)) {
+            return getMetrics();
+        }else if(pathArray[4].equalsIgnoreCase(EXPORT_COMMAND)) {
+            return exportRecords(pathArray, request);
+        }
+        return INVALID_REQUEST;
+    }
+
+    /**
+     * Handles an admin POST request.  The admin key is held at index 3 of the param pathArray, and the command at
+     * index 4.
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return String describing the result of the request command
+     */
+    public String processAdminPostRequest(final String[] pathArray, final Request request) {
+        if(!isAuthorized(pathArray, request)) {
+            return KEY_NOT_FOUND;
+        }
+        if(pathArray.length < 5) {
+            return INVALID_REQUEST;
+        }
+
+        if(pathArray[4].equalsIgnoreCase(IMPORT_COMMAND)) {
+            return importRecords(pathArray, request);
+        }
+        return INVALID_REQUEST;
+    }
+
+    /**
+     * Returns whether the admin key held at index 3 of the param pathArray is the configured admin key.
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return True if the request holds the admin key
+     */
+    private boolean isAuthorized(final String[] pathArray, final Request request) {
+        // The key is compared in constant time, so that it cannot be guessed one character at a time
+        if(adminKey == null || !MessageDigest.isEqual(adminKey, pathArray[3].getBytes(StandardCharsets.UTF_8))) {
+            logger.warn("Rejected admin request from : " + request.ip());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the SQL statement statistics as a JSON String, or resets them if index 5 of the param pathArray is
+     * 'reset':
+     *           /lb/ADMIN/<adminKey>/STATEMENTS
+     *           /lb/ADMIN/<adminKey>/STATEMENTS/RESET
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @return String describing the result of the request command
+     */
+    private String getStatementStatistics(final String[] pathArray) {
+        StatementProfiler statementProfiler = dbHandler.getStatementProfiler();
+        if(statementProfiler == null) {
+            return PROFILING_DISABLED;
+        }
+
+        if(pathArray.length > 5) {
+            if(!pathArray[5].equalsIgnoreCase(RESET)) {
+                return INVALID_REQUEST;
+            }
+            statementProfiler.reset();
+            return OK;
+        }
+        return String.format(ADMIN_RQT_TEMPLATE, "{\"statements\": " + statementProfiler.toJson() + "}");
+    }
+
+    /**
+     * Returns a StreamingResponse that exports the records of one leaderboard (by public key), or of every
+     * leaderboard, in the format held at index 5 of the param pathArray ('ndjson' or 'csv'):
+     *           /lb/ADMIN/<adminKey>/EXPORT/<format>
+     *           /lb/ADMIN/<adminKey>/EXPORT/<format>/<pubkey>
+     * The export is gzipped if the 'gzip' query parameter is true.
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return StreamingResponse that writes the export, or a String describing an error
+     */
+    private Object exportRecords(final String[] pathArray, final Request request) {
+        ExportFormat format = (pathArray.length > 5) ? ExportFormat.fromName(pathArray[5]) : null;
+        if(format == null || pathArray.length > 7) {
+            return INVALID_REQUEST;
+        }
+        boolean gzip = Boolean.parseBoolean(request.queryParams(GZIP_PARAM));
+
+        // The leaderboard is resolved before anything is streamed, so that an unknown key can still be reported
+        Integer boardId = null;
+        String fileName = "leaderboards";
+        if(pathArray.length > 6) {
+            try {
+                Leaderboard leaderboard = dbHandler.getLeaderboardFromPubKey(pathArray[6]);
+                if(leaderboard == null) {
+                    return KEY_NOT_FOUND;
+                }
+                boardId = leaderboard.getBoardId();
+                fileName = leaderboard.getPubKey();
+            }catch(SQLException e) {
+                logger.error("SQL error while attempting to resolve a leaderboard to EXPORT : " + e.getMessage());
+                return DATABASE_ERROR;
+            }
+        }
+
+        Integer exportBoardId = boardId;
+        fileName += "." + format.getFileExtension() + (gzip ? ".gz" : "");
+        return new StreamingResponse(gzip ? "application/gzip" : format.getContentType(), fileName, out -> {
+            long recordCount = dbHandler.exportRecords(exportBoardId, format, gzip, out);
+            logger.info("Exported " + recordCount + " records to : " + request.ip());
+        });
+    }
+
+    /**
+     * Imports the records in the request body, in the format held at index 5 of the param pathArray ('ndjson' or
+     * 'csv'), into new leaderboards (see RecordImporter), and returns the outcome of the import as a JSON String.  The
+     * time window and ranking mode of the new leaderboards may follow the format, as with CREATE:
+     *           /lb/ADMIN/<adminKey>/IMPORT/<format>
+     *           /lb/ADMIN/<adminKey>/IMPORT/<format>/WEEKLY/SCORE_THEN_TIME
+     * The body is read as gzip if the 'gzip' query parameter is true.
+     * NOTE: Spark holds the whole body of a request in memory unless it is sent with chunked transfer encoding, so
+     *       large imports should be sent chunked (or run from the command line, see Main).
+     *
+     * @param pathArray ADMIN REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return String describing the result of the request command
+     */
+    private String importRecords(final String[] pathArray, final Request request) {
+        ExportFormat format = (pathArray.length > 5) ? ExportFormat.fromName(pathArray[5]) : null;
+        if(format == null) {
+            return INVALID_REQUEST;
+        }
+        WindowType windowType = null;
+        RankingMode rankingMode = null;
+        for(int i=6; i<pathArray.length; i++) {
+            if(windowType == null && WindowType.fromName(pathArray[i]) != null) {
+                windowType = WindowType.fromName(pathArray[i]);
+            }else if(rankingMode == null && RankingMode.fromName(pathArray[i]) != null) {
+                rankingMode = RankingMode.fromName(pathArray[i]);
+            }else {
+                return INVALID_REQUEST;
+            }
+        }
+        boolean gzip = Boolean.parseBoolean(request.queryParams(GZIP_PARAM));
+
+        try {
+            ImportSummary summary = dbHandler.importRecords(format, gzip, request.raw().getInputStream(),
+                                                            (windowType == null) ? WindowType.NONE : windowType,
+                                                            (rankingMode == null) ? RankingMode.SCORE_DESC : rankingMode,
+                                                            null);
+            logger.info("Imported " + summary.getRowsRead() + " rows from : " + request.ip());
+            return String.format(ADMIN_RQT_TEMPLATE, "{\"import\": " + gson.toJson(summary) + "}");
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to IMPORT records : " + e.getMessage());
+            return DATABASE_ERROR;
+        }catch(IOException e) {
+            logger.error("Failed to read IMPORT from " + request.ip() + " : " + e.getMessage());
+            return INVALID_REQUEST;
+        }
+    }
+
+    /**
+     * Returns the service's request counters as a JSON String:
+     *           /lb/ADMIN/<adminKey>/METRICS
+     * NOTE: 'reads' counts the GET requests that read the leaderboard ('loads') and those that shared the response of
+     *       an identical GET that was already in flight ('collapsed').  It is left out if coalescing is disabled.
+     *       'database' holds the state of the database circuit breaker ('circuit'), the number of times it has opened
+     *       ('opened') and the number of ADD submissions waiting in the write journal ('journaled').
+     *       'idempotency' counts the idempotency keys currently remembered ('keys') and the ADD requests that were
+     *       answered with the result of an earlier request with the same key ('replays').
+     *
+     * @return String describing the result of the request command
+     */
+    private String getMetrics() {
+        StringBuilder metrics = new StringBuilder("{");
+        SingleFlight<String, Object> readCoalescer = dbHandler.getReadCoalescer();
+        if(readCoalescer != null) {
+            metrics.append("\"reads\": {\"loads\": ").append(readCoalescer.getLoadCount())
+                   .append(", \"collapsed\": ").append(readCoalescer.getCollapsedCount()).append("}, ");
+        }
+        CircuitBreaker circuitBreaker = dbHandler.getCircuitBreaker();
+        metrics.append("\"database\": {\"circuit\": \"").append(circuitBreaker.getState())
+               .append("\", \"opened\": ").append(circuitBreaker.getOpenCount());
+        if(dbHandler.getWriteJournal() != null) {
+            metrics.append(", \"journaled\": ").append(dbHandler.getWriteJournal().size());
+        }
+        metrics.append("}, ");
+        IdempotencyTable idempotencyTable = dbHandler.getIdempotencyTable();
+        if(idempotencyTable != null) {
+            metrics.append("\"idempotency\": {\"keys\": ").append(idempotencyTable.getKeyCount())
+                   .append(", \"replays\": ").append(idempotencyTable.getReplayCount()).append("}, ");
+        }
+        AccessLog accessLog = dbHandler.getAccessLog();
+        metrics.append("\"accessLog\": {\"dropped\": ").append(accessLog.getDroppedCount())
+               .append(", \"sampledOut\": ").append(accessLog.getSampledOutCount()).append("}}");
+        return String.format(ADMIN_RQT_TEMPLATE, "{\"metrics\": " + metrics + "}");
+    }
+}
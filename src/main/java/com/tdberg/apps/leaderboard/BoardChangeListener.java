@@ -0,0 +1,17 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+/**
+ * Listener that is told whenever the records of a leaderboard are modified (by an ADD, DELETE or CLEAR request).
+ * NOTE: Listeners are called on the request thread, so they must return quickly and must not block.
+ */
+@FunctionalInterface
+public interface BoardChangeListener {
+    /**
+     * Called after the records of the param leaderboard have been modified.
+     *
+     * @param leaderboard Leaderboard that was modified
+     */
+    void boardChanged(Leaderboard leaderboard);
+}
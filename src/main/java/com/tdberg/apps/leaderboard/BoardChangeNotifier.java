@@ -0,0 +1,126 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distributes leaderboard change notifications from the request paths that modify records to any registered
+ * BoardChangeListeners, and keeps a version number for each leaderboard that increases with every change.
+ * NOTE: Versions are kept in memory only.  Every leaderboard starts at the time (in milliseconds) that this notifier
+ *       was created, so that a version seen by a client before a restart never matches a version after the restart.
+ */
+public class BoardChangeNotifier {
+    private static Logger logger = LogManager.getLogger(BoardChangeNotifier.class);
+
+    private List<BoardChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private long initialVersion = System.currentTimeMillis();
+    private Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private Map<Integer, CompletableFuture<Long>> waiters = new ConcurrentHashMap<>();
+    private AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * Returns the number of changes made to all leaderboards so far.  This increases with every change, so it can
+     * stand in for the version of a leaderboard whose board ID is not known.
+     *
+     * @return Number of changes made to all leaderboards
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Registers the param listener to be told about all future leaderboard changes.
+     *
+     * @param listener BoardChangeListener to register
+     */
+    public void addListener(final BoardChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the current version of the leaderboard with the param board ID.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @return Current version of the leaderboard
+     */
+    public long getVersion(final int boardId) {
+        return versions.getOrDefault(boardId, initialVersion);
+    }
+
+    /**
+     * Sets the version of the leaderboard with the param board ID.  This is only intended for restoring versions at
+     * startup, before any requests are handled.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param version Version to restore
+     */
+    public void restoreVersion(final int boardId, final long version) {
+        versions.put(boardId, version);
+    }
+
+    /**
+     * Waits until the version of the leaderboard with the param board ID is no longer the param known version, or
+     * until the param timeout expires.  Returns immediately if the version has already changed.
+     * NOTE: All of the requests waiting on the same leaderboard share one future, which is completed (and replaced)
+     *       by the next change to that leaderboard.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param knownVersion Version of the leaderboard that the caller already has
+     * @param timeoutMillis Maximum time to wait, in milliseconds
+     * @return True if the leaderboard changed, false if the timeout expired first
+     * @throws InterruptedException
+     */
+    public boolean awaitChange(final int boardId, final long knownVersion, final long timeoutMillis)
+            throws InterruptedException {
+        // The waiter is registered before the version is checked, so a change between the two is never missed
+        CompletableFuture<Long> waiter = waiters.computeIfAbsent(boardId, id -> new CompletableFuture<>());
+        if(getVersion(boardId) != knownVersion) {
+            return true;
+        }
+
+        try {
+            waiter.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }catch(TimeoutException e) {
+            return false;
+        }catch(ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Advances the version of the param leaderboard, wakes any requests waiting on it, and then tells all registered
+     * listeners that its records have been modified.  A listener that throws does not prevent the other listeners
+     * from being told.
+     *
+     * @param leaderboard Leaderboard that was modified
+     */
+    public void boardChanged(final Leaderboard leaderboard) {
+        changeCount.incrementAndGet();
+        long version = versions.merge(leaderboard.getBoardId(), initialVersion + 1, (current, unused) -> current + 1);
+        CompletableFuture<Long> waiter = waiters.remove(leaderboard.getBoardId());
+        if(waiter != null) {
+            waiter.complete(version);
+        }
+
+        for(BoardChangeListener listener : listeners) {
+            try {
+                listener.boardChanged(leaderboard);
+            }catch(RuntimeException e) {
+                logger.error("Board change listener failed for leaderboard id : " + leaderboard.getBoardId() + " : " + e);
+            }
+        }
+    }
+}
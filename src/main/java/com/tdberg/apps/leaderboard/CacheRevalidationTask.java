@@ -0,0 +1,80 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.cache.BoardCache;
+import com.tdberg.apps.leaderboard.cache.CachedBoard;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * One-off task that re-reads every stale leaderboard in the BoardCache (ie. every leaderboard restored from a cache
+ * snapshot) from the database, one at a time, replacing the restored copy.  Stale leaderboards are served while this
+ * runs, so a restart does not send a burst of reads to the database.
+ * NOTE: Each revalidated leaderboard gets a new version through the BoardChangeNotifier, since clients may have read
+ *       the restored records under the version that they were restored with (after an unclean shutdown, that is the
+ *       version every leaderboard gets at startup), and must not be told that the re-read records are unchanged.
+ */
+public class CacheRevalidationTask implements Runnable {
+    private static Logger logger = LogManager.getLogger(CacheRevalidationTask.class);
+
+    private DatabaseHandler dbHandler;
+    private BoardCache boardCache;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     */
+    public CacheRevalidationTask(final DatabaseHandler dbHandler) {
+        this.dbHandler = dbHandler;
+        this.boardCache = dbHandler.getBoardCache();
+    }
+
+    @Override
+    public void run() {
+        Connection dbConnection = dbHandler.getDbConnection();
+        if(dbConnection == null) {
+            return;
+        }
+
+        int revalidatedCount = 0;
+        try {
+            for(CachedBoard cachedBoard : boardCache.getAll()) {
+                if(!cachedBoard.isStale()) {
+                    continue;
+                }
+
+                // Leaderboards that can no longer be found are dropped
+                Leaderboard leaderboard = DbUtils.getLeaderboardFromPubKey(cachedBoard.getLeaderboard().getPubKey(),
+                                                                           dbConnection);
+                if(leaderboard == null) {
+                    boardCache.remove(cachedBoard.getBoardId());
+                    continue;
+                }
+
+                dbHandler.getBoardChangeNotifier().boardChanged(leaderboard);
+                long version = dbHandler.getBoardChangeNotifier().getVersion(leaderboard.getBoardId());
+                int bucket = leaderboard.getCurrentBucket();
+                List<Record> records = DbUtils.getRecordPageFromBoardId(leaderboard.getBoardId(), bucket,
+                                                                        leaderboard.getRankingMode(),
+                                                                        boardCache.getTopN(), 0, dbConnection);
+                boardCache.put(boardCache.newCachedBoard(leaderboard, bucket, version, records, false));
+                revalidatedCount++;
+            }
+
+            logger.info("Revalidated " + revalidatedCount + " leaderboards restored from cache snapshot");
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to revalidate cached leaderboards : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+        }finally {
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+}
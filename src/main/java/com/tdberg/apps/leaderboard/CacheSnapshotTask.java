@@ -0,0 +1,88 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.cache.BoardCache;
+import com.tdberg.apps.leaderboard.cache.CacheSnapshot;
+import com.tdberg.apps.leaderboard.cache.CachedBoard;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Periodic task that writes the BoardCache to a snapshot file, so that the cache can be restored (warm) when the
+ * service restarts.  This is also run once when the service shuts down.
+ */
+public class CacheSnapshotTask implements Runnable {
+    private static Logger logger = LogManager.getLogger(CacheSnapshotTask.class);
+
+    private BoardCache boardCache;
+    private BoardChangeNotifier boardChangeNotifier;
+    private Path snapshotPath;
+    private volatile boolean shutdown;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler that holds the BoardCache
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public CacheSnapshotTask(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.boardCache = dbHandler.getBoardCache();
+        this.boardChangeNotifier = dbHandler.getBoardChangeNotifier();
+        snapshotPath = Paths.get(cfg.getProperty("cacheSnapshotFile", "leaderboard-cache.snapshot"));
+    }
+
+    /**
+     * Reads the snapshot file (if there is one) into the BoardCache.  The restored leaderboards are marked stale, and
+     * should be revalidated with a CacheRevalidationTask.
+     * NOTE: Leaderboard versions are only restored from a snapshot written at a clean shutdown.  Otherwise changes may
+     *       have been made after the snapshot was written, so the restored leaderboards keep the new version that
+     *       every leaderboard gets at startup.
+     *
+     * @return Number of leaderboards restored
+     */
+    public int restore() {
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.read(snapshotPath, boardCache.isOffHeap());
+            if(snapshot == null) {
+                return 0;
+            }
+
+            for(CachedBoard cachedBoard : snapshot.getBoards()) {
+                if(snapshot.isClean()) {
+                    boardChangeNotifier.restoreVersion(cachedBoard.getBoardId(), cachedBoard.getVersion());
+                }
+                boardCache.put(new CachedBoard(cachedBoard.getLeaderboard(), cachedBoard.getBucket(),
+                                               boardChangeNotifier.getVersion(cachedBoard.getBoardId()),
+                                               cachedBoard.getColumns(), cachedBoard.isComplete(), true));
+            }
+
+            logger.info("Restored " + snapshot.getBoards().size() + " leaderboards from cache snapshot written at " +
+                        snapshot.getWriteTime() + (snapshot.isClean() ? " (clean shutdown)" : ""));
+            return snapshot.getBoards().size();
+        }catch(IOException | RuntimeException e) {
+            logger.error("Error while attempting to restore cache snapshot : " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Marks the snapshot written by the next run as written at a clean shutdown.
+     */
+    public void setShutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            CacheSnapshot.write(snapshotPath, boardCache.getAll(), shutdown);
+        }catch(IOException e) {
+            logger.error("IO error while attempting to write cache snapshot : " + e.getMessage());
+        }
+    }
+}
@@ -1,19 +1,82 @@
 package com.tdberg.apps.leaderboard;
 
+import com.tdberg.apps.leaderboard.accesslog.AccessLog;
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.cache.BoardCache;
+import com.tdberg.apps.leaderboard.cache.CachedBoard;
+import com.tdberg.apps.leaderboard.export.ExportFormat;
+import com.tdberg.apps.leaderboard.export.ExportSink;
+import com.tdberg.apps.leaderboard.formats.EncodedResponse;
+import com.tdberg.apps.leaderboard.formats.JsonRecordWriter;
+import com.tdberg.apps.leaderboard.formats.RecordFormat;
+import com.tdberg.apps.leaderboard.formats.RecordWriter;
+import com.tdberg.apps.leaderboard.importer.ImportSummary;
+import com.tdberg.apps.leaderboard.importer.RecordImporter;
 import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
 import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.RecordSubmission;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+import com.tdberg.apps.leaderboard.profiling.StatementProfiler;
+import com.tdberg.apps.leaderboard.stats.BoardStats;
+import com.tdberg.apps.leaderboard.stats.StatsDelta;
+import com.tdberg.apps.leaderboard.timing.Phase;
+import com.tdberg.apps.leaderboard.timing.PhaseTimer;
+import com.tdberg.apps.leaderboard.utils.ApiKey;
+import com.tdberg.apps.leaderboard.utils.CircuitBreaker;
 import com.tdberg.apps.leaderboard.utils.DbUtils;
+import com.tdberg.apps.leaderboard.utils.IdempotencyTable;
+import com.tdberg.apps.leaderboard.utils.SingleFlight;
+import com.tdberg.apps.leaderboard.writer.BoardWriter;
+import com.tdberg.apps.leaderboard.writer.WriteJournal;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import spark.Request;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Properties;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * This creates, initializes, and handles connections to the MySQL database associated with this application instance.
@@ -23,7 +86,23 @@ public class DatabaseHandler {
 
     private Properties cfg;
     private Gson gson;
-    private Connection connection;
+    private BoardChangeNotifier boardChangeNotifier;
+    private BoardCache boardCache;
+    private AccessLog accessLog;
+    private StatementProfiler statementProfiler;
+    private SingleFlight<String, Object> readCoalescer;
+    private IdempotencyTable idempotencyTable;
+    private CircuitBreaker circuitBreaker;
+    private WriteJournal writeJournal;
+    private int connectTimeoutMillis;
+    private int socketTimeoutMillis;
+    private BoardWriter boardWriter;
+    private Semaphore dbBulkhead;
+    private ExecutorService boardFetchExecutor;
+    private long multiGetTimeoutMillis;
+    private Semaphore longPollWaiters;
+    private long longPollTimeoutMillis;
+    private int exportFetchSize;
     private String databaseUrl;
     private String databasePort;
     private String databaseName;
@@ -34,11 +113,41 @@ public class DatabaseHandler {
     private static String KEY_NOT_FOUND = "ERROR: The key associated with this request could not be found";
     private static String RECORD_NOT_FOUND = "ERROR: The requested record could not be found";
     private static String INVALID_REQUEST = "ERROR: Invalid request";
+    private static String IDEMPOTENCY_KEY_REUSED = "ERROR: The idempotency key was already used for a different request";
+    private static String TOO_MANY_WAITERS = "ERROR: Too many requests are waiting for leaderboard changes";
+    private static String TOO_MANY_FETCHES = "ERROR: Too many leaderboard reads are waiting, try again later";
     private static String JSON = "JSON";
     private static String OK = "OK";
+    // The submission was journaled while the database was unavailable, and will be added once it is available again
+    private static String ACCEPTED = "ACCEPTED";
     private static String NO_NAME = "NONAME";
+    private static String AFTER = "AFTER";
+    private static String WINDOW_PARAM = "window";
+    private static String VERSION_PARAM = "version";
+    private static String IDEMPOTENCY_KEY_PARAM = "idempotencyKey";
+    private static String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static int MAX_IDEMPOTENCY_KEY_LENGTH = 128;
     private static String LB_SERVICE_RQT_TEMPLATE = "{\"tdberg\": {\"leaderboard\": %s}}";
-    private static String LB_RETRIEVE_RQT_TEMPLATE = "{\"tdberg\": {\"leaderboard\": {\"entry\": %s}}}";
+    private static String LB_BATCH_RQT_TEMPLATE = "{\"tdberg\": {\"leaderboard\": {\"results\": %s}}}";
+    private static String BATCH_INSERTED = "INSERTED";
+    private static String BATCH_UPDATED = "UPDATED";
+    private static String BATCH_NOT_IMPROVED = "NOT_IMPROVED";
+    private static String BATCH_SUPERSEDED = "SUPERSEDED";
+    private static String BATCH_INVALID = "INVALID";
+    private static String AUDIT_DELETED = "DELETED";
+    private static String AUDIT_CLEARED = "CLEARED";
+    private static String AUDIT_JOURNALED = "JOURNALED";
+    // SQLSTATE class of connection errors
+    private static String CONNECTION_SQL_STATE_CLASS = "08";
+    private static int MAX_BATCH_SIZE = 1000;
+    private static String LB_MULTI_RETRIEVE_RQT_TEMPLATE = "{\"tdberg\": {\"leaderboards\": %s}}";
+    private static int MAX_FRIEND_NAMES = 100;
+    private static int DEFAULT_SEARCH_LIMIT = 10;
+    private static int MAX_SEARCH_LIMIT = 100;
+    private static String LB_STATS_RQT_TEMPLATE = "{\"tdberg\": {\"stats\": %s}}";
+    private static String PERCENTILES_PARAM = "percentiles";
+    private static double[] DEFAULT_PERCENTILES = {25, 50, 75, 90, 95, 99};
+    private static int MAX_MULTI_GET_BOARDS = 16;
 
     /**
      * Default constructor
@@ -53,6 +162,57 @@ public class DatabaseHandler {
         databaseName = cfg.getProperty("databaseName", "global_leaderboard");
         databaseUser = cfg.getProperty("databaseUser");
         databasePassword = cfg.getProperty("databasePassword");
+        boardChangeNotifier = new BoardChangeNotifier();
+        accessLog = new AccessLog(cfg);
+        if(Boolean.parseBoolean(cfg.getProperty("statementProfilingEnabled", "true"))) {
+            statementProfiler = new StatementProfiler(cfg);
+        }
+        boardWriter = new BoardWriter(this, cfg);
+        if(Boolean.parseBoolean(cfg.getProperty("readCoalescingEnabled", "true"))) {
+            readCoalescer = new SingleFlight<>();
+        }
+        // Request connections give up quickly on an unresponsive database, and the circuit breaker stops them from
+        // trying at all while it is down (see getDbConnection)
+        connectTimeoutMillis = Integer.parseInt(cfg.getProperty("databaseConnectTimeoutMillis", "2000"));
+        socketTimeoutMillis = Integer.parseInt(cfg.getProperty("databaseSocketTimeoutMillis", "10000"));
+        circuitBreaker = new CircuitBreaker("database",
+                                            Integer.parseInt(cfg.getProperty("circuitBreakerFailureThreshold", "5")),
+                                            Long.parseLong(cfg.getProperty("circuitBreakerWindowMillis", "10000")),
+                                            Long.parseLong(cfg.getProperty("circuitBreakerOpenMillis", "5000")));
+        if(Boolean.parseBoolean(cfg.getProperty("writeJournalEnabled", "true"))) {
+            writeJournal = new WriteJournal(cfg);
+        }
+        if(Boolean.parseBoolean(cfg.getProperty("idempotencyEnabled", "true"))) {
+            idempotencyTable = new IdempotencyTable(Integer.parseInt(cfg.getProperty("idempotencyMaxKeys", "100000")),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(cfg.getProperty("idempotencyTtlSeconds", "3600"))));
+        }
+        if(Boolean.parseBoolean(cfg.getProperty("cacheEnabled", "true"))) {
+            boardCache = new BoardCache(boardChangeNotifier, cfg);
+            boardChangeNotifier.addListener(boardCache);
+        }
+
+        // The bulkhead bounds how many concurrent database calls the parallel (fan-out) request paths may make, so
+        // that one multi-board request cannot open an unbounded number of connections.  The fetch pool has one thread
+        // per permit, and a bounded queue, so that waiting fetches hold no threads and a burst of multi-board requests
+        // is turned away rather than queued without limit.
+        int databaseMaxConcurrency = Integer.parseInt(cfg.getProperty("databaseMaxConcurrency", "16"));
+        dbBulkhead = new Semaphore(databaseMaxConcurrency);
+        multiGetTimeoutMillis = Long.parseLong(cfg.getProperty("multiGetTimeoutMillis", "5000"));
+        ThreadPoolExecutor fetchPool = new ThreadPoolExecutor(databaseMaxConcurrency, databaseMaxConcurrency, 60,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(Integer.parseInt(cfg.getProperty("multiGetMaxQueuedFetches", "64"))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "board-fetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        fetchPool.allowCoreThreadTimeOut(true);
+        boardFetchExecutor = fetchPool;
+
+        // Long-poll GETs wait on a Jetty request thread (but without a database connection), so the number of
+        // waiting requests is capped to leave threads free for other requests.
+        longPollWaiters = new Semaphore(Integer.parseInt(cfg.getProperty("longPollMaxWaiters", "100")));
+        longPollTimeoutMillis = Long.parseLong(cfg.getProperty("longPollTimeoutMillis", "30000"));
+        exportFetchSize = Integer.parseInt(cfg.getProperty("exportFetchSize", "1000"));
     }
 
     /**
@@ -74,18 +234,263 @@ public class DatabaseHandler {
         }
     }
 
+    /**
+     * Returns the BoardChangeNotifier that is told whenever a request modifies the records of a leaderboard.
+     *
+     * @return BoardChangeNotifier for this DatabaseHandler
+     */
+    public BoardChangeNotifier getBoardChangeNotifier() {
+        return boardChangeNotifier;
+    }
+
+    /**
+     * Returns the BoardCache that GET requests are served from, or null if caching is disabled.
+     *
+     * @return BoardCache for this DatabaseHandler, or null
+     */
+    public BoardCache getBoardCache() {
+        return boardCache;
+    }
+
+    /**
+     * Returns the AccessLog that requests and changes to leaderboards are written to.
+     *
+     * @return AccessLog for this DatabaseHandler
+     */
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    /**
+     * Returns the StatementProfiler that profiles the SQL statements run on this DatabaseHandler's connections, or
+     * null if profiling is disabled.
+     *
+     * @return StatementProfiler for this DatabaseHandler, or null
+     */
+    public StatementProfiler getStatementProfiler() {
+        return statementProfiler;
+    }
+
+    /**
+     * Returns the table of remembered idempotency keys.
+     *
+     * @return IdempotencyTable of this handler, or null if idempotency keys are disabled
+     */
+    public IdempotencyTable getIdempotencyTable() {
+        return idempotencyTable;
+    }
+
+    /**
+     * Returns the SingleFlight that concurrent identical GET requests are coalesced on, or null if coalescing is
+     * disabled.
+     *
+     * @return SingleFlight for GET requests, or null
+     */
+    public SingleFlight<String, Object> getReadCoalescer() {
+        return readCoalescer;
+    }
+
     public Connection getDbConnection() {
+        // While the circuit breaker is open, no connection is attempted, so callers fail straight away
+        if(!circuitBreaker.allowRequest()) {
+            return null;
+        }
+
+        // NOTE: This is a local (not a field) since requests are handled concurrently, and each request must get
+        //       its own connection.
+        Connection connection = null;
         try {
-            connection = DbUtils.prepareDbConnection(databaseUrl, databasePort, databaseName, databaseUser, databasePassword);
+            connection = DbUtils.prepareDbConnection(databaseUrl, databasePort, databaseName, databaseUser, databasePassword,
+                                                     connectTimeoutMillis, socketTimeoutMillis);
+            circuitBreaker.recordSuccess();
+            if(statementProfiler != null) {
+                connection = statementProfiler.wrap(connection);
+            }
         }catch(SQLException e) {
+            circuitBreaker.recordFailure();
             logger.error("SQL error when attempting to create database connection : " + e.getMessage());
         }catch(ClassNotFoundException e) {
+            circuitBreaker.recordFailure();
             logger.error("ClassNotFound error when attempting to create database connection : " + e.getMessage());
         }
 
         return connection;
     }
 
+    /**
+     * Returns a new database connection (see getDbConnection), or throws if none could be created.
+     *
+     * @return Database connection
+     * @throws SQLTransientConnectionException If the database is unavailable (nothing has been run on it)
+     */
+    private Connection requireDbConnection() throws SQLTransientConnectionException {
+        Connection connection = getDbConnection();
+        if(connection == null) {
+            throw new SQLTransientConnectionException("The database is unavailable");
+        }
+        return connection;
+    }
+
+    /**
+     * Reports an error from the database to the circuit breaker, if it shows the database to be unreachable or
+     * unresponsive (as opposed to an error in a statement).  Every request path that talks to the database reports
+     * the SQLExceptions that it catches here.
+     *
+     * @param e Error from the database
+     */
+    public void reportDatabaseError(final SQLException e) {
+        boolean connectionError = isConnectionError(e) || e instanceof SQLTimeoutException;
+        // Failures to connect are reported by getDbConnection itself
+        if(connectionError && !(e instanceof SQLTransientConnectionException)) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    /**
+     * Returns whether the param error shows that the connection it was raised on is no longer usable (as opposed to an
+     * error in a statement), in which case any further statements on the connection would fail as well.
+     *
+     * @param e Error from the database
+     * @return True if the error is a connection error
+     */
+    public static boolean isConnectionError(final SQLException e) {
+        return e instanceof SQLRecoverableException ||
+               (e.getSQLState() != null && e.getSQLState().startsWith(CONNECTION_SQL_STATE_CLASS));
+    }
+
+    /**
+     * Returns the CircuitBreaker that guards the database connections of requests.
+     *
+     * @return CircuitBreaker for the database
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the journal of ADD submissions that are waiting for the database to become available.
+     *
+     * @return WriteJournal of this handler, or null if journaling is disabled
+     */
+    public WriteJournal getWriteJournal() {
+        return writeJournal;
+    }
+
+    /**
+     * Returns a new database connection that reads the results of statements with a fetch size through a server side
+     * cursor (see DbUtils.prepareStreamingDbConnection), or null if the connection could not be created.
+     *
+     * @return Streaming database connection, or null
+     */
+    public Connection getStreamingDbConnection() {
+        Connection connection = null;
+        try {
+            connection = DbUtils.prepareStreamingDbConnection(databaseUrl, databasePort, databaseName, databaseUser,
+                                                              databasePassword);
+            if(statementProfiler != null) {
+                connection = statementProfiler.wrap(connection);
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error when attempting to create streaming database connection : " + e.getMessage());
+        }catch(ClassNotFoundException e) {
+            logger.error("ClassNotFound error when attempting to create streaming database connection : " + e.getMessage());
+        }
+
+        return connection;
+    }
+
+    /**
+     * Exports the records of the param board (or of every board, if the param board ID is null) to the param stream,
+     * in the param format.  Records are streamed from the database to the output as they are read, so memory use
+     * does not depend on the size of the export.
+     *
+     * @param boardId BoardId of the leaderboard to export, or null to export every leaderboard
+     * @param format Format to write the records in
+     * @param gzip True to gzip the output
+     * @param out Stream to write the export to (it is not closed)
+     * @return Number of records exported
+     * @throws SQLException If the records could not be read
+     * @throws IOException If the export could not be written
+     */
+    public long exportRecords(final Integer boardId, final ExportFormat format, final boolean gzip,
+                              final OutputStream out) throws SQLException, IOException {
+        Connection dbConnection = getStreamingDbConnection();
+        if(dbConnection == null) {
+            throw new SQLException("No database connection for the export");
+        }
+
+        try {
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 65536) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8), 65536);
+            ExportSink sink = format.newWriter(writer);
+            long recordCount = DbUtils.exportRecords(boardId, exportFetchSize, sink, dbConnection);
+            sink.finish();
+            if(gzipOut != null) {
+                gzipOut.finish();
+            }
+            return recordCount;
+        }finally {
+            closeDbConnection(dbConnection);
+        }
+    }
+
+    /**
+     * Returns a new database connection on which JDBC batches are sent as multi-row statements (see
+     * DbUtils.prepareBulkDbConnection), or null if the connection could not be created.
+     *
+     * @return Bulk database connection, or null
+     */
+    public Connection getBulkDbConnection() {
+        Connection connection = null;
+        try {
+            connection = DbUtils.prepareBulkDbConnection(databaseUrl, databasePort, databaseName, databaseUser,
+                                                         databasePassword);
+            if(statementProfiler != null) {
+                connection = statementProfiler.wrap(connection);
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error when attempting to create bulk database connection : " + e.getMessage());
+        }catch(ClassNotFoundException e) {
+            logger.error("ClassNotFound error when attempting to create bulk database connection : " + e.getMessage());
+        }
+
+        return connection;
+    }
+
+    /**
+     * Imports the records read from the param stream, in the param format, into new leaderboards with the param time
+     * window and ranking mode (see RecordImporter).  The rows are read from the stream as they are imported, so
+     * memory use does not depend on the size of the import.
+     *
+     * @param format Format to read the records in
+     * @param gzip True if the input is gzipped
+     * @param in Stream to read the import from (it is not closed)
+     * @param windowType Time window of the leaderboards created by the import
+     * @param rankingMode Ranking mode of the leaderboards created by the import
+     * @param progressOut Stream to print progress to in addition to the log, or null
+     * @return ImportSummary describing the outcome of the import
+     * @throws SQLException If the records could not be written
+     * @throws IOException If the import could not be read
+     */
+    public ImportSummary importRecords(final ExportFormat format, final boolean gzip, final InputStream in,
+                                       final WindowType windowType, final RankingMode rankingMode,
+                                       final PrintStream progressOut) throws SQLException, IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(gzip ? new GZIPInputStream(in, 65536) : in,
+                                                                 StandardCharsets.UTF_8), 65536);
+        RecordImporter importer = new RecordImporter(this, cfg, windowType, rankingMode, progressOut);
+        return importer.importRecords(format.newReader(reader));
+    }
+
+    public void rollbackDbConnection(Connection connection) {
+        try {
+            if(connection != null && !connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error when attempting to roll back database transaction : " + e.getMessage());
+        }
+    }
+
     public void closeDbConnection(Connection connection) {
         try {
             connection.close();
@@ -100,9 +505,49 @@ public class DatabaseHandler {
      * @return String describing the result of the request command
      */
     public String createNewLeaderboard() {
+        return createNewLeaderboard(WindowType.NONE, RankingMode.SCORE_DESC);
+    }
+
+    /**
+     * Creates a new leaderboard with the options described from index 3 of the param pathArray, and returns the
+     * leaderboard as a JSON String.  The options are the time window and the ranking mode of the leaderboard, in
+     * either order, and each may be given at most once, eg.
+     *           /lb/CREATE/DAILY
+     *           /lb/CREATE/TIME_ASC
+     *           /lb/CREATE/WEEKLY/SCORE_THEN_TIME
+     *
+     * @param pathArray CREATE REST request String, broken at '/' characters
+     * @return String describing the result of the request command
+     */
+    public String createNewLeaderboard(String[] pathArray) {
+        WindowType windowType = null;
+        RankingMode rankingMode = null;
+        for(int i=3; i<pathArray.length; i++) {
+            if(windowType == null && WindowType.fromName(pathArray[i]) != null) {
+                windowType = WindowType.fromName(pathArray[i]);
+            }else if(rankingMode == null && RankingMode.fromName(pathArray[i]) != null) {
+                rankingMode = RankingMode.fromName(pathArray[i]);
+            }else {
+                return INVALID_REQUEST;
+            }
+        }
+
+        return createNewLeaderboard((windowType == null) ? WindowType.NONE : windowType,
+                                    (rankingMode == null) ? RankingMode.SCORE_DESC : rankingMode);
+    }
+
+    /**
+     * Creates a new leaderboard with the param time window and ranking mode, and returns the leaderboard as a JSON
+     * String.
+     *
+     * @param windowType Time window of the new leaderboard
+     * @param rankingMode Ranking mode of the new leaderboard
+     * @return String describing the result of the request command
+     */
+    private String createNewLeaderboard(final WindowType windowType, final RankingMode rankingMode) {
         try {
-            Connection dbConnection = getDbConnection();
-            Leaderboard leaderboard = Leaderboard.createNewLeaderboard(connection);
+            Connection dbConnection = requireDbConnection();
+            Leaderboard leaderboard = Leaderboard.createNewLeaderboard(dbConnection, windowType, rankingMode);
             DbUtils.insertLeaderboard(leaderboard, dbConnection);
             String jsonResp = gson.toJson(leaderboard.toUserFacingLeaderboard());
             closeDbConnection(dbConnection);
@@ -110,6 +555,7 @@ public class DatabaseHandler {
             return String.format(LB_SERVICE_RQT_TEMPLATE, jsonResp);
         }catch(SQLException e) {
             logger.error("SQL error when attempting to create new leaderboard : " + e.getMessage());
+            reportDatabaseError(e);
             return DATABASE_ERROR;
         }
     }
@@ -118,11 +564,18 @@ public class DatabaseHandler {
      * Creates a new Record based on values in the param pathArray, and adds it to the leaderboard
      * described by index 3 of the param pathArray.
      *
+     * NOTE: A request sent with an idempotency key (see runIdempotent) is only run once.  Retries with the same key
+     *       get the original result back.
+     *
      * @param pathArray ADD REST request String, broken at '/' characters
      * @param request The HTTP request (used to gather IP information regarding the requester)
      * @return String describing the result of the request command
      */
-    public String addRecordIntoLeaderboard(String[] pathArray, final Request request) {
+    public String addRecordIntoLeaderboard(final String[] pathArray, final Request request) {
+        return runIdempotent(pathArray, request, String.join("/", pathArray), () -> addRecord(pathArray, request));
+    }
+
+    private String addRecord(final String[] pathArray, final Request request) {
         try {
             // If the request path has less than 6 elements, then this request is invalid
             // (request must at least have a name string and a score)
@@ -130,16 +583,8 @@ public class DatabaseHandler {
                 return INVALID_REQUEST;
             }
 
-            Connection dbConnection = getDbConnection();
-            // If we cannot resolve the API private key from the database, then return key not found
-            Leaderboard leaderboard = DbUtils.getLeaderboardFromPrivKey(pathArray[3], dbConnection);
-            if(leaderboard == null) {
-                closeDbConnection(dbConnection);
-                return KEY_NOT_FOUND;
-            }
-
+            PhaseTimer timer = PhaseTimer.of(request);
             Record record = new Record();
-            record.setBoardId(leaderboard.getBoardId());
             record.setIpAddress(request.ip());
             // If the name is 'NONAME', then we don't set a value for the record name
             if(!pathArray[4].equalsIgnoreCase(NO_NAME)) {
@@ -147,7 +592,7 @@ public class DatabaseHandler {
             }
             record.setScore(Integer.valueOf(pathArray[5]));
 
-            // If the path has more than 6 elements, then element index 6 is supposed to be the time, so we assign it as such
+            // If the path has more than 6 elements, then element index 6 is supposed to be the time, so we assign it as such.
             if(pathArray.length > 6) {
                 record.setTime(Integer.valueOf(pathArray[6]));
             }
@@ -157,111 +602,1189 @@ public class DatabaseHandler {
                 record.setNotes(pathArray[7]);
             }
 
-            // If the record has no name field, we add the record
-            if(record.getName() == null) {
-                DbUtils.insertRecord(record, dbConnection);
-                DbUtils.pruneLeaderboardByPrivKey(leaderboard.getPrivKey(), dbConnection);
-                DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
-                closeDbConnection(dbConnection);
-                return OK;
-            }
+            // The private key is resolved, and the duplicate name check and the write are applied, by the leaderboard's
+            // writer, so that no other change to the leaderboard can land between them
+            BoardWriter.Applied<String> applied = boardWriter.execute(pathArray[3], (leaderboard, dbConnection, stats) -> {
+                timer.mark(Phase.QUEUE);
+                // Leaderboards ranked by time cannot rank a record without one
+                if(pathArray.length <= 6 && leaderboard.getRankingMode().isTimeRequired()) {
+                    return INVALID_REQUEST;
+                }
+                record.setBoardId(leaderboard.getBoardId());
+                record.setBucket(leaderboard.getCurrentBucket());
+                // A retried attempt must not keep the record ID found by an earlier attempt
+                record.setRecordId(0);
 
-            // We do not allow two Records to have the same 'Name' field (unless that is null) for a single leaderboard.
-            // Before adding a new Record, we check the existing records to see if there is one with the same 'Name'.
-            Record duplicateNameRecord = null;
-            List<Record> recordList = DbUtils.getAllRecordsFromPrivKey(leaderboard.getPrivKey(), dbConnection);
-            for(int i=0; i<recordList.size(); i++) {
-                if(record.getName().equals(recordList.get(i).getName())) {
-                    duplicateNameRecord = recordList.get(i);
+                // If the record has no name field, we add the record
+                if(record.getName() == null) {
+                    DbUtils.insertRecord(record, dbConnection);
+                    stats.recordAdded(record.getBucket(), record.getScore());
+                    timer.mark(Phase.WRITE);
+                    return BATCH_INSERTED;
                 }
-            }
 
-            // If we've found another Record with the same name as this record, then we keep the record with the higher score.
-            if(duplicateNameRecord != null) {
-                if(record.getScore() >= duplicateNameRecord.getScore()) {
+                // We do not allow two Records to have the same 'Name' field (unless that is null) for a single
+                // leaderboard window.  Before adding a new Record, we check the current window for an existing record
+                // with the same 'Name'.
+                Record duplicateNameRecord = DbUtils.getNamedRecordsFromBoardId(leaderboard.getBoardId(), record.getBucket(),
+                        Collections.singletonList(record.getName()), dbConnection).get(record.getName());
+                timer.mark(Phase.READ);
+
+                // If we've found another Record with the same name as this record, then we keep the better ranked record
+                // (the new record wins a tie).
+                String result = BATCH_INSERTED;
+                if(duplicateNameRecord != null) {
                     record.setRecordId(duplicateNameRecord.getRecordId());
-                    DbUtils.updateRecord(record, dbConnection);
+                    if(leaderboard.getRankingMode().compare(record, duplicateNameRecord) <= 0) {
+                        DbUtils.updateRecord(record, dbConnection);
+                        stats.recordChanged(record.getBucket(), duplicateNameRecord.getScore(), record.getScore());
+                        result = BATCH_UPDATED;
+                    }else {
+                        result = BATCH_NOT_IMPROVED;
+                    }
                 }else {
-                    logger.info("Received request to update record: " + record.getRecordId() + " but new score was lower than highest.");
+                    DbUtils.insertRecord(record, dbConnection);
+                    stats.recordAdded(record.getBucket(), record.getScore());
                 }
-            }else {
-                DbUtils.insertRecord(record, dbConnection);
+                timer.mark(Phase.WRITE);
+                return result;
+            });
+            timer.mark(Phase.QUEUE);
+
+            // If we cannot resolve the API private key from the database, then return key not found
+            if(applied == null) {
+                return KEY_NOT_FOUND;
+            }
+            String outcome = applied.getResult();
+            if(outcome.equals(INVALID_REQUEST)) {
+                return INVALID_REQUEST;
             }
 
-            DbUtils.pruneLeaderboardByPrivKey(leaderboard.getPrivKey(), dbConnection);
-            DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
-            closeDbConnection(dbConnection);
+            accessLog.audit(AccessRoute.ADD, outcome, record.getBoardId(), record.getRecordId(), record.getScore(),
+                            record.getIpAddress());
+            if(!outcome.equals(BATCH_NOT_IMPROVED)) {
+                boardChangeNotifier.boardChanged(applied.getLeaderboard());
+            }
             return OK;
+        }catch(SQLTransientConnectionException e) {
+            // Nothing reached the database, so the submission is journaled to be replayed once the database is back
+            return journalRecord(pathArray, request);
         }catch(SQLException e) {
             logger.error("SQL error while attempting to ADD record : " + e.getMessage());
+            reportDatabaseError(e);
             return DATABASE_ERROR;
         }
     }
 
     /**
-     * Returns a JSON String describing all records from a leaderboard.
-     * Leaderboard is described by the param public key held at index 3 of the param pathArray.
+     * Appends the ADD request held in the param pathArray to the write journal, to be applied by a
+     * WriteJournalReplayTask once the database is available again.  The form of the private key, the score and time,
+     * and the lengths of the name and notes are checked before the submission is journaled.  Whether the private key
+     * resolves, and whether the ranking mode needs a time, can only be checked when the submission is replayed.
      *
-     * @param pathArray GET REST request String, broken at '/' characters
+     * @param pathArray ADD REST request String, broken at '/' characters
+     * @param request The HTTP request (used to gather IP information regarding the requester)
+     * @return ACCEPTED if the submission was journaled, or an error if it is invalid or the journal is disabled or full
+     */
+    private String journalRecord(final String[] pathArray, final Request request) {
+        if(writeJournal == null) {
+            return DATABASE_ERROR;
+        }
+
+        RecordSubmission submission;
+        try {
+            submission = new RecordSubmission(pathArray[4].equalsIgnoreCase(NO_NAME) ? null : pathArray[4],
+                                              Integer.valueOf(pathArray[5]),
+                                              (pathArray.length > 6) ? Integer.valueOf(pathArray[6]) : null,
+                                              (pathArray.length > 7) ? pathArray[7] : null);
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
+        }
+        if(!ApiKey.isPrivateKeyFormat(pathArray[3]) || !submission.isWellFormed()) {
+            return INVALID_REQUEST;
+        }
+
+        WriteJournal.Entry entry = new WriteJournal.Entry(pathArray[3], submission.getName(), submission.getScore(),
+                                                          submission.getTime(), submission.getNotes(), request.ip(),
+                                                          System.currentTimeMillis());
+        if(!writeJournal.append(entry)) {
+            logger.error("Write journal is full, ADD request rejected while the database is unavailable");
+            return DATABASE_ERROR;
+        }
+
+        accessLog.audit(AccessRoute.ADD, AUDIT_JOURNALED, 0, 0, entry.getScore(), entry.getIpAddress());
+        return ACCEPTED;
+    }
+
+    /**
+     * Applies journaled ADD submissions for one private key, with the rules of a batched ADD request.  Each
+     * submission is added to the window that was current when it was submitted.  Submissions for a private key that
+     * no longer resolves are dropped.
+     * NOTE: All of the param entries are applied in one BoardWriter mutation (so in one transaction), even when they
+     *       are written as several batches (one per window and address), so they are either all kept or all applied.
+     *
+     * @param entries Journaled submissions with the same private key, oldest first (at most MAX_BATCH_SIZE)
+     * @return Number of submissions added (including any that were invalid or did not improve on a record)
+     * @throws SQLException If the database is still unavailable, in which case the entries must be kept
+     */
+    public int replayJournalEntries(final List<WriteJournal.Entry> entries) throws SQLException {
+        List<Record> insertList = new ArrayList<>();
+        List<Record> updateList = new ArrayList<>();
+        List<Record> notImprovedList = new ArrayList<>();
+        PhaseTimer timer = PhaseTimer.of(null);
+        BoardWriter.Applied<Void> applied = boardWriter.execute(entries.get(0).getPrivKey(),
+                (leaderboard, dbConnection, stats) -> {
+            insertList.clear();
+            updateList.clear();
+            notImprovedList.clear();
+
+            // Consecutive submissions to the same window, from the same address, are written as one batch
+            int start = 0;
+            while(start < entries.size()) {
+                WriteJournal.Entry first = entries.get(start);
+                int bucket = leaderboard.getWindowType().bucketAt(first.getSubmittedAt());
+                int end = start + 1;
+                while(end < entries.size() &&
+                        leaderboard.getWindowType().bucketAt(entries.get(end).getSubmittedAt()) == bucket &&
+                        Objects.equals(entries.get(end).getIpAddress(), first.getIpAddress())) {
+                    end++;
+                }
+
+                RecordSubmission[] submissions = new RecordSubmission[end - start];
+                for(int i=start; i<end; i++) {
+                    WriteJournal.Entry entry = entries.get(i);
+                    submissions[i - start] = new RecordSubmission(entry.getName(), entry.getScore(), entry.getTime(),
+                                                                  entry.getNotes());
+                }
+                writeSubmissions(leaderboard, bucket, submissions, first.getIpAddress(), dbConnection, stats, timer,
+                                 insertList, updateList, notImprovedList);
+                start = end;
+            }
+            return null;
+        });
+        if(applied == null) {
+            logger.warn("Dropped " + entries.size() + " journaled submissions for an unknown private key");
+            return 0;
+        }
+
+        auditRecords(AccessRoute.ADD, BATCH_INSERTED, insertList);
+        auditRecords(AccessRoute.ADD, BATCH_UPDATED, updateList);
+        auditRecords(AccessRoute.ADD, BATCH_NOT_IMPROVED, notImprovedList);
+        if(!insertList.isEmpty() || !updateList.isEmpty()) {
+            boardChangeNotifier.boardChanged(applied.getLeaderboard());
+        }
+        return entries.size();
+    }
+
+    /**
+     * Adds a batch of records to the leaderboard described by index 3 of the param pathArray.  The records are read
+     * from the request body, which must be a JSON array of objects with 'name', 'score', 'time' and 'notes' fields.
+     * NOTE: The same rules as the single record ADD request apply, but they are applied to the batch as a whole.  The
+     *       private key is resolved once, duplicate names within the batch are collapsed to the best ranked submission, all
+     *       inserts and updates are written in one transaction with JDBC batching, and the leaderboard is pruned once.
+     *       Like every change, the batch is applied by the leaderboard's writer (see BoardWriter).  As with the single
+     *       record ADD request, a batch sent with an idempotency key is only run once.
+     *
+     * @param pathArray ADD REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the batch body and to gather IP information regarding the requester)
+     * @return String describing the outcome of each submitted record, or an error
+     */
+    public String addRecordsIntoLeaderboard(final String[] pathArray, final Request request) {
+        // The body is only fingerprinted by its hash, so that a large batch is not held on to for every key
+        String fingerprint = String.join("/", pathArray) + "#" + request.body().length() + ":" + request.body().hashCode();
+        return runIdempotent(pathArray, request, fingerprint, () -> addRecords(pathArray, request));
+    }
+
+    private String addRecords(final String[] pathArray, final Request request) {
+        RecordSubmission[] submissions;
+        try {
+            submissions = gson.fromJson(request.body(), RecordSubmission[].class);
+        }catch(JsonParseException e) {
+            return INVALID_REQUEST;
+        }
+        if(submissions == null || submissions.length == 0 || submissions.length > MAX_BATCH_SIZE) {
+            return INVALID_REQUEST;
+        }
+
+        try {
+            List<RecordSubmission.Result> resultList = addSubmissions(pathArray[3], submissions, request.ip(),
+                                                                      AccessRoute.BATCH_ADD, PhaseTimer.of(request));
+            if(resultList == null) {
+                return KEY_NOT_FOUND;
+            }
+            return String.format(LB_BATCH_RQT_TEMPLATE, gson.toJson(resultList));
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to ADD a batch of records : " + e.getMessage());
+            reportDatabaseError(e);
+            return DATABASE_ERROR;
+        }
+    }
+
+    /**
+     * Runs the param ADD request, unless it carries an idempotency key (in the IDEMPOTENCY_KEY_HEADER header or the
+     * IDEMPOTENCY_KEY_PARAM query parameter) that an earlier request to the same leaderboard was sent with, in which
+     * case the result of the earlier request is returned without touching the database.  Keys are remembered per
+     * private key, for a bounded time (see IdempotencyTable).
+     * NOTE: Database errors are not remembered, so a retry after one runs the request again.  Reusing a key for a
+     *       request with a different fingerprint (eg. a different score) is an invalid request.
+     *
+     * @param pathArray ADD REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the idempotency key)
+     * @param fingerprint Description of the request, which retries must match
+     * @param action Runs the request
      * @return String describing the result of the request command
      */
-    public String getRecordsFromLeaderboard(String[] pathArray) {
-        String retVal = "";
+    private String runIdempotent(final String[] pathArray, final Request request, final String fingerprint,
+                                 final Supplier<String> action) {
+        String idempotencyKey = request.headers(IDEMPOTENCY_KEY_HEADER);
+        if(idempotencyKey == null) {
+            idempotencyKey = request.queryParams(IDEMPOTENCY_KEY_PARAM);
+        }
+        if(idempotencyTable == null || idempotencyKey == null || pathArray.length < 4) {
+            return action.get();
+        }
+        if(idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return INVALID_REQUEST;
+        }
+
+        String result = idempotencyTable.execute(pathArray[3] + "/" + idempotencyKey, fingerprint, action,
+                                                 DATABASE_ERROR::equals);
+        return (result == null) ? IDEMPOTENCY_KEY_REUSED : result;
+    }
+
+    /**
+     * Adds a batch of records to the leaderboard with the param private key, applying the rules of the batched ADD
+     * request (see addRecordsIntoLeaderboard).  This is shared by the batched ADD request and the binary ingestion
+     * listener (see IngestServer).
+     *
+     * @param privKey Private API key of the leaderboard to add the records to
+     * @param submissions Submissions to add, in the order they were submitted
+     * @param ipAddress IP address of the submitter
+     * @param route Route to write the AUDIT events of the changed records under
+     * @param timer PhaseTimer to charge the phases of the batch to
+     * @return Outcome of each submission, in submission order, or null if the private key could not be resolved
+     * @throws SQLException
+     */
+    public List<RecordSubmission.Result> addSubmissions(final String privKey, final RecordSubmission[] submissions,
+                                                        final String ipAddress, final AccessRoute route,
+                                                        final PhaseTimer timer) throws SQLException {
+        List<Record> insertList = new ArrayList<>();
+        List<Record> updateList = new ArrayList<>();
+        List<Record> notImprovedList = new ArrayList<>();
+        // The private key is resolved by the leaderboard's writer (see BoardWriter)
+        BoardWriter.Applied<List<RecordSubmission.Result>> applied = boardWriter.execute(privKey,
+                (leaderboard, dbConnection, stats) -> {
+            timer.mark(Phase.QUEUE);
+            // The lists are filled here, since a retried mutation must start from scratch
+            insertList.clear();
+            updateList.clear();
+            notImprovedList.clear();
+            return writeSubmissions(leaderboard, leaderboard.getCurrentBucket(), submissions, ipAddress, dbConnection,
+                                    stats, timer, insertList, updateList, notImprovedList);
+        });
+        timer.mark(Phase.QUEUE);
+        if(applied == null) {
+            return null;
+        }
+
+        auditRecords(route, BATCH_INSERTED, insertList);
+        auditRecords(route, BATCH_UPDATED, updateList);
+        auditRecords(route, BATCH_NOT_IMPROVED, notImprovedList);
+        if(!insertList.isEmpty() || !updateList.isEmpty()) {
+            boardChangeNotifier.boardChanged(applied.getLeaderboard());
+        }
+        return applied.getResult();
+    }
+
+    /**
+     * Writes a batch of submissions to one window of the param leaderboard, as part of a BoardWriter mutation.
+     * Duplicate names within the batch are collapsed to the best ranked submission (the later submission wins a tie,
+     * the same as it would if the submissions were sent one at a time).
+     *
+     * @param leaderboard Leaderboard to add the records to
+     * @param bucket Bucket of the leaderboard window to add the records to
+     * @param submissions Submissions to add, in the order they were submitted
+     * @param ipAddress IP address of the submitter
+     * @param dbConnection Database connection of the mutation
+     * @param stats StatsDelta of the mutation
+     * @param timer PhaseTimer to charge the phases of the batch to
+     * @param insertList List to add the inserted records to
+     * @param updateList List to add the updated records to
+     * @param notImprovedList List to add the records that were not kept to
+     * @return Outcome of each submission, in submission order
+     * @throws SQLException
+     */
+    private List<RecordSubmission.Result> writeSubmissions(final Leaderboard leaderboard, final int bucket,
+                                                           final RecordSubmission[] submissions, final String ipAddress,
+                                                           final Connection dbConnection, final StatsDelta stats,
+                                                           final PhaseTimer timer, final List<Record> insertList,
+                                                           final List<Record> updateList,
+                                                           final List<Record> notImprovedList) throws SQLException {
+        RankingMode rankingMode = leaderboard.getRankingMode();
+        Map<String, Integer> bestIndexByName = new HashMap<>();
+        for(int i=0; i<submissions.length; i++) {
+            String name = submissionName(submissions[i]);
+            if(!isValidSubmission(submissions[i], rankingMode) || name == null) {
+                continue;
+            }
+            Integer bestIndex = bestIndexByName.get(name);
+            if(bestIndex == null || rankingMode.compare(submissions[i].getScore(), submissionTime(submissions[i]),
+                    submissions[bestIndex].getScore(), submissionTime(submissions[bestIndex])) <= 0) {
+                bestIndexByName.put(name, i);
+            }
+        }
+
+        Map<String, Record> existingRecords = DbUtils.getNamedRecordsFromBoardId(leaderboard.getBoardId(), bucket,
+                                                                                  bestIndexByName.keySet(), dbConnection);
+        timer.mark(Phase.READ);
+        List<Record> batchInserts = new ArrayList<>();
+        List<Record> batchUpdates = new ArrayList<>();
+        List<RecordSubmission.Result> resultList = new ArrayList<>();
+        sortSubmissions(submissions, bestIndexByName, existingRecords, leaderboard, bucket, ipAddress,
+                        batchInserts, batchUpdates, notImprovedList, resultList);
+
+        DbUtils.insertRecords(batchInserts, dbConnection);
+        DbUtils.updateRecords(batchUpdates, dbConnection);
+        for(Record record : batchInserts) {
+            stats.recordAdded(bucket, record.getScore());
+        }
+        for(Record record : batchUpdates) {
+            stats.recordChanged(bucket, existingRecords.get(record.getName()).getScore(), record.getScore());
+        }
+        insertList.addAll(batchInserts);
+        updateList.addAll(batchUpdates);
+        timer.mark(Phase.WRITE);
+        return resultList;
+    }
+
+    /**
+     * Sorts the param batch submissions into records to insert, records to update and records that do not improve on
+     * the existing record with the same name, and adds the outcome of each submission to the param resultList.
+     *
+     * @param submissions Batch submissions, in the order they were submitted
+     * @param bestIndexByName Index of the best ranked submission for each name in the batch
+     * @param existingRecords Existing records of the leaderboard window, by name
+     * @param leaderboard Leaderboard the records are being added to
+     * @param bucket Bucket of the leaderboard window the records are being added to
+     * @param ipAddress IP address of the requester
+     * @param insertList List to add the records to insert to
+     * @param updateList List to add the records to update to
+     * @param notImprovedList List to add the records that are not kept to
+     * @param resultList List to add the outcome of each submission to
+     */
+    private void sortSubmissions(final RecordSubmission[] submissions, final Map<String, Integer> bestIndexByName,
+                                 final Map<String, Record> existingRecords, final Leaderboard leaderboard,
+                                 final int bucket, final String ipAddress, final List<Record> insertList,
+                                 final List<Record> updateList, final List<Record> notImprovedList,
+                                 final List<RecordSubmission.Result> resultList) {
+        for(int i=0; i<submissions.length; i++) {
+            RecordSubmission submission = submissions[i];
+            if(!isValidSubmission(submission, leaderboard.getRankingMode())) {
+                resultList.add(new RecordSubmission.Result(i, null, BATCH_INVALID));
+                continue;
+            }
+
+            String name = submissionName(submission);
+            if(name != null && bestIndexByName.get(name) != i) {
+                resultList.add(new RecordSubmission.Result(i, name, BATCH_SUPERSEDED));
+                continue;
+            }
+
+            Record record = new Record();
+            record.setBoardId(leaderboard.getBoardId());
+            record.setBucket(bucket);
+            record.setIpAddress(ipAddress);
+            record.setName(name);
+            record.setScore(submission.getScore());
+            if(submission.getTime() != null) {
+                record.setTime(submission.getTime());
+            }
+            record.setNotes(submission.getNotes());
+
+            Record duplicateNameRecord = (name == null) ? null : existingRecords.get(name);
+            if(duplicateNameRecord == null) {
+                insertList.add(record);
+                resultList.add(new RecordSubmission.Result(i, name, BATCH_INSERTED));
+            }else if(leaderboard.getRankingMode().compare(record, duplicateNameRecord) <= 0) {
+                record.setRecordId(duplicateNameRecord.getRecordId());
+                updateList.add(record);
+                resultList.add(new RecordSubmission.Result(i, name, BATCH_UPDATED));
+            }else {
+                record.setRecordId(duplicateNameRecord.getRecordId());
+                notImprovedList.add(record);
+                resultList.add(new RecordSubmission.Result(i, name, BATCH_NOT_IMPROVED));
+            }
+        }
+    }
+
+    /**
+     * Writes an AUDIT event to the access log for each of the param records.
+     *
+     * @param route Route of the request that changed the records
+     * @param outcome Outcome of the change
+     * @param records Records that were changed
+     */
+    private void auditRecords(final AccessRoute route, final String outcome, final List<Record> records) {
+        for(Record record : records) {
+            accessLog.audit(route, outcome, record.getBoardId(), record.getRecordId(), record.getScore(),
+                            record.getIpAddress());
+        }
+    }
 
+    /**
+     * Returns whether the param batch submission can be added to a leaderboard with the param ranking mode.
+     *
+     * @param submission Batch submission to check
+     * @param rankingMode Ranking mode of the leaderboard
+     * @return True if the submission is valid (see RecordSubmission.isValid)
+     */
+    private boolean isValidSubmission(final RecordSubmission submission, final RankingMode rankingMode) {
+        return submission != null && submission.isValid(rankingMode);
+    }
+
+    /**
+     * Returns the time that a batch submission would be stored with (0 if it has none).
+     *
+     * @param submission Batch submission to read the time from
+     * @return Time of the submission
+     */
+    private int submissionTime(final RecordSubmission submission) {
+        return (submission.getTime() == null) ? 0 : submission.getTime();
+    }
+
+    /**
+     * Returns the name that a batch submission should be stored under, or null if the submission is anonymous.
+     *
+     * @param submission Batch submission to read the name from
+     * @return Name of the submission, or null if the name is missing or 'NONAME'
+     */
+    private String submissionName(final RecordSubmission submission) {
+        if(submission == null || submission.getName() == null || submission.getName().equalsIgnoreCase(NO_NAME)) {
+            return null;
+        }
+        return submission.getName();
+    }
+
+    /**
+     * Returns records from a leaderboard, encoded in the format held at index 4 of the param pathArray ('json', 'csv'
+     * or 'msgpack').  Leaderboard is described by the param public key held at index 3 of the param pathArray.
+     * NOTE: The request may optionally page through the leaderboard.  The supported forms are:
+     *           /lb/GET/<pubkey>/<format>                                (full leaderboard)
+     *           /lb/GET/<pubkey>/<format>/<N>                            (best ranked N records)
+     *           /lb/GET/<pubkey>/<format>/<N>/<offset>                   (N records, skipping the first offset records)
+     *           /lb/GET/<pubkey>/<format>/<N>/after/<value>/<recordId>   (N records ranked after the given record)
+     *       The limit and offset/cursor are applied in SQL, so deep pages only read the rows that are returned.  The
+     *       cursor value is the score of the given record, or its time for TIME_ASC leaderboards.  SCORE_THEN_TIME
+     *       leaderboards take both, as after/<score>/<time>/<recordId>.
+     *       For windowed leaderboards the current window is returned, unless the 'window' query parameter selects a
+     *       past window (eg. ?window=-1 for the previous window).
+     *
+     *       Concurrent identical requests (same key, format, page and window) are coalesced, so that only one of them
+     *       reads the leaderboard and the rest share its response.
+     *
+     * @param pathArray GET REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the optional window query parameter)
+     * @return EncodedResponse containing the encoded records, or a String describing an error
+     */
+    public Object getRecordsFromLeaderboard(final String[] pathArray, final Request request) {
+        // Long-polls each wait for their own known version, so they are never coalesced
+        if(readCoalescer == null || pathArray.length < 4 || request.queryParams(VERSION_PARAM) != null) {
+            return readRecordsFromLeaderboard(pathArray, request);
+        }
+
+        // A request only joins a read that started after the last change to the leaderboard, so a client never gets
+        // back records from before a change it has already seen acknowledged.  The leaderboard's version is only known
+        // here if it is cached, otherwise the count of changes to all leaderboards is used in its place.
+        Integer boardId = boardCache != null ? boardCache.getBoardId(pathArray[3]) : null;
+        String version = boardId != null ? "v" + boardChangeNotifier.getVersion(boardId) :
+                                           "c" + boardChangeNotifier.getChangeCount();
+        String key = String.join("/", pathArray) + "?" + request.queryParams(WINDOW_PARAM) + "@" + version;
+
+        // The request that runs the read times its own phases, the others are timed as waiting on it
+        AtomicBoolean loaded = new AtomicBoolean();
+        Object result = readCoalescer.execute(key, () -> {
+            loaded.set(true);
+            return readRecordsFromLeaderboard(pathArray, request);
+        });
+        if(!loaded.get()) {
+            PhaseTimer.of(request).mark(Phase.COALESCE);
+        }
+        return result;
+    }
+
+    /**
+     * Reads records from a leaderboard for a GET request (see getRecordsFromLeaderboard).
+     *
+     * @param pathArray GET REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return EncodedResponse containing the encoded records, or a String describing an error
+     */
+    private Object readRecordsFromLeaderboard(final String[] pathArray, final Request request) {
         try {
             // If the request path has less than 5 elements, then this request is invalid
             // (request must at least have a public key and a format type)
-            if (pathArray.length < 5 || !pathArray[4].equalsIgnoreCase(JSON)) {
+            if (pathArray.length < 5) {
                 return INVALID_REQUEST;
             }
 
-            // If index 4 does not contain a valid format type (right now the only valid format type
-            // is 'json') then the request is invalid.
-            if(!pathArray[4].equalsIgnoreCase(JSON)) {
+            // If index 4 does not contain a valid format type then the request is invalid.
+            RecordFormat format = RecordFormat.fromName(pathArray[4]);
+            if(format == null) {
                 return INVALID_REQUEST;
             }
 
             // If index 5 is present (which indicates that the user wants a subset of the leaderboard scores), but
             // that index value is 0 or negative, then the request is invalid.
-            if((pathArray.length > 5) && (Integer.parseInt(pathArray[5]) < 1)) {
-                return INVALID_REQUEST;
+            int scoresRequested = Integer.MAX_VALUE;
+            if(pathArray.length > 5) {
+                scoresRequested = Integer.parseInt(pathArray[5]);
+                if(scoresRequested < 1) {
+                    return INVALID_REQUEST;
+                }
             }
 
-            Connection dbConnection = getDbConnection();
-            // If we cannot resolve the API private key from the database, then return key not found
+            // Index 6 is either a numeric offset, or the keyword 'after' followed by the ranking values and record ID of
+            // the last record the user has already received.  The number of values is checked against the leaderboard's
+            // ranking mode once the leaderboard is known.
+            int offset = 0;
+            boolean afterCursor = false;
+            int[] afterValues = null;
+            if(pathArray.length > 6) {
+                if(pathArray[6].equalsIgnoreCase(AFTER)) {
+                    if(pathArray.length < 9) {
+                        return INVALID_REQUEST;
+                    }
+                    afterCursor = true;
+                    afterValues = new int[pathArray.length - 7];
+                    for(int i=0; i<afterValues.length; i++) {
+                        afterValues[i] = Integer.parseInt(pathArray[7 + i]);
+                    }
+                }else {
+                    offset = Integer.parseInt(pathArray[6]);
+                    if(offset < 0) {
+                        return INVALID_REQUEST;
+                    }
+                }
+            }
+
+            // The window query parameter is relative to the current window, so it can only be zero or negative
+            int windowOffset = 0;
+            if(request.queryParams(WINDOW_PARAM) != null) {
+                windowOffset = Integer.parseInt(request.queryParams(WINDOW_PARAM));
+                if(windowOffset > 0) {
+                    return INVALID_REQUEST;
+                }
+            }
+
+            // The version query parameter is the last leaderboard version that the user has seen (long-poll)
+            Long knownVersion = null;
+            if(request.queryParams(VERSION_PARAM) != null) {
+                knownVersion = Long.parseLong(request.queryParams(VERSION_PARAM));
+            }
+
+            // Reads of the top of the current window are served from the board cache when it holds enough records.
+            // A long-poll for the cached version falls through, so that it waits for the next change.
+            PhaseTimer timer = PhaseTimer.of(request);
+            boolean cacheable = boardCache != null && !afterCursor && offset == 0 && windowOffset == 0;
+            if(cacheable) {
+                CachedBoard cachedBoard = boardCache.get(pathArray[3]);
+                timer.mark(Phase.CACHE);
+                if(cachedBoard != null && cachedBoard.canServe(scoresRequested) &&
+                        (knownVersion == null || knownVersion != cachedBoard.getVersion())) {
+                    boardCache.markQueried(cachedBoard.getBoardId());
+                    return writeCachedBoard(cachedBoard, scoresRequested, format, timer);
+                }
+            }
+
+            Connection dbConnection = requireDbConnection();
+            // If we cannot resolve the API public key from the database, then return key not found
             Leaderboard leaderboard = DbUtils.getLeaderboardFromPubKey(pathArray[3], dbConnection);
+            timer.mark(Phase.RESOLVE);
             if (leaderboard == null) {
                 closeDbConnection(dbConnection);
                 return KEY_NOT_FOUND;
             }
+            if(afterCursor && afterValues.length != leaderboard.getRankingMode().getRankingValueCount() + 1) {
+                closeDbConnection(dbConnection);
+                return INVALID_REQUEST;
+            }
 
-            List<Record> recordList = DbUtils.getAllRecordsFromPubKey(leaderboard.getPubKey(), dbConnection);
+            // For a long-poll, wait (without holding the database connection) until the leaderboard changes from the
+            // version the user has already seen.  If it does not change before the timeout, return 304 Not Modified.
+            if(knownVersion != null && knownVersion == boardChangeNotifier.getVersion(leaderboard.getBoardId())) {
+                closeDbConnection(dbConnection);
+                if(!longPollWaiters.tryAcquire()) {
+                    return TOO_MANY_WAITERS;
+                }
+                try {
+                    boolean changed = boardChangeNotifier.awaitChange(leaderboard.getBoardId(), knownVersion,
+                                                                      longPollTimeoutMillis);
+                    timer.mark(Phase.WAIT);
+                    if(!changed) {
+                        EncodedResponse notModified = new EncodedResponse("text/html", new byte[0]);
+                        notModified.setStatus(304);
+                        notModified.setVersion(knownVersion);
+                        return notModified;
+                    }
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return DATABASE_ERROR;
+                }finally {
+                    longPollWaiters.release();
+                }
+                dbConnection = requireDbConnection();
+            }
 
-            if(pathArray.length > 5) {
-                int scoresRequested = Integer.valueOf(pathArray[5]);
+            // The version is read before the records, so a change made while they are read is never missed
+            long version = boardChangeNotifier.getVersion(leaderboard.getBoardId());
+            int bucket = leaderboard.getCurrentBucket() + windowOffset;
 
-                // If the path array has 6 elements, then the element at index 6 should be the number of hiscores that
-                // the user wants to receive with their request (instead of receiving the full leaderboard).  For this
-                // case we send back the highest 'x' scores.
-                for(int i=recordList.size()-1; i>=scoresRequested; i--) {
-                    recordList.remove(i);
+            // On a cache miss, the top of the leaderboard is read into the cache, and the request is served from there
+            if(cacheable) {
+                List<Record> records = DbUtils.getRecordPageFromBoardId(leaderboard.getBoardId(), bucket,
+                                                                        leaderboard.getRankingMode(),
+                                                                        boardCache.getTopN(), 0, dbConnection);
+                CachedBoard cachedBoard = boardCache.newCachedBoard(leaderboard, bucket, version, records, false);
+                boardCache.put(cachedBoard);
+                timer.mark(Phase.READ);
+                if(cachedBoard.canServe(scoresRequested)) {
+                    DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
+                    closeDbConnection(dbConnection);
+                    timer.mark(Phase.QUERY_TIME);
+                    return writeCachedBoard(cachedBoard, scoresRequested, format, timer);
                 }
             }
 
-            List<Record.UserFacingRecord> userFacingRecordList = new ArrayList<>();
-            for(int i=0; i<recordList.size(); i++) {
-                userFacingRecordList.add(recordList.get(i).toUserFacingRecord());
+            // Records are encoded as they are read from the database, rather than collected into a List first
+            RecordWriter recordWriter = format.newWriter();
+            if(afterCursor) {
+                DbUtils.writeRecordPageAfterFromBoardId(leaderboard.getBoardId(), bucket, leaderboard.getRankingMode(),
+                                                        scoresRequested, afterValues, recordWriter, dbConnection);
+            }else {
+                DbUtils.writeRecordPageFromBoardId(leaderboard.getBoardId(), bucket, leaderboard.getRankingMode(),
+                                                   scoresRequested, offset, recordWriter, dbConnection);
             }
+            timer.mark(Phase.READ);
             DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
 
-            logger.info("Handled request to retrieve and send records for leaderboard id : " + leaderboard.getBoardId());
             closeDbConnection(dbConnection);
-            return String.format(LB_RETRIEVE_RQT_TEMPLATE, gson.toJson(userFacingRecordList));
+            timer.mark(Phase.QUERY_TIME);
+            EncodedResponse encodedResponse = recordWriter.finish();
+            encodedResponse.setVersion(version);
+            timer.mark(Phase.ENCODE);
+            return encodedResponse;
 
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
         }catch(SQLException e) {
             logger.error("SQL error while attempting to GET records : " + e.getMessage());
+            reportDatabaseError(e);
+            EncodedResponse staleResponse = readStaleRecords(pathArray, request);
+            return (staleResponse != null) ? staleResponse : DATABASE_ERROR;
+        }
+    }
+
+    /**
+     * Returns whatever the board cache holds of the top of the current window for a GET request that could not be
+     * read from the database, marked as stale, rather than failing the request.  Only the first page of the current
+     * window can be served this way, and a long-poll is never served this way (it would return straight away, over and
+     * over).
+     *
+     * @param pathArray GET REST request String, broken at '/' characters
+     * @param request The HTTP request
+     * @return Stale EncodedResponse, or null if the cache cannot serve the request
+     */
+    private EncodedResponse readStaleRecords(final String[] pathArray, final Request request) {
+        if(boardCache == null || pathArray.length > 6 || request.queryParams(VERSION_PARAM) != null ||
+                (request.queryParams(WINDOW_PARAM) != null && Integer.parseInt(request.queryParams(WINDOW_PARAM)) != 0)) {
+            return null;
+        }
+        CachedBoard cachedBoard = boardCache.get(pathArray[3]);
+        if(cachedBoard == null) {
+            return null;
+        }
+
+        int scoresRequested = (pathArray.length > 5) ? Integer.parseInt(pathArray[5]) : Integer.MAX_VALUE;
+        EncodedResponse encodedResponse = writeCachedBoard(cachedBoard, scoresRequested,
+                                                           RecordFormat.fromName(pathArray[4]), PhaseTimer.of(request));
+        encodedResponse.setStale(true);
+        return encodedResponse;
+    }
+
+    /**
+     * Encodes the top records of the param CachedBoard in the param format.  The response is marked stale if the
+     * CachedBoard has not been revalidated since it was restored from a cache snapshot.
+     *
+     * @param cachedBoard CachedBoard to encode
+     * @param scoresRequested Maximum number of records to encode
+     * @param format Format to encode the records in
+     * @param timer PhaseTimer of the request
+     * @return EncodedResponse holding the records, and the version of the leaderboard that they were read at
+     */
+    private EncodedResponse writeCachedBoard(final CachedBoard cachedBoard, final int scoresRequested,
+                                             final RecordFormat format, final PhaseTimer timer) {
+        RecordWriter recordWriter = format.newWriter();
+        cachedBoard.writeRecords(scoresRequested, recordWriter);
+        EncodedResponse encodedResponse = recordWriter.finish();
+        encodedResponse.setVersion(cachedBoard.getVersion());
+        encodedResponse.setStale(cachedBoard.isStale());
+        timer.mark(Phase.ENCODE);
+        return encodedResponse;
+    }
+
+    /**
+     * Returns a JSON String describing records from several leaderboards at once.  The leaderboards are described by
+     * index 3 of the param pathArray, as a comma separated list of public keys, each optionally followed by a colon
+     * and the number of records wanted from that leaderboard:
+     *           /lb/MULTIGET/<pubkey>:<N>,<pubkey>,<pubkey>:<N>/json
+     * NOTE: All of the keys are resolved with one query, and then each leaderboard is read concurrently on its own
+     *       connection (bounded by the database bulkhead).  The request is turned away if the fetch queue cannot hold
+     *       its reads.  A leaderboard that cannot be resolved or read is reported
+     *       with an error entry, and does not fail the other leaderboards in the request.
+     *
+     * @param pathArray MULTIGET REST request String, broken at '/' characters
+     * @return String describing the result of the request command
+     */
+    public String getRecordsFromMultipleLeaderboards(String[] pathArray) {
+        if(pathArray.length < 5 || !pathArray[4].equalsIgnoreCase(JSON)) {
+            return INVALID_REQUEST;
+        }
+
+        // Parse the board list into parallel lists of public keys and requested record counts
+        String[] boardSpecs = pathArray[3].split(",");
+        if(boardSpecs.length > MAX_MULTI_GET_BOARDS) {
+            return INVALID_REQUEST;
+        }
+        List<String> pubKeys = new ArrayList<>();
+        List<Integer> scoresRequested = new ArrayList<>();
+        try {
+            for(int i=0; i<boardSpecs.length; i++) {
+                String[] boardSpec = boardSpecs[i].split(":");
+                int requested = Integer.MAX_VALUE;
+                if(boardSpec.length > 1) {
+                    requested = Integer.parseInt(boardSpec[1]);
+                    if(requested < 1) {
+                        return INVALID_REQUEST;
+                    }
+                }
+                pubKeys.add(boardSpec[0]);
+                scoresRequested.add(requested);
+            }
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
+        }
+
+        Map<String, Leaderboard> leaderboards;
+        try {
+            Connection dbConnection = requireDbConnection();
+            leaderboards = DbUtils.getLeaderboardsFromPubKeys(pubKeys, dbConnection);
+            closeDbConnection(dbConnection);
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to resolve keys for MULTIGET : " + e.getMessage());
+            reportDatabaseError(e);
             return DATABASE_ERROR;
         }
+
+        // Fan out one task per resolvable leaderboard.  The tasks are scoped to this request:  invokeAll returns once
+        // every task has completed, or cancels whatever is still running once the deadline passes.
+        List<Callable<List<Record.UserFacingRecord>>> fetchTasks = new ArrayList<>();
+        for(int i=0; i<pubKeys.size(); i++) {
+            Leaderboard leaderboard = leaderboards.get(pubKeys.get(i));
+            if(leaderboard != null) {
+                int requested = scoresRequested.get(i);
+                fetchTasks.add(() -> fetchRecordPageWithinBulkhead(leaderboard, requested));
+            }
+        }
+
+        List<Future<List<Record.UserFacingRecord>>> fetchResults;
+        try {
+            fetchResults = boardFetchExecutor.invokeAll(fetchTasks, multiGetTimeoutMillis, TimeUnit.MILLISECONDS);
+        }catch(RejectedExecutionException e) {
+            // The fetch queue is full.  invokeAll has already cancelled the fetches of this request that were queued.
+            logger.warn("Board fetch queue is full, MULTIGET request rejected");
+            return TOO_MANY_FETCHES;
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DATABASE_ERROR;
+        }
+
+        JsonArray boardArray = new JsonArray();
+        List<Integer> queriedBoardIds = new ArrayList<>();
+        int taskIndex = 0;
+        for(int i=0; i<pubKeys.size(); i++) {
+            JsonObject boardObject = new JsonObject();
+            boardObject.addProperty("publicKey", pubKeys.get(i));
+
+            Leaderboard leaderboard = leaderboards.get(pubKeys.get(i));
+            if(leaderboard == null) {
+                boardObject.addProperty("error", KEY_NOT_FOUND);
+            }else {
+                Future<List<Record.UserFacingRecord>> fetchResult = fetchResults.get(taskIndex++);
+                try {
+                    boardObject.add("entry", gson.toJsonTree(fetchResult.get()));
+                    queriedBoardIds.add(leaderboard.getBoardId());
+                }catch(CancellationException | ExecutionException e) {
+                    logger.error("Failed to read leaderboard id : " + leaderboard.getBoardId() + " for MULTIGET : " + e);
+                    if(e.getCause() instanceof SQLException) {
+                        reportDatabaseError((SQLException) e.getCause());
+                    }
+                    boardObject.addProperty("error", DATABASE_ERROR);
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    boardObject.addProperty("error", DATABASE_ERROR);
+                }
+            }
+            boardArray.add(boardObject);
+        }
+
+        try {
+            Connection dbConnection = requireDbConnection();
+            DbUtils.updateLeaderboardQueryTimes(queriedBoardIds, dbConnection);
+            closeDbConnection(dbConnection);
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to update query times for MULTIGET : " + e.getMessage());
+            reportDatabaseError(e);
+        }
+
+        return String.format(LB_MULTI_RETRIEVE_RQT_TEMPLATE, gson.toJson(boardArray));
+    }
+
+    /**
+     * Reads the highest records of the param leaderboard on a dedicated connection, while holding a database
+     * bulkhead permit.
+     *
+     * @param leaderboard Leaderboard to read
+     * @param scoresRequested Number of records to read
+     * @return List of UserFacingRecords for the leaderboard
+     * @throws SQLException if the leaderboard could not be read, or the bulkhead permit could not be acquired in time
+     * @throws InterruptedException if the request was cancelled while waiting for the bulkhead
+     */
+    private List<Record.UserFacingRecord> fetchRecordPageWithinBulkhead(final Leaderboard leaderboard,
+            final int scoresRequested) throws SQLException, InterruptedException {
+        if(!dbBulkhead.tryAcquire(multiGetTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new SQLException("Database bulkhead is full");
+        }
+
+        try {
+            Connection dbConnection = requireDbConnection();
+            List<Record> recordList;
+            try {
+                recordList = DbUtils.getRecordPageFromBoardId(leaderboard.getBoardId(), leaderboard.getCurrentBucket(),
+                                                              leaderboard.getRankingMode(), scoresRequested, 0,
+                                                              dbConnection);
+            }finally {
+                closeDbConnection(dbConnection);
+            }
+
+            List<Record.UserFacingRecord> userFacingRecordList = new ArrayList<>();
+            for(int i=0; i<recordList.size(); i++) {
+                userFacingRecordList.add(recordList.get(i).toUserFacingRecord());
+            }
+            return userFacingRecordList;
+        }finally {
+            dbBulkhead.release();
+        }
+    }
+
+    /**
+     * Returns the records of the players named at index 4 of the param pathArray (a comma separated list of at most
+     * MAX_FRIEND_NAMES names) from the leaderboard described by index 3, in rank order and with their ranks in the
+     * leaderboard, as a JSON leaderboard document.  Names without a record are left out.  The window query parameter
+     * selects a past window, as with GET, eg.
+     *           /lb/FRIENDS/<pubkey>/alice,bob,carol
+     * NOTE: The current window is served from the board cache (by its name index) when the cached copy holds every
+     *       named record or the whole window.  Otherwise the records are found by a single query on the name index,
+     *       so the cost depends on the number of names rather than the size of the leaderboard.
+     *
+     * @param pathArray FRIENDS REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the query parameters)
+     * @return EncodedResponse holding the records, or a String describing an error
+     */
+    public Object getFriendRecordsFromLeaderboard(final String[] pathArray, final Request request) {
+        if(pathArray.length != 5) {
+            return INVALID_REQUEST;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for(String name : pathArray[4].split(",")) {
+            if(!name.isEmpty() && !name.equalsIgnoreCase(NO_NAME)) {
+                names.add(name);
+            }
+        }
+        if(names.isEmpty() || names.size() > MAX_FRIEND_NAMES) {
+            return INVALID_REQUEST;
+        }
+
+        try {
+            int windowOffset = 0;
+            if(request.queryParams(WINDOW_PARAM) != null) {
+                windowOffset = Integer.parseInt(request.queryParams(WINDOW_PARAM));
+                if(windowOffset > 0) {
+                    return INVALID_REQUEST;
+                }
+            }
+
+            PhaseTimer timer = PhaseTimer.of(request);
+            JsonRecordWriter recordWriter = new JsonRecordWriter();
+            if(boardCache != null && windowOffset == 0) {
+                CachedBoard cachedBoard = boardCache.get(pathArray[3]);
+                timer.mark(Phase.CACHE);
+                if(cachedBoard != null && cachedBoard.writeNamedRecords(names, recordWriter)) {
+                    boardCache.markQueried(cachedBoard.getBoardId());
+                    EncodedResponse encodedResponse = recordWriter.finish();
+                    encodedResponse.setVersion(cachedBoard.getVersion());
+                    timer.mark(Phase.ENCODE);
+                    return encodedResponse;
+                }
+            }
+
+            Connection dbConnection = requireDbConnection();
+            try {
+                // If we cannot resolve the API public key from the database, then return key not found
+                Leaderboard leaderboard = DbUtils.getLeaderboardFromPubKey(pathArray[3], dbConnection);
+                timer.mark(Phase.RESOLVE);
+                if(leaderboard == null) {
+                    return KEY_NOT_FOUND;
+                }
+
+                // The version is read before the records, so a change made while they are read is never missed
+                long version = boardChangeNotifier.getVersion(leaderboard.getBoardId());
+                DbUtils.writeRankedNamedRecordsFromBoardId(leaderboard.getBoardId(),
+                                                           leaderboard.getCurrentBucket() + windowOffset,
+                                                           leaderboard.getRankingMode(), names, recordWriter,
+                                                           dbConnection);
+                timer.mark(Phase.READ);
+                DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
+                timer.mark(Phase.QUERY_TIME);
+
+                EncodedResponse encodedResponse = recordWriter.finish();
+                encodedResponse.setVersion(version);
+                timer.mark(Phase.ENCODE);
+                return encodedResponse;
+            }finally {
+                closeDbConnection(dbConnection);
+            }
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to get FRIENDS records : " + e.getMessage());
+            reportDatabaseError(e);
+            return DATABASE_ERROR;
+        }
+    }
+
+    /**
+     * Returns the records whose name starts with index 4 of the param pathArray (ignoring case) from the leaderboard
+     * described by index 3, in name order and with their ranks in the leaderboard, as a JSON leaderboard document.
+     * Index 5, if present, is the maximum number of records to return (DEFAULT_SEARCH_LIMIT if not, and at most
+     * MAX_SEARCH_LIMIT).  The window query parameter selects a past window, as with GET, eg.
+     *           /lb/SEARCH/<pubkey>/al/20
+     * NOTE: The current window is served from the sorted name index of the board cache when the cached copy holds the
+     *       whole window.  Otherwise the records are read from a range of the name index of the records table, so in
+     *       both cases the cost depends on the number of records returned rather than the size of the leaderboard.
+     *
+     * @param pathArray SEARCH REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the query parameters)
+     * @return EncodedResponse holding the records, or a String describing an error
+     */
+    public Object getSearchRecordsFromLeaderboard(final String[] pathArray, final Request request) {
+        if(pathArray.length != 5 && pathArray.length != 6) {
+            return INVALID_REQUEST;
+        }
+        String prefix = pathArray[4];
+
+        try {
+            int limit = DEFAULT_SEARCH_LIMIT;
+            if(pathArray.length == 6) {
+                limit = Integer.parseInt(pathArray[5]);
+            }
+            if(prefix.isEmpty() || limit < 1 || limit > MAX_SEARCH_LIMIT) {
+                return INVALID_REQUEST;
+            }
+
+            int windowOffset = 0;
+            if(request.queryParams(WINDOW_PARAM) != null) {
+                windowOffset = Integer.parseInt(request.queryParams(WINDOW_PARAM));
+                if(windowOffset > 0) {
+                    return INVALID_REQUEST;
+                }
+            }
+
+            PhaseTimer timer = PhaseTimer.of(request);
+            if(boardCache != null && windowOffset == 0) {
+                CachedBoard cachedBoard = boardCache.get(pathArray[3]);
+                timer.mark(Phase.CACHE);
+                JsonRecordWriter recordWriter = new JsonRecordWriter();
+                if(cachedBoard != null && cachedBoard.writeNamePrefixRecords(prefix, limit, recordWriter)) {
+                    boardCache.markQueried(cachedBoard.getBoardId());
+                    EncodedResponse encodedResponse = recordWriter.finish();
+                    encodedResponse.setVersion(cachedBoard.getVersion());
+                    timer.mark(Phase.ENCODE);
+                    return encodedResponse;
+                }
+            }
+
+            Connection dbConnection = requireDbConnection();
+            try {
+                // If we cannot resolve the API public key from the database, then return key not found
+                Leaderboard leaderboard = DbUtils.getLeaderboardFromPubKey(pathArray[3], dbConnection);
+                timer.mark(Phase.RESOLVE);
+                if(leaderboard == null) {
+                    return KEY_NOT_FOUND;
+                }
+
+                // The version is read before the records, so a change made while they are read is never missed
+                long version = boardChangeNotifier.getVersion(leaderboard.getBoardId());
+                JsonRecordWriter recordWriter = new JsonRecordWriter();
+                DbUtils.writeRankedNamePrefixRecordsFromBoardId(leaderboard.getBoardId(),
+                                                                leaderboard.getCurrentBucket() + windowOffset,
+                                                                leaderboard.getRankingMode(), prefix, limit,
+                                                                recordWriter, dbConnection);
+                timer.mark(Phase.READ);
+                DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
+                timer.mark(Phase.QUERY_TIME);
+
+                EncodedResponse encodedResponse = recordWriter.finish();
+                encodedResponse.setVersion(version);
+                timer.mark(Phase.ENCODE);
+                return encodedResponse;
+            }finally {
+                closeDbConnection(dbConnection);
+            }
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to SEARCH records : " + e.getMessage());
+            reportDatabaseError(e);
+            return DATABASE_ERROR;
+        }
+    }
+
+    /**
+     * Returns the score statistics of the leaderboard described by index 3 of the param pathArray, as a JSON String:
+     * the number of records, the lowest, highest and mean score, estimated score percentiles and a histogram of the
+     * scores.  The window query parameter selects a past window (as with GET), and the percentiles query parameter
+     * lists the percentiles to estimate, eg.
+     *           /lb/STATS/<pubkey>
+     *           /lb/STATS/<pubkey>?window=-1&percentiles=50,90,99.9
+     * NOTE: The statistics are kept up to date by the leaderboard's writer (see BoardWriter), so this reads a single
+     *       row instead of the records.  Windows without stored statistics (eg. of leaderboards from before statistics
+     *       were kept) are built from their records once, on the first read.
+     *
+     * @param pathArray STATS REST request String, broken at '/' characters
+     * @param request The HTTP request (used to read the query parameters)
+     * @return String describing the result of the request command
+     */
+    public String getStatsFromLeaderboard(final String[] pathArray, final Request request) {
+        if(pathArray.length != 4) {
+            return INVALID_REQUEST;
+        }
+
+        try {
+            int windowOffset = 0;
+            if(request.queryParams(WINDOW_PARAM) != null) {
+                windowOffset = Integer.parseInt(request.queryParams(WINDOW_PARAM));
+                if(windowOffset > 0) {
+                    return INVALID_REQUEST;
+                }
+            }
+            double[] percentiles = DEFAULT_PERCENTILES;
+            if(request.queryParams(PERCENTILES_PARAM) != null) {
+                String[] percentileArray = request.queryParams(PERCENTILES_PARAM).split(",");
+                percentiles = new double[percentileArray.length];
+                for(int i=0; i<percentileArray.length; i++) {
+                    percentiles[i] = Double.parseDouble(percentileArray[i]);
+                    if(!(percentiles[i] >= 0 && percentiles[i] <= 100)) {
+                        return INVALID_REQUEST;
+                    }
+                }
+            }
+
+            PhaseTimer timer = PhaseTimer.of(request);
+            Connection dbConnection = requireDbConnection();
+            try {
+                // If we cannot resolve the API public key from the database, then return key not found
+                Leaderboard leaderboard = DbUtils.getLeaderboardFromPubKey(pathArray[3], dbConnection);
+                timer.mark(Phase.RESOLVE);
+                if(leaderboard == null) {
+                    return KEY_NOT_FOUND;
+                }
+
+                int bucket = leaderboard.getCurrentBucket() + windowOffset;
+                BoardStats stats = DbUtils.getBoardStats(leaderboard.getBoardId(), bucket, false, dbConnection);
+                if(stats == null) {
+                    // Built outside of the writer, so it is only stored if the writer has not stored newer statistics
+                    stats = DbUtils.computeBoardStats(leaderboard.getBoardId(), bucket, dbConnection);
+                    DbUtils.writeBoardStats(leaderboard.getBoardId(), bucket, stats, true, dbConnection);
+                }
+                timer.mark(Phase.READ);
+
+                if(boardCache != null) {
+                    boardCache.markQueried(leaderboard.getBoardId());
+                }else {
+                    DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
+                }
+                timer.mark(Phase.QUERY_TIME);
+                return String.format(LB_STATS_RQT_TEMPLATE, gson.toJson(stats.toJson(percentiles)));
+            }finally {
+                closeDbConnection(dbConnection);
+            }
+        }catch(NumberFormatException e) {
+            return INVALID_REQUEST;
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to get STATS : " + e.getMessage());
+            reportDatabaseError(e);
+            return DATABASE_ERROR;
+        }
+    }
+
+    /**
+     * Returns the Leaderboard associated with the param public key, using its own database connection.
+     *
+     * @param pubKey Public key of the Leaderboard
+     * @return Leaderboard associated with the param public key, or null if there is no such Leaderboard
+     * @throws SQLException
+     */
+    public Leaderboard getLeaderboardFromPubKey(final String pubKey) throws SQLException {
+        Connection dbConnection = requireDbConnection();
+        try {
+            return DbUtils.getLeaderboardFromPubKey(pubKey, dbConnection);
+        }finally {
+            closeDbConnection(dbConnection);
+        }
+    }
+
+    /**
+     * Returns the Leaderboard associated with the param private key, using its own database connection.
+     *
+     * @param privKey Private key of the Leaderboard
+     * @return Leaderboard associated with the param private key, or null if there is no such Leaderboard
+     * @throws SQLException
+     */
+    public Leaderboard getLeaderboardFromPrivKey(final String privKey) throws SQLException {
+        Connection dbConnection = requireDbConnection();
+        try {
+            return DbUtils.getLeaderboardFromPrivKey(privKey, dbConnection);
+        }finally {
+            closeDbConnection(dbConnection);
+        }
+    }
+
+    /**
+     * Returns the highest records of the current window of the param Leaderboard, using its own database connection.
+     *
+     * @param leaderboard Leaderboard to read
+     * @param limit Maximum number of records to return
+     * @return List containing at most limit records, in rank order
+     * @throws SQLException
+     */
+    public List<Record> getTopRecords(final Leaderboard leaderboard, final int limit) throws SQLException {
+        Connection dbConnection = requireDbConnection();
+        try {
+            return DbUtils.getRecordPageFromBoardId(leaderboard.getBoardId(), leaderboard.getCurrentBucket(),
+                                                    leaderboard.getRankingMode(), limit, 0, dbConnection);
+        }finally {
+            closeDbConnection(dbConnection);
+        }
     }
 
     /**
@@ -270,34 +1793,43 @@ public class DatabaseHandler {
      * private key described at index 3 of the REST request, the command will fail and return an error.
      *
      * @param pathArray DELETE REST request String, broken at '/' characters
+     * @param request The HTTP request (used to gather IP information regarding the requester)
      * @return String describing the result of the request command
      */
-    public String deleteRecordFromLeaderboard(String[] pathArray) {
+    public String deleteRecordFromLeaderboard(String[] pathArray, final Request request) {
         try {
-            Connection dbConnection = getDbConnection();
+            PhaseTimer timer = PhaseTimer.of(request);
+            int recordId = Integer.parseInt(pathArray[4]);
+            BoardWriter.Applied<Record> applied = boardWriter.execute(pathArray[3], (leaderboard, dbConnection, stats) -> {
+                timer.mark(Phase.QUEUE);
+                Record existingRecord = DbUtils.getRecordFromBoardIdAndRecordId(leaderboard.getBoardId(), recordId,
+                                                                                dbConnection);
+                timer.mark(Phase.READ);
+                if(existingRecord != null) {
+                    DbUtils.deleteRecord(existingRecord.getRecordId(), dbConnection);
+                    stats.recordRemoved(existingRecord.getBucket(), existingRecord.getScore());
+                    timer.mark(Phase.WRITE);
+                }
+                return existingRecord;
+            });
+            timer.mark(Phase.QUEUE);
+
             // If we cannot resolve the API private key from the database, then return key not found
-            Leaderboard leaderboard = DbUtils.getLeaderboardFromPrivKey(pathArray[3], dbConnection);
-            if(leaderboard == null) {
-                closeDbConnection(dbConnection);
+            if(applied == null) {
                 return KEY_NOT_FOUND;
             }
-
-            int recordId = Integer.parseInt(pathArray[4]);
-            Record record = DbUtils.getRecordFromBoardIdAndRecordId(leaderboard.getBoardId(), recordId, dbConnection);
-
+            Record record = applied.getResult();
             if(record == null) {
-                closeDbConnection(dbConnection);
                 return RECORD_NOT_FOUND;
             }
 
-            DbUtils.deleteRecord(record.getRecordId(), dbConnection);
-            DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
-
-            logger.info("Handled request to delete record: " + recordId + " from leaderboard: " + leaderboard.getBoardId());
-            closeDbConnection(dbConnection);
+            accessLog.audit(AccessRoute.DELETE, AUDIT_DELETED, record.getBoardId(), record.getRecordId(),
+                            record.getScore(), request.ip());
+            boardChangeNotifier.boardChanged(applied.getLeaderboard());
             return OK;
         }catch(SQLException e) {
             logger.error("SQL error while attempting to DELETE a record : " + e.getMessage());
+            reportDatabaseError(e);
             return DATABASE_ERROR;
         }
     }
@@ -307,29 +1839,31 @@ public class DatabaseHandler {
      * otherwise the command will fail and return an error.
      *
      * @param pathArray CLEAR REST request String, broken at '/' characters
+     * @param request The HTTP request (used to gather IP information regarding the requester)
      * @return String desciring the result of the request command
      */
-    public String clearRecordsFromLeaderboard(String[] pathArray) {
+    public String clearRecordsFromLeaderboard(String[] pathArray, final Request request) {
         try {
-            Connection dbConnection = getDbConnection();
+            PhaseTimer timer = PhaseTimer.of(request);
+            BoardWriter.Applied<Void> applied = boardWriter.execute(pathArray[3], (leaderboard, dbConnection, stats) -> {
+                timer.mark(Phase.QUEUE);
+                DbUtils.deleteAllRecordsFromBoardId(leaderboard.getBoardId(), dbConnection);
+                stats.boardCleared();
+                timer.mark(Phase.WRITE);
+                return null;
+            });
+            timer.mark(Phase.QUEUE);
+
             // If we cannot resolve the API private key from the database, then return key not found
-            Leaderboard leaderboard = DbUtils.getLeaderboardFromPrivKey(pathArray[3], dbConnection);
-            if(leaderboard == null) {
-                closeDbConnection(dbConnection);
+            if(applied == null) {
                 return KEY_NOT_FOUND;
             }
-
-            List<Record> recordList = DbUtils.getAllRecordsFromPrivKey(leaderboard.getPrivKey(), dbConnection);
-            for(int i=0; i<recordList.size(); i++) {
-                DbUtils.deleteRecord(recordList.get(i).getRecordId(), dbConnection);
-            }
-            DbUtils.updateLeaderboardQueryTime(leaderboard.getBoardId(), dbConnection);
-            logger.info("Handled a request to CLEAR all records from leaderboard id: " + leaderboard.getBoardId());
-
-            closeDbConnection(dbConnection);
+            accessLog.audit(AccessRoute.CLEAR, AUDIT_CLEARED, applied.getLeaderboard().getBoardId(), 0, 0, request.ip());
+            boardChangeNotifier.boardChanged(applied.getLeaderboard());
             return OK;
         }catch(SQLException e) {
             logger.error("SQL error while attempting to CLEAR a Leaderboard of records : " + e.getMessage());
+            reportDatabaseError(e);
             return DATABASE_ERROR;
         }
     }
@@ -0,0 +1,70 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic task that moves leaderboards that have not been queried for a configurable amount of time (along with all
+ * of their records) out of the hot 'leaderboards' and 'records' tables and into compressed archive tables.  Archived
+ * leaderboards are restored transparently the next time one of their keys is used (see DbUtils).
+ * NOTE: Leaderboards are archived in bounded batches, each in its own transaction, so that a run never holds locks
+ *       on a large part of the hot tables at once.
+ */
+public class LeaderboardReaper implements Runnable {
+    private static Logger logger = LogManager.getLogger(LeaderboardReaper.class);
+
+    private DatabaseHandler dbHandler;
+    private long inactiveMillis;
+    private int batchSize;
+    private int maxBatchesPerRun;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public LeaderboardReaper(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        inactiveMillis = TimeUnit.DAYS.toMillis(Long.parseLong(cfg.getProperty("reaperInactiveDays", "180")));
+        batchSize = Integer.parseInt(cfg.getProperty("reaperBatchSize", "100"));
+        maxBatchesPerRun = Integer.parseInt(cfg.getProperty("reaperMaxBatchesPerRun", "50"));
+    }
+
+    @Override
+    public void run() {
+        Connection dbConnection = dbHandler.getDbConnection();
+        if(dbConnection == null) {
+            return;
+        }
+
+        try {
+            Timestamp cutoff = new Timestamp(System.currentTimeMillis() - inactiveMillis);
+            int archivedCount = 0;
+            for(int i=0; i<maxBatchesPerRun; i++) {
+                int batchCount = DbUtils.archiveInactiveLeaderboards(cutoff, batchSize, dbConnection);
+                archivedCount += batchCount;
+                if(batchCount < batchSize) {
+                    break;
+                }
+            }
+
+            if(archivedCount > 0) {
+                logger.info("Reaper archived " + archivedCount + " leaderboards not queried since " + cutoff);
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to archive inactive leaderboards : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+        }finally {
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+}
@@ -2,47 +2,165 @@ package com.tdberg.apps.leaderboard;
 
 import static spark.Spark.*;
 
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.capture.TrafficCapture;
+import com.tdberg.apps.leaderboard.formats.EncodedResponse;
+import com.tdberg.apps.leaderboard.formats.StreamingResponse;
+import com.tdberg.apps.leaderboard.ingest.IngestServer;
+import com.tdberg.apps.leaderboard.push.BoardSubscriptionHub;
+import com.tdberg.apps.leaderboard.push.BoardSubscriptionSocket;
+import com.tdberg.apps.leaderboard.timing.PhaseTimer;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import spark.Request;
+import spark.Response;
 
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class LeaderboardService {
     private static Logger logger = LogManager.getLogger(LeaderboardService.class);
     private DatabaseHandler dbHandler;
+    private AdminHandler adminHandler;
     private Properties cfg;
+    private ScheduledExecutorService maintenanceExecutor;
+    private boolean serverTimingEnabled;
+    private TrafficCapture trafficCapture;
 
     private static String COMMAND_NOT_FOUND_ERROR = "ERROR: Request type not recognized";
     private static String ERROR = "ERROR";
     private static String OK = "OK";
+    private static String ACCEPTED = "ACCEPTED";
+    private static String VERSION_HEADER = "X-Leaderboard-Version";
+    private static String STALE_HEADER = "X-Leaderboard-Stale";
+    private static String SERVER_TIMING_HEADER = "Server-Timing";
     private static String CREATE_COMMAND = "CREATE";
     private static String ADD_COMMAND = "ADD";
     private static String GET_COMMAND = "GET";
+    private static String MULTI_GET_COMMAND = "MULTIGET";
+    private static String STATS_COMMAND = "STATS";
+    private static String FRIENDS_COMMAND = "FRIENDS";
+    private static String SEARCH_COMMAND = "SEARCH";
     private static String DELETE_COMMAND = "DELETE";
     private static String CLEAR_COMMAND = "CLEAR";
+    private static String ADMIN_COMMAND = "ADMIN";
 
     public LeaderboardService(Properties cfg) {
         this.cfg = cfg;
         dbHandler = new DatabaseHandler(cfg);
+        adminHandler = new AdminHandler(dbHandler, cfg);
+        serverTimingEnabled = Boolean.parseBoolean(cfg.getProperty("serverTimingEnabled", "false"));
 
     }
 
     /**
-     * Initializes the LeaderboardService class.  Currently this just initializes the dbHandler, I broke
-     * this into its own method in case we wanted to add more functionality later.
+     * Initializes the LeaderboardService class.  This initializes the dbHandler, and then schedules the background
+     * maintenance tasks (expiring old leaderboard window buckets, and archiving inactive leaderboards).
      *
      * @return true if initialization was successful, false otherwise
      */
     public boolean initialize() {
-        return dbHandler.initialize();
+        if(!dbHandler.initialize()) {
+            return false;
+        }
+        dbHandler.getAccessLog().start();
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long windowExpiryInterval = Long.parseLong(cfg.getProperty("windowExpiryIntervalMinutes", "60"));
+        maintenanceExecutor.scheduleWithFixedDelay(new WindowExpiryTask(dbHandler, cfg), 0, windowExpiryInterval,
+                                                   TimeUnit.MINUTES);
+
+        // The reaper can be disabled by setting its interval to 0
+        long reaperInterval = Long.parseLong(cfg.getProperty("reaperIntervalMinutes", "60"));
+        if(reaperInterval > 0) {
+            maintenanceExecutor.scheduleWithFixedDelay(new LeaderboardReaper(dbHandler, cfg), reaperInterval,
+                                                       reaperInterval, TimeUnit.MINUTES);
+        }
+
+        // ADD submissions journaled while the database was unavailable are applied once it is back
+        if(dbHandler.getWriteJournal() != null) {
+            long replayInterval = Long.parseLong(cfg.getProperty("writeJournalReplaySeconds", "5"));
+            maintenanceExecutor.scheduleWithFixedDelay(new WriteJournalReplayTask(dbHandler), replayInterval,
+                                                       replayInterval, TimeUnit.SECONDS);
+        }
+
+        // The binary ingestion listener is only started if it has been given a port
+        if(Integer.parseInt(cfg.getProperty("ingestPort", "0")) > 0) {
+            IngestServer ingestServer = new IngestServer(dbHandler, cfg);
+            try {
+                ingestServer.start();
+            }catch(IOException e) {
+                logger.error("Failed to start the binary ingestion listener : " + e.getMessage());
+                return false;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(ingestServer::stop, "ingest-shutdown"));
+        }
+
+        // Traffic is only captured if a capture file has been given
+        if(cfg.getProperty("trafficCaptureFile") != null) {
+            trafficCapture = new TrafficCapture(dbHandler, cfg);
+            try {
+                trafficCapture.start();
+            }catch(IOException e) {
+                logger.error("Failed to open the traffic capture file : " + e.getMessage());
+                return false;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(trafficCapture::stop, "capture-shutdown"));
+        }
+
+        // The board cache is restored from the last snapshot (if any), and then revalidated against the database in
+        // the background, while the restored leaderboards are already being served
+        if(dbHandler.getBoardCache() != null) {
+            CacheSnapshotTask cacheSnapshotTask = new CacheSnapshotTask(dbHandler, cfg);
+            if(cacheSnapshotTask.restore() > 0) {
+                maintenanceExecutor.execute(new CacheRevalidationTask(dbHandler));
+            }
+
+            long snapshotInterval = Long.parseLong(cfg.getProperty("cacheSnapshotIntervalMinutes", "5"));
+            if(snapshotInterval > 0) {
+                maintenanceExecutor.scheduleWithFixedDelay(cacheSnapshotTask, snapshotInterval, snapshotInterval,
+                                                           TimeUnit.MINUTES);
+            }
+            long queryTimeFlushInterval = Long.parseLong(cfg.getProperty("cacheQueryTimeFlushSeconds", "60"));
+            maintenanceExecutor.scheduleWithFixedDelay(new QueryTimeFlushTask(dbHandler), queryTimeFlushInterval,
+                                                       queryTimeFlushInterval, TimeUnit.SECONDS);
+
+            // Requests are stopped before the final snapshot, so that no change can follow it
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                maintenanceExecutor.shutdown();
+                stop();
+                awaitStop();
+                new QueryTimeFlushTask(dbHandler).run();
+                cacheSnapshotTask.setShutdown();
+                cacheSnapshotTask.run();
+            }, "cache-shutdown"));
+        }
+
+        return true;
     }
 
     /**
      * Runs the Leaderboard service REST API, and commences waiting for HTTP REST requests.
      */
     public void runService() {
-        enableCORS("*", "GET, OPTIONS", "Accept, X-Access-Token, X-Application-Name, X-Request-Sent-Time");
+        // WebSocket routes have to be registered before any HTTP routes.  Idle subscribers hold no threads, only their
+        // connection, so the idle timeout is only there to clean up clients that have gone away without closing.
+        BoardSubscriptionHub subscriptionHub = new BoardSubscriptionHub(dbHandler, cfg);
+        dbHandler.getBoardChangeNotifier().addListener(subscriptionHub);
+        webSocketIdleTimeoutMillis(Long.parseLong(cfg.getProperty("subscriptionIdleTimeoutMillis", "300000")));
+        webSocket("/subscribe", new BoardSubscriptionSocket(subscriptionHub));
+
+        enableCORS("*", "GET, POST, OPTIONS", "Accept, X-Access-Token, X-Application-Name, X-Request-Sent-Time, Idempotency-Key");
 
         get("/", (request, response) -> {
             response.status(200);
@@ -51,21 +169,124 @@ public class LeaderboardService {
         });
 
         get("/lb/*", (request, response) -> {
+            long startNanos = System.nanoTime();
+            PhaseTimer timer = PhaseTimer.start(request, serverTimingEnabled);
             response.status(200);
 
-            // This is a little gross, but I wasn't sure a better way to do it.  If the returned String is an ERROR,
-            // we set the response to type HTML, otherwise it's a JSON response.
-            String responseString = processLeaderboardRequest(request);
-            if(responseString.contains(ERROR) || responseString.contains(OK)) {
-                response.type("text/html");
-            }else {
-                response.type("application/json");
+            // Encoded responses (eg. leaderboard records) carry their own content type.  Otherwise this is a little
+            // gross, but I wasn't sure a better way to do it.  If the returned String is an ERROR, we set the response
+            // to type HTML, otherwise it's a JSON response.
+            Object responseBody = processLeaderboardRequest(request);
+            if(responseBody instanceof EncodedResponse) {
+                EncodedResponse encodedResponse = (EncodedResponse) responseBody;
+                response.status(encodedResponse.getStatus());
+                response.type(encodedResponse.getContentType());
+                if(encodedResponse.getVersion() != null) {
+                    response.header(VERSION_HEADER, encodedResponse.getVersion().toString());
+                }
+                if(encodedResponse.isStale()) {
+                    response.header(STALE_HEADER, "true");
+                }
+                finishRequest(request, response, timer, false, encodedResponse.getStatus(), startNanos,
+                              encodedResponse.getBody().length);
+                return encodedResponse.getBody();
+            }
+            if(responseBody instanceof StreamingResponse) {
+                StreamingResponse streamingResponse = (StreamingResponse) responseBody;
+                response.type(streamingResponse.getContentType());
+                response.header("Content-Disposition", "attachment; filename=\"" + streamingResponse.getFileName() + "\"");
+                int status = 200;
+                try {
+                    streamingResponse.writeTo(response.raw().getOutputStream());
+                }catch(IOException | SQLException e) {
+                    logger.error("Streamed response to " + request.pathInfo() + " failed part way through : " + e.getMessage());
+                    status = 500;
+                }
+                finishRequest(request, response, timer, false, status, startNanos, 0);
+                return "";
             }
+            response.type(responseContentType((String) responseBody));
+            finishRequest(request, response, timer, false, errorStatus((String) responseBody), startNanos,
+                          ((String) responseBody).length());
+
+            return responseBody;
+        });
+
+        post("/lb/*", (request, response) -> {
+            long startNanos = System.nanoTime();
+            PhaseTimer timer = PhaseTimer.start(request, serverTimingEnabled);
+            response.status(200);
+
+            String responseString = processLeaderboardPostRequest(request);
+            response.type(responseContentType(responseString));
+            finishRequest(request, response, timer, true, errorStatus(responseString), startNanos, responseString.length());
 
             return responseString;
         });
     }
 
+    /**
+     * Reports a handled request.  The phase timings are added as a Server-Timing header (if enabled) and committed as
+     * a JFR event (if recording), an ACCESS event is written to the access log, and the request is captured (if a
+     * traffic capture is running).
+     *
+     * @param request Spark HTTP Request
+     * @param response Spark HTTP Response
+     * @param timer PhaseTimer of the request
+     * @param post True if the request is a POST request
+     * @param status HTTP status of the response
+     * @param startNanos Value of System.nanoTime() when the request started
+     * @param responseLength Length of the response payload
+     */
+    private void finishRequest(final Request request, final Response response, final PhaseTimer timer,
+                               final boolean post, final int status, final long startNanos, final int responseLength) {
+        AccessRoute route = AccessRoute.fromPath(request.pathInfo(), post);
+        // Streamed responses have already sent their headers by the time they finish
+        if(serverTimingEnabled && !response.raw().isCommitted()) {
+            response.header(SERVER_TIMING_HEADER, timer.toServerTiming());
+            response.header("Timing-Allow-Origin", "*");
+        }
+        timer.commitEvent(route.name(), status);
+
+        long durationNanos = System.nanoTime() - startNanos;
+        dbHandler.getAccessLog().access(route, status, durationNanos, responseLength, request.ip());
+        if(trafficCapture != null) {
+            trafficCapture.capture(route, post, request.raw().getRequestURI(), request.queryString(),
+                                   post ? request.body() : null, status, startNanos, durationNanos);
+        }
+    }
+
+    /**
+     * Returns the status to log for a String response.  Error responses are sent with status 200 (for compatibility),
+     * so they are logged with status 400 to tell them apart from successful requests.  Likewise, ADD requests that
+     * were journaled to be applied later are logged with status 202.
+     *
+     * @param responseString Response payload
+     * @return Status to log for the response
+     */
+    private static int errorStatus(final String responseString) {
+        if(responseString.equals(ACCEPTED)) {
+            return 202;
+        }
+        return responseString.startsWith(ERROR) ? 400 : 200;
+    }
+
+    /**
+     * Returns the content type to use for a response payload.  Errors and plain OK responses are text, everything
+     * else is JSON.
+     * NOTE: Only the start of the payload is checked, so JSON payloads that happen to contain 'OK' or 'ERROR' (for
+     *       example in a player name) are still sent as JSON.
+     *
+     * @param responseString Response payload
+     * @return String content type for the response
+     */
+    private static String responseContentType(final String responseString) {
+        if(responseString.startsWith(ERROR) || responseString.equals(OK) || responseString.equals(ACCEPTED)) {
+            return "text/html";
+        }
+        return "application/json";
+    }
+
     /**
      * This method handles a received REST request.  It returns back a String, to be used as the requests response payload.
      * NOTE: In general, all HTTP REST requests received by the application flow down to here.  They are then flowed out
@@ -74,9 +295,10 @@ public class LeaderboardService {
      *       and the result payload is flowed back up as the return of this method.
      *
      * @param request Spark HTTP Request
-     * @return String String response to be used at the requests response payload
+     * @return String response to be used at the requests response payload, or an EncodedResponse for requests that
+     *         return leaderboard records
      */
-    public String processLeaderboardRequest(final Request request) {
+    public Object processLeaderboardRequest(final Request request) {
         // Spliting the PATH in this way will result in the following substrings:
         //      Index 0 will always be blank
         //      Index 1 will be the next forward slash terminated value.
@@ -85,7 +307,7 @@ public class LeaderboardService {
         //           /lb/GET/<pubkey>/json
         // NOTE The forward slashes will be removed when the String is split, we don't need to replace them out
         String[] pathArray = request.pathInfo().split("/");
-        String retVal = COMMAND_NOT_FOUND_ERROR;
+        Object retVal = COMMAND_NOT_FOUND_ERROR;
 
         if(pathArray.length == 3) {
             retVal = processServiceRequest(pathArray);
@@ -98,6 +320,26 @@ public class LeaderboardService {
         return retVal;
     }
 
+    /**
+     * This method handles a received POST request, in the same way that processLeaderboardRequest handles GET requests.
+     * Currently the only POST request is a batched ADD:  /lb/ADD/<privkey>  with a JSON array of records as the body.
+     *
+     * @param request Spark HTTP Request
+     * @return String String response to be used at the requests response payload
+     */
+    public String processLeaderboardPostRequest(final Request request) {
+        String[] pathArray = request.pathInfo().split("/");
+        String retVal = COMMAND_NOT_FOUND_ERROR;
+
+        if(pathArray.length == 4 && pathArray[2].equalsIgnoreCase(ADD_COMMAND)) {
+            retVal = dbHandler.addRecordsIntoLeaderboard(pathArray, request);
+        }else if(pathArray.length > 3 && pathArray[2].equalsIgnoreCase(ADMIN_COMMAND)) {
+            retVal = adminHandler.processAdminPostRequest(pathArray, request);
+        }
+
+        return retVal;
+    }
+
     /**
      * This method handles 'service requests' (poorly named).  Specifically, these requests are not tied to a
      * specific leaderboad (eg. create leaderboard).
@@ -120,19 +362,31 @@ public class LeaderboardService {
      *
      * @param pathArray String array of the URL request, split by '/' characters
      * @param request The HTTP request (used to capture user request IP address data)
-     * @return String response for the request
+     * @return String response for the request, or an EncodedResponse for requests that return leaderboard records
      */
-    public String processLeaderboardModificationRequest(final String[] pathArray, final Request request) {
-        String retVal = COMMAND_NOT_FOUND_ERROR;
+    public Object processLeaderboardModificationRequest(final String[] pathArray, final Request request) {
+        Object retVal = COMMAND_NOT_FOUND_ERROR;
 
-        if(pathArray[2].equalsIgnoreCase(ADD_COMMAND)) {
+        if(pathArray[2].equalsIgnoreCase(CREATE_COMMAND)) {
+            retVal = dbHandler.createNewLeaderboard(pathArray);
+        }else if(pathArray[2].equalsIgnoreCase(ADD_COMMAND)) {
             retVal = dbHandler.addRecordIntoLeaderboard(pathArray, request);
         }else if(pathArray[2].equalsIgnoreCase(GET_COMMAND)) {
-            retVal = dbHandler.getRecordsFromLeaderboard(pathArray);
+            retVal = dbHandler.getRecordsFromLeaderboard(pathArray, request);
+        }else if(pathArray[2].equalsIgnoreCase(MULTI_GET_COMMAND)) {
+            retVal = dbHandler.getRecordsFromMultipleLeaderboards(pathArray);
+        }else if(pathArray[2].equalsIgnoreCase(FRIENDS_COMMAND)) {
+            retVal = dbHandler.getFriendRecordsFromLeaderboard(pathArray, request);
+        }else if(pathArray[2].equalsIgnoreCase(SEARCH_COMMAND)) {
+            retVal = dbHandler.getSearchRecordsFromLeaderboard(pathArray, request);
+        }else if(pathArray[2].equalsIgnoreCase(STATS_COMMAND)) {
+            retVal = dbHandler.getStatsFromLeaderboard(pathArray, request);
         }else if(pathArray[2].equalsIgnoreCase(DELETE_COMMAND)) {
-            retVal = dbHandler.deleteRecordFromLeaderboard(pathArray);
+            retVal = dbHandler.deleteRecordFromLeaderboard(pathArray, request);
         }else if(pathArray[2].equalsIgnoreCase(CLEAR_COMMAND)) {
-            retVal = dbHandler.clearRecordsFromLeaderboard(pathArray);
+            retVal = dbHandler.clearRecordsFromLeaderboard(pathArray, request);
+        }else if(pathArray[2].equalsIgnoreCase(ADMIN_COMMAND)) {
+            retVal = adminHandler.processAdminRequest(pathArray, request);
         }
 
         return retVal;
@@ -165,6 +419,7 @@ public class LeaderboardService {
             response.header("Access-Control-Allow-Origin", origin);
             response.header("Access-Control-Request-Method", methods);
             response.header("Access-Control-Allow-Headers", headers);
+            response.header("Access-Control-Expose-Headers", VERSION_HEADER + ", " + STALE_HEADER);
         });
     }
 }
@@ -1,26 +1,54 @@
 package com.tdberg.apps.leaderboard;
 
+import com.tdberg.apps.leaderboard.capture.TrafficReplayer;
+import com.tdberg.apps.leaderboard.export.ExportFormat;
+import com.tdberg.apps.leaderboard.importer.ImportSummary;
+import com.tdberg.apps.leaderboard.ingest.IngestLoadGenerator;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.WindowType;
 import com.tdberg.apps.leaderboard.utils.Version;
 
+import com.google.gson.GsonBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Properties;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
 
 public class Main {
+    private static String EXPORT_MODE = "export";
+    private static String IMPORT_MODE = "import";
+    private static String LOAD_TEST_MODE = "loadtest";
+    private static String REPLAY_MODE = "replay";
+    private static String STDOUT = "-";
+    private static String STDIN = "-";
+    private static String TCP = "tcp";
+    private static String HTTP = "http";
+    private static String OPEN = "open";
+    private static String CLOSED = "closed";
+
     public static void main(String[] args) {
         Logger logger = LogManager.getLogger(Main.class);
         Properties cfg;
         LeaderboardService leaderboardService;
 
-        if(args.length != 1) {
+        if(args.length < 1 || (args.length > 1 && !args[1].equalsIgnoreCase(EXPORT_MODE) &&
+                                !args[1].equalsIgnoreCase(IMPORT_MODE) && !args[1].equalsIgnoreCase(LOAD_TEST_MODE) &&
+                                !args[1].equalsIgnoreCase(REPLAY_MODE))) {
             System.out.println("You must provide a properties configuration file as the only parameter for this application.  Exiting.");
+            System.out.println("To export records instead, the parameters are: <properties file> export <ndjson|csv> <output file|-> [public key]");
+            System.out.println("To import records instead, the parameters are: <properties file> import <ndjson|csv> <input file|-> [window] [ranking]");
+            System.out.println("To run the load generator instead, the parameters are: <properties file> loadtest <tcp|http> <host> <port> <private key> [submissions] [connections]");
+            System.out.println("To replay a traffic capture instead, the parameters are: <properties file> replay <open|closed> <capture file> <host> <port> [speed] [threads]");
             logger.error("Application start attempted, but too few or too many parameters detected.  Exiting.");
             return;
         }else {
-            logger.info("Starting leaderboard service, version " + Version.getVersion());
             cfg = new Properties();
             try {
                 cfg.load(new FileInputStream(args[0]));
@@ -31,6 +59,21 @@ public class Main {
             }
         }
 
+        if(args.length > 1 && args[1].equalsIgnoreCase(EXPORT_MODE)) {
+            export(args, cfg, logger);
+            return;
+        }else if(args.length > 1 && args[1].equalsIgnoreCase(IMPORT_MODE)) {
+            importRecords(args, cfg, logger);
+            return;
+        }else if(args.length > 1 && args[1].equalsIgnoreCase(LOAD_TEST_MODE)) {
+            loadTest(args, cfg, logger);
+            return;
+        }else if(args.length > 1) {
+            replay(args, cfg, logger);
+            return;
+        }
+
+        logger.info("Starting leaderboard service, version " + Version.getVersion());
         leaderboardService = new LeaderboardService(cfg);
 
         if(!leaderboardService.initialize()) {
@@ -40,4 +83,190 @@ public class Main {
 
         leaderboardService.runService();
     }
+
+    /**
+     * Exports records to a file (or to stdout, if the file is '-') instead of running the service.  The export is
+     * gzipped if the file name ends in '.gz'.  Messages are printed to stderr, so that they never end up in an export
+     * written to stdout.  The parameters are:
+     *           <properties file> export <ndjson|csv> <output file|-> [public key]
+     *
+     * @param args Command line parameters
+     * @param cfg Properties file detailing configurable values to use for this application
+     * @param logger Logger to report the export to
+     */
+    private static void export(final String[] args, final Properties cfg, final Logger logger) {
+        ExportFormat format = (args.length > 3) ? ExportFormat.fromName(args[2]) : null;
+        if(format == null || args.length > 5) {
+            System.err.println("Export parameters are: <properties file> export <ndjson|csv> <output file|-> [public key]");
+            return;
+        }
+
+        DatabaseHandler dbHandler = new DatabaseHandler(cfg);
+        boolean toStdout = args[3].equals(STDOUT);
+        try {
+            Integer boardId = null;
+            if(args.length > 4) {
+                Leaderboard leaderboard = dbHandler.getLeaderboardFromPubKey(args[4]);
+                if(leaderboard == null) {
+                    System.err.println("No leaderboard found with public key : " + args[4]);
+                    return;
+                }
+                boardId = leaderboard.getBoardId();
+            }
+
+            OutputStream out = toStdout ? System.out : new FileOutputStream(args[3]);
+            try {
+                long recordCount = dbHandler.exportRecords(boardId, format, args[3].endsWith(".gz"), out);
+                logger.info("Exported " + recordCount + " records to " + args[3]);
+            }finally {
+                if(toStdout) {
+                    out.flush();
+                }else {
+                    out.close();
+                }
+            }
+        }catch(SQLException e) {
+            System.err.println("Export failed.  Exiting.");
+            logger.error("SQL error while attempting to export records : " + e.getMessage());
+        }catch(IOException e) {
+            System.err.println("Export failed.  Exiting.");
+            logger.error("Failed to write export to " + args[3] + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imports records from a file (or from stdin, if the file is '-') into new leaderboards instead of running the
+     * service (see RecordImporter).  The import is read as gzip if the file name ends in '.gz'.  The time window and
+     * ranking mode of the new leaderboards may be given in either order, as with CREATE.  Progress is printed to
+     * stderr, and the outcome of the import (including the keys of the new leaderboards) is printed to stdout as
+     * JSON.  The parameters are:
+     *           <properties file> import <ndjson|csv> <input file|-> [window] [ranking]
+     *
+     * @param args Command line parameters
+     * @param cfg Properties file detailing configurable values to use for this application
+     * @param logger Logger to report the import to
+     */
+    private static void importRecords(final String[] args, final Properties cfg, final Logger logger) {
+        ExportFormat format = (args.length > 3) ? ExportFormat.fromName(args[2]) : null;
+        WindowType windowType = null;
+        RankingMode rankingMode = null;
+        for(int i=4; i<args.length && format != null; i++) {
+            if(windowType == null && WindowType.fromName(args[i]) != null) {
+                windowType = WindowType.fromName(args[i]);
+            }else if(rankingMode == null && RankingMode.fromName(args[i]) != null) {
+                rankingMode = RankingMode.fromName(args[i]);
+            }else {
+                format = null;
+            }
+        }
+        if(format == null) {
+            System.err.println("Import parameters are: <properties file> import <ndjson|csv> <input file|-> [window] [ranking]");
+            return;
+        }
+
+        DatabaseHandler dbHandler = new DatabaseHandler(cfg);
+        if(!dbHandler.initialize()) {
+            System.err.println("Failed to connect to / initialize leaderboard.  Exiting.");
+            return;
+        }
+
+        boolean fromStdin = args[3].equals(STDIN);
+        try {
+            InputStream in = fromStdin ? System.in : new FileInputStream(args[3]);
+            try {
+                ImportSummary summary = dbHandler.importRecords(format, args[3].endsWith(".gz"), in,
+                                                                (windowType == null) ? WindowType.NONE : windowType,
+                                                                (rankingMode == null) ? RankingMode.SCORE_DESC : rankingMode,
+                                                                System.err);
+                logger.info("Imported " + summary.getRowsRead() + " rows from " + args[3]);
+                System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(summary));
+            }finally {
+                if(!fromStdin) {
+                    in.close();
+                }
+            }
+        }catch(SQLException e) {
+            System.err.println("Import failed.  Leaderboards that were already imported are listed in the log.  Exiting.");
+            logger.error("SQL error while attempting to import records : " + e.getMessage());
+        }catch(IOException e) {
+            System.err.println("Import failed.  Leaderboards that were already imported are listed in the log.  Exiting.");
+            logger.error("Failed to read import from " + args[3] + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the load generator against a running service instead of running the service (see IngestLoadGenerator), and
+     * prints the outcome as JSON.  The 'tcp' mode submits to the binary ingestion listener, and the 'http' mode submits
+     * single record ADD requests.  By default, 100000 submissions are sent over 4 connections.  The parameters are:
+     *           <properties file> loadtest <tcp|http> <host> <port> <private key> [submissions] [connections]
+     *
+     * @param args Command line parameters
+     * @param cfg Properties file detailing configurable values to use for this application
+     * @param logger Logger to report the run to
+     */
+    private static void loadTest(final String[] args, final Properties cfg, final Logger logger) {
+        boolean tcp = args.length > 2 && args[2].equalsIgnoreCase(TCP);
+        if(args.length < 6 || args.length > 8 || (!tcp && !args[2].equalsIgnoreCase(HTTP))) {
+            System.err.println("Load generator parameters are: <properties file> loadtest <tcp|http> <host> <port> <private key> [submissions] [connections]");
+            return;
+        }
+
+        try {
+            int submissions = (args.length > 6) ? Integer.parseInt(args[6]) : 100000;
+            int connections = (args.length > 7) ? Integer.parseInt(args[7]) : 4;
+            IngestLoadGenerator loadGenerator = new IngestLoadGenerator(args[3], Integer.parseInt(args[4]), args[5],
+                                                                        submissions, connections, cfg);
+            IngestLoadGenerator.Result result = tcp ? loadGenerator.runTcp() : loadGenerator.runHttp();
+            logger.info("Load generator sent " + submissions + " submissions over " + args[2] + " at " +
+                        result.getSubmissionsPerSecond() + " per second");
+            System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(result));
+        }catch(NumberFormatException e) {
+            System.err.println("Load generator parameters are: <properties file> loadtest <tcp|http> <host> <port> <private key> [submissions] [connections]");
+        }catch(IOException e) {
+            System.err.println("Load generator failed.  Exiting.");
+            logger.error("Load generator failed : " + e.getMessage());
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replays a traffic capture (see TrafficCapture) against a running service instead of running the service (see
+     * TrafficReplayer), and prints the throughput and latency percentiles of the replay as JSON.  The speed multiplies
+     * the captured request rate (0 replays as fast as possible), and defaults to 1.  By default, requests are sent from
+     * 16 threads.  The parameters are:
+     *           <properties file> replay <open|closed> <capture file> <host> <port> [speed] [threads]
+     *
+     * @param args Command line parameters
+     * @param cfg Properties file detailing configurable values to use for this application
+     * @param logger Logger to report the replay to
+     */
+    private static void replay(final String[] args, final Properties cfg, final Logger logger) {
+        boolean closed = args.length > 2 && args[2].equalsIgnoreCase(CLOSED);
+        if(args.length < 6 || args.length > 8 || (!closed && !args[2].equalsIgnoreCase(OPEN))) {
+            System.err.println("Replay parameters are: <properties file> replay <open|closed> <capture file> <host> <port> [speed] [threads]");
+            return;
+        }
+
+        try {
+            double speed = (args.length > 6) ? Double.parseDouble(args[6]) : 1.0;
+            int threads = (args.length > 7) ? Integer.parseInt(args[7]) : 16;
+            if(speed < 0 || threads < 1) {
+                throw new NumberFormatException();
+            }
+            TrafficReplayer replayer = new TrafficReplayer(args[3], args[4], Integer.parseInt(args[5]), closed, speed,
+                                                           threads, cfg);
+            TrafficReplayer.Result result = replayer.run();
+            logger.info("Replayed " + result.getRequests() + " requests from " + args[3] + " at " +
+                        result.getRequestsPerSecond() + " per second");
+            System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(result));
+        }catch(NumberFormatException e) {
+            System.err.println("Replay parameters are: <properties file> replay <open|closed> <capture file> <host> <port> [speed] [threads]");
+        }catch(IOException e) {
+            System.err.println("Replay failed.  Exiting.");
+            logger.error("Replay of " + args[3] + " failed : " + e.getMessage());
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.cache.BoardCache;
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Periodic task that writes the query times of the leaderboards read from the BoardCache to the database, in one
+ * statement.  Without this, leaderboards that are only ever read from the cache would look inactive to the
+ * LeaderboardReaper.
+ */
+public class QueryTimeFlushTask implements Runnable {
+    private static Logger logger = LogManager.getLogger(QueryTimeFlushTask.class);
+
+    private DatabaseHandler dbHandler;
+    private BoardCache boardCache;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     */
+    public QueryTimeFlushTask(final DatabaseHandler dbHandler) {
+        this.dbHandler = dbHandler;
+        this.boardCache = dbHandler.getBoardCache();
+    }
+
+    @Override
+    public void run() {
+        List<Integer> boardIds = boardCache.drainQueriedBoardIds();
+        if(boardIds.isEmpty()) {
+            return;
+        }
+
+        Connection dbConnection = dbHandler.getDbConnection();
+        if(dbConnection == null) {
+            return;
+        }
+
+        try {
+            DbUtils.updateLeaderboardQueryTimes(boardIds, dbConnection);
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to update cached leaderboard query times : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+        }finally {
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.objects.WindowType;
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Periodic task that drops expired buckets from windowed (DAILY/WEEKLY/MONTHLY) leaderboards.  Windows roll over on
+ * their own (new submissions simply go into the bucket for the current time), so this task only has to remove buckets
+ * that are older than the configured retention.  Each expired bucket is deleted whole, rather than record by record.
+ */
+public class WindowExpiryTask implements Runnable {
+    private static Logger logger = LogManager.getLogger(WindowExpiryTask.class);
+
+    private DatabaseHandler dbHandler;
+    private int retainedWindows;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public WindowExpiryTask(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        // Number of past windows that are kept (and can be requested with GET) in addition to the current window
+        retainedWindows = Integer.parseInt(cfg.getProperty("windowRetentionCount", "7"));
+    }
+
+    @Override
+    public void run() {
+        Connection dbConnection = dbHandler.getDbConnection();
+        if(dbConnection == null) {
+            return;
+        }
+
+        try {
+            for(WindowType windowType : WindowType.values()) {
+                if(windowType == WindowType.NONE) {
+                    continue;
+                }
+
+                int oldestKeptBucket = windowType.currentBucket() - retainedWindows;
+                int deletedCount = DbUtils.deleteExpiredBuckets(windowType, oldestKeptBucket, dbConnection);
+                if(deletedCount > 0) {
+                    logger.info("Expired " + deletedCount + " records from " + windowType + " leaderboard buckets older than " +
+                                oldestKeptBucket);
+                }
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to expire leaderboard window buckets : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+        }finally {
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+}
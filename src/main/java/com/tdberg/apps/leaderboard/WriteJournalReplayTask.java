@@ -0,0 +1,67 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.writer.WriteJournal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Periodic task that applies the ADD submissions held in the WriteJournal (those made while the database was
+ * unavailable) once the database is available again, oldest first, and removes them from the journal.
+ * NOTE: Consecutive submissions for the same leaderboard are applied together, in one transaction.  If the database
+ *       fails again part way through, the groups that were committed are removed and the rest are kept for the next
+ *       run.  The task does not wait for the circuit breaker to close: its first change asks for a connection like
+ *       any request, so once the breaker lets a trial call through, the replay can be that call.
+ */
+public class WriteJournalReplayTask implements Runnable {
+    private static Logger logger = LogManager.getLogger(WriteJournalReplayTask.class);
+    // The size of a batched ADD request
+    private static int MAX_REPLAY_BATCH = 1000;
+
+    private DatabaseHandler dbHandler;
+    private WriteJournal writeJournal;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler that holds the WriteJournal
+     */
+    public WriteJournalReplayTask(final DatabaseHandler dbHandler) {
+        this.dbHandler = dbHandler;
+        this.writeJournal = dbHandler.getWriteJournal();
+    }
+
+    @Override
+    public void run() {
+        if(writeJournal.size() == 0) {
+            return;
+        }
+
+        List<WriteJournal.Entry> entries = writeJournal.getEntries();
+        int replayed = 0;
+        try {
+            while(replayed < entries.size()) {
+                String privKey = entries.get(replayed).getPrivKey();
+                int end = replayed + 1;
+                while(end < entries.size() && end - replayed < MAX_REPLAY_BATCH &&
+                        entries.get(end).getPrivKey().equals(privKey)) {
+                    end++;
+                }
+                dbHandler.replayJournalEntries(entries.subList(replayed, end));
+                replayed = end;
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to replay the write journal : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+        }finally {
+            writeJournal.remove(replayed);
+        }
+
+        if(replayed > 0) {
+            logger.info("Replayed " + replayed + " journaled submissions, " + writeJournal.size() + " remain");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tdberg.apps.leaderboard.accesslog;
+
+/**
+ * A single slot of the AccessLog ring buffer.  Slots are allocated once, when the AccessLog is created, and are then
+ * refilled by each request that publishes into them, so publishing an event does not allocate.
+ * NOTE: An ACCESS event describes a whole request (status, duration, remote address).  An AUDIT event describes a
+ *       single change made to a leaderboard (board, record, score and outcome).
+ */
+class AccessEvent {
+    static final int ACCESS = 0;
+    static final int AUDIT = 1;
+
+    // Sequence number of the event held in this slot, which is written last by the publisher (see AccessLog)
+    volatile long sequence = -1;
+
+    int type;
+    AccessRoute route;
+    long timestampMillis;
+    String remoteAddress;
+
+    // ACCESS fields
+    int status;
+    long durationNanos;
+    int responseBytes;
+
+    // AUDIT fields
+    String outcome;
+    int boardId;
+    int recordId;
+    int score;
+}
@@ -0,0 +1,230 @@
+package com.tdberg.apps.leaderboard.accesslog;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access and audit log, kept off of the request threads.  Request threads only fill in a preallocated
+ * slot of a lock-free ring buffer, and a background writer thread formats the events and writes them to the 'access'
+ * log4j logger in batches (one log call per batch).
+ * NOTE: If the ring buffer is full, the event is dropped and counted rather than blocking the request.  The writer
+ *       reports the number of dropped events in the log.  ACCESS events are sampled at a configurable rate per route
+ *       (eg. accessLogSampleRate.GET=0.01), but AUDIT events (changes to leaderboards) are always kept.
+ */
+public class AccessLog {
+    private static Logger logger = LogManager.getLogger(AccessLog.class);
+    private static Logger accessLogger = LogManager.getLogger("access");
+
+    private AccessEvent[] ring;
+    private int mask;
+    private int batchSize;
+    private double[] sampleRates;
+    // Next sequence number to be claimed by a publisher
+    private AtomicLong claimSequence = new AtomicLong();
+    // Next sequence number to be read by the writer.  Every slot before this one is free to be reused.
+    private volatile long readSequence;
+    private AtomicLong droppedCount = new AtomicLong();
+    private AtomicLong sampledOutCount = new AtomicLong();
+    private Thread writerThread;
+
+    /**
+     * Default constructor
+     *
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public AccessLog(final Properties cfg) {
+        // The capacity is rounded up to a power of two, so that a sequence number maps to its slot with a mask
+        int capacity = Integer.highestOneBit(Math.max(2, Integer.parseInt(cfg.getProperty("accessLogBufferSize", "8192"))) * 2 - 1);
+        ring = new AccessEvent[capacity];
+        for(int i=0; i<capacity; i++) {
+            ring[i] = new AccessEvent();
+        }
+        mask = capacity - 1;
+        batchSize = Integer.parseInt(cfg.getProperty("accessLogBatchSize", "512"));
+
+        sampleRates = new double[AccessRoute.values().length];
+        for(AccessRoute route : AccessRoute.values()) {
+            sampleRates[route.ordinal()] = Double.parseDouble(cfg.getProperty("accessLogSampleRate." + route.name(), "1.0"));
+        }
+    }
+
+    /**
+     * Starts the background writer thread.
+     */
+    public void start() {
+        writerThread = new Thread(this::runWriter, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Returns the number of events dropped because the ring buffer was full.
+     *
+     * @return Number of dropped events
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of ACCESS events skipped by sampling.
+     *
+     * @return Number of sampled out events
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount.get();
+    }
+
+    /**
+     * Publishes an ACCESS event for a completed request, subject to the sample rate of its route.
+     *
+     * @param route Route of the request
+     * @param status HTTP status of the response
+     * @param durationNanos Time taken to handle the request, in nanoseconds
+     * @param responseBytes Size of the response payload
+     * @param remoteAddress IP address of the requester
+     */
+    public void access(final AccessRoute route, final int status, final long durationNanos, final int responseBytes,
+                       final String remoteAddress) {
+        double sampleRate = sampleRates[route.ordinal()];
+        if(sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOutCount.incrementAndGet();
+            return;
+        }
+
+        long sequence = claim();
+        if(sequence < 0) {
+            return;
+        }
+        AccessEvent event = ring[(int) (sequence & mask)];
+        event.type = AccessEvent.ACCESS;
+        event.route = route;
+        event.timestampMillis = System.currentTimeMillis();
+        event.remoteAddress = remoteAddress;
+        event.status = status;
+        event.durationNanos = durationNanos;
+        event.responseBytes = responseBytes;
+        event.sequence = sequence;
+    }
+
+    /**
+     * Publishes an AUDIT event for a change made to a leaderboard.  AUDIT events are never sampled.
+     *
+     * @param route Route of the request that made the change
+     * @param outcome Outcome of the change (eg. INSERTED)
+     * @param boardId BoardId of the changed leaderboard
+     * @param recordId RecordId of the changed record, or 0 if not applicable
+     * @param score Score of the changed record, or 0 if not applicable
+     * @param remoteAddress IP address of the requester, or null if not known
+     */
+    public void audit(final AccessRoute route, final String outcome, final int boardId, final int recordId,
+                      final int score, final String remoteAddress) {
+        long sequence = claim();
+        if(sequence < 0) {
+            return;
+        }
+        AccessEvent event = ring[(int) (sequence & mask)];
+        event.type = AccessEvent.AUDIT;
+        event.route = route;
+        event.timestampMillis = System.currentTimeMillis();
+        event.remoteAddress = remoteAddress;
+        event.outcome = outcome;
+        event.boardId = boardId;
+        event.recordId = recordId;
+        event.score = score;
+        event.sequence = sequence;
+    }
+
+    /**
+     * Claims the next slot of the ring buffer.  The claimed slot is published by writing its sequence field last.
+     *
+     * @return Sequence number of the claimed slot, or -1 if the ring buffer is full
+     */
+    private long claim() {
+        while(true) {
+            long sequence = claimSequence.get();
+            if(sequence - readSequence >= ring.length) {
+                droppedCount.incrementAndGet();
+                return -1;
+            }
+            if(claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Writer thread loop.  Reads published events in order, and writes them out in batches.
+     */
+    private void runWriter() {
+        StringBuilder batch = new StringBuilder();
+        long reportedDropped = 0;
+
+        while(true) {
+            int count = 0;
+            long sequence = readSequence;
+            while(count < batchSize) {
+                AccessEvent event = ring[(int) (sequence & mask)];
+                if(event.sequence != sequence) {
+                    break;
+                }
+                format(event, batch);
+                event.remoteAddress = null;
+                event.outcome = null;
+                sequence++;
+                count++;
+            }
+            // The slots are only released after they have been formatted
+            readSequence = sequence;
+
+            long dropped = droppedCount.get();
+            if(dropped != reportedDropped) {
+                batch.append(Instant.now()).append(" DROPPED events=").append(dropped - reportedDropped).append('\n');
+                reportedDropped = dropped;
+            }
+
+            if(batch.length() > 0) {
+                batch.setLength(batch.length() - 1);
+                try {
+                    accessLogger.info(batch.toString());
+                }catch(RuntimeException e) {
+                    logger.error("Failed to write access log batch : " + e.getMessage());
+                }
+                batch.setLength(0);
+            }
+
+            if(count < batchSize) {
+                LockSupport.parkNanos(10_000_000L);
+            }
+        }
+    }
+
+    /**
+     * Formats the param event as a single line of space separated key=value pairs.
+     *
+     * @param event Event to format
+     * @param out StringBuilder to append the line to
+     */
+    private static void format(final AccessEvent event, final StringBuilder out) {
+        out.append(Instant.ofEpochMilli(event.timestampMillis));
+        if(event.type == AccessEvent.ACCESS) {
+            out.append(" ACCESS route=").append(event.route)
+               .append(" status=").append(event.status)
+               .append(" micros=").append(event.durationNanos / 1000)
+               .append(" bytes=").append(event.responseBytes);
+        }else {
+            out.append(" AUDIT route=").append(event.route)
+               .append(" outcome=").append(event.outcome)
+               .append(" board=").append(event.boardId)
+               .append(" record=").append(event.recordId)
+               .append(" score=").append(event.score);
+        }
+        out.append(" ip=").append(event.remoteAddress).append('\n');
+    }
+}
@@ -0,0 +1,45 @@
+package com.tdberg.apps.leaderboard.accesslog;
+
+/**
+ * The request types that are written to the access log, each of which can be sampled at its own rate.
+ */
+public enum AccessRoute {
+    CREATE,
+    ADD,
+    BATCH_ADD,
+    GET,
+    MULTIGET,
+    FRIENDS,
+    SEARCH,
+    STATS,
+    DELETE,
+    CLEAR,
+    INGEST,
+    OTHER;
+
+    /**
+     * Returns the AccessRoute of the param request path (eg. /lb/GET/<pubkey>/json), without splitting the path.
+     *
+     * @param path Request path
+     * @param post True if the request is a POST request
+     * @return AccessRoute of the request, or OTHER if the path is not a recognized command
+     */
+    public static AccessRoute fromPath(final String path, final boolean post) {
+        // The command is the segment between the second and third slashes
+        int start = path.indexOf('/', 1) + 1;
+        if(start == 0) {
+            return OTHER;
+        }
+        int end = path.indexOf('/', start);
+        int length = ((end < 0) ? path.length() : end) - start;
+
+        for(AccessRoute route : values()) {
+            // BATCH_ADD and INGEST are not path commands (INGEST is the binary ingestion listener, see IngestServer)
+            if(route != BATCH_ADD && route != INGEST && route.name().length() == length &&
+                    path.regionMatches(true, start, route.name(), 0, length)) {
+                return (post && route == ADD) ? BATCH_ADD : route;
+            }
+        }
+        return OTHER;
+    }
+}
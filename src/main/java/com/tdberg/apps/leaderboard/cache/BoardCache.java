@@ -0,0 +1,193 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.BoardChangeListener;
+import com.tdberg.apps.leaderboard.BoardChangeNotifier;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of the top records of recently read leaderboards, indexed by public key, so that repeated GETs of
+ * the same leaderboard do not have to go to the database.  A leaderboard is dropped from the cache whenever it is
+ * changed, and is read back in by the next GET.
+ * NOTE: Leaderboards read from the cache are not written to the database one by one.  Instead, their board IDs are
+ *       collected here, and their query times are updated in bulk by the QueryTimeFlushTask.
+ */
+public class BoardCache implements BoardChangeListener {
+    private BoardChangeNotifier boardChangeNotifier;
+    private int topN;
+    private int maxBoards;
+    private boolean offHeap;
+    private Map<Integer, CachedBoard> boards = new ConcurrentHashMap<>();
+    private Map<String, Integer> boardIdsByPubKey = new ConcurrentHashMap<>();
+    private Set<Integer> queriedBoardIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Default constructor
+     *
+     * @param boardChangeNotifier BoardChangeNotifier that holds the current version of each leaderboard
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public BoardCache(final BoardChangeNotifier boardChangeNotifier, final Properties cfg) {
+        this.boardChangeNotifier = boardChangeNotifier;
+        topN = Integer.parseInt(cfg.getProperty("cacheTopN", "1000"));
+        maxBoards = Integer.parseInt(cfg.getProperty("cacheMaxBoards", "1000"));
+        // Off-heap columns are limited by -XX:MaxDirectMemorySize rather than by the heap size
+        offHeap = Boolean.parseBoolean(cfg.getProperty("cacheOffHeap", "false"));
+    }
+
+    /**
+     * Returns the number of top records that are cached for each leaderboard.
+     *
+     * @return Number of top records cached per leaderboard
+     */
+    public int getTopN() {
+        return topN;
+    }
+
+    /**
+     * Returns whether cached records are held off of the heap.
+     *
+     * @return True if cached records are held off of the heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Builds a CachedBoard from the param records, which should be the top records of the param bucket.
+     *
+     * @param leaderboard Leaderboard that the records belong to
+     * @param bucket Window bucket that the records were read from
+     * @param version Version of the leaderboard that the records were read at
+     * @param records Top records of the leaderboard, in rank order (at most topN of them)
+     * @param stale True if the records have not been read from the database by this instance of the service
+     * @return CachedBoard holding the records
+     */
+    public CachedBoard newCachedBoard(final Leaderboard leaderboard, final int bucket, final long version,
+                                      final List<Record> records, final boolean stale) {
+        return new CachedBoard(leaderboard, bucket, version, BoardColumns.fromRecords(records, offHeap),
+                               records.size() < topN, stale);
+    }
+
+    /**
+     * Returns the cached copy of the current window of the leaderboard with the param public key, or null if it is
+     * not cached (or if the cached copy is of a window that has since ended).
+     *
+     * @param pubKey Public key of the leaderboard
+     * @return CachedBoard for the leaderboard, or null
+     */
+    public CachedBoard get(final String pubKey) {
+        Integer boardId = boardIdsByPubKey.get(pubKey);
+        if(boardId == null) {
+            return null;
+        }
+
+        CachedBoard cachedBoard = boards.get(boardId);
+        if(cachedBoard == null || cachedBoard.getBucket() != cachedBoard.getLeaderboard().getCurrentBucket()) {
+            return null;
+        }
+        return cachedBoard;
+    }
+
+    /**
+     * Returns the board ID of the leaderboard with the param public key if that leaderboard is cached, or null.
+     *
+     * @param pubKey Public key of the leaderboard
+     * @return BoardId of the leaderboard, or null
+     */
+    public Integer getBoardId(final String pubKey) {
+        return boardIdsByPubKey.get(pubKey);
+    }
+
+    /**
+     * Adds the param CachedBoard to the cache, replacing any older copy of the same leaderboard.  If the leaderboard
+     * has changed since the CachedBoard was read, it is not kept.
+     *
+     * @param cachedBoard CachedBoard to add
+     */
+    public void put(final CachedBoard cachedBoard) {
+        int boardId = cachedBoard.getBoardId();
+        if(!boards.containsKey(boardId) && boards.size() >= maxBoards) {
+            evictOne();
+        }
+
+        boardIdsByPubKey.put(cachedBoard.getLeaderboard().getPubKey(), boardId);
+        boards.put(boardId, cachedBoard);
+
+        // The version is checked after the put, since a change that lands between a check and the put would drop
+        // the old copy and then be overwritten by this (already out of date) copy
+        if(boardChangeNotifier.getVersion(boardId) != cachedBoard.getVersion()) {
+            boards.remove(boardId, cachedBoard);
+        }
+    }
+
+    /**
+     * Removes the leaderboard with the param board ID from the cache, along with its key.
+     *
+     * @param boardId BoardId of the leaderboard
+     */
+    public void remove(final int boardId) {
+        CachedBoard cachedBoard = boards.remove(boardId);
+        if(cachedBoard != null) {
+            boardIdsByPubKey.remove(cachedBoard.getLeaderboard().getPubKey(), boardId);
+        }
+    }
+
+    /**
+     * Returns all of the currently cached leaderboards.
+     *
+     * @return Collection of the cached leaderboards
+     */
+    public Collection<CachedBoard> getAll() {
+        return new ArrayList<>(boards.values());
+    }
+
+    /**
+     * Records that the leaderboard with the param board ID was read from the cache.
+     *
+     * @param boardId BoardId of the leaderboard
+     */
+    public void markQueried(final int boardId) {
+        queriedBoardIds.add(boardId);
+    }
+
+    /**
+     * Returns (and forgets) the board IDs of all leaderboards read from the cache since the last call.
+     *
+     * @return List of board IDs
+     */
+    public List<Integer> drainQueriedBoardIds() {
+        List<Integer> boardIds = new ArrayList<>();
+        Iterator<Integer> iterator = queriedBoardIds.iterator();
+        while(iterator.hasNext()) {
+            boardIds.add(iterator.next());
+            iterator.remove();
+        }
+        return boardIds;
+    }
+
+    @Override
+    public void boardChanged(final Leaderboard leaderboard) {
+        // The key is kept, since a changed leaderboard is likely to be read again
+        boards.remove(leaderboard.getBoardId());
+    }
+
+    /**
+     * Evicts an arbitrary leaderboard to make room for a new one.
+     */
+    private void evictOne() {
+        Iterator<Integer> iterator = boards.keySet().iterator();
+        if(iterator.hasNext()) {
+            remove(iterator.next());
+        }
+    }
+}
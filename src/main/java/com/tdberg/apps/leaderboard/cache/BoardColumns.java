@@ -0,0 +1,177 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.formats.RecordSink;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, column oriented copy of the records of one cached leaderboard, in rank order.  Record IDs, scores, times
+ * and submission times are held in primitive columns rather than as Record objects, so a cached record costs a few
+ * dozen bytes rather than several hundred.
+ * NOTE: In heap mode, names are held as interned Strings (so the same player name is only held once across all of
+ *       the cached leaderboards).  In off-heap mode, every column (including the UTF-8 bytes of the names) is held in
+ *       one direct ByteBuffer per leaderboard, so cached records add almost nothing to the garbage collected heap.
+ *       Notes are rare, so they are held in a sparse map of only the records that have them, in either mode.
+ */
+public class BoardColumns {
+    private static long NULL_TIME = Long.MIN_VALUE;
+
+    private int size;
+    private IntBuffer recordIds;
+    private IntBuffer scores;
+    private IntBuffer times;
+    private LongBuffer submissionTimes;
+    // Heap mode names
+    private String[] names;
+    // Off-heap mode names, as offsets (and lengths, -1 for null) into the name bytes
+    private IntBuffer nameOffsets;
+    private IntBuffer nameLengths;
+    private ByteBuffer nameBytes;
+    private Map<Integer, String> notes;
+
+    private BoardColumns(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * Builds the columns of the param records.
+     *
+     * @param records Records of the leaderboard, in rank order
+     * @param offHeap True if the columns should be held off of the heap
+     * @return BoardColumns holding the param records
+     */
+    public static BoardColumns fromRecords(final List<Record> records, final boolean offHeap) {
+        BoardColumns columns = new BoardColumns(records.size());
+        int size = records.size();
+
+        byte[][] encodedNames = null;
+        int nameByteCount = 0;
+        if(offHeap) {
+            encodedNames = new byte[size][];
+            for(int i=0; i<size; i++) {
+                String name = records.get(i).getName();
+                if(name != null) {
+                    encodedNames[i] = name.getBytes(StandardCharsets.UTF_8);
+                    nameByteCount += encodedNames[i].length;
+                }
+            }
+
+            // One direct buffer holds all of the columns, each of which is a typed view of its own region
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size * (5 * Integer.BYTES + Long.BYTES) + nameByteCount);
+            columns.recordIds = slice(buffer, size * Integer.BYTES).asIntBuffer();
+            columns.scores = slice(buffer, size * Integer.BYTES).asIntBuffer();
+            columns.times = slice(buffer, size * Integer.BYTES).asIntBuffer();
+            columns.nameOffsets = slice(buffer, size * Integer.BYTES).asIntBuffer();
+            columns.nameLengths = slice(buffer, size * Integer.BYTES).asIntBuffer();
+            columns.submissionTimes = slice(buffer, size * Long.BYTES).asLongBuffer();
+            columns.nameBytes = slice(buffer, nameByteCount);
+        }else {
+            columns.recordIds = IntBuffer.allocate(size);
+            columns.scores = IntBuffer.allocate(size);
+            columns.times = IntBuffer.allocate(size);
+            columns.submissionTimes = LongBuffer.allocate(size);
+            columns.names = new String[size];
+        }
+
+        int nameOffset = 0;
+        for(int i=0; i<size; i++) {
+            Record record = records.get(i);
+            columns.recordIds.put(i, record.getRecordId());
+            columns.scores.put(i, record.getScore());
+            columns.times.put(i, record.getTime());
+            columns.submissionTimes.put(i, (record.getSubmissionTime() == null) ? NULL_TIME : record.getSubmissionTime().getTime());
+
+            if(offHeap) {
+                columns.nameOffsets.put(i, nameOffset);
+                if(encodedNames[i] == null) {
+                    columns.nameLengths.put(i, -1);
+                }else {
+                    columns.nameLengths.put(i, encodedNames[i].length);
+                    columns.nameBytes.put(nameOffset, encodedNames[i]);
+                    nameOffset += encodedNames[i].length;
+                }
+            }else if(record.getName() != null) {
+                columns.names[i] = record.getName().intern();
+            }
+
+            if(record.getNotes() != null) {
+                if(columns.notes == null) {
+                    columns.notes = new HashMap<>();
+                }
+                columns.notes.put(i, record.getNotes());
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Returns a view of the next param number of bytes of the param buffer, and advances the buffer past them.
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+        ByteBuffer region = buffer.slice();
+        region.limit(length);
+        buffer.position(buffer.position() + length);
+        return region;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRecordId(final int index) {
+        return recordIds.get(index);
+    }
+
+    public int getScore(final int index) {
+        return scores.get(index);
+    }
+
+    public int getTime(final int index) {
+        return times.get(index);
+    }
+
+    public String getName(final int index) {
+        if(names != null) {
+            return names[index];
+        }
+
+        int length = nameLengths.get(index);
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        nameBytes.get(nameOffsets.get(index), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public String getNotes(final int index) {
+        return (notes == null) ? null : notes.get(index);
+    }
+
+    public Timestamp getSubmissionTime(final int index) {
+        long submissionTime = submissionTimes.get(index);
+        return (submissionTime == NULL_TIME) ? null : new Timestamp(submissionTime);
+    }
+
+    /**
+     * Writes at most the param number of records to the param RecordSink, in rank order.
+     *
+     * @param limit Maximum number of records to write
+     * @param sink RecordSink to write the records to
+     */
+    public void write(final int limit, final RecordSink sink) {
+        int count = Math.min(limit, size);
+        for(int i=0; i<count; i++) {
+            sink.writeRecord(recordIds.get(i), getName(i), scores.get(i), times.get(i), getNotes(i), getSubmissionTime(i));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes snapshot files of the BoardCache, so that a restarted service can serve reads from the leaderboards
+ * that were hot before the restart, instead of starting with an empty cache.
+ * File layout (big endian):
+ *      int magic, int format version, byte clean shutdown flag, long write time, int board count
+ *      per board:  int boardId, string pubKey, byte window type, byte ranking mode, int bucket, long version, byte complete flag,
+ *                  int record count
+ *      per record: int recordId, string name, int score, int time, string notes, long submission time (or
+ *                  Long.MIN_VALUE if none)
+ *      long CRC32 of everything before it
+ * Strings are written as an int byte length (-1 for null) followed by their UTF-8 bytes.
+ * NOTE: Private keys and IP addresses are never written to the snapshot.  The snapshot is written to a temporary file
+ *       and then moved into place, so that a crash during a write never leaves a partial snapshot behind.
+ */
+public class CacheSnapshot {
+    private static int MAGIC = 0x4C424353;
+    private static int FORMAT_VERSION = 2;
+    private static long NULL_TIME = Long.MIN_VALUE;
+
+    private boolean clean;
+    private long writeTime;
+    private List<CachedBoard> boards;
+
+    /**
+     * Filled out constructor
+     *
+     * @param clean True if this snapshot was written during a clean shutdown
+     * @param writeTime Time (in milliseconds since the epoch) that this snapshot was written
+     * @param boards Leaderboards held in this snapshot
+     */
+    public CacheSnapshot(final boolean clean, final long writeTime, final List<CachedBoard> boards) {
+        this.clean = clean;
+        this.writeTime = writeTime;
+        this.boards = boards;
+    }
+
+    public boolean isClean() {
+        return clean;
+    }
+
+    public long getWriteTime() {
+        return writeTime;
+    }
+
+    public List<CachedBoard> getBoards() {
+        return boards;
+    }
+
+    /**
+     * Writes the param leaderboards to a snapshot file at the param path.
+     *
+     * @param path Path of the snapshot file
+     * @param boards Leaderboards to write
+     * @param clean True if the snapshot is being written during a clean shutdown (no changes can follow it)
+     * @throws IOException
+     */
+    public static void write(final Path path, final Collection<CachedBoard> boards, final boolean clean) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeByte(clean ? 1 : 0);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(boards.size());
+        for(CachedBoard board : boards) {
+            out.writeInt(board.getBoardId());
+            writeString(out, board.getLeaderboard().getPubKey());
+            out.writeByte(board.getLeaderboard().getWindowType().ordinal());
+            out.writeByte(board.getLeaderboard().getRankingMode().ordinal());
+            out.writeInt(board.getBucket());
+            out.writeLong(board.getVersion());
+            out.writeByte(board.isComplete() ? 1 : 0);
+            BoardColumns columns = board.getColumns();
+            out.writeInt(columns.size());
+            for(int i=0; i<columns.size(); i++) {
+                out.writeInt(columns.getRecordId(i));
+                writeString(out, columns.getName(i));
+                out.writeInt(columns.getScore(i));
+                out.writeInt(columns.getTime(i));
+                writeString(out, columns.getNotes(i));
+                out.writeLong(columns.getSubmissionTime(i) == null ? NULL_TIME : columns.getSubmissionTime(i).getTime());
+            }
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempPath, bytes.toByteArray());
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot file at the param path, by mapping it into memory.  All boards read are marked stale.
+     *
+     * @param path Path of the snapshot file
+     * @param offHeap True if the records read should be held off of the heap
+     * @return CacheSnapshot read from the file, or null if there is no file, or it is not a valid snapshot
+     * @throws IOException
+     */
+    public static CacheSnapshot read(final Path path, final boolean offHeap) throws IOException {
+        if(!Files.exists(path)) {
+            return null;
+        }
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() < Long.BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Check the CRC before parsing, so that a damaged file is ignored rather than half read
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) channel.size() - Long.BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if(crc.getValue() != buffer.getLong((int) channel.size() - Long.BYTES)) {
+                return null;
+            }
+
+            if(buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            boolean clean = buffer.get() == 1;
+            long writeTime = buffer.getLong();
+            int boardCount = buffer.getInt();
+
+            List<CachedBoard> boards = new ArrayList<>(boardCount);
+            for(int i=0; i<boardCount; i++) {
+                Leaderboard leaderboard = new Leaderboard();
+                leaderboard.setBoardId(buffer.getInt());
+                leaderboard.setPubKey(readString(buffer));
+                leaderboard.setWindowType(WindowType.values()[buffer.get()]);
+                leaderboard.setRankingMode(RankingMode.values()[buffer.get()]);
+                int bucket = buffer.getInt();
+                long version = buffer.getLong();
+                boolean complete = buffer.get() == 1;
+                int recordCount = buffer.getInt();
+
+                List<Record> records = new ArrayList<>(recordCount);
+                for(int j=0; j<recordCount; j++) {
+                    int recordId = buffer.getInt();
+                    String name = readString(buffer);
+                    int score = buffer.getInt();
+                    int time = buffer.getInt();
+                    String notes = readString(buffer);
+                    long submissionMillis = buffer.getLong();
+                    Timestamp submissionTime = (submissionMillis == NULL_TIME) ? null : new Timestamp(submissionMillis);
+                    Record record = new Record(leaderboard.getBoardId(), recordId, name, score, time, notes,
+                                               submissionTime, null);
+                    record.setBucket(bucket);
+                    records.add(record);
+                }
+                boards.add(new CachedBoard(leaderboard, bucket, version, BoardColumns.fromRecords(records, offHeap),
+                                           complete, true));
+            }
+
+            return new CacheSnapshot(clean, writeTime, boards);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if(value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.formats.RankedRecordSink;
+import com.tdberg.apps.leaderboard.formats.RecordSink;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the top records of the current window of one leaderboard, along with the leaderboard version
+ * that the copy was read at.
+ * NOTE: A CachedBoard is complete when it holds every record in its window, in which case it can serve a request for
+ *       any number of records.  Otherwise it can only serve requests for at most as many records as it holds.
+ */
+public class CachedBoard {
+    private Leaderboard leaderboard;
+    private int bucket;
+    private long version;
+    private BoardColumns columns;
+    private boolean complete;
+    private boolean stale;
+    // Built on first use, since most cached boards are only ever read a page at a time.  Building it twice (from two
+    // threads at once) is harmless, since the board is immutable.
+    private volatile Map<String, Integer> nameIndex;
+    // Positions of the named records, sorted by name (ignoring case), so that the names starting with a prefix are a
+    // range of it.  Built on first use, like the nameIndex.
+    private volatile int[] sortedNameIndex;
+
+    /**
+     * Filled out constructor
+     *
+     * @param leaderboard Leaderboard that the records belong to
+     * @param bucket Window bucket that the records were read from
+     * @param version Version of the leaderboard that the records were read at
+     * @param columns Top records of the leaderboard, in rank order
+     * @param complete True if the records are every record in the bucket
+     * @param stale True if the records have not yet been checked against the database (after a restart)
+     */
+    public CachedBoard(final Leaderboard leaderboard, final int bucket, final long version, final BoardColumns columns,
+                       final boolean complete, final boolean stale) {
+        this.leaderboard = leaderboard;
+        this.bucket = bucket;
+        this.version = version;
+        this.columns = columns;
+        this.complete = complete;
+        this.stale = stale;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public int getBoardId() {
+        return leaderboard.getBoardId();
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public BoardColumns getColumns() {
+        return columns;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Returns whether this CachedBoard holds every record needed for a request of the param number of top records.
+     *
+     * @param limit Number of top records requested
+     * @return True if the request can be served from this CachedBoard
+     */
+    public boolean canServe(final int limit) {
+        return complete || limit <= columns.size();
+    }
+
+    /**
+     * Writes at most the param number of top records to the param RecordSink, in rank order.
+     *
+     * @param limit Maximum number of records to write
+     * @param sink RecordSink to write the records to
+     */
+    public void writeRecords(final int limit, final RecordSink sink) {
+        columns.write(limit, sink);
+    }
+
+    /**
+     * Writes the records with the param names to the param RankedRecordSink, in rank order, if this CachedBoard can
+     * rank all of them.  It can if it is complete, or if it holds a record for every name (the ranks of the records it
+     * holds are their positions, even when there are more records in the window).  Otherwise nothing is written.
+     *
+     * @param names Names of the records to write
+     * @param sink RankedRecordSink to write the records to
+     * @return True if the records were written, false if the request must be served from the database
+     */
+    public boolean writeNamedRecords(final Collection<String> names, final RankedRecordSink sink) {
+        Map<String, Integer> index = nameIndex;
+        if(index == null) {
+            index = new HashMap<>();
+            for(int i=0; i<columns.size(); i++) {
+                String name = columns.getName(i);
+                if(name != null) {
+                    index.put(name, i);
+                }
+            }
+            nameIndex = index;
+        }
+
+        List<Integer> positions = new ArrayList<>();
+        for(String name : names) {
+            Integer position = index.get(name);
+            if(position != null) {
+                positions.add(position);
+            }else if(!complete) {
+                return false;
+            }
+        }
+
+        Collections.sort(positions);
+        for(int position : positions) {
+            sink.writeRecord(position + 1, columns.getRecordId(position), columns.getName(position),
+                             columns.getScore(position), columns.getTime(position), columns.getNotes(position),
+                             columns.getSubmissionTime(position));
+        }
+        return true;
+    }
+
+    /**
+     * Writes up to the param limit of the records whose name starts with the param prefix (ignoring case) to the
+     * param RankedRecordSink, in name order, if this CachedBoard is complete.  Otherwise nothing is written, since
+     * records outside of the cached copy may match.  The matching records are found by a binary search of the sorted
+     * name index, so only the records that are written are visited.
+     *
+     * @param prefix Prefix of the names to search for
+     * @param limit Maximum number of records to write
+     * @param sink RankedRecordSink to write the records to
+     * @return True if the records were written, false if the request must be served from the database
+     */
+    public boolean writeNamePrefixRecords(final String prefix, final int limit, final RankedRecordSink sink) {
+        if(!complete) {
+            return false;
+        }
+
+        int[] index = sortedNameIndex;
+        if(index == null) {
+            List<Integer> positions = new ArrayList<>();
+            for(int i=0; i<columns.size(); i++) {
+                if(columns.getName(i) != null) {
+                    positions.add(i);
+                }
+            }
+            // The sort is stable, so records with the same name (ignoring case) stay in rank order
+            positions.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(columns.getName(a), columns.getName(b)));
+            index = positions.stream().mapToInt(Integer::intValue).toArray();
+            sortedNameIndex = index;
+        }
+
+        // Find the first name that is not ordered before the prefix
+        int low = 0;
+        int high = index.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(String.CASE_INSENSITIVE_ORDER.compare(columns.getName(index[middle]), prefix) < 0) {
+                low = middle + 1;
+            }else {
+                high = middle;
+            }
+        }
+
+        for(int i=low, written=0; i<index.length && written<limit; i++, written++) {
+            int position = index[i];
+            String name = columns.getName(position);
+            if(!name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            sink.writeRecord(position + 1, columns.getRecordId(position), name, columns.getScore(position),
+                             columns.getTime(position), columns.getNotes(position),
+                             columns.getSubmissionTime(position));
+        }
+        return true;
+    }
+}
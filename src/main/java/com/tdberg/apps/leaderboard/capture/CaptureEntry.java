@@ -0,0 +1,109 @@
+package com.tdberg.apps.leaderboard.capture;
+
+/**
+ * A single line of a traffic capture file (see TrafficCapture), serialized into JSON.  A line either introduces a
+ * leaderboard token (board, window and ranking are set), or describes a captured request (the other fields are set).
+ * Fields that are not set are left out of the line.
+ */
+public class CaptureEntry {
+    // Leaderboard token (eg. b1), and the time window and ranking mode of that leaderboard
+    private String board;
+    private String window;
+    private String ranking;
+    // Milliseconds from the start of the capture to the start of the request
+    private Long at;
+    private String method;
+    // Request path and query string, with every leaderboard key replaced by a token (eg. {b1.priv})
+    private String path;
+    private String query;
+    // Body of POST requests
+    private String body;
+    private Integer status;
+    // Time taken to handle the request, in microseconds
+    private Long micros;
+
+    /**
+     * Returns a new CaptureEntry introducing the param leaderboard token.
+     *
+     * @param board Leaderboard token
+     * @param window Name of the time window of the leaderboard
+     * @param ranking Name of the ranking mode of the leaderboard
+     * @return CaptureEntry describing the leaderboard
+     */
+    public static CaptureEntry board(final String board, final String window, final String ranking) {
+        CaptureEntry entry = new CaptureEntry();
+        entry.board = board;
+        entry.window = window;
+        entry.ranking = ranking;
+        return entry;
+    }
+
+    /**
+     * Returns a new CaptureEntry describing a captured request.
+     *
+     * @param at Milliseconds from the start of the capture to the start of the request
+     * @param method HTTP method of the request
+     * @param path Tokenized request path
+     * @param query Tokenized query string, or null
+     * @param body Body of the request, or null
+     * @param status HTTP status of the response
+     * @param micros Time taken to handle the request, in microseconds
+     * @return CaptureEntry describing the request
+     */
+    public static CaptureEntry request(final long at, final String method, final String path, final String query,
+                                       final String body, final int status, final long micros) {
+        CaptureEntry entry = new CaptureEntry();
+        entry.at = at;
+        entry.method = method;
+        entry.path = path;
+        entry.query = query;
+        entry.body = body;
+        entry.status = status;
+        entry.micros = micros;
+        return entry;
+    }
+
+    public boolean isBoard() {
+        return board != null;
+    }
+
+    public String getBoard() {
+        return board;
+    }
+
+    public String getWindow() {
+        return window;
+    }
+
+    public String getRanking() {
+        return ranking;
+    }
+
+    public long getAt() {
+        return at;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+}
@@ -0,0 +1,269 @@
+package com.tdberg.apps.leaderboard.capture;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the requests handled by the service (path, query string, POST body, start time, response status and
+ * duration) to a capture file, so that the same traffic can later be replayed against another instance (see
+ * TrafficReplayer).  The file holds one JSON object per line (see CaptureEntry), and is gzipped if its name ends in
+ * '.gz'.
+ * NOTE: Leaderboard keys never reach the file.  Each key is looked up once, and replaced by a token for its
+ *       leaderboard (eg. {b1.priv} and {b1.pub} for the private and public keys of the same leaderboard), so that a
+ *       replay can map both to one new leaderboard.  Keys that do not belong to a leaderboard are replaced by {x<N>}
+ *       tokens.  Request threads only hand the request to a bounded queue (dropping it if the queue is full), and the
+ *       lookups and writes are done by a background thread.  ADMIN requests are never captured.
+ */
+public class TrafficCapture {
+    private static Logger logger = LogManager.getLogger(TrafficCapture.class);
+    // Keys are only looked up if they could be leaderboard keys (see ApiKey)
+    private static Pattern KEY_PATTERN = Pattern.compile("[0-9a-fA-F]{1,64}");
+    private static String PRIVATE_TOKEN_TEMPLATE = "{%s.priv}";
+    private static String PUBLIC_TOKEN_TEMPLATE = "{%s.pub}";
+    private static String UNKNOWN_TOKEN_TEMPLATE = "{x%d}";
+
+    private DatabaseHandler dbHandler;
+    private String captureFile;
+    private long maxRequests;
+    private BlockingQueue<CapturedRequest> queue;
+    private Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private long startNanos;
+    private volatile boolean stopped;
+    private AtomicLong capturedCount = new AtomicLong();
+    private AtomicLong droppedCount = new AtomicLong();
+    private Thread writerThread;
+
+    // Only used by the writer thread
+    private Map<Integer, String> boardTokens = new HashMap<>();
+    private Map<String, String> keyTokens = new HashMap<>();
+    private int unknownCount;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to look up the leaderboards of captured keys
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public TrafficCapture(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        captureFile = cfg.getProperty("trafficCaptureFile");
+        maxRequests = Long.parseLong(cfg.getProperty("trafficCaptureMaxRequests", "1000000"));
+        queue = new ArrayBlockingQueue<>(Integer.parseInt(cfg.getProperty("trafficCaptureBufferSize", "8192")));
+    }
+
+    /**
+     * Opens the capture file, and starts the background writer thread.
+     *
+     * @throws IOException If the capture file could not be opened
+     */
+    public void start() throws IOException {
+        OutputStream out = new FileOutputStream(captureFile);
+        if(captureFile.endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 65536);
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+
+        startNanos = System.nanoTime();
+        writerThread = new Thread(() -> runWriter(writer), "traffic-capture-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Capturing traffic to " + captureFile + " (at most " + maxRequests + " requests)");
+    }
+
+    /**
+     * Stops capturing, and waits for the requests already captured to be written and the capture file to be closed.
+     */
+    public void stop() {
+        stopped = true;
+        if(writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Captures a handled request.  Requests made after 'trafficCaptureMaxRequests' have been captured, or while the
+     * queue is full, are not captured.
+     *
+     * @param route Route of the request
+     * @param post True if the request is a POST request
+     * @param path Request path, as sent (not decoded)
+     * @param query Query string of the request, or null
+     * @param body Body of the request (only kept for POST requests)
+     * @param status HTTP status of the response
+     * @param requestStartNanos Value of System.nanoTime() when the request started
+     * @param durationNanos Time taken to handle the request, in nanoseconds
+     */
+    public void capture(final AccessRoute route, final boolean post, final String path, final String query,
+                        final String body, final int status, final long requestStartNanos, final long durationNanos) {
+        if(stopped || route == AccessRoute.OTHER || route == AccessRoute.INGEST) {
+            return;
+        }
+        if(capturedCount.incrementAndGet() > maxRequests) {
+            stopped = true;
+            return;
+        }
+        if(!queue.offer(new CapturedRequest(route, post, path, query, post ? body : null, status,
+                                            requestStartNanos, durationNanos))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes captured requests until capturing is stopped and the queue is empty, and then closes the capture file.
+     * The file is flushed whenever the queue runs empty, so that an uncompressed capture that is interrupted loses
+     * little (a gzipped capture is only complete once it has been closed).
+     */
+    private void runWriter(final BufferedWriter writer) {
+        long written = 0;
+        try {
+            while(!stopped || !queue.isEmpty()) {
+                CapturedRequest request = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(request == null) {
+                    writer.flush();
+                    continue;
+                }
+                String path = tokenize(request, writer);
+                writer.write(gson.toJson(CaptureEntry.request(
+                        TimeUnit.NANOSECONDS.toMillis(Math.max(0, request.startNanos - startNanos)),
+                        request.post ? "POST" : "GET", path, request.query, request.body, request.status,
+                        TimeUnit.NANOSECONDS.toMicros(request.durationNanos))));
+                writer.newLine();
+                written++;
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }catch(IOException e) {
+            logger.error("Failed to write traffic capture " + captureFile + " : " + e.getMessage());
+            stopped = true;
+        }finally {
+            try {
+                writer.close();
+            }catch(IOException e) {
+                logger.error("Failed to close traffic capture " + captureFile + " : " + e.getMessage());
+            }
+            logger.info("Traffic capture to " + captureFile + " stopped after " + written + " requests (" +
+                        droppedCount.get() + " dropped)");
+        }
+    }
+
+    /**
+     * Returns the path of the param request with its leaderboard keys (index 3 of the path) replaced by tokens.  A
+     * line introducing the leaderboard is written first for leaderboards that have not been seen before.
+     */
+    private String tokenize(final CapturedRequest request, final BufferedWriter writer) throws IOException {
+        String[] pathArray = request.path.split("/", -1);
+        if(pathArray.length < 4 || request.route == AccessRoute.CREATE) {
+            return request.path;
+        }
+
+        if(request.route == AccessRoute.MULTIGET) {
+            // MULTIGET takes a comma separated list of public keys, each optionally followed by :<N>
+            String[] boardSpecs = pathArray[3].split(",", -1);
+            for(int i=0; i<boardSpecs.length; i++) {
+                int colon = boardSpecs[i].indexOf(':');
+                String key = (colon < 0) ? boardSpecs[i] : boardSpecs[i].substring(0, colon);
+                boardSpecs[i] = tokenFor(key, false, writer) + ((colon < 0) ? "" : boardSpecs[i].substring(colon));
+            }
+            pathArray[3] = String.join(",", boardSpecs);
+        }else {
+            boolean privateKey = request.route == AccessRoute.ADD || request.route == AccessRoute.BATCH_ADD ||
+                                 request.route == AccessRoute.DELETE || request.route == AccessRoute.CLEAR;
+            pathArray[3] = tokenFor(pathArray[3], privateKey, writer);
+        }
+        return String.join("/", pathArray);
+    }
+
+    /**
+     * Returns the token for the param key, looking up its leaderboard the first time the key is seen.
+     */
+    private String tokenFor(final String key, final boolean privateKey, final BufferedWriter writer) throws IOException {
+        String token = keyTokens.get(key);
+        if(token != null) {
+            return token;
+        }
+
+        Leaderboard leaderboard = null;
+        boolean lookedUp = false;
+        if(KEY_PATTERN.matcher(key).matches()) {
+            try {
+                leaderboard = privateKey ? dbHandler.getLeaderboardFromPrivKey(key) : dbHandler.getLeaderboardFromPubKey(key);
+                lookedUp = true;
+            }catch(SQLException e) {
+                logger.warn("Failed to look up a captured key, it is captured as unknown : " + e.getMessage());
+            }
+        }
+
+        if(leaderboard == null) {
+            token = String.format(UNKNOWN_TOKEN_TEMPLATE, ++unknownCount);
+        }else {
+            String boardToken = boardTokens.get(leaderboard.getBoardId());
+            if(boardToken == null) {
+                boardToken = "b" + (boardTokens.size() + 1);
+                boardTokens.put(leaderboard.getBoardId(), boardToken);
+                writer.write(gson.toJson(CaptureEntry.board(boardToken, leaderboard.getWindowType().name(),
+                                                            leaderboard.getRankingMode().name())));
+                writer.newLine();
+            }
+            token = String.format(privateKey ? PRIVATE_TOKEN_TEMPLATE : PUBLIC_TOKEN_TEMPLATE, boardToken);
+        }
+
+        // A key that could not be looked up (eg. while the database is unavailable) is looked up again next time
+        if(lookedUp) {
+            keyTokens.put(key, token);
+        }
+        return token;
+    }
+
+    /**
+     * A request waiting to be written to the capture file.
+     */
+    private static class CapturedRequest {
+        private AccessRoute route;
+        private boolean post;
+        private String path;
+        private String query;
+        private String body;
+        private int status;
+        private long startNanos;
+        private long durationNanos;
+
+        private CapturedRequest(final AccessRoute route, final boolean post, final String path, final String query,
+                                final String body, final int status, final long startNanos, final long durationNanos) {
+            this.route = route;
+            this.post = post;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+            this.status = status;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.tdberg.apps.leaderboard.capture;
+
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.utils.ApiKey;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replays a traffic capture (see TrafficCapture) against a running service, and reports the throughput and latency
+ * percentiles of the replay, next to the latencies that were captured.  A new leaderboard (with the same time window
+ * and ranking mode) is created on the service for each leaderboard in the capture, and the key tokens of the capture
+ * are replaced by the keys of the new leaderboards.
+ * NOTE: Requests are sent at the times they were captured at, divided by the speed (eg. 2 replays an hour of traffic in
+ *       half an hour), or as fast as possible if the speed is 0.  In the 'open' model, requests are sent on schedule
+ *       by a pool of threads whatever the service's latency, and latency is measured from the time each request was
+ *       due, so that time spent queued behind a slow service is counted.  In the 'closed' model, each thread sends
+ *       its next request only once its last one has been answered, the way a fixed number of clients would, and
+ *       latency is measured from the time each request was sent.  The new leaderboards start out empty, so reads
+ *       early in a replay find fewer records than they did when captured.
+ */
+public class TrafficReplayer {
+    private static String OPEN = "open";
+    private static String CLOSED = "closed";
+    private static String POST = "POST";
+    private static String ERROR = "ERROR";
+    private static String CREATE_URL_TEMPLATE = "http://%s:%d/lb/CREATE/%s/%s";
+    private static String URL_TEMPLATE = "http://%s:%d%s";
+    private static Pattern TOKEN_PATTERN = Pattern.compile("\\{(x\\d+|b\\d+\\.(priv|pub))\\}");
+    // Status recorded for requests that got no response
+    private static int FAILED_STATUS = 0;
+
+    private String captureFile;
+    private String host;
+    private int port;
+    private boolean closedModel;
+    private double speed;
+    private int threads;
+    private int maxPendingRequests;
+    private Gson gson = new Gson();
+    private Map<String, String> tokenKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Filled out constructor
+     *
+     * @param captureFile Capture file to replay (read as gzip if its name ends in '.gz')
+     * @param host Host that the service is running on
+     * @param port Port of the HTTP service
+     * @param closedModel True to replay with the closed model, false for the open model
+     * @param speed Speed to replay at (1 for the captured rate), or 0 to replay as fast as possible
+     * @param threads Number of threads (and connections) to send requests from
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public TrafficReplayer(final String captureFile, final String host, final int port, final boolean closedModel,
+                           final double speed, final int threads, final Properties cfg) {
+        this.captureFile = captureFile;
+        this.host = host;
+        this.port = port;
+        this.closedModel = closedModel;
+        this.speed = speed;
+        this.threads = threads;
+        maxPendingRequests = Integer.parseInt(cfg.getProperty("replayMaxPendingRequests", "10000"));
+    }
+
+    /**
+     * Replays the capture, and waits for every request to be answered.
+     *
+     * @return Outcome of the replay
+     * @throws IOException If the capture could not be read, or its leaderboards could not be created
+     * @throws InterruptedException If interrupted while waiting for the replay to finish
+     */
+    public Result run() throws IOException, InterruptedException {
+        // Connections are kept alive for reuse, but only up to this many per host
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+        int boards = createBoards();
+
+        Recorder recorder = new Recorder();
+        long startNanos = System.nanoTime();
+        try(BufferedReader reader = openCapture()) {
+            if(closedModel) {
+                runClosed(reader, startNanos, recorder);
+            }else {
+                runOpen(reader, startNanos, recorder);
+            }
+        }
+        return recorder.toResult(closedModel ? CLOSED : OPEN, speed, threads, boards, System.nanoTime() - startNanos);
+    }
+
+    private BufferedReader openCapture() throws IOException {
+        InputStream in = new FileInputStream(captureFile);
+        if(captureFile.endsWith(".gz")) {
+            in = new GZIPInputStream(in, 65536);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+    }
+
+    /**
+     * Reads the leaderboards introduced by the capture, and creates a new leaderboard on the service for each of them.
+     *
+     * @return Number of leaderboards created
+     */
+    private int createBoards() throws IOException {
+        int boards = 0;
+        try(BufferedReader reader = openCapture()) {
+            CaptureEntry entry;
+            while((entry = nextEntry(reader)) != null) {
+                if(!entry.isBoard()) {
+                    continue;
+                }
+                URL url = new URL(String.format(CREATE_URL_TEMPLATE, host, port, entry.getWindow(), entry.getRanking()));
+                HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
+                String response;
+                try(InputStream in = httpConnection.getInputStream()) {
+                    response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                try {
+                    JsonObject leaderboard = JsonParser.parseString(response).getAsJsonObject()
+                                                       .getAsJsonObject("tdberg").getAsJsonObject("leaderboard");
+                    tokenKeys.put(entry.getBoard() + ".priv", leaderboard.get("privateKey").getAsString());
+                    tokenKeys.put(entry.getBoard() + ".pub", leaderboard.get("publicKey").getAsString());
+                }catch(RuntimeException e) {
+                    throw new IOException("Failed to create a leaderboard for " + entry.getBoard() + " : " + response);
+                }
+                boards++;
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Returns the next readable entry of the capture, or null at the end of it.  Unreadable lines (eg. the last line of
+     * a capture that was cut short) are skipped.
+     */
+    private CaptureEntry nextEntry(final BufferedReader reader) throws IOException {
+        String line;
+        while((line = reader.readLine()) != null) {
+            try {
+                CaptureEntry entry = gson.fromJson(line, CaptureEntry.class);
+                if(entry != null && (entry.isBoard() || entry.getPath() != null)) {
+                    return entry;
+                }
+            }catch(JsonParseException e) {
+                // Skipped
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next captured request, skipping the lines that introduce leaderboards, or null at the end of the
+     * capture.
+     */
+    private CaptureEntry nextRequest(final BufferedReader reader) throws IOException {
+        synchronized(reader) {
+            CaptureEntry entry;
+            do {
+                entry = nextEntry(reader);
+            }while(entry != null && entry.isBoard());
+            return entry;
+        }
+    }
+
+    /**
+     * Returns the value of System.nanoTime() that the param request is due to be sent at.
+     */
+    private long dueNanos(final CaptureEntry entry, final long startNanos) {
+        if(speed <= 0) {
+            return System.nanoTime();
+        }
+        return startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(entry.getAt()) / speed);
+    }
+
+    private static void sleepUntil(final long dueNanos) {
+        long remainingNanos;
+        while((remainingNanos = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remainingNanos);
+        }
+    }
+
+    /**
+     * Sends every request when it is due, from a pool of threads.  The capture stops being read while
+     * 'replayMaxPendingRequests' requests are waiting for a thread or for their response.
+     */
+    private void runOpen(final BufferedReader reader, final long startNanos, final Recorder recorder)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "replay-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore pending = new Semaphore(maxPendingRequests);
+        try {
+            CaptureEntry entry;
+            while((entry = nextRequest(reader)) != null) {
+                long dueNanos = dueNanos(entry, startNanos);
+                sleepUntil(dueNanos);
+                pending.acquire();
+                CaptureEntry request = entry;
+                pool.execute(() -> {
+                    try {
+                        send(request, dueNanos, recorder);
+                    }finally {
+                        pending.release();
+                    }
+                });
+            }
+        }finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Runs the threads, each of which sends the next request of the capture (once it is due) as soon as its last one
+     * has been answered.
+     */
+    private void runClosed(final BufferedReader reader, final long startNanos, final Recorder recorder)
+            throws IOException, InterruptedException {
+        List<Thread> senders = new ArrayList<>();
+        List<IOException> failures = new ArrayList<>();
+        for(int i=0; i<threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    CaptureEntry entry;
+                    while((entry = nextRequest(reader)) != null) {
+                        sleepUntil(dueNanos(entry, startNanos));
+                        send(entry, System.nanoTime(), recorder);
+                    }
+                }catch(IOException e) {
+                    synchronized(failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "replay-sender-" + i);
+            thread.start();
+            senders.add(thread);
+        }
+        for(Thread thread : senders) {
+            thread.join();
+        }
+
+        if(!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
+    /**
+     * Sends the param captured request, with its key tokens replaced, and records its outcome.  Error responses (which
+     * the service sends with status 200) are recorded with status 400, as they are in the capture.
+     *
+     * @param entry Captured request
+     * @param fromNanos Value of System.nanoTime() that the latency of the request is measured from
+     * @param recorder Recorder of the outcomes
+     */
+    private void send(final CaptureEntry entry, final long fromNanos, final Recorder recorder) {
+        String path = replaceTokens(entry.getPath());
+        boolean post = POST.equals(entry.getMethod());
+        int status;
+        try {
+            URL url = new URL(String.format(URL_TEMPLATE, host, port, path) +
+                              ((entry.getQuery() == null) ? "" : "?" + entry.getQuery()));
+            HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
+            if(post) {
+                httpConnection.setRequestMethod(POST);
+                httpConnection.setDoOutput(true);
+                httpConnection.setRequestProperty("Content-Type", "application/json");
+                try(OutputStream out = httpConnection.getOutputStream()) {
+                    out.write(((entry.getBody() == null) ? "" : entry.getBody()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = httpConnection.getResponseCode();
+            // The response is read fully either way, so that the connection can be reused
+            InputStream in = (status < 400) ? httpConnection.getInputStream() : httpConnection.getErrorStream();
+            byte[] response = new byte[0];
+            if(in != null) {
+                try(InputStream responseIn = in) {
+                    response = responseIn.readAllBytes();
+                }
+            }
+            if(status == 200 && response.length >= ERROR.length() &&
+                    new String(response, 0, ERROR.length(), StandardCharsets.UTF_8).equals(ERROR)) {
+                status = 400;
+            }
+        }catch(IOException e) {
+            status = FAILED_STATUS;
+        }
+        recorder.record(AccessRoute.fromPath(entry.getPath(), post).name(), entry.getStatus(), status,
+                        System.nanoTime() - fromNanos, entry.getMicros());
+    }
+
+    /**
+     * Returns the param path with its key tokens replaced by the keys of the new leaderboards.  Tokens for keys that
+     * did not belong to a leaderboard are replaced by new random keys, which belong to no leaderboard either.
+     */
+    private String replaceTokens(final String path) {
+        Matcher matcher = TOKEN_PATTERN.matcher(path);
+        return matcher.replaceAll(match -> Matcher.quoteReplacement(
+                tokenKeys.computeIfAbsent(match.group(1), token -> ApiKey.createPrivateKey())));
+    }
+
+    /**
+     * Collects the outcomes of the replayed requests, from every sending thread.
+     */
+    private static class Recorder {
+        private Map<String, Latencies> routeLatencies = new ConcurrentHashMap<>();
+        private Latencies latencies = new Latencies();
+        private Latencies capturedLatencies = new Latencies();
+        private Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private LongAdder statusMismatches = new LongAdder();
+
+        private void record(final String route, final int capturedStatus, final int status, final long latencyNanos,
+                            final long capturedMicros) {
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            latencies.add(latencyMicros);
+            routeLatencies.computeIfAbsent(route, name -> new Latencies()).add(latencyMicros);
+            capturedLatencies.add(capturedMicros);
+            statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+            if(status != capturedStatus) {
+                statusMismatches.increment();
+            }
+        }
+
+        private Result toResult(final String model, final double speed, final int threads, final int boards,
+                                final long elapsedNanos) {
+            Map<String, Long> statusCounts = new TreeMap<>();
+            statuses.forEach((status, count) ->
+                    statusCounts.put((status == FAILED_STATUS) ? "FAILED" : String.valueOf(status), count.sum()));
+            Map<String, LatencySummary> routes = new TreeMap<>();
+            routeLatencies.forEach((route, routeLatency) -> routes.put(route, routeLatency.summarize()));
+
+            LatencySummary latency = latencies.summarize();
+            return new Result(model, speed, threads, boards, latency.count, elapsedNanos, statusCounts,
+                              statusMismatches.sum(), latency, capturedLatencies.summarize(), routes);
+        }
+    }
+
+    /**
+     * A growable list of latencies, in microseconds.
+     */
+    private static class Latencies {
+        private long[] values = new long[1024];
+        private int count;
+
+        private synchronized void add(final long value) {
+            if(count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        private synchronized LatencySummary summarize() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return new LatencySummary(sorted);
+        }
+    }
+
+    /**
+     * This public inner class describes the latency percentiles of a set of requests, in microseconds.  This is
+     * intended to be serialized into JSON as part of a Result.
+     */
+    public static class LatencySummary {
+        private long count;
+        private long p50;
+        private long p90;
+        private long p99;
+        private long p999;
+        private long max;
+
+        public LatencySummary(final long[] sorted) {
+            count = sorted.length;
+            p50 = percentile(sorted, 0.5);
+            p90 = percentile(sorted, 0.9);
+            p99 = percentile(sorted, 0.99);
+            p999 = percentile(sorted, 0.999);
+            max = (sorted.length == 0) ? 0 : sorted[sorted.length - 1];
+        }
+
+        private static long percentile(final long[] sorted, final double fraction) {
+            if(sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+        }
+    }
+
+    /**
+     * This public inner class describes the outcome of a replay.  This is intended to be serialized into JSON and
+     * printed.
+     */
+    public static class Result {
+        private String model;
+        private double speed;
+        private int threads;
+        private int leaderboards;
+        private long requests;
+        private long elapsedMillis;
+        private long requestsPerSecond;
+        private Map<String, Long> statuses;
+        private long statusMismatches;
+        private LatencySummary latencyMicros;
+        private LatencySummary capturedLatencyMicros;
+        private Map<String, LatencySummary> routes;
+
+        public Result(final String model, final double speed, final int threads, final int leaderboards,
+                      final long requests, final long elapsedNanos, final Map<String, Long> statuses,
+                      final long statusMismatches, final LatencySummary latencyMicros,
+                      final LatencySummary capturedLatencyMicros, final Map<String, LatencySummary> routes) {
+            this.model = model;
+            this.speed = speed;
+            this.threads = threads;
+            this.leaderboards = leaderboards;
+            this.requests = requests;
+            this.elapsedMillis = elapsedNanos / 1000000;
+            this.requestsPerSecond = (elapsedNanos > 0) ? requests * 1000000000L / elapsedNanos : 0;
+            this.statuses = statuses;
+            this.statusMismatches = statusMismatches;
+            this.latencyMicros = latencyMicros;
+            this.capturedLatencyMicros = capturedLatencyMicros;
+            this.routes = routes;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.tdberg.apps.leaderboard.export;
+
+import com.tdberg.apps.leaderboard.formats.CsvRecordWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+/**
+ * Writes exported records as RFC 4180 CSV, with a header row.  The columns are those of a CSV GET response, preceded
+ * by the public key and window bucket of each record's leaderboard.
+ */
+public class CsvExportWriter implements ExportSink {
+    private static String HEADER = "board,bucket,recordId,name,score,time,notes,recordTime\r\n";
+
+    private Writer out;
+    private StringBuilder line = new StringBuilder();
+
+    /**
+     * Default constructor
+     *
+     * @param out Writer to write the records to
+     * @throws IOException If the header row could not be written
+     */
+    public CsvExportWriter(final Writer out) throws IOException {
+        this.out = out;
+        out.write(HEADER);
+    }
+
+    @Override
+    public void writeRecord(final String pubKey, final int bucket, final int recordId, final String name,
+                            final int score, final int time, final String notes, final Timestamp recordTime)
+            throws IOException {
+        // The line buffer is reused for every record, so memory use does not grow with the size of the export
+        line.setLength(0);
+        CsvRecordWriter.appendField(line, pubKey);
+        line.append(',').append(bucket).append(',').append(recordId).append(',');
+        CsvRecordWriter.appendField(line, name);
+        line.append(',').append(score).append(',').append(time).append(',');
+        CsvRecordWriter.appendField(line, notes);
+        line.append(',');
+        if(recordTime != null) {
+            line.append(recordTime.toInstant().toString());
+        }
+        line.append("\r\n");
+        out.append(line);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+}
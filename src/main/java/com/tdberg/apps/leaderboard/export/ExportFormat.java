@@ -0,0 +1,79 @@
+package com.tdberg.apps.leaderboard.export;
+
+import com.tdberg.apps.leaderboard.importer.CsvImportReader;
+import com.tdberg.apps.leaderboard.importer.ImportSource;
+import com.tdberg.apps.leaderboard.importer.NdjsonImportReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Describes the formats that records can be exported in.  Exported files can be imported again in the same format.
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv; charset=utf-8", "csv");
+
+    private String contentType;
+    private String fileExtension;
+
+    ExportFormat(final String contentType, final String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Returns a new ExportSink that writes records in this format to the param Writer.
+     *
+     * @param out Writer to write the records to
+     * @return a new ExportSink for this format
+     * @throws IOException If the start of the export could not be written
+     */
+    public ExportSink newWriter(final Writer out) throws IOException {
+        switch(this) {
+            case CSV:
+                return new CsvExportWriter(out);
+            default:
+                return new NdjsonExportWriter(out);
+        }
+    }
+
+    /**
+     * Returns a new ImportSource that reads records in this format from the param Reader.
+     *
+     * @param in Reader to read the records from
+     * @return a new ImportSource for this format
+     */
+    public ImportSource newReader(final Reader in) {
+        switch(this) {
+            case CSV:
+                return new CsvImportReader(in);
+            default:
+                return new NdjsonImportReader(in);
+        }
+    }
+
+    /**
+     * Returns the ExportFormat with the param name (case insensitive), or null if there is no such ExportFormat.
+     *
+     * @param name Name of the ExportFormat
+     * @return ExportFormat with the param name, or null
+     */
+    public static ExportFormat fromName(final String name) {
+        for(ExportFormat format : values()) {
+            if(format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
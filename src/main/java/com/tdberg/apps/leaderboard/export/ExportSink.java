@@ -0,0 +1,34 @@
+package com.tdberg.apps.leaderboard.export;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+
+/**
+ * Receives exported records one at a time, as they are read from the database, and writes them straight to an output.
+ * Unlike a RecordSink, each record carries the leaderboard and window it belongs to, since an export may cover many
+ * leaderboards.
+ */
+public interface ExportSink {
+    /**
+     * Writes the next record.
+     *
+     * @param pubKey Public key of the leaderboard the record belongs to
+     * @param bucket Window bucket the record belongs to (0 for leaderboards without a window)
+     * @param recordId Record ID (unique identifier) of the record
+     * @param name Player name of the record (may be null)
+     * @param score Player score of the record
+     * @param time Player time of the record
+     * @param notes Notes string of the record (may be null)
+     * @param recordTime Time that the record was submitted to the service (may be null)
+     * @throws IOException If the record could not be written
+     */
+    void writeRecord(String pubKey, int bucket, int recordId, String name, int score, int time, String notes,
+                     Timestamp recordTime) throws IOException;
+
+    /**
+     * Flushes any records that are still buffered to the output.  The output itself is not closed.
+     *
+     * @throws IOException If the records could not be written
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,56 @@
+package com.tdberg.apps.leaderboard.export;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+/**
+ * Writes exported records as newline delimited JSON, one object per line.  Null fields are left out, and the record
+ * time is written as an ISO-8601 UTC instant.
+ */
+public class NdjsonExportWriter implements ExportSink {
+    private Writer out;
+    private JsonWriter jsonWriter;
+
+    /**
+     * Default constructor
+     *
+     * @param out Writer to write the records to
+     */
+    public NdjsonExportWriter(final Writer out) {
+        this.out = out;
+        jsonWriter = new JsonWriter(out);
+        // Lenient, so that one writer can write a top level object per line
+        jsonWriter.setLenient(true);
+    }
+
+    @Override
+    public void writeRecord(final String pubKey, final int bucket, final int recordId, final String name,
+                            final int score, final int time, final String notes, final Timestamp recordTime)
+            throws IOException {
+        jsonWriter.beginObject();
+        jsonWriter.name("board").value(pubKey);
+        jsonWriter.name("bucket").value(bucket);
+        jsonWriter.name("recordId").value(recordId);
+        if(name != null) {
+            jsonWriter.name("name").value(name);
+        }
+        jsonWriter.name("score").value(score);
+        jsonWriter.name("time").value(time);
+        if(notes != null) {
+            jsonWriter.name("notes").value(notes);
+        }
+        if(recordTime != null) {
+            jsonWriter.name("recordTime").value(recordTime.toInstant().toString());
+        }
+        jsonWriter.endObject();
+        out.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,74 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Encodes records as RFC 4180 CSV, with a header row.  The record time is written as an ISO-8601 UTC instant, and
+ * null fields are written as empty fields.
+ */
+public class CsvRecordWriter implements RecordWriter {
+    private static String CONTENT_TYPE = "text/csv; charset=utf-8";
+    private static String HEADER = "recordId,name,score,time,notes,recordTime\r\n";
+
+    private StringBuilder buffer;
+
+    /**
+     * Default constructor
+     */
+    public CsvRecordWriter() {
+        buffer = new StringBuilder(HEADER);
+    }
+
+    @Override
+    public void writeRecord(final int recordId, final String name, final int score, final int time, final String notes,
+                            final Timestamp recordTime) {
+        buffer.append(recordId).append(',');
+        appendField(buffer, name);
+        buffer.append(',').append(score).append(',').append(time).append(',');
+        appendField(buffer, notes);
+        buffer.append(',');
+        if(recordTime != null) {
+            buffer.append(recordTime.toInstant().toString());
+        }
+        buffer.append("\r\n");
+    }
+
+    @Override
+    public EncodedResponse finish() {
+        return new EncodedResponse(CONTENT_TYPE, buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the param String field to the param buffer, quoting it if it contains a comma, quote or line break.
+     *
+     * @param buffer StringBuilder to append to
+     * @param field Field to append (null is appended as an empty field)
+     */
+    public static void appendField(final StringBuilder buffer, final String field) {
+        if(field == null) {
+            return;
+        }
+
+        boolean needsQuotes = false;
+        for(int i=0; i<field.length() && !needsQuotes; i++) {
+            char c = field.charAt(i);
+            needsQuotes = (c == ',' || c == '"' || c == '\r' || c == '\n');
+        }
+
+        if(!needsQuotes) {
+            buffer.append(field);
+            return;
+        }
+
+        buffer.append('"');
+        for(int i=0; i<field.length(); i++) {
+            char c = field.charAt(i);
+            if(c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+}
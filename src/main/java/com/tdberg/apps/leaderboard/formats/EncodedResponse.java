@@ -0,0 +1,63 @@
+package com.tdberg.apps.leaderboard.formats;
+
+/**
+ * An encoded response payload, along with the content type that it should be sent with.
+ * NOTE: The status defaults to 200.  The version is only set for responses that describe a single leaderboard, and
+ *       is sent to the user so that it can be passed back on a long-poll GET.
+ */
+public class EncodedResponse {
+    private String contentType;
+    private byte[] body;
+    private int status = 200;
+    private Long version;
+    private boolean stale;
+
+    /**
+     * Filled out constructor
+     *
+     * @param contentType HTTP content type of the payload
+     * @param body Encoded payload
+     */
+    public EncodedResponse(final String contentType, final byte[] body) {
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setStatus(final int status) {
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setVersion(final Long version) {
+        this.version = version;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setStale(final boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * Returns whether the response was served from the cache because the database was unavailable, so that it may
+     * not reflect the latest changes.
+     *
+     * @return True if the response is stale
+     */
+    public boolean isStale() {
+        return stale;
+    }
+}
@@ -0,0 +1,94 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Encodes records as the JSON leaderboard document:  {"tdberg": {"leaderboard": {"entry": [...]}}}
+ * NOTE: Each entry has the same fields (and the same serialization of the record time) as a serialized
+ *       Record.UserFacingRecord, so this output is identical to serializing a List of UserFacingRecords with Gson.
+ *       Records written as ranked records have an additional 'rank' field.
+ */
+public class JsonRecordWriter implements RecordWriter, RankedRecordSink {
+    private static String CONTENT_TYPE = "application/json";
+    private static String PREFIX = "{\"tdberg\": {\"leaderboard\": {\"entry\": ";
+    private static String SUFFIX = "}}}";
+    private static Gson gson = new Gson();
+
+    private StringWriter buffer;
+    private JsonWriter jsonWriter;
+
+    /**
+     * Default constructor
+     */
+    public JsonRecordWriter() {
+        try {
+            buffer = new StringWriter();
+            buffer.write(PREFIX);
+            jsonWriter = new JsonWriter(buffer);
+            // Gson escapes HTML characters by default, so do the same here
+            jsonWriter.setHtmlSafe(true);
+            jsonWriter.beginArray();
+        }catch(IOException e) {
+            // A StringWriter never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void writeRecord(final int recordId, final String name, final int score, final int time, final String notes,
+                            final Timestamp recordTime) {
+        writeEntry(null, recordId, name, score, time, notes, recordTime);
+    }
+
+    @Override
+    public void writeRecord(final int rank, final int recordId, final String name, final int score, final int time,
+                            final String notes, final Timestamp recordTime) {
+        writeEntry(rank, recordId, name, score, time, notes, recordTime);
+    }
+
+    private void writeEntry(final Integer rank, final int recordId, final String name, final int score, final int time,
+                            final String notes, final Timestamp recordTime) {
+        try {
+            // Null fields are left out, the same as Gson does by default
+            jsonWriter.beginObject();
+            if(rank != null) {
+                jsonWriter.name("rank").value(rank);
+            }
+            jsonWriter.name("recordId").value(recordId);
+            if(name != null) {
+                jsonWriter.name("name").value(name);
+            }
+            jsonWriter.name("score").value(score);
+            jsonWriter.name("time").value(time);
+            if(notes != null) {
+                jsonWriter.name("notes").value(notes);
+            }
+            if(recordTime != null) {
+                jsonWriter.name("recordTime");
+                gson.toJson(recordTime, Timestamp.class, jsonWriter);
+            }
+            jsonWriter.endObject();
+        }catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public EncodedResponse finish() {
+        try {
+            jsonWriter.endArray();
+            jsonWriter.flush();
+        }catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        buffer.write(SUFFIX);
+
+        return new EncodedResponse(CONTENT_TYPE, buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Encodes records as a MessagePack document.  The document is a single array (always encoded as array 32, so that
+ * its length can be filled in once all records have been written), where each element is a 6 element array:
+ *           [recordId, name, score, time, notes, recordTime]
+ * name and notes are strings or nil, and recordTime is the submission time in milliseconds since the epoch (or nil).
+ * NOTE: Only the small subset of MessagePack that is needed for records is implemented here.
+ */
+public class MsgPackRecordWriter implements RecordWriter {
+    private static String CONTENT_TYPE = "application/x-msgpack";
+    private static int RECORD_FIELD_COUNT = 6;
+
+    private ByteArrayOutputStream buffer;
+    private int recordCount;
+
+    /**
+     * Default constructor
+     */
+    public MsgPackRecordWriter() {
+        buffer = new ByteArrayOutputStream();
+        // array 32 header, with the length filled in by finish()
+        buffer.write(0xdd);
+        writeRaw32(0);
+    }
+
+    @Override
+    public void writeRecord(final int recordId, final String name, final int score, final int time, final String notes,
+                            final Timestamp recordTime) {
+        buffer.write(0x90 | RECORD_FIELD_COUNT);
+        writeInt(recordId);
+        writeString(name);
+        writeInt(score);
+        writeInt(time);
+        writeString(notes);
+        if(recordTime != null) {
+            writeInt(recordTime.getTime());
+        }else {
+            buffer.write(0xc0);
+        }
+        recordCount++;
+    }
+
+    @Override
+    public EncodedResponse finish() {
+        byte[] body = buffer.toByteArray();
+        body[1] = (byte) (recordCount >>> 24);
+        body[2] = (byte) (recordCount >>> 16);
+        body[3] = (byte) (recordCount >>> 8);
+        body[4] = (byte) recordCount;
+
+        return new EncodedResponse(CONTENT_TYPE, body);
+    }
+
+    /**
+     * Writes the param value using the smallest MessagePack integer encoding that holds it.
+     *
+     * @param value Value to write
+     */
+    private void writeInt(final long value) {
+        if(value >= -32 && value <= 127) {
+            // positive or negative fixint
+            buffer.write((int) value);
+        }else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            buffer.write(0xd0);
+            buffer.write((int) value);
+        }else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            buffer.write(0xd1);
+            buffer.write((int) (value >>> 8));
+            buffer.write((int) value);
+        }else if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            buffer.write(0xd2);
+            writeRaw32((int) value);
+        }else {
+            buffer.write(0xd3);
+            writeRaw32((int) (value >>> 32));
+            writeRaw32((int) value);
+        }
+    }
+
+    /**
+     * Writes the param value as a MessagePack string (or nil if the value is null).
+     *
+     * @param value Value to write
+     */
+    private void writeString(final String value) {
+        if(value == null) {
+            buffer.write(0xc0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length < 32) {
+            buffer.write(0xa0 | bytes.length);
+        }else if(bytes.length < 256) {
+            buffer.write(0xd9);
+            buffer.write(bytes.length);
+        }else if(bytes.length < 65536) {
+            buffer.write(0xda);
+            buffer.write(bytes.length >>> 8);
+            buffer.write(bytes.length);
+        }else {
+            buffer.write(0xdb);
+            writeRaw32(bytes.length);
+        }
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the param value as 4 big endian bytes.
+     *
+     * @param value Value to write
+     */
+    private void writeRaw32(final int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+}
@@ -0,0 +1,23 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.sql.Timestamp;
+
+/**
+ * Receives the user facing fields of records one at a time, along with each record's rank on its leaderboard, for
+ * responses that hold a selection of records rather than a page of the leaderboard.
+ */
+@FunctionalInterface
+public interface RankedRecordSink {
+    /**
+     * Receives the next record.
+     *
+     * @param rank Rank of the record in its leaderboard window (1 being the best ranked record)
+     * @param recordId Record ID (unique identifier) of the record
+     * @param name Player name of the record (may be null)
+     * @param score Player score of the record
+     * @param time Player time of the record
+     * @param notes Notes string of the record (may be null)
+     * @param recordTime Time that the record was submitted to the service
+     */
+    void writeRecord(int rank, int recordId, String name, int score, int time, String notes, Timestamp recordTime);
+}
@@ -0,0 +1,42 @@
+package com.tdberg.apps.leaderboard.formats;
+
+/**
+ * Describes the formats that leaderboard records can be returned in.  The format is selected by the format segment of
+ * a GET request (eg. /lb/GET/<pubkey>/csv).
+ */
+public enum RecordFormat {
+    JSON,
+    CSV,
+    MSGPACK;
+
+    /**
+     * Returns a new RecordWriter that encodes records in this format.
+     *
+     * @return a new RecordWriter for this format
+     */
+    public RecordWriter newWriter() {
+        switch(this) {
+            case CSV:
+                return new CsvRecordWriter();
+            case MSGPACK:
+                return new MsgPackRecordWriter();
+            default:
+                return new JsonRecordWriter();
+        }
+    }
+
+    /**
+     * Returns the RecordFormat with the param name (case insensitive), or null if there is no such RecordFormat.
+     *
+     * @param name Name of the RecordFormat
+     * @return RecordFormat with the param name, or null
+     */
+    public static RecordFormat fromName(final String name) {
+        for(RecordFormat format : values()) {
+            if(format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.sql.Timestamp;
+
+/**
+ * Receives the user facing fields of records one at a time, in rank order.  This allows records to be encoded as
+ * they are read (eg. straight from a ResultSet), without first building a List of Record objects.
+ */
+@FunctionalInterface
+public interface RecordSink {
+    /**
+     * Receives the next record.
+     *
+     * @param recordId Record ID (unique identifier) of the record
+     * @param name Player name of the record (may be null)
+     * @param score Player score of the record
+     * @param time Player time of the record
+     * @param notes Notes string of the record (may be null)
+     * @param recordTime Time that the record was submitted to the service
+     */
+    void writeRecord(int recordId, String name, int score, int time, String notes, Timestamp recordTime);
+}
@@ -0,0 +1,13 @@
+package com.tdberg.apps.leaderboard.formats;
+
+/**
+ * A RecordSink that encodes the records it receives into a response payload of a specific format.
+ */
+public interface RecordWriter extends RecordSink {
+    /**
+     * Completes the payload.  No more records may be written after this is called.
+     *
+     * @return EncodedResponse containing the encoded records
+     */
+    EncodedResponse finish();
+}
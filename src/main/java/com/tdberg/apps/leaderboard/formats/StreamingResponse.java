@@ -0,0 +1,64 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+
+/**
+ * A response payload that is written straight to the HTTP output stream as it is produced (eg. an export of many
+ * leaderboards), rather than being encoded in memory first.  It is sent as a file download with the param file name.
+ * NOTE: The status and headers are sent before the payload is written, so a failure part way through the payload can
+ *       only cut the response short.
+ */
+public class StreamingResponse {
+    private String contentType;
+    private String fileName;
+    private Body body;
+
+    /**
+     * Writes the payload of a StreamingResponse.
+     */
+    @FunctionalInterface
+    public interface Body {
+        /**
+         * Writes the payload to the param stream.  The stream is not closed.
+         *
+         * @param out Stream to write the payload to
+         * @throws IOException If the payload could not be written
+         * @throws SQLException If the payload could not be read from the database
+         */
+        void writeTo(OutputStream out) throws IOException, SQLException;
+    }
+
+    /**
+     * Filled out constructor
+     *
+     * @param contentType HTTP content type of the payload
+     * @param fileName File name the payload is downloaded as
+     * @param body Writer of the payload
+     */
+    public StreamingResponse(final String contentType, final String fileName, final Body body) {
+        this.contentType = contentType;
+        this.fileName = fileName;
+        this.body = body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Writes the payload to the param stream.
+     *
+     * @param out Stream to write the payload to
+     * @throws IOException If the payload could not be written
+     * @throws SQLException If the payload could not be read from the database
+     */
+    public void writeTo(final OutputStream out) throws IOException, SQLException {
+        body.writeTo(out);
+    }
+}
@@ -0,0 +1,109 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an import file of RFC 4180 CSV (the format written by a CSV export).  The first row must be a header row
+ * naming the columns, which may come in any order.
+ */
+public class CsvImportReader implements ImportSource {
+    private static char BYTE_ORDER_MARK = '\uFEFF';
+
+    private Reader in;
+    private List<String> header;
+    private List<String> fields = new ArrayList<>();
+    private StringBuilder field = new StringBuilder();
+    private int rowNumber = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param in Reader to read the records from (it should be buffered, since it is read one character at a time)
+     */
+    public CsvImportReader(final Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public ImportRow nextRow() throws IOException {
+        if(header == null) {
+            if(!readLine()) {
+                return null;
+            }
+            header = new ArrayList<>(fields);
+            if(!header.isEmpty() && !header.get(0).isEmpty() && header.get(0).charAt(0) == BYTE_ORDER_MARK) {
+                header.set(0, header.get(0).substring(1));
+            }
+        }
+
+        // Blank lines are skipped
+        do {
+            if(!readLine()) {
+                return null;
+            }
+        }while(fields.size() == 1 && fields.get(0).isEmpty());
+
+        if(fields.size() > header.size()) {
+            throw new IOException("CSV row " + rowNumber + " has more fields than the header row");
+        }
+
+        ImportRow row = new ImportRow();
+        for(int i=0; i<fields.size(); i++) {
+            row.setColumn(header.get(i), fields.get(i));
+        }
+        return row;
+    }
+
+    /**
+     * Reads the fields of the next row into the fields list.  Quoted fields may contain commas, doubled quotes and
+     * line breaks.
+     *
+     * @return False if the end of the input was reached before any field
+     * @throws IOException If the input could not be read, or a quoted field is not closed
+     */
+    private boolean readLine() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        rowNumber++;
+
+        int c = in.read();
+        if(c == -1) {
+            return false;
+        }
+
+        boolean quoted = false;
+        while(true) {
+            if(quoted) {
+                if(c == -1) {
+                    throw new IOException("CSV row " + rowNumber + " has an unclosed quoted field");
+                }else if(c == '"') {
+                    c = in.read();
+                    if(c == '"') {
+                        field.append('"');
+                    }else {
+                        quoted = false;
+                        continue;
+                    }
+                }else {
+                    field.append((char) c);
+                }
+            }else if(c == -1 || c == '\n') {
+                fields.add(field.toString());
+                return true;
+            }else if(c == '\r') {
+                // A CR is only part of a line break, outside of quotes
+            }else if(c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }else if(c == '"' && field.length() == 0) {
+                quoted = true;
+            }else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+}
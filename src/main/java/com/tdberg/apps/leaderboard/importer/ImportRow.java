@@ -0,0 +1,118 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Holds one row of an import file.  The columns are those written by an export (see ExportFormat), and are set by
+ * name, as they are read, so that the columns of a file may come in any order and unknown columns are ignored.  A
+ * column whose value cannot be parsed makes the row invalid.
+ */
+public class ImportRow {
+    private static String BOARD_COLUMN = "board";
+    private static String BUCKET_COLUMN = "bucket";
+    private static String NAME_COLUMN = "name";
+    private static String SCORE_COLUMN = "score";
+    private static String TIME_COLUMN = "time";
+    private static String NOTES_COLUMN = "notes";
+    private static String RECORD_TIME_COLUMN = "recordTime";
+
+    private String board;
+    private Integer bucket;
+    private String name;
+    private Integer score;
+    private Integer time;
+    private String notes;
+    private Timestamp recordTime;
+    private boolean valid = true;
+
+    /**
+     * Sets the param column of this row from its String value.  Empty values are treated as missing.
+     *
+     * @param column Name of the column
+     * @param value Value of the column, or null if the column has no value
+     */
+    public void setColumn(final String column, final String value) {
+        String columnValue = (value == null || value.isEmpty()) ? null : value;
+
+        if(column.equals(BOARD_COLUMN)) {
+            board = columnValue;
+        }else if(column.equals(BUCKET_COLUMN)) {
+            bucket = parseInt(columnValue);
+        }else if(column.equals(NAME_COLUMN)) {
+            name = columnValue;
+        }else if(column.equals(SCORE_COLUMN)) {
+            score = parseInt(columnValue);
+        }else if(column.equals(TIME_COLUMN)) {
+            time = parseInt(columnValue);
+        }else if(column.equals(NOTES_COLUMN)) {
+            notes = columnValue;
+        }else if(column.equals(RECORD_TIME_COLUMN) && columnValue != null) {
+            try {
+                recordTime = Timestamp.from(Instant.parse(columnValue));
+            }catch(DateTimeParseException e) {
+                valid = false;
+            }
+        }
+    }
+
+    /**
+     * Marks this row as invalid if the param column is one that is imported, for columns whose value is not a
+     * String or number (eg. a JSON object).
+     *
+     * @param column Name of the column
+     */
+    public void setUnsupportedColumn(final String column) {
+        if(column.equals(BOARD_COLUMN) || column.equals(BUCKET_COLUMN) || column.equals(NAME_COLUMN) ||
+           column.equals(SCORE_COLUMN) || column.equals(TIME_COLUMN) || column.equals(NOTES_COLUMN) ||
+           column.equals(RECORD_TIME_COLUMN)) {
+            valid = false;
+        }
+    }
+
+    private Integer parseInt(final String value) {
+        if(value == null) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        }catch(NumberFormatException e) {
+            valid = false;
+            return null;
+        }
+    }
+
+    public String getBoard() {
+        return board;
+    }
+
+    public Integer getBucket() {
+        return bucket;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public Integer getTime() {
+        return time;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public Timestamp getRecordTime() {
+        return recordTime;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+}
@@ -0,0 +1,16 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.io.IOException;
+
+/**
+ * Reads the rows of an import file one at a time, so that memory use does not depend on the size of the file.
+ */
+public interface ImportSource {
+    /**
+     * Reads the next row.
+     *
+     * @return the next ImportRow, or null if there are no more rows
+     * @throws IOException If the file could not be read, or is malformed
+     */
+    ImportRow nextRow() throws IOException;
+}
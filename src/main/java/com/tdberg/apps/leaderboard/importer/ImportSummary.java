@@ -0,0 +1,95 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the outcome of an import, and maps each board named in the import file to the leaderboard that was created
+ * for it.  This is serialized into JSON and sent to the user.
+ */
+public class ImportSummary {
+    private long rowsRead;
+    private long invalidRows;
+    private long recordsInserted;
+    private long recordsUpdated;
+    private long recordsDiscarded;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private List<Board> boards = new ArrayList<>();
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getInvalidRows() {
+        return invalidRows;
+    }
+
+    public long getRecordsInserted() {
+        return recordsInserted;
+    }
+
+    public long getRecordsUpdated() {
+        return recordsUpdated;
+    }
+
+    public long getRecordsDiscarded() {
+        return recordsDiscarded;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public List<Board> getBoards() {
+        return boards;
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void invalidRow() {
+        invalidRows++;
+    }
+
+    void recordsInserted(final int count) {
+        recordsInserted += count;
+    }
+
+    void recordsUpdated(final int count) {
+        recordsUpdated += count;
+    }
+
+    void recordsDiscarded(final int count) {
+        recordsDiscarded += count;
+    }
+
+    void boardCreated(final String source, final String privateKey, final String publicKey) {
+        boards.add(new Board(source, privateKey, publicKey));
+    }
+
+    void setElapsedNanos(final long elapsedNanos) {
+        elapsedMillis = elapsedNanos / 1000000;
+        rowsPerSecond = (elapsedNanos == 0) ? 0 : rowsRead * 1000000000L / elapsedNanos;
+    }
+
+    /**
+     * A board named in the import file (by the 'board' column) and the keys of the leaderboard created for it.
+     */
+    public static class Board {
+        private String source;
+        private String privateKey;
+        private String publicKey;
+
+        public Board(final String source, final String privateKey, final String publicKey) {
+            this.source = source;
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads an import file of newline delimited JSON, with one record object per line (the format written by an NDJSON
+ * export).
+ */
+public class NdjsonImportReader implements ImportSource {
+    private JsonReader jsonReader;
+
+    /**
+     * Default constructor
+     *
+     * @param in Reader to read the records from
+     */
+    public NdjsonImportReader(final Reader in) {
+        jsonReader = new JsonReader(in);
+        // Lenient parsing allows a stream of top level objects, rather than a single JSON document
+        jsonReader.setLenient(true);
+    }
+
+    @Override
+    public ImportRow nextRow() throws IOException {
+        try {
+            if(jsonReader.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+        }catch(EOFException e) {
+            // JsonReader reports an input without any objects (eg. the export of an empty leaderboard) as ending early
+            return null;
+        }
+
+        ImportRow row = new ImportRow();
+        jsonReader.beginObject();
+        while(jsonReader.hasNext()) {
+            String column = jsonReader.nextName();
+            JsonToken token = jsonReader.peek();
+            if(token == JsonToken.NULL) {
+                jsonReader.nextNull();
+                row.setColumn(column, null);
+            }else if(token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                row.setColumn(column, jsonReader.nextString());
+            }else {
+                jsonReader.skipValue();
+                row.setUnsupportedColumn(column);
+            }
+        }
+        jsonReader.endObject();
+
+        return row;
+    }
+}
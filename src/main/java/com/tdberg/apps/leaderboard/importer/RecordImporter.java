@@ -0,0 +1,395 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bulk loads the records of an import file into new leaderboards, one leaderboard for each distinct value of the
+ * 'board' column.  Rows are collected in memory per leaderboard window, where the same rules as the ADD request are
+ * applied: only the best ranked record of each name is kept, and only the best ranked MAX_LEADERBOARD_SIZE records of
+ * a window are kept.  The collected records are written with large JDBC batches (rewritten into multi-row INSERT
+ * statements, see DbUtils.prepareBulkDbConnection), one transaction per leaderboard.
+ * NOTE: The collected records are flushed to the database whenever more than 'importMaxPendingRecords' are held, so
+ *       memory use does not depend on the size of the file.  A leaderboard that is flushed more than once has its
+ *       later records merged with its stored records (by name) and is pruned, exactly like a batch ADD.
+ * NOTE: A RecordImporter imports a single file, and is not thread safe.
+ */
+public class RecordImporter {
+    private static Logger logger = LogManager.getLogger(RecordImporter.class);
+
+    private static String NO_NAME = "NONAME";
+
+    private DatabaseHandler dbHandler;
+    private WindowType windowType;
+    private RankingMode rankingMode;
+    private Comparator<Record> rankOrder;
+    private int maxPendingRecords;
+    private int batchSize;
+    private long progressInterval;
+    private PrintStream progressOut;
+
+    private Map<String, PendingBoard> boards = new LinkedHashMap<>();
+    private Set<String> usedKeys;
+    private int pendingRecordCount = 0;
+    private int sequence = 0;
+    private ImportSummary summary = new ImportSummary();
+    private long startNanos;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     * @param cfg Properties file detailing configurable values to use for this application
+     * @param windowType Time window of the leaderboards created by the import
+     * @param rankingMode Ranking mode of the leaderboards created by the import
+     * @param progressOut Stream to print progress to in addition to the log, or null
+     */
+    public RecordImporter(final DatabaseHandler dbHandler, final Properties cfg, final WindowType windowType,
+                          final RankingMode rankingMode, final PrintStream progressOut) {
+        this.dbHandler = dbHandler;
+        this.windowType = windowType;
+        this.rankingMode = rankingMode;
+        this.progressOut = progressOut;
+        // The sequence number (held in the record ID until the record is written) breaks ties in favour of the
+        // earlier row, the same as the database does with record IDs
+        rankOrder = rankingMode.thenComparingInt(Record::getRecordId);
+        maxPendingRecords = Integer.parseInt(cfg.getProperty("importMaxPendingRecords", "500000"));
+        batchSize = Integer.parseInt(cfg.getProperty("importBatchSize", "5000"));
+        progressInterval = Long.parseLong(cfg.getProperty("importProgressInterval", "100000"));
+    }
+
+    /**
+     * Imports every row of the param source.
+     *
+     * @param source ImportSource to read the rows from
+     * @return ImportSummary describing the outcome of the import
+     * @throws IOException If the import file could not be read
+     * @throws SQLException If the records could not be written (leaderboards that were already written are kept)
+     */
+    public ImportSummary importRecords(final ImportSource source) throws IOException, SQLException {
+        startNanos = System.nanoTime();
+
+        ImportRow row;
+        while((row = source.nextRow()) != null) {
+            summary.rowRead();
+            Record record = toRecord(row);
+            if(record == null) {
+                summary.invalidRow();
+            }else {
+                String board = (row.getBoard() == null) ? "" : row.getBoard();
+                PendingBoard pendingBoard = boards.get(board);
+                if(pendingBoard == null) {
+                    pendingBoard = new PendingBoard(board);
+                    boards.put(board, pendingBoard);
+                }
+                pendingRecordCount += pendingBoard.add(record);
+            }
+
+            if(pendingRecordCount >= maxPendingRecords) {
+                flush();
+            }
+            if(summary.getRowsRead() % progressInterval == 0) {
+                reportProgress("Import progress : ");
+            }
+        }
+        flush();
+
+        reportProgress("Import finished : ");
+        return summary;
+    }
+
+    /**
+     * Converts the param row into a Record, or returns null if the row cannot be imported.
+     *
+     * @param row ImportRow to convert
+     * @return Record described by the row, or null
+     */
+    private Record toRecord(final ImportRow row) {
+        if(!row.isValid() || row.getScore() == null || (row.getTime() == null && rankingMode.isTimeRequired())) {
+            return null;
+        }
+
+        String name = row.getName();
+        if(name != null && name.equalsIgnoreCase(NO_NAME)) {
+            name = null;
+        }
+        // Over-long values would fail the whole batch they are written in, so they fail just their own row here
+        if(!DbUtils.fitsRecordColumns(name, row.getNotes())) {
+            return null;
+        }
+
+        Record record = new Record();
+        record.setRecordId(sequence++);
+        record.setName(name);
+        record.setScore(row.getScore());
+        if(row.getTime() != null) {
+            record.setTime(row.getTime());
+        }
+        record.setNotes(row.getNotes());
+        record.setSubmissionTime(row.getRecordTime());
+        // Leaderboards without a window keep everything in bucket 0, whatever bucket the row came from
+        if(windowType == WindowType.NONE) {
+            record.setBucket(0);
+        }else {
+            record.setBucket((row.getBucket() == null) ? windowType.currentBucket() : row.getBucket());
+        }
+
+        return record;
+    }
+
+    /**
+     * Writes the collected records of every leaderboard to the database, creating leaderboards that have not been
+     * written yet.  Each leaderboard is written in its own transaction.
+     *
+     * @throws SQLException If the records could not be written
+     */
+    private void flush() throws SQLException {
+        if(pendingRecordCount == 0) {
+            return;
+        }
+
+        Connection dbConnection = dbHandler.getBulkDbConnection();
+        if(dbConnection == null) {
+            throw new SQLException("No database connection for the import");
+        }
+
+        try {
+            dbConnection.setAutoCommit(false);
+            if(usedKeys == null) {
+                usedKeys = Leaderboard.getUsedKeys(dbConnection);
+            }
+
+            for(PendingBoard pendingBoard : boards.values()) {
+                if(pendingBoard.buckets.isEmpty()) {
+                    continue;
+                }
+
+                boolean created = (pendingBoard.leaderboard == null);
+                if(created) {
+                    pendingBoard.leaderboard = Leaderboard.createNewLeaderboard(usedKeys, windowType, rankingMode);
+                    DbUtils.insertLeaderboard(pendingBoard.leaderboard, dbConnection);
+                }else {
+                    // The import does not keep score statistics up to date, so they are built again when next read
+                    DbUtils.deleteBoardStats(pendingBoard.leaderboard.getBoardId(), dbConnection);
+                }
+                for(Map.Entry<Integer, PendingBucket> entry : pendingBoard.buckets.entrySet()) {
+                    writeBucket(pendingBoard, entry.getKey(), entry.getValue(), dbConnection);
+                }
+                dbConnection.commit();
+
+                pendingBoard.buckets.clear();
+                pendingBoard.flushed = true;
+                if(created) {
+                    // Logged as soon as it is committed, so that the keys are known even if a later part of the
+                    // import fails
+                    logger.info("Imported board '" + pendingBoard.source + "' into leaderboard pubkey: " +
+                                pendingBoard.leaderboard.getPubKey());
+                    summary.boardCreated(pendingBoard.source, pendingBoard.leaderboard.getPrivKey(),
+                                         pendingBoard.leaderboard.getPubKey());
+                }
+            }
+            pendingRecordCount = 0;
+        }catch(SQLException e) {
+            dbHandler.rollbackDbConnection(dbConnection);
+            throw e;
+        }finally {
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+
+    /**
+     * Writes the collected records of one leaderboard window.  The first time a leaderboard is written, its records
+     * are only inserted.  After that, they are merged with the stored records of the same name, and the window is
+     * pruned.
+     *
+     * @param pendingBoard Leaderboard the records belong to
+     * @param bucket Window bucket the records belong to
+     * @param pendingBucket Records collected for the window
+     * @param dbConnection Connection to write the records with
+     * @throws SQLException If the records could not be written
+     */
+    private void writeBucket(final PendingBoard pendingBoard, final int bucket, final PendingBucket pendingBucket,
+                             final Connection dbConnection) throws SQLException {
+        int boardId = pendingBoard.leaderboard.getBoardId();
+        List<Record> records = pendingBucket.drain();
+
+        Map<String, Record> existingRecords = new HashMap<>();
+        if(pendingBoard.flushed) {
+            List<String> names = new ArrayList<>();
+            for(Record record : records) {
+                if(record.getName() != null) {
+                    names.add(record.getName());
+                }
+            }
+            existingRecords = DbUtils.getNamedRecordsFromBoardId(boardId, bucket, names, dbConnection);
+        }
+
+        List<Record> insertList = new ArrayList<>();
+        List<Record> updateList = new ArrayList<>();
+        for(Record record : records) {
+            record.setBoardId(boardId);
+            Record duplicateNameRecord = (record.getName() == null) ? null : existingRecords.get(record.getName());
+            if(duplicateNameRecord == null) {
+                insertList.add(record);
+            }else if(rankingMode.compare(record, duplicateNameRecord) <= 0) {
+                record.setRecordId(duplicateNameRecord.getRecordId());
+                updateList.add(record);
+            }else {
+                summary.recordsDiscarded(1);
+            }
+        }
+
+        for(int i=0; i<insertList.size(); i+=batchSize) {
+            DbUtils.insertRecords(insertList.subList(i, Math.min(i + batchSize, insertList.size())), dbConnection);
+        }
+        for(int i=0; i<updateList.size(); i+=batchSize) {
+            DbUtils.updateRecords(updateList.subList(i, Math.min(i + batchSize, updateList.size())), dbConnection);
+        }
+        summary.recordsInserted(insertList.size());
+        summary.recordsUpdated(updateList.size());
+
+        if(pendingBoard.flushed) {
+            summary.recordsDiscarded(DbUtils.pruneLeaderboardByBoardId(boardId, bucket, rankingMode, null,
+                                                                       dbConnection));
+        }
+    }
+
+    /**
+     * Logs the progress and throughput of the import so far (and prints it, if a progress stream was given).
+     *
+     * @param prefix Text to start the message with
+     */
+    private void reportProgress(final String prefix) {
+        summary.setElapsedNanos(System.nanoTime() - startNanos);
+        String message = prefix + summary.getRowsRead() + " rows read (" + summary.getInvalidRows() + " invalid), " +
+                         summary.getRecordsInserted() + " records inserted, " + summary.getRecordsUpdated() +
+                         " updated, " + summary.getRecordsDiscarded() + " discarded, " + summary.getBoards().size() +
+                         " leaderboards created, " + summary.getRowsPerSecond() + " rows/s";
+        logger.info(message);
+        if(progressOut != null) {
+            progressOut.println(message);
+        }
+    }
+
+    /**
+     * The state of one leaderboard of the import: the leaderboard created for it (once it has been written) and the
+     * records collected for each of its windows since it was last written.
+     */
+    private class PendingBoard {
+        private String source;
+        private Leaderboard leaderboard;
+        private boolean flushed = false;
+        private Map<Integer, PendingBucket> buckets = new TreeMap<>();
+
+        private PendingBoard(final String source) {
+            this.source = source;
+        }
+
+        /**
+         * Collects the param record.
+         *
+         * @param record Record to collect
+         * @return Change in the number of records held
+         */
+        private int add(final Record record) {
+            PendingBucket pendingBucket = buckets.get(record.getBucket());
+            if(pendingBucket == null) {
+                pendingBucket = new PendingBucket();
+                buckets.put(record.getBucket(), pendingBucket);
+            }
+            return pendingBucket.add(record);
+        }
+    }
+
+    /**
+     * The records collected for one leaderboard window.  Named records are kept by name, so that only the best ranked
+     * record of each name is held, and the window is cut back to its best MAX_LEADERBOARD_SIZE records whenever it
+     * holds twice that many.
+     * NOTE: A record cut from the window can never rank again, since the records that outranked it are only ever
+     *       replaced by better ranked records.
+     */
+    private class PendingBucket {
+        private Map<String, Record> namedRecords = new HashMap<>();
+        private List<Record> anonymousRecords = new ArrayList<>();
+
+        private int size() {
+            return namedRecords.size() + anonymousRecords.size();
+        }
+
+        /**
+         * Collects the param record.
+         *
+         * @param record Record to collect
+         * @return Change in the number of records held
+         */
+        private int add(final Record record) {
+            int sizeBefore = size();
+            if(record.getName() == null) {
+                anonymousRecords.add(record);
+            }else {
+                // The later record wins a tie, the same as it would if the rows were sent one at a time
+                Record duplicateNameRecord = namedRecords.get(record.getName());
+                if(duplicateNameRecord == null || rankingMode.compare(record, duplicateNameRecord) <= 0) {
+                    namedRecords.put(record.getName(), record);
+                }
+                if(duplicateNameRecord != null) {
+                    summary.recordsDiscarded(1);
+                }
+            }
+
+            if(size() >= 2 * DbUtils.MAX_LEADERBOARD_SIZE) {
+                drain().forEach(this::keep);
+            }
+            return size() - sizeBefore;
+        }
+
+        private void keep(final Record record) {
+            if(record.getName() == null) {
+                anonymousRecords.add(record);
+            }else {
+                namedRecords.put(record.getName(), record);
+            }
+        }
+
+        /**
+         * Removes every record from this window, and returns the best ranked MAX_LEADERBOARD_SIZE of them in rank order.
+         *
+         * @return Best ranked records of the window
+         */
+        private List<Record> drain() {
+            List<Record> records = new ArrayList<>(size());
+            records.addAll(namedRecords.values());
+            records.addAll(anonymousRecords);
+            namedRecords.clear();
+            anonymousRecords.clear();
+
+            records.sort(rankOrder);
+            if(records.size() > DbUtils.MAX_LEADERBOARD_SIZE) {
+                summary.recordsDiscarded(records.size() - DbUtils.MAX_LEADERBOARD_SIZE);
+                records = new ArrayList<>(records.subList(0, DbUtils.MAX_LEADERBOARD_SIZE));
+            }
+            return records;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.tdberg.apps.leaderboard.ingest;
+
+import com.tdberg.apps.leaderboard.objects.RecordSubmission;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The framed binary message format of the ingestion listener (see IngestServer).  Every frame is a 4 byte length (of
+ * the rest of the frame), followed by a 1 byte frame type and the body of that type.  All numbers are big-endian, and
+ * strings are UTF-8, preceded by a 2 byte length (-1 for a null string).
+ *           BOARD  (client)  key                       Selects the leaderboard (by private key) that the SUBMIT
+ *                                                      frames after it are added to
+ *           SUBMIT (client)  sequence:int score:int    Submits a record.  Flags bit 0 is set if a time follows, and
+ *                            flags:byte [time:int]     bit 1 if notes follow.  The sequence is chosen by the client,
+ *                            name [notes]              and is returned in the acknowledgement of the submission.
+ *           ACK    (server)  count:int                 Acknowledges count submissions, each as its sequence followed
+ *                            (sequence:int status:byte)*  by one of the STATUS values
+ * NOTE: A client can send any number of frames without waiting for their acknowledgements.  Submissions are
+ *       acknowledged in the order they were sent, several at a time.
+ */
+public class IngestFrame {
+    public static byte BOARD = 1;
+    public static byte SUBMIT = 2;
+    public static byte ACK = 3;
+
+    public static byte FLAG_TIME = 1;
+    public static byte FLAG_NOTES = 2;
+
+    // Submission outcomes, the first five of which are the outcomes of a batched ADD request
+    public static byte STATUS_INSERTED = 0;
+    public static byte STATUS_UPDATED = 1;
+    public static byte STATUS_NOT_IMPROVED = 2;
+    public static byte STATUS_SUPERSEDED = 3;
+    public static byte STATUS_INVALID = 4;
+    public static byte STATUS_KEY_NOT_FOUND = 5;
+    public static byte STATUS_ERROR = 6;
+    private static String[] STATUS_NAMES = {"INSERTED", "UPDATED", "NOT_IMPROVED", "SUPERSEDED", "INVALID",
+                                            "KEY_NOT_FOUND", "ERROR"};
+
+    // The longest frame (after its length) that is accepted.  Longer frames are a protocol error.
+    public static int MAX_FRAME_LENGTH = 4096;
+    public static int ACK_ENTRY_LENGTH = 5;
+
+    private IngestFrame() {
+    }
+
+    /**
+     * Returns the status of the param batched ADD outcome.
+     *
+     * @param result Outcome of a submission within a batched ADD request (eg. 'INSERTED')
+     * @return Matching STATUS value, or STATUS_ERROR if the outcome is not recognized
+     */
+    public static byte statusOf(final String result) {
+        for(byte i=0; i<STATUS_NAMES.length; i++) {
+            if(STATUS_NAMES[i].equals(result)) {
+                return i;
+            }
+        }
+        return STATUS_ERROR;
+    }
+
+    /**
+     * Returns the name of the param status.
+     *
+     * @param status STATUS value
+     * @return Name of the status, or null if it is not a STATUS value
+     */
+    public static String statusName(final byte status) {
+        return (status >= 0 && status < STATUS_NAMES.length) ? STATUS_NAMES[status] : null;
+    }
+
+    /**
+     * Returns the number of STATUS values.
+     *
+     * @return Number of STATUS values
+     */
+    public static int statusCount() {
+        return STATUS_NAMES.length;
+    }
+
+    /**
+     * Writes a BOARD frame to the param buffer.
+     *
+     * @param buffer Buffer to write to
+     * @param privKey Private key of the leaderboard to select
+     */
+    public static void writeBoard(final ByteBuffer buffer, final String privKey) {
+        byte[] key = privKey.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(1 + key.length);
+        buffer.put(BOARD);
+        buffer.put(key);
+    }
+
+    /**
+     * Writes a SUBMIT frame to the param buffer.
+     *
+     * @param buffer Buffer to write to
+     * @param sequence Sequence number of the submission
+     * @param name Name of the submission, or null
+     * @param score Score of the submission
+     * @param time Time of the submission, or null
+     * @param notes Notes of the submission, or null
+     */
+    public static void writeSubmit(final ByteBuffer buffer, final int sequence, final String name, final int score,
+                                   final Integer time, final String notes) {
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        buffer.put(SUBMIT);
+        buffer.putInt(sequence);
+        buffer.putInt(score);
+        buffer.put((byte) ((time != null ? FLAG_TIME : 0) | (notes != null ? FLAG_NOTES : 0)));
+        if(time != null) {
+            buffer.putInt(time);
+        }
+        putString(buffer, name);
+        if(notes != null) {
+            putString(buffer, notes);
+        }
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    /**
+     * Reads the body of a BOARD frame.
+     *
+     * @param body Body of the frame (after the frame type), which is consumed
+     * @return Private key held by the frame
+     */
+    public static String readBoard(final ByteBuffer body) {
+        byte[] key = new byte[body.remaining()];
+        body.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the body of a SUBMIT frame.
+     *
+     * @param body Body of the frame (after the sequence), which is consumed
+     * @return Submission held by the frame
+     * @throws java.nio.BufferUnderflowException If the frame is shorter than its fields
+     */
+    public static RecordSubmission readSubmit(final ByteBuffer body) {
+        int score = body.getInt();
+        byte flags = body.get();
+        Integer time = ((flags & FLAG_TIME) != 0) ? body.getInt() : null;
+        String name = getString(body);
+        String notes = ((flags & FLAG_NOTES) != 0) ? getString(body) : null;
+        return new RecordSubmission(name, score, time, notes);
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        if(value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
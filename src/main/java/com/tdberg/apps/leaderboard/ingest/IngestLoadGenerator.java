@@ -0,0 +1,260 @@
+package com.tdberg.apps.leaderboard.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Local load generator for comparing the binary ingestion listener (see IngestServer) with single record ADD requests
+ * over HTTP.  Both modes send the same number of submissions, spread evenly over the same number of connections, with
+ * names drawn from a fixed pool (so that later submissions update earlier records) and random scores.
+ * NOTE: In TCP mode each connection keeps up to 'loadTestPipelineDepth' submissions unacknowledged, the way a
+ *       pipelining client would.  In HTTP mode each connection sends one ADD request at a time over a kept-alive
+ *       connection, which is the most an HTTP/1.1 client can do.
+ */
+public class IngestLoadGenerator {
+    private static String HTTP_ADD_TEMPLATE = "http://%s:%d/lb/ADD/%s/%s/%d";
+    private static String OK = "OK";
+    private static String ERROR = "ERROR";
+
+    private String host;
+    private int port;
+    private String privKey;
+    private int submissions;
+    private int connections;
+    private int pipelineDepth;
+    private int nameCount;
+
+    /**
+     * Filled out constructor
+     *
+     * @param host Host that the service is running on
+     * @param port Port of the binary ingestion listener (TCP mode) or of the HTTP service (HTTP mode)
+     * @param privKey Private key of the leaderboard to submit to
+     * @param submissions Total number of submissions to send
+     * @param connections Number of connections to send the submissions over
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public IngestLoadGenerator(final String host, final int port, final String privKey, final int submissions,
+                               final int connections, final Properties cfg) {
+        this.host = host;
+        this.port = port;
+        this.privKey = privKey;
+        this.submissions = submissions;
+        this.connections = connections;
+        pipelineDepth = Integer.parseInt(cfg.getProperty("loadTestPipelineDepth", "1000"));
+        nameCount = Integer.parseInt(cfg.getProperty("loadTestNameCount", "1000"));
+    }
+
+    /**
+     * Sends the submissions to the binary ingestion listener, and waits for all of them to be acknowledged.
+     *
+     * @return Outcome of the run
+     * @throws IOException If a connection fails
+     * @throws InterruptedException If interrupted while waiting for the connections to finish
+     */
+    public Result runTcp() throws IOException, InterruptedException {
+        AtomicLongArray statusCounts = new AtomicLongArray(IngestFrame.statusCount());
+        long elapsedNanos = runConnections(connection -> sendTcp(connection, statusCounts));
+
+        Map<String, Long> outcomes = new TreeMap<>();
+        for(byte i=0; i<statusCounts.length(); i++) {
+            if(statusCounts.get(i) > 0) {
+                outcomes.put(IngestFrame.statusName(i), statusCounts.get(i));
+            }
+        }
+        return new Result("tcp", submissions, connections, elapsedNanos, outcomes);
+    }
+
+    /**
+     * Sends the submissions as single record ADD requests over HTTP.
+     *
+     * @return Outcome of the run
+     * @throws IOException If a connection fails
+     * @throws InterruptedException If interrupted while waiting for the connections to finish
+     */
+    public Result runHttp() throws IOException, InterruptedException {
+        AtomicLongArray statusCounts = new AtomicLongArray(2);
+        long elapsedNanos = runConnections(connection -> sendHttp(connection, statusCounts));
+
+        Map<String, Long> outcomes = new TreeMap<>();
+        outcomes.put(OK, statusCounts.get(0));
+        outcomes.put(ERROR, statusCounts.get(1));
+        return new Result("http", submissions, connections, elapsedNanos, outcomes);
+    }
+
+    /**
+     * Runs the param sender once for each connection, each on its own thread, and returns how long they took.
+     */
+    private long runConnections(final ConnectionSender sender) throws IOException, InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        List<IOException> failures = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for(int i=0; i<connections; i++) {
+            int connection = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    sender.send(connection);
+                }catch(IOException e) {
+                    synchronized(failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "load-generator-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        if(!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of submissions sent by the param connection (the remainder goes to the first connections).
+     */
+    private int submissionsFor(final int connection) {
+        return submissions / connections + ((connection < submissions % connections) ? 1 : 0);
+    }
+
+    private void sendTcp(final int connection, final AtomicLongArray statusCounts) throws IOException {
+        int count = submissionsFor(connection);
+        Semaphore window = new Semaphore(pipelineDepth);
+        try(Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+
+            // Acknowledgements are read on their own thread, so that sending never waits on them unless the pipeline
+            // is full
+            AtomicReference<IOException> readFailure = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    readAcks(in, count, window, statusCounts);
+                }catch(IOException e) {
+                    readFailure.set(e);
+                    window.release(pipelineDepth);
+                }
+            }, "load-generator-acks-" + connection);
+            reader.start();
+
+            ByteBuffer frame = ByteBuffer.allocate(IngestFrame.MAX_FRAME_LENGTH + 4);
+            IngestFrame.writeBoard(frame, privKey);
+            out.write(frame.array(), 0, frame.position());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for(int i=0; i<count; i++) {
+                if(!window.tryAcquire()) {
+                    out.flush();
+                    window.acquireUninterruptibly();
+                }
+                if(readFailure.get() != null) {
+                    break;
+                }
+                frame.clear();
+                IngestFrame.writeSubmit(frame, i, "player" + random.nextInt(nameCount), random.nextInt(1000000),
+                                        null, null);
+                out.write(frame.array(), 0, frame.position());
+            }
+            out.flush();
+
+            reader.join();
+            if(readFailure.get() != null) {
+                throw readFailure.get();
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for acknowledgements");
+        }
+    }
+
+    private void readAcks(final DataInputStream in, final int count, final Semaphore window,
+                          final AtomicLongArray statusCounts) throws IOException {
+        int acked = 0;
+        while(acked < count) {
+            in.readInt();
+            if(in.readByte() != IngestFrame.ACK) {
+                throw new IOException("Unexpected frame from the ingestion listener");
+            }
+            int entries = in.readInt();
+            for(int i=0; i<entries; i++) {
+                in.readInt();
+                statusCounts.incrementAndGet(in.readByte());
+            }
+            acked += entries;
+            window.release(entries);
+        }
+    }
+
+    private void sendHttp(final int connection, final AtomicLongArray statusCounts) throws IOException {
+        int count = submissionsFor(connection);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = URLEncoder.encode(privKey, StandardCharsets.UTF_8);
+        for(int i=0; i<count; i++) {
+            URL url = new URL(String.format(HTTP_ADD_TEMPLATE, host, port, key, "player" + random.nextInt(nameCount),
+                                            random.nextInt(1000000)));
+            // The connection is kept alive and reused by HttpURLConnection, as long as each response is fully read
+            HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
+            try(InputStream in = httpConnection.getInputStream()) {
+                String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                statusCounts.incrementAndGet(response.equals(OK) ? 0 : 1);
+            }
+        }
+    }
+
+    /**
+     * Sends the submissions of one connection.
+     */
+    private interface ConnectionSender {
+        void send(int connection) throws IOException;
+    }
+
+    /**
+     * This public inner class describes the outcome of a load generator run.  This is intended to be serialized into
+     * JSON and printed.
+     */
+    public static class Result {
+        private String mode;
+        private int submissions;
+        private int connections;
+        private long elapsedMillis;
+        private long submissionsPerSecond;
+        private Map<String, Long> outcomes;
+
+        public Result(final String mode, final int submissions, final int connections, final long elapsedNanos,
+                      final Map<String, Long> outcomes) {
+            this.mode = mode;
+            this.submissions = submissions;
+            this.connections = connections;
+            this.elapsedMillis = elapsedNanos / 1000000;
+            this.submissionsPerSecond = (elapsedNanos > 0) ? submissions * 1000000000L / elapsedNanos : 0;
+            this.outcomes = outcomes;
+        }
+
+        public long getSubmissionsPerSecond() {
+            return submissionsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.tdberg.apps.leaderboard.ingest;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.objects.RecordSubmission;
+import com.tdberg.apps.leaderboard.timing.PhaseTimer;
+import com.tdberg.apps.leaderboard.utils.ApiKey;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Optional listener that accepts record submissions over plain TCP connections, in the framed binary format described
+ * by IngestFrame, for server-to-server traffic that would otherwise pay for HTTP parsing on every ADD.  Submissions are
+ * added by the same logic as a batched ADD request (see DatabaseHandler.addSubmissions).
+ * NOTE: A single selector thread reads and writes every connection.  Each connection has at most one batch of
+ *       submissions being added at a time, by the worker pool, and the submissions that arrive meanwhile make up its
+ *       next batch, so a busy connection is acknowledged (and written) in large batches while a quiet one is
+ *       acknowledged straight away.  Submissions from one connection are added in the order they were sent.  A
+ *       connection stops being read while 'ingestMaxPendingSubmissions' of its submissions are waiting, so a client
+ *       that sends faster than its submissions can be added is slowed down by TCP flow control.
+ */
+public class IngestServer implements Runnable {
+    private static Logger logger = LogManager.getLogger(IngestServer.class);
+    // Connections stop being read while they have this many unsent acknowledgement frames
+    private static int MAX_QUEUED_ACKS = 16;
+
+    private DatabaseHandler dbHandler;
+    private int port;
+    private int maxBatchSize;
+    private int maxPendingSubmissions;
+    private ExecutorService workers;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to add the submissions
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public IngestServer(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        port = Integer.parseInt(cfg.getProperty("ingestPort", "0"));
+        // Batches are limited to the size of a batched ADD request
+        maxBatchSize = Math.min(Integer.parseInt(cfg.getProperty("ingestMaxBatchSize", "1000")), 1000);
+        maxPendingSubmissions = Integer.parseInt(cfg.getProperty("ingestMaxPendingSubmissions", "10000"));
+        int workerThreads = Integer.parseInt(cfg.getProperty("ingestWorkerThreads", "16"));
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ingest-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Binds the listening port, and starts the selector thread.
+     *
+     * @throws IOException If the port could not be bound
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        Thread thread = new Thread(this, "ingest-listener");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Binary ingestion listener started on port " + port);
+    }
+
+    @Override
+    public void run() {
+        while(serverChannel.isOpen()) {
+            try {
+                selector.select();
+                Completion completion;
+                while((completion = completions.poll()) != null) {
+                    finishBatch(completion);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if(!key.isValid()) {
+                            continue;
+                        }
+                        if(key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if(key.isWritable()) {
+                            write(key);
+                        }
+                        if(key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }catch(IOException e) {
+                        close(key);
+                    }
+                }
+            }catch(IOException e) {
+                logger.error("Binary ingestion listener failed to select : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, and closes the open connections.
+     */
+    public void stop() {
+        try {
+            serverChannel.close();
+            for(SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.wakeup();
+        }catch(IOException e) {
+            logger.error("Failed to close the binary ingestion listener : " + e.getMessage());
+        }
+        workers.shutdown();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        InetSocketAddress address = (InetSocketAddress) channel.getRemoteAddress();
+        channel.register(selector, SelectionKey.OP_READ, new IngestConnection(address.getAddress().getHostAddress()));
+    }
+
+    /**
+     * Reads whatever the param connection has sent, parses the complete frames, and starts a batch if the connection
+     * has none running.
+     */
+    private void read(final SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        IngestConnection connection = (IngestConnection) key.attachment();
+        if(channel.read(connection.readBuffer) < 0) {
+            close(key);
+            return;
+        }
+
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        while(buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if(length < 1 || length > IngestFrame.MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid frame length : " + length);
+            }
+            if(buffer.remaining() < 4 + length) {
+                break;
+            }
+            ByteBuffer body = buffer.slice(buffer.position() + 4, length);
+            buffer.position(buffer.position() + 4 + length);
+            readFrame(connection, body);
+        }
+        buffer.compact();
+
+        startBatch(key);
+        updateInterest(key);
+    }
+
+    private void readFrame(final IngestConnection connection, final ByteBuffer body) throws IOException {
+        try {
+            byte type = body.get();
+            if(type == IngestFrame.BOARD) {
+                // A key that cannot be a private key is never looked up, and its submissions are acknowledged as
+                // KEY_NOT_FOUND, just like the submissions sent before any BOARD frame
+                String privKey = IngestFrame.readBoard(body);
+                connection.privKey = ApiKey.isPrivateKeyFormat(privKey) ? privKey : null;
+            }else if(type == IngestFrame.SUBMIT) {
+                int sequence = body.getInt();
+                RecordSubmission submission;
+                try {
+                    submission = IngestFrame.readSubmit(body);
+                }catch(BufferUnderflowException e) {
+                    // A frame that is too short for its fields is acknowledged as invalid
+                    submission = null;
+                }
+                connection.pending.add(new PendingSubmission(sequence, connection.privKey, submission));
+            }else {
+                throw new IOException("Unknown frame type : " + type);
+            }
+        }catch(BufferUnderflowException e) {
+            throw new IOException("Truncated frame");
+        }
+    }
+
+    /**
+     * Hands the next batch of the param connection's pending submissions to the worker pool, unless it already has a
+     * batch running.
+     */
+    private void startBatch(final SelectionKey key) {
+        IngestConnection connection = (IngestConnection) key.attachment();
+        if(connection.running || connection.pending.isEmpty()) {
+            return;
+        }
+
+        List<PendingSubmission> batch = new ArrayList<>();
+        while(batch.size() < maxBatchSize && !connection.pending.isEmpty()) {
+            batch.add(connection.pending.poll());
+        }
+        connection.running = true;
+        try {
+            workers.execute(() -> {
+                // A completion is always queued, since the connection starts no other batch until it is
+                ByteBuffer ack;
+                try {
+                    ack = addBatch(batch, connection.ipAddress);
+                }catch(RuntimeException e) {
+                    logger.error("Failed to ingest a batch of " + batch.size() + " records : " + e);
+                    ack = ackAll(batch, IngestFrame.STATUS_ERROR);
+                }
+                completions.add(new Completion(key, ack));
+                selector.wakeup();
+            });
+        }catch(RejectedExecutionException e) {
+            // The listener is shutting down
+            connection.running = false;
+        }
+    }
+
+    /**
+     * Adds the param batch of submissions, and returns the ACK frame that acknowledges them.  This runs on a worker
+     * thread.  Consecutive submissions for the same leaderboard are added together, as one batched ADD.
+     */
+    private ByteBuffer addBatch(final List<PendingSubmission> batch, final String ipAddress) {
+        long startNanos = System.nanoTime();
+        ByteBuffer ack = newAck(batch.size());
+
+        int start = 0;
+        while(start < batch.size()) {
+            String privKey = batch.get(start).privKey;
+            int end = start + 1;
+            while(end < batch.size() && equalKeys(privKey, batch.get(end).privKey)) {
+                end++;
+            }
+
+            byte[] statuses = new byte[end - start];
+            if(privKey == null) {
+                Arrays.fill(statuses, IngestFrame.STATUS_KEY_NOT_FOUND);
+            }else {
+                addRun(batch.subList(start, end), privKey, ipAddress, statuses);
+            }
+            for(int i=start; i<end; i++) {
+                ack.putInt(batch.get(i).sequence);
+                ack.put(statuses[i - start]);
+            }
+            start = end;
+        }
+
+        ack.flip();
+        dbHandler.getAccessLog().access(AccessRoute.INGEST, 200, System.nanoTime() - startNanos, ack.limit(), ipAddress);
+        return ack;
+    }
+
+    /**
+     * Returns an ACK frame that acknowledges every submission of the param batch with the param status.
+     */
+    private static ByteBuffer ackAll(final List<PendingSubmission> batch, final byte status) {
+        ByteBuffer ack = newAck(batch.size());
+        for(PendingSubmission pending : batch) {
+            ack.putInt(pending.sequence);
+            ack.put(status);
+        }
+        ack.flip();
+        return ack;
+    }
+
+    /**
+     * Returns a buffer for an ACK frame of the param number of submissions, holding the header of the frame.
+     */
+    private static ByteBuffer newAck(final int count) {
+        ByteBuffer ack = ByteBuffer.allocate(5 + 4 + count * IngestFrame.ACK_ENTRY_LENGTH);
+        ack.putInt(ack.capacity() - 4);
+        ack.put(IngestFrame.ACK);
+        ack.putInt(count);
+        return ack;
+    }
+
+    private void addRun(final List<PendingSubmission> run, final String privKey, final String ipAddress,
+                        final byte[] statuses) {
+        RecordSubmission[] submissions = new RecordSubmission[run.size()];
+        for(int i=0; i<run.size(); i++) {
+            submissions[i] = run.get(i).submission;
+        }
+
+        try {
+            List<RecordSubmission.Result> results = dbHandler.addSubmissions(privKey, submissions, ipAddress,
+                                                                             AccessRoute.INGEST, PhaseTimer.of(null));
+            if(results == null) {
+                Arrays.fill(statuses, IngestFrame.STATUS_KEY_NOT_FOUND);
+                return;
+            }
+            for(RecordSubmission.Result result : results) {
+                statuses[result.getIndex()] = IngestFrame.statusOf(result.getResult());
+            }
+        }catch(SQLException e) {
+            logger.error("SQL error while attempting to ingest a batch of records : " + e.getMessage());
+            dbHandler.reportDatabaseError(e);
+            Arrays.fill(statuses, IngestFrame.STATUS_ERROR);
+        }
+    }
+
+    private static boolean equalKeys(final String a, final String b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Queues the acknowledgement of a finished batch, and starts the connection's next batch.  This runs on the
+     * selector thread.
+     */
+    private void finishBatch(final Completion completion) {
+        SelectionKey key = completion.key;
+        if(!key.isValid()) {
+            return;
+        }
+        IngestConnection connection = (IngestConnection) key.attachment();
+        connection.running = false;
+        connection.acks.add(completion.ack);
+        startBatch(key);
+        updateInterest(key);
+    }
+
+    private void write(final SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        IngestConnection connection = (IngestConnection) key.attachment();
+        while(!connection.acks.isEmpty()) {
+            ByteBuffer ack = connection.acks.peek();
+            channel.write(ack);
+            if(ack.hasRemaining()) {
+                break;
+            }
+            connection.acks.poll();
+        }
+        updateInterest(key);
+    }
+
+    private void updateInterest(final SelectionKey key) {
+        if(!key.isValid()) {
+            return;
+        }
+        IngestConnection connection = (IngestConnection) key.attachment();
+        int ops = 0;
+        if(connection.pending.size() < maxPendingSubmissions && connection.acks.size() < MAX_QUEUED_ACKS) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if(!connection.acks.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private void close(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }catch(IOException e) {
+            logger.error("Failed to close a binary ingestion connection : " + e.getMessage());
+        }
+    }
+
+    /**
+     * State of one client connection.  Only used by the selector thread.
+     */
+    private static class IngestConnection {
+        private String ipAddress;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        private String privKey;
+        private Queue<PendingSubmission> pending = new ArrayDeque<>();
+        private Queue<ByteBuffer> acks = new ArrayDeque<>();
+        private boolean running;
+
+        private IngestConnection(final String ipAddress) {
+            this.ipAddress = ipAddress;
+        }
+    }
+
+    /**
+     * A submission that has been read, but not yet added.
+     */
+    private static class PendingSubmission {
+        private int sequence;
+        private String privKey;
+        private RecordSubmission submission;
+
+        private PendingSubmission(final int sequence, final String privKey, final RecordSubmission submission) {
+            this.sequence = sequence;
+            this.privKey = privKey;
+            this.submission = submission;
+        }
+    }
+
+    /**
+     * The acknowledgement of a batch that a worker has finished adding.
+     */
+    private static class Completion {
+        private SelectionKey key;
+        private ByteBuffer ack;
+
+        private Completion(final SelectionKey key, final ByteBuffer ack) {
+            this.key = key;
+            this.ack = ack;
+        }
+    }
+}
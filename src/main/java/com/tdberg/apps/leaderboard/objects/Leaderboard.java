@@ -7,7 +7,9 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class contains a Leaderboard object that describes an entry in the Leaderboards SQL table.
@@ -19,6 +21,8 @@ public class Leaderboard {
     private String privKey;
     private String pubKey;
     private Timestamp lastQuery;
+    private WindowType windowType = WindowType.NONE;
+    private RankingMode rankingMode = RankingMode.SCORE_DESC;
 
     private static String getLeaderboardsQuery = "SELECT * FROM leaderboards";
 
@@ -75,62 +79,135 @@ public class Leaderboard {
         return lastQuery;
     }
 
+    public void setWindowType(final WindowType windowType) {
+        this.windowType = windowType;
+    }
+
+    public WindowType getWindowType() {
+        return windowType;
+    }
+
+    public void setRankingMode(final RankingMode rankingMode) {
+        this.rankingMode = rankingMode;
+    }
+
+    public RankingMode getRankingMode() {
+        return rankingMode;
+    }
+
+    /**
+     * Returns the record bucket that new submissions to this Leaderboard are currently written into.
+     *
+     * @return Current bucket for this Leaderboard's window type
+     */
+    public int getCurrentBucket() {
+        return windowType.currentBucket();
+    }
+
     /**
      * Returns a UserFacingLeaderboard object that contains the user releasable fields of this Leaderboard
      *
      * @return a UserFacingLeaderboard object that contains the user releasable fields of this Leaderboard
      */
     public UserFacingLeaderboard toUserFacingLeaderboard() {
-        return new UserFacingLeaderboard(privKey, pubKey);
+        // The window and ranking are only included when they are not the defaults, so that plain leaderboards serialize
+        // as they always have
+        return new UserFacingLeaderboard(privKey, pubKey, (windowType == WindowType.NONE) ? null : windowType.name(),
+                                         (rankingMode == RankingMode.SCORE_DESC) ? null : rankingMode.name());
     }
 
     @Override
     public String toString() {
         return "Leaderboard: " + boardId + " PubKey: " + pubKey + " PrivKey: " + privKey + 
-               " Last Modified: " + lastQuery.toString();
+               " Last Modified: " + lastQuery.toString() + " Window: " + windowType + " Ranking: " + rankingMode;
     }
 
     /**
      * Creates a new Leaderboard with unique private and public API keys.  This requires a DB Connection, as this
      * method checks the generated public and private API keys against those in the DB to ensure uniqueness.
+     * NOTE: Each generated key is checked with an indexed lookup (see DbUtils.isKeyInUse), rather than by reading
+     *       every key in the database.
      *
      * @param conn Connection to the SQL database
+     * @param windowType Time window of the new Leaderboard
+     * @param rankingMode Ranking mode of the new Leaderboard
      * @return a new Leaderboard with unique private and public API keys
      * @throws SQLException
      */
-    public static Leaderboard createNewLeaderboard(Connection conn) throws SQLException {
+    public static Leaderboard createNewLeaderboard(Connection conn, final WindowType windowType,
+                                                   final RankingMode rankingMode) throws SQLException {
         Leaderboard retVal = new Leaderboard();
+        retVal.setWindowType(windowType);
+        retVal.setRankingMode(rankingMode);
+
+        String privKey = ApiKey.createPrivateKey();
+        while(DbUtils.isKeyInUse("privkey", privKey, conn)) {
+            privKey = ApiKey.createPrivateKey();
+        }
+        String pubKey = ApiKey.createPublicKey();
+        while(DbUtils.isKeyInUse("pubkey", pubKey, conn)) {
+            pubKey = ApiKey.createPublicKey();
+        }
+
+        retVal.setPrivKey(privKey);
+        retVal.setPubKey(pubKey);
+        retVal.setLastQueryTime(new Timestamp(new Date().getTime()));
+
+        return retVal;
+    }
+
+    /**
+     * Returns the private and public API keys of every leaderboard in the DB.  Archived leaderboards can be restored
+     * at any time, so their keys are included as well.  This reads both tables in full, so it is only meant for
+     * callers that create many leaderboards at once (eg. an import).
+     *
+     * @param conn Connection to the SQL database
+     * @return Set holding the private and public keys of every leaderboard
+     * @throws SQLException
+     */
+    public static Set<String> getUsedKeys(Connection conn) throws SQLException {
         List<Leaderboard> leaderboardList = DbUtils.getAllLeaderboards(conn);
-        String privKey = "";
-        String pubKey = "";
-        boolean foundMatch = true;
+        leaderboardList.addAll(DbUtils.getAllArchivedLeaderboards(conn));
+
+        Set<String> usedKeys = new HashSet<>();
+        for(Leaderboard leaderboard : leaderboardList) {
+            usedKeys.add(leaderboard.getPrivKey());
+            usedKeys.add(leaderboard.getPubKey());
+        }
+        return usedKeys;
+    }
+
+    /**
+     * Creates a new Leaderboard with private and public API keys that are not in the param set of used keys, and adds
+     * the new keys to the set.  Callers that create many leaderboards (eg. an import) read the used keys once with
+     * getUsedKeys, instead of once per leaderboard.
+     *
+     * @param usedKeys Keys that are already assigned to a leaderboard
+     * @param windowType Time window of the new Leaderboard
+     * @param rankingMode Ranking mode of the new Leaderboard
+     * @return a new Leaderboard with unique private and public API keys
+     */
+    public static Leaderboard createNewLeaderboard(final Set<String> usedKeys, final WindowType windowType,
+                                                   final RankingMode rankingMode) {
+        Leaderboard retVal = new Leaderboard();
+        retVal.setWindowType(windowType);
+        retVal.setRankingMode(rankingMode);
 
         // This generates a new private key, and then verifies that that private key isn't already assigned to another
         // leaderboard.  (There is an EXTREMELLY small chance of that happening (less than 1 in a billion), but I
         // wanted to check anyway.
-        while(foundMatch) {
+        String privKey = ApiKey.createPrivateKey();
+        while(usedKeys.contains(privKey)) {
             privKey = ApiKey.createPrivateKey();
-            foundMatch = false;
-
-            for(int i=0; i<leaderboardList.size() && !foundMatch; i++) {
-                if(privKey.equals(leaderboardList.get(i).getPrivKey())) {
-                    foundMatch = true;
-                }
-            }
         }
+        usedKeys.add(privKey);
 
         // Same check, but for the public key
-        foundMatch = true;
-        while(foundMatch) {
+        String pubKey = ApiKey.createPublicKey();
+        while(usedKeys.contains(pubKey)) {
             pubKey = ApiKey.createPublicKey();
-            foundMatch = false;
-
-            for(int i=0; i<leaderboardList.size() && !foundMatch; i++) {
-                if(pubKey.equals(leaderboardList.get(i).getPubKey())) {
-                    foundMatch = true;
-                }
-            }
         }
+        usedKeys.add(pubKey);
 
         retVal.setPrivKey(privKey);
         retVal.setPubKey(pubKey);
@@ -146,10 +223,15 @@ public class Leaderboard {
     public class UserFacingLeaderboard {
         private String privateKey;
         private String publicKey;
+        private String window;
+        private String ranking;
 
-        public UserFacingLeaderboard(final String privateKey, final String publicKey) {
+        public UserFacingLeaderboard(final String privateKey, final String publicKey, final String window,
+                                     final String ranking) {
             this.privateKey = privateKey;
             this.publicKey = publicKey;
+            this.window = window;
+            this.ranking = ranking;
         }
     }
 }
\ No newline at end of file
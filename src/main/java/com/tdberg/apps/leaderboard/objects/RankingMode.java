@@ -0,0 +1,86 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import java.util.Comparator;
+
+/**
+ * Describes how the records of a Leaderboard are ranked.  The ranking mode is chosen when the Leaderboard is created,
+ * and decides both the order records are returned in, and which record is kept when a name is submitted again.
+ * NOTE: As a comparator, a RankingMode orders records from the best ranked to the worst ranked, and treats records
+ *       with the same ranking values as equal.  Reads from the database additionally break ties by record ID.
+ */
+public enum RankingMode implements Comparator<Record> {
+    // Highest score first (the original, and default, ranking)
+    SCORE_DESC(1, false),
+    // Lowest time first (eg. speedruns)
+    TIME_ASC(1, true),
+    // Highest score first, with ties broken by the lowest time
+    SCORE_THEN_TIME(2, true);
+
+    private int rankingValueCount;
+    private boolean timeRequired;
+
+    RankingMode(final int rankingValueCount, final boolean timeRequired) {
+        this.rankingValueCount = rankingValueCount;
+        this.timeRequired = timeRequired;
+    }
+
+    /**
+     * Returns the number of values a record is ranked by in this mode, which is also the number of values (before
+     * the record ID) of an 'after' cursor for a leaderboard with this mode.
+     *
+     * @return Number of ranking values
+     */
+    public int getRankingValueCount() {
+        return rankingValueCount;
+    }
+
+    /**
+     * Returns whether records submitted to a leaderboard with this mode must have a time.
+     *
+     * @return True if a time is required
+     */
+    public boolean isTimeRequired() {
+        return timeRequired;
+    }
+
+    /**
+     * Compares two records by their ranking values in this mode.
+     *
+     * @param score Score of the first record
+     * @param time Time of the first record
+     * @param otherScore Score of the second record
+     * @param otherTime Time of the second record
+     * @return Negative if the first record ranks above the second, positive if it ranks below, 0 if they are equal
+     */
+    public int compare(final int score, final int time, final int otherScore, final int otherTime) {
+        switch(this) {
+            case TIME_ASC:
+                return Integer.compare(time, otherTime);
+            case SCORE_THEN_TIME:
+                int scoreCompare = Integer.compare(otherScore, score);
+                return (scoreCompare != 0) ? scoreCompare : Integer.compare(time, otherTime);
+            default:
+                return Integer.compare(otherScore, score);
+        }
+    }
+
+    @Override
+    public int compare(final Record record, final Record other) {
+        return compare(record.getScore(), record.getTime(), other.getScore(), other.getTime());
+    }
+
+    /**
+     * Returns the RankingMode with the param name (case insensitive), or null if there is no such RankingMode.
+     *
+     * @param name Name of the RankingMode
+     * @return RankingMode with the param name, or null
+     */
+    public static RankingMode fromName(final String name) {
+        for(RankingMode rankingMode : values()) {
+            if(rankingMode.name().equalsIgnoreCase(name)) {
+                return rankingMode;
+            }
+        }
+        return null;
+    }
+}
@@ -17,6 +17,7 @@ public class Record {
     private String notes;
     private Timestamp submissionTime;
     private String ipAddress;
+    private int bucket;
 
     /**
      * Default constructor
@@ -112,6 +113,14 @@ public class Record {
         return ipAddress;
     }
 
+    public void setBucket(final int bucket) {
+        this.bucket = bucket;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
     /**
      * Returns a UserFacingRecord, serializable object that contains the user releasable fields from this Record.
      *
@@ -0,0 +1,100 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+/**
+ * Class describes a single record submission within a batched ADD request.  This is intended to be deserialized from
+ * the JSON array body of the request, and contains only the fields that a user is allowed to submit.
+ * NOTE: As with the single record ADD request, name, time and notes are allowed to be null.  A name of 'NONAME' is
+ *       treated the same as a null name.
+ */
+public class RecordSubmission {
+    private String name;
+    private Integer score;
+    private Integer time;
+    private String notes;
+
+    /**
+     * Default constructor
+     */
+    public RecordSubmission() {
+    }
+
+    /**
+     * Filled out constructor
+     *
+     * @param name Name of the submitter, or null
+     * @param score Score of the submission
+     * @param time Time of the submission, or null
+     * @param notes Notes of the submission, or null
+     */
+    public RecordSubmission(final String name, final Integer score, final Integer time, final String notes) {
+        this.name = name;
+        this.score = score;
+        this.time = time;
+        this.notes = notes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public Integer getTime() {
+        return time;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    /**
+     * Returns whether this submission can be added to a leaderboard with the param ranking mode.
+     * NOTE: Over-long names and notes are rejected here, since they would otherwise fail the whole batch that they are
+     *       written in.
+     *
+     * @param rankingMode Ranking mode of the leaderboard
+     * @return True if the submission has a score, a time if the ranking mode requires one, and a name and notes that
+     *         fit in the database
+     */
+    public boolean isValid(final RankingMode rankingMode) {
+        return isWellFormed() && (time != null || !rankingMode.isTimeRequired());
+    }
+
+    /**
+     * Returns whether this submission could be added to a leaderboard of some ranking mode.  This is all that can be
+     * checked before the leaderboard is known.
+     *
+     * @return True if the submission has a score, and a name and notes that fit in the database
+     */
+    public boolean isWellFormed() {
+        return score != null && DbUtils.fitsRecordColumns(name, notes);
+    }
+
+    /**
+     * This public inner class describes the outcome of a single submission within a batched ADD request.
+     * This is intended to be serialized into JSON and sent to the user.
+     */
+    public static class Result {
+        private int index;
+        private String name;
+        private String result;
+
+        public Result(final int index, final String name, final String result) {
+            this.index = index;
+            this.name = name;
+            this.result = result;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getResult() {
+            return result;
+        }
+    }
+}
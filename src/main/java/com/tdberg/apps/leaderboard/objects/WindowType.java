@@ -0,0 +1,64 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Describes the time window of a Leaderboard.  A windowed Leaderboard stores each record in the bucket for the window
+ * that was current when the record was submitted, so that (for example) a DAILY leaderboard starts empty every day
+ * without the records having to be cleared.
+ * NOTE: Buckets are numbered in UTC, and increase by one per window.  A NONE leaderboard always uses bucket 0.
+ */
+public enum WindowType {
+    NONE,
+    DAILY,
+    WEEKLY,
+    MONTHLY;
+
+    /**
+     * Returns the bucket that the param time falls into for this window type.
+     *
+     * @param epochMillis Time in milliseconds since the epoch
+     * @return Bucket number for the param time
+     */
+    public int bucketAt(final long epochMillis) {
+        LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC).toLocalDate();
+
+        switch(this) {
+            case DAILY:
+                return (int) date.toEpochDay();
+            case WEEKLY:
+                // Epoch day 0 was a Thursday, so shift by 3 days so that weeks start on Monday
+                return (int) Math.floorDiv(date.toEpochDay() + 3, 7);
+            case MONTHLY:
+                return date.getYear() * 12 + date.getMonthValue() - 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the bucket for the current time for this window type.
+     *
+     * @return Current bucket number
+     */
+    public int currentBucket() {
+        return bucketAt(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the WindowType with the param name (case insensitive), or null if there is no such WindowType.
+     *
+     * @param name Name of the WindowType
+     * @return WindowType with the param name, or null
+     */
+    public static WindowType fromName(final String name) {
+        for(WindowType windowType : values()) {
+            if(windowType.name().equalsIgnoreCase(name)) {
+                return windowType;
+            }
+        }
+        return null;
+    }
+}
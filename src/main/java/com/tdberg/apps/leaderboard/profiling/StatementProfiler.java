@@ -0,0 +1,231 @@
+package com.tdberg.apps.leaderboard.profiling;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Profiles the SQL statements run through the database connections that it wraps.  For each distinct statement, it
+ * keeps the number of calls, the total and maximum execution time, and the number of rows read or updated.  Calls
+ * slower than a configurable threshold are logged.
+ * NOTE: Statements are keyed by their SQL with all literal values replaced by '?', so that statements built with
+ *       String.format (eg. DELETE_RECORD_TEMPLATE) are aggregated together, and so that no values (player names,
+ *       keys, scores) ever appear in the statistics or in the slow statement log.  Execution time covers the execute
+ *       call only, not reading the ResultSet afterwards.
+ */
+public class StatementProfiler {
+    private static Logger logger = LogManager.getLogger(StatementProfiler.class);
+
+    private static Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private long slowThresholdNanos;
+    private Map<String, StatementStats> statistics = new ConcurrentHashMap<>();
+    private Map<String, String> normalizedSql = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor
+     *
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public StatementProfiler(final Properties cfg) {
+        slowThresholdNanos = Long.parseLong(cfg.getProperty("slowStatementThresholdMillis", "100")) * 1_000_000L;
+    }
+
+    /**
+     * Returns a Connection that behaves exactly as the param Connection, but profiles every statement run on it.
+     *
+     * @param connection Connection to wrap
+     * @return Profiled Connection
+     */
+    public Connection wrap(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    /**
+     * Returns the statistics of all profiled statements as a JSON array, ordered by total execution time (highest
+     * first).  Times are in microseconds.
+     *
+     * @return JsonArray describing the statement statistics
+     */
+    public JsonArray toJson() {
+        List<StatementStats> statsList = new ArrayList<>(statistics.values());
+        statsList.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+
+        JsonArray statsArray = new JsonArray();
+        for(StatementStats stats : statsList) {
+            JsonObject statsObject = new JsonObject();
+            statsObject.addProperty("sql", stats.getSql());
+            statsObject.addProperty("calls", stats.getCalls());
+            statsObject.addProperty("totalMicros", stats.getTotalNanos() / 1000);
+            statsObject.addProperty("maxMicros", stats.getMaxNanos() / 1000);
+            statsObject.addProperty("meanMicros", stats.getCalls() == 0 ? 0 : stats.getTotalNanos() / stats.getCalls() / 1000);
+            statsObject.addProperty("rows", stats.getRows());
+            statsArray.add(statsObject);
+        }
+        return statsArray;
+    }
+
+    /**
+     * Clears all statement statistics.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Returns the param SQL with literal values replaced by '?', and with IN lists and whitespace collapsed.
+     *
+     * @param sql SQL to normalize
+     * @return Normalized SQL
+     */
+    static String normalize(final String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?...)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * Returns the statistics for the param SQL, creating them if needed.  The normalized SQL of prepared statements is
+     * cached, since it comes from a small set of templates.  Plain statement SQL contains literal values, so it is
+     * normalized every time rather than cached.
+     *
+     * @param sql SQL of the statement
+     * @param prepared True if the SQL is that of a prepared statement
+     * @return StatementStats for the statement
+     */
+    private StatementStats statsFor(final String sql, final boolean prepared) {
+        String key = prepared ? normalizedSql.computeIfAbsent(sql, StatementProfiler::normalize) : normalize(sql);
+        return statistics.computeIfAbsent(key, StatementStats::new);
+    }
+
+    /**
+     * Records one execution, logging it if it was slow.
+     */
+    private void recordCall(final StatementStats stats, final long nanos) {
+        stats.recordCall(nanos);
+        if(nanos > slowThresholdNanos) {
+            logger.warn("Slow SQL statement (" + (nanos / 1_000_000) + " ms) : " + stats.getSql());
+        }
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps the Statements created by a Connection.
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private Connection connection;
+
+        ConnectionHandler(final Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object result = StatementProfiler.invoke(connection, method, args);
+            if(result instanceof PreparedStatement && args != null && args[0] instanceof String) {
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class}, new StatementHandler((Statement) result, (String) args[0]));
+            }else if(result instanceof Statement) {
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {Statement.class},
+                        new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Times the execute calls of a Statement, and counts the rows that they return or update.
+     */
+    private class StatementHandler implements InvocationHandler {
+        private Statement statement;
+        private String preparedSql;
+
+        StatementHandler(final Statement statement, final String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if(!method.getName().startsWith("execute")) {
+                return StatementProfiler.invoke(statement, method, args);
+            }
+
+            // Plain Statements pass their SQL to execute, prepared statements were given it when created
+            boolean prepared = (args == null || args.length == 0 || !(args[0] instanceof String));
+            String sql = prepared ? preparedSql : (String) args[0];
+            if(sql == null) {
+                return StatementProfiler.invoke(statement, method, args);
+            }
+            StatementStats stats = statsFor(sql, prepared);
+
+            long startNanos = System.nanoTime();
+            Object result = StatementProfiler.invoke(statement, method, args);
+            recordCall(stats, System.nanoTime() - startNanos);
+
+            if(result instanceof ResultSet) {
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                        new ResultSetHandler((ResultSet) result, stats));
+            }else if(result instanceof Integer) {
+                stats.recordRows(Math.max(0, (Integer) result));
+            }else if(result instanceof int[]) {
+                for(int count : (int[]) result) {
+                    stats.recordRows(Math.max(0, count));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counts the rows read from a ResultSet.
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private ResultSet resultSet;
+        private StatementStats stats;
+
+        ResultSetHandler(final ResultSet resultSet, final StatementStats stats) {
+            this.resultSet = resultSet;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object result = StatementProfiler.invoke(resultSet, method, args);
+            if(Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                stats.recordRows(1);
+            }
+            return result;
+        }
+    }
+}
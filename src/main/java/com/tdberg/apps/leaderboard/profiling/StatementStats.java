@@ -0,0 +1,65 @@
+package com.tdberg.apps.leaderboard.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated statistics for a single SQL statement (as normalized by the StatementProfiler).
+ * NOTE: Rows are the rows read from a query's ResultSet, or the update count of an insert, update or delete.
+ */
+public class StatementStats {
+    private String sql;
+    private LongAdder calls = new LongAdder();
+    private LongAdder totalNanos = new LongAdder();
+    private AtomicLong maxNanos = new AtomicLong();
+    private LongAdder rows = new LongAdder();
+
+    /**
+     * Default constructor
+     *
+     * @param sql Normalized SQL of the statement
+     */
+    public StatementStats(final String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Records one execution of the statement.
+     *
+     * @param nanos Time taken by the execution, in nanoseconds
+     */
+    void recordCall(final long nanos) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Records rows read or updated by the statement.
+     *
+     * @param count Number of rows
+     */
+    void recordRows(final long count) {
+        rows.add(count);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+}
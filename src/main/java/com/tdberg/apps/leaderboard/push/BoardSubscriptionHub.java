@@ -0,0 +1,308 @@
+package com.tdberg.apps.leaderboard.push;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.tdberg.apps.leaderboard.BoardChangeListener;
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes changes to leaderboards to their WebSocket subscribers, so that clients do not have to poll GET.  A new
+ * subscriber is first sent a snapshot of the top of the leaderboard, and then a diff message each time that the top
+ * of the leaderboard changes.  Diffs contain only the entries whose rank or values changed, and the record IDs of the
+ * entries that dropped out.
+ * NOTE: Each changed leaderboard is re-read from the database at most once at a time, no matter how many changes are
+ *       made to it or how many subscribers it has, and each diff is encoded once and shared by all of its subscribers.
+ */
+public class BoardSubscriptionHub implements BoardChangeListener {
+    private static Logger logger = LogManager.getLogger(BoardSubscriptionHub.class);
+
+    private static String KEY_NOT_FOUND = "Key not found";
+    private static String TOO_MANY_CONNECTIONS = "Too many connections";
+    private static String SNAPSHOT_TYPE = "snapshot";
+    private static String DIFF_TYPE = "diff";
+
+    private DatabaseHandler dbHandler;
+    private int topN;
+    private int maxPendingMessages;
+    private int maxConnections;
+    private ExecutorService refreshExecutor;
+    private Map<Integer, BoardSubscription> subscriptions = new ConcurrentHashMap<>();
+    private Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to read the leaderboards
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public BoardSubscriptionHub(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        topN = Integer.parseInt(cfg.getProperty("subscriptionTopN", "100"));
+        maxPendingMessages = Integer.parseInt(cfg.getProperty("subscriptionMaxPendingMessages", "64"));
+        maxConnections = Integer.parseInt(cfg.getProperty("subscriptionMaxConnections", "10000"));
+        refreshExecutor = Executors.newFixedThreadPool(Integer.parseInt(cfg.getProperty("subscriptionRefreshThreads", "2")),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "board-subscription");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Subscribes the param session to the leaderboard with the param public key.  The leaderboard is resolved and
+     * read off of the WebSocket thread, after which the subscriber is sent a snapshot message.
+     *
+     * @param session WebSocket session of the new subscriber
+     * @param pubKey Public key of the leaderboard to subscribe to
+     */
+    public void subscribe(final Session session, final String pubKey) {
+        if(connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            session.close(StatusCode.TRY_AGAIN_LATER, TOO_MANY_CONNECTIONS);
+            return;
+        }
+
+        refreshExecutor.execute(() -> {
+            try {
+                Leaderboard leaderboard = pubKey == null ? null : dbHandler.getLeaderboardFromPubKey(pubKey);
+                if(leaderboard == null) {
+                    abandon(session, StatusCode.POLICY_VIOLATION, KEY_NOT_FOUND);
+                    return;
+                }
+
+                Subscriber subscriber = new Subscriber(session, leaderboard.getBoardId(), maxPendingMessages);
+                subscribers.put(session, subscriber);
+                while(true) {
+                    BoardSubscription subscription = subscriptions.computeIfAbsent(leaderboard.getBoardId(),
+                            boardId -> new BoardSubscription(leaderboard));
+                    if(subscription.add(subscriber)) {
+                        break;
+                    }
+                    // The subscription was closed by its last subscriber leaving, so retry with a new one
+                }
+
+                if(!session.isOpen()) {
+                    unsubscribe(session);
+                }
+            }catch(SQLException e) {
+                logger.error("SQL error while attempting to subscribe to leaderboard : " + e.getMessage());
+                dbHandler.reportDatabaseError(e);
+                abandon(session, StatusCode.SERVER_ERROR, e.getMessage());
+            }catch(RuntimeException e) {
+                logger.error("Error while attempting to subscribe to leaderboard : " + e.getMessage());
+                abandon(session, StatusCode.SERVER_ERROR, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Gives up on subscribing the param session, releasing its connection slot exactly once, and closes it.
+     *
+     * @param session WebSocket session of the subscriber
+     * @param statusCode Status code to close the session with
+     * @param reason Reason to close the session with
+     */
+    private void abandon(final Session session, final int statusCode, final String reason) {
+        // Once the subscriber has been registered, its slot is released by unsubscribing it (which the session closing
+        // may also do, but only one of the two finds it registered)
+        if(subscribers.containsKey(session)) {
+            unsubscribe(session);
+        }else {
+            connectionCount.decrementAndGet();
+        }
+        session.close(statusCode, reason);
+    }
+
+    /**
+     * Removes the param session from its subscription, if it has one.
+     *
+     * @param session WebSocket session of the subscriber
+     */
+    public void unsubscribe(final Session session) {
+        Subscriber subscriber = subscribers.remove(session);
+        if(subscriber == null) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+
+        BoardSubscription subscription = subscriptions.get(subscriber.getBoardId());
+        if(subscription != null && subscription.remove(subscriber)) {
+            subscriptions.remove(subscriber.getBoardId(), subscription);
+        }
+    }
+
+    @Override
+    public void boardChanged(final Leaderboard leaderboard) {
+        BoardSubscription subscription = subscriptions.get(leaderboard.getBoardId());
+        if(subscription != null) {
+            subscription.scheduleRefresh();
+        }
+    }
+
+    /**
+     * Builds a JSON entry for the param record at the param rank.
+     *
+     * @param record Record to describe
+     * @param rank Rank of the record, starting at 1
+     * @return JsonObject describing the record
+     */
+    private static JsonObject toEntry(final Record record, final int rank) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("recordId", record.getRecordId());
+        entry.addProperty("rank", rank);
+        entry.addProperty("name", record.getName());
+        entry.addProperty("score", record.getScore());
+        entry.addProperty("time", record.getTime());
+        return entry;
+    }
+
+    /**
+     * This inner class holds the subscribers of a single leaderboard, along with the last top N that was sent to
+     * them, which new diffs are computed against.
+     */
+    private class BoardSubscription {
+        private Leaderboard leaderboard;
+        private Set<Subscriber> members = ConcurrentHashMap.newKeySet();
+        private Map<Integer, JsonObject> lastEntries;
+        private AtomicBoolean refreshPending = new AtomicBoolean();
+        private boolean closed;
+
+        BoardSubscription(final Leaderboard leaderboard) {
+            this.leaderboard = leaderboard;
+        }
+
+        /**
+         * Adds the param subscriber, and sends it a snapshot of the current top N.
+         *
+         * @param subscriber Subscriber to add
+         * @return False if this subscription has already been closed
+         * @throws SQLException
+         */
+        synchronized boolean add(final Subscriber subscriber) throws SQLException {
+            if(closed) {
+                return false;
+            }
+
+            if(lastEntries == null) {
+                lastEntries = readEntries();
+            }
+
+            JsonObject snapshot = new JsonObject();
+            snapshot.addProperty("type", SNAPSHOT_TYPE);
+            JsonArray entries = new JsonArray();
+            lastEntries.values().forEach(entries::add);
+            snapshot.add("entries", entries);
+
+            // The snapshot is queued under the lock, so it is always sent before any diff computed against it
+            subscriber.offer(snapshot.toString());
+            members.add(subscriber);
+            return true;
+        }
+
+        /**
+         * Removes the param subscriber.
+         *
+         * @param subscriber Subscriber to remove
+         * @return True if this was the last subscriber, in which case this subscription is closed
+         */
+        synchronized boolean remove(final Subscriber subscriber) {
+            members.remove(subscriber);
+            if(members.isEmpty()) {
+                closed = true;
+            }
+            return closed;
+        }
+
+        /**
+         * Schedules a refresh of this subscription, unless one is already waiting to run.  Changes made before the
+         * waiting refresh starts are picked up by it, so bursts of changes are coalesced into a single diff.
+         */
+        void scheduleRefresh() {
+            if(refreshPending.compareAndSet(false, true)) {
+                refreshExecutor.execute(this::refresh);
+            }
+        }
+
+        /**
+         * Re-reads the top N of the leaderboard, and publishes the diff against the last top N to all subscribers.
+         */
+        private synchronized void refresh() {
+            refreshPending.set(false);
+            if(closed) {
+                return;
+            }
+
+            Map<Integer, JsonObject> entries;
+            try {
+                entries = readEntries();
+            }catch(SQLException e) {
+                logger.error("SQL error while attempting to refresh leaderboard subscription : " + e.getMessage());
+                dbHandler.reportDatabaseError(e);
+                return;
+            }
+
+            JsonArray changed = new JsonArray();
+            for(Map.Entry<Integer, JsonObject> entry : entries.entrySet()) {
+                if(!entry.getValue().equals(lastEntries.get(entry.getKey()))) {
+                    changed.add(entry.getValue());
+                }
+            }
+            JsonArray removed = new JsonArray();
+            for(Integer recordId : lastEntries.keySet()) {
+                if(!entries.containsKey(recordId)) {
+                    removed.add(recordId);
+                }
+            }
+            lastEntries = entries;
+
+            if(changed.size() == 0 && removed.size() == 0) {
+                return;
+            }
+
+            JsonObject diff = new JsonObject();
+            diff.addProperty("type", DIFF_TYPE);
+            diff.add("changed", changed);
+            diff.add("removed", removed);
+            String message = diff.toString();
+            for(Subscriber subscriber : members) {
+                subscriber.offer(message);
+            }
+        }
+
+        /**
+         * Reads the top N of the leaderboard from the database.
+         *
+         * @return Map of record ID to entry, in rank order
+         * @throws SQLException
+         */
+        private Map<Integer, JsonObject> readEntries() throws SQLException {
+            List<Record> records = dbHandler.getTopRecords(leaderboard, topN);
+            Map<Integer, JsonObject> entries = new LinkedHashMap<>(records.size() * 2);
+            int rank = 1;
+            for(Record record : records) {
+                entries.put(record.getRecordId(), toEntry(record, rank++));
+            }
+            return entries;
+        }
+    }
+}
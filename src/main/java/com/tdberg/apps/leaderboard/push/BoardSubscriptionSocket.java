@@ -0,0 +1,52 @@
+package com.tdberg.apps.leaderboard.push;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+import java.util.List;
+
+/**
+ * Jetty WebSocket endpoint for leaderboard subscriptions.  The leaderboard is selected by the 'pubkey' query parameter
+ * of the connection request (eg. ws://host/subscribe?pubkey=<pubkey>), and all of the work is handed to the
+ * BoardSubscriptionHub.
+ */
+@WebSocket
+public class BoardSubscriptionSocket {
+    private static String PUBKEY_PARAM = "pubkey";
+
+    private BoardSubscriptionHub hub;
+
+    /**
+     * Default constructor
+     *
+     * @param hub BoardSubscriptionHub that manages the subscriptions
+     */
+    public BoardSubscriptionSocket(final BoardSubscriptionHub hub) {
+        this.hub = hub;
+    }
+
+    @OnWebSocketConnect
+    public void onConnect(final Session session) {
+        List<String> pubKeys = session.getUpgradeRequest().getParameterMap().get(PUBKEY_PARAM);
+        hub.subscribe(session, (pubKeys == null || pubKeys.isEmpty()) ? null : pubKeys.get(0));
+    }
+
+    @OnWebSocketClose
+    public void onClose(final Session session, final int statusCode, final String reason) {
+        hub.unsubscribe(session);
+    }
+
+    @OnWebSocketError
+    public void onError(final Session session, final Throwable error) {
+        hub.unsubscribe(session);
+    }
+
+    @OnWebSocketMessage
+    public void onMessage(final Session session, final String message) {
+        // Subscriptions are push only, so messages from the client (eg. keep-alives) are ignored
+    }
+}
@@ -0,0 +1,110 @@
+package com.tdberg.apps.leaderboard.push;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single WebSocket subscriber to a leaderboard.  Messages are queued per subscriber and sent asynchronously, one at
+ * a time, so that a slow subscriber never blocks the thread that publishes to it (or the other subscribers).
+ * NOTE: If a subscriber falls more than maxPending messages behind, it is evicted (its connection is closed), since
+ *       it can no longer keep up with the changes to the leaderboard.
+ */
+class Subscriber implements WriteCallback {
+    private static String SLOW_CONSUMER = "Slow consumer";
+
+    private Session session;
+    private int boardId;
+    private int maxPending;
+    private Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private AtomicInteger pendingCount = new AtomicInteger();
+    private AtomicBoolean sending = new AtomicBoolean();
+    private volatile boolean evicted;
+
+    /**
+     * Filled out constructor
+     *
+     * @param session WebSocket session of the subscriber
+     * @param boardId BoardId of the leaderboard that the subscriber is subscribed to
+     * @param maxPending Maximum number of unsent messages before the subscriber is evicted
+     */
+    Subscriber(final Session session, final int boardId, final int maxPending) {
+        this.session = session;
+        this.boardId = boardId;
+        this.maxPending = maxPending;
+    }
+
+    int getBoardId() {
+        return boardId;
+    }
+
+    /**
+     * Queues the param message to be sent to this subscriber.  Never blocks.
+     *
+     * @param message Message to send
+     */
+    void offer(final String message) {
+        if(evicted) {
+            return;
+        }
+
+        if(pendingCount.incrementAndGet() > maxPending) {
+            evict(SLOW_CONSUMER);
+            return;
+        }
+
+        pending.add(message);
+        sendNext();
+    }
+
+    /**
+     * Starts sending the next queued message, unless a send is already in progress.
+     */
+    private void sendNext() {
+        while(!evicted && !pending.isEmpty() && sending.compareAndSet(false, true)) {
+            String message = pending.poll();
+            if(message == null) {
+                // Another thread took the last message between the isEmpty check and the poll
+                sending.set(false);
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            session.getRemote().sendString(message, this);
+            return;
+        }
+    }
+
+    @Override
+    public void writeSuccess() {
+        sending.set(false);
+        sendNext();
+    }
+
+    @Override
+    public void writeFailed(final Throwable x) {
+        sending.set(false);
+        evict(x.getMessage());
+    }
+
+    /**
+     * Stops sending to this subscriber, and closes its connection.
+     *
+     * @param reason Reason for the eviction, sent to the subscriber if the connection is still open
+     */
+    void evict(final String reason) {
+        if(evicted) {
+            return;
+        }
+        evicted = true;
+        pending.clear();
+
+        if(session.isOpen()) {
+            session.close(StatusCode.POLICY_VIOLATION, reason);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.tdberg.apps.leaderboard.stats;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Score statistics of one leaderboard window: the number of records, the sum, lowest and highest of their scores, and
+ * a histogram of their scores.  These are kept up to date as records change (see StatsDelta), so reading them never
+ * reads the records themselves.
+ */
+public class BoardStats {
+    private int recordCount;
+    private long scoreSum;
+    private Integer minScore;
+    private Integer maxScore;
+    private ScoreHistogram histogram;
+
+    /**
+     * Default constructor (statistics of an empty window)
+     */
+    public BoardStats() {
+        this(0, 0, null, null, new ScoreHistogram());
+    }
+
+    /**
+     * Filled out constructor
+     *
+     * @param recordCount Number of records in the window
+     * @param scoreSum Sum of the scores of the records
+     * @param minScore Lowest score (null if there are no records)
+     * @param maxScore Highest score (null if there are no records)
+     * @param histogram Histogram of the scores of the records
+     */
+    public BoardStats(final int recordCount, final long scoreSum, final Integer minScore, final Integer maxScore,
+                      final ScoreHistogram histogram) {
+        this.recordCount = recordCount;
+        this.scoreSum = scoreSum;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+        this.histogram = histogram;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public long getScoreSum() {
+        return scoreSum;
+    }
+
+    public Integer getMinScore() {
+        return minScore;
+    }
+
+    public Integer getMaxScore() {
+        return maxScore;
+    }
+
+    public void setMinMaxScore(final Integer minScore, final Integer maxScore) {
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+    }
+
+    public ScoreHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Applies the param change to these statistics.  The lowest and highest scores are only widened here; if a
+     * removed score was the lowest or highest score, the caller must read them again (see
+     * StatsDelta.BucketDelta.removesMinOrMax).
+     *
+     * @param delta Change to one window of the leaderboard
+     */
+    public void apply(final StatsDelta.BucketDelta delta) {
+        recordCount += delta.getCountDelta();
+        scoreSum += delta.getSumDelta();
+        delta.getHistogramDelta().forEach(histogram::add);
+
+        if(recordCount <= 0) {
+            minScore = null;
+            maxScore = null;
+        }else if(delta.getAddedMin() != null) {
+            minScore = (minScore == null) ? delta.getAddedMin() : Math.min(minScore, delta.getAddedMin());
+            maxScore = (maxScore == null) ? delta.getAddedMax() : Math.max(maxScore, delta.getAddedMax());
+        }
+    }
+
+    /**
+     * Returns an estimate of the score at the param percentile: the score that the param percent of the records are
+     * at or below.  Scores below 16 (in magnitude) are exact, and other scores are within 1/16th of the true score.
+     *
+     * @param percentile Percentile, from 0 to 100
+     * @return Estimated score at the percentile, or null if there are no records
+     */
+    public Long getPercentile(final double percentile) {
+        if(recordCount <= 0) {
+            return null;
+        }
+
+        long rank = Math.min(Math.max(0, (long) Math.ceil(percentile / 100.0 * recordCount) - 1), recordCount - 1);
+        if(minScore == null || maxScore == null) {
+            return histogram.scoreAtRank(rank);
+        }
+        // The lowest and highest scores are exact, and the true score at any other rank is always between them
+        if(rank == 0) {
+            return (long) minScore;
+        }else if(rank == recordCount - 1) {
+            return (long) maxScore;
+        }
+        return Math.max(minScore, Math.min(maxScore, histogram.scoreAtRank(rank)));
+    }
+
+    /**
+     * Returns these statistics as a JSON object, with the param percentiles and the non-empty histogram buckets (as
+     * [lowest score, highest score, count] arrays).
+     *
+     * @param percentiles Percentiles to include
+     * @return JSON object describing these statistics
+     */
+    public JsonObject toJson(final double[] percentiles) {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("count", recordCount);
+        stats.addProperty("min", minScore);
+        stats.addProperty("max", maxScore);
+        stats.addProperty("mean", (recordCount <= 0) ? null : (double) scoreSum / recordCount);
+
+        JsonObject percentileObject = new JsonObject();
+        for(double percentile : percentiles) {
+            String name = (percentile == Math.rint(percentile)) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+            percentileObject.addProperty("p" + name, getPercentile(percentile));
+        }
+        stats.add("percentiles", percentileObject);
+
+        JsonArray histogramArray = new JsonArray();
+        for(int bucket=0; bucket<ScoreHistogram.NUM_BUCKETS; bucket++) {
+            if(histogram.getCount(bucket) > 0) {
+                JsonArray bucketArray = new JsonArray();
+                bucketArray.add(ScoreHistogram.lowerBound(bucket));
+                bucketArray.add(ScoreHistogram.upperBound(bucket));
+                bucketArray.add(histogram.getCount(bucket));
+                histogramArray.add(bucketArray);
+            }
+        }
+        stats.add("histogram", histogramArray);
+
+        return stats;
+    }
+}
@@ -0,0 +1,163 @@
+package com.tdberg.apps.leaderboard.stats;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed set of log scaled score buckets, covering every int score.  Scores below 16 (in magnitude) each have their
+ * own bucket, and every power of two above that is split into 16 equal buckets, so a bucket never spans more than
+ * 1/16th of the scores it holds.  Negative scores mirror the positive buckets.
+ * NOTE: Since the buckets are fixed, histograms can be added to and subtracted from (one record at a time) without
+ *       ever being rebuilt, and a percentile is found by walking at most NUM_BUCKETS counts.
+ */
+public class ScoreHistogram {
+    private static int SUB_BUCKET_BITS = 4;
+    private static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Buckets for the magnitudes 0 to Integer.MAX_VALUE: SUB_BUCKETS exact values, then SUB_BUCKETS per power of two
+    // from 2^SUB_BUCKET_BITS to 2^30
+    private static int MAGNITUDE_BUCKETS = SUB_BUCKETS + (31 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    public static int NUM_BUCKETS = 2 * MAGNITUDE_BUCKETS;
+
+    private int[] counts = new int[NUM_BUCKETS];
+
+    /**
+     * Returns the bucket that the param score falls in.
+     *
+     * @param score Score to find the bucket of
+     * @return Bucket of the score, from 0 (the lowest scores) to NUM_BUCKETS - 1
+     */
+    public static int bucketOf(final int score) {
+        if(score >= 0) {
+            return MAGNITUDE_BUCKETS + magnitudeBucket(score);
+        }
+        // -1 is the first negative bucket, so the magnitudes of negative scores are shifted by one (which also keeps
+        // Integer.MIN_VALUE in range)
+        return MAGNITUDE_BUCKETS - 1 - magnitudeBucket(-(score + 1));
+    }
+
+    /**
+     * Returns the lowest score that falls in the param bucket.
+     *
+     * @param bucket Bucket, from 0 to NUM_BUCKETS - 1
+     * @return Lowest score of the bucket
+     */
+    public static long lowerBound(final int bucket) {
+        if(bucket >= MAGNITUDE_BUCKETS) {
+            return magnitudeLowerBound(bucket - MAGNITUDE_BUCKETS);
+        }
+        return -magnitudeUpperBound(MAGNITUDE_BUCKETS - 1 - bucket) - 1;
+    }
+
+    /**
+     * Returns the highest score that falls in the param bucket.
+     *
+     * @param bucket Bucket, from 0 to NUM_BUCKETS - 1
+     * @return Highest score of the bucket
+     */
+    public static long upperBound(final int bucket) {
+        if(bucket >= MAGNITUDE_BUCKETS) {
+            return magnitudeUpperBound(bucket - MAGNITUDE_BUCKETS);
+        }
+        return -magnitudeLowerBound(MAGNITUDE_BUCKETS - 1 - bucket) - 1;
+    }
+
+    private static int magnitudeBucket(final int magnitude) {
+        if(magnitude < SUB_BUCKETS) {
+            return magnitude;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(magnitude);
+        int subBucket = (magnitude >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long magnitudeLowerBound(final int magnitudeBucket) {
+        if(magnitudeBucket < SUB_BUCKETS) {
+            return magnitudeBucket;
+        }
+        int shift = (magnitudeBucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (magnitudeBucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    private static long magnitudeUpperBound(final int magnitudeBucket) {
+        if(magnitudeBucket < SUB_BUCKETS) {
+            return magnitudeBucket;
+        }
+        int shift = (magnitudeBucket - SUB_BUCKETS) / SUB_BUCKETS;
+        return magnitudeLowerBound(magnitudeBucket) + (1L << shift) - 1;
+    }
+
+    /**
+     * Adds the param count (which may be negative) to the param bucket.
+     *
+     * @param bucket Bucket, from 0 to NUM_BUCKETS - 1
+     * @param count Number of scores to add to the bucket
+     */
+    public void add(final int bucket, final int count) {
+        counts[bucket] += count;
+    }
+
+    public int getCount(final int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Returns an estimate of the score at the param rank (0 being the lowest score), interpolated within the bucket
+     * that holds the rank.
+     *
+     * @param rank Rank of the score, from 0 to the number of scores - 1
+     * @return Estimated score at the rank
+     */
+    public long scoreAtRank(final long rank) {
+        long countBelow = 0;
+        for(int bucket=0; bucket<NUM_BUCKETS; bucket++) {
+            if(counts[bucket] > 0 && rank < countBelow + counts[bucket]) {
+                long lower = lowerBound(bucket);
+                long width = upperBound(bucket) - lower;
+                return lower + Math.round(width * ((rank - countBelow) + 0.5) / counts[bucket]);
+            }
+            countBelow += Math.max(counts[bucket], 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the non-empty buckets of this histogram as (bucket, count) pairs.
+     *
+     * @return Compact binary form of this histogram
+     */
+    public byte[] toBytes() {
+        int nonEmpty = 0;
+        for(int count : counts) {
+            if(count != 0) {
+                nonEmpty++;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(nonEmpty * 6);
+        for(int bucket=0; bucket<NUM_BUCKETS; bucket++) {
+            if(counts[bucket] != 0) {
+                buffer.putShort((short) bucket);
+                buffer.putInt(counts[bucket]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns the histogram held in the param binary form (see toBytes).
+     *
+     * @param bytes Compact binary form of a histogram (may be null, for an empty histogram)
+     * @return ScoreHistogram described by the bytes
+     */
+    public static ScoreHistogram fromBytes(final byte[] bytes) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        if(bytes != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.remaining() >= 6) {
+                int bucket = buffer.getShort();
+                histogram.counts[bucket] = buffer.getInt();
+            }
+        }
+        return histogram;
+    }
+}
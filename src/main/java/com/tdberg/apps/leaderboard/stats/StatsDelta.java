@@ -0,0 +1,132 @@
+package com.tdberg.apps.leaderboard.stats;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The changes made to the records of one leaderboard in a single transaction, collected so that the leaderboard's
+ * statistics (see BoardStats) can be updated once, in the same transaction, instead of being rebuilt from the records.
+ * NOTE: A StatsDelta belongs to a single transaction attempt.  If the transaction is rolled back, it is discarded.
+ */
+public class StatsDelta {
+    private boolean cleared = false;
+    private Map<Integer, BucketDelta> buckets = new TreeMap<>();
+
+    /**
+     * Records that a record with the param score was added to the param window.
+     *
+     * @param bucket Window bucket of the record
+     * @param score Score of the record
+     */
+    public void recordAdded(final int bucket, final int score) {
+        getBucketDelta(bucket).add(score, 1);
+    }
+
+    /**
+     * Records that a record with the param score was removed from the param window.
+     *
+     * @param bucket Window bucket of the record
+     * @param score Score of the record
+     */
+    public void recordRemoved(final int bucket, final int score) {
+        getBucketDelta(bucket).add(score, -1);
+    }
+
+    /**
+     * Records that the score of a record in the param window changed.
+     *
+     * @param bucket Window bucket of the record
+     * @param oldScore Score of the record before the change
+     * @param newScore Score of the record after the change
+     */
+    public void recordChanged(final int bucket, final int oldScore, final int newScore) {
+        if(oldScore != newScore) {
+            recordRemoved(bucket, oldScore);
+            recordAdded(bucket, newScore);
+        }
+    }
+
+    /**
+     * Records that every record of the leaderboard (in every window) was removed.  Changes collected before this one
+     * no longer matter.
+     */
+    public void boardCleared() {
+        cleared = true;
+        buckets.clear();
+    }
+
+    public boolean isCleared() {
+        return cleared;
+    }
+
+    public Map<Integer, BucketDelta> getBuckets() {
+        return buckets;
+    }
+
+    private BucketDelta getBucketDelta(final int bucket) {
+        BucketDelta delta = buckets.get(bucket);
+        if(delta == null) {
+            delta = new BucketDelta();
+            buckets.put(bucket, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * The changes made to one window of the leaderboard.
+     */
+    public static class BucketDelta {
+        private int countDelta = 0;
+        private long sumDelta = 0;
+        private Map<Integer, Integer> histogramDelta = new TreeMap<>();
+        private Integer addedMin;
+        private Integer addedMax;
+        private Integer removedMin;
+        private Integer removedMax;
+
+        private void add(final int score, final int count) {
+            countDelta += count;
+            sumDelta += (long) score * count;
+            histogramDelta.merge(ScoreHistogram.bucketOf(score), count, Integer::sum);
+            if(count > 0) {
+                addedMin = (addedMin == null) ? score : Math.min(addedMin, score);
+                addedMax = (addedMax == null) ? score : Math.max(addedMax, score);
+            }else {
+                removedMin = (removedMin == null) ? score : Math.min(removedMin, score);
+                removedMax = (removedMax == null) ? score : Math.max(removedMax, score);
+            }
+        }
+
+        public int getCountDelta() {
+            return countDelta;
+        }
+
+        public long getSumDelta() {
+            return sumDelta;
+        }
+
+        public Map<Integer, Integer> getHistogramDelta() {
+            return histogramDelta;
+        }
+
+        public Integer getAddedMin() {
+            return addedMin;
+        }
+
+        public Integer getAddedMax() {
+            return addedMax;
+        }
+
+        /**
+         * Returns whether a removed record may have held the lowest or highest score of the param statistics, in
+         * which case they can only be found by reading the remaining records.
+         *
+         * @param stats Statistics of the window before this change
+         * @return True if the lowest and highest scores must be read again
+         */
+        public boolean removesMinOrMax(final BoardStats stats) {
+            return removedMin != null && stats.getMinScore() != null &&
+                   (removedMin <= stats.getMinScore() || removedMax >= stats.getMaxScore());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.tdberg.apps.leaderboard.timing;
+
+/**
+ * The phases that a request's time is broken down into.  Each phase has the short name that it is reported under in
+ * the Server-Timing header.
+ */
+public enum Phase {
+    // Resolving the public or private key of the request to a leaderboard
+    RESOLVE("resolve"),
+    // Looking the leaderboard up in the board cache
+    CACHE("cache"),
+    // Waiting for a change to the leaderboard (long-poll GET)
+    WAIT("wait"),
+    // Waiting for an identical GET that was already in flight, and sharing its response
+    COALESCE("coalesce"),
+    // Reading records from the database (for GET, this includes encoding each record as it is read)
+    READ("read"),
+    // Inserting, updating or deleting records
+    WRITE("write"),
+    // Waiting for the leaderboard's writer: behind earlier changes to the leaderboard, then for the group of changes
+    // to be pruned and committed
+    QUEUE("queue"),
+    // Updating the last query time of the leaderboard
+    QUERY_TIME("querytime"),
+    // Encoding the response payload
+    ENCODE("encode");
+
+    private String metricName;
+
+    Phase(final String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,133 @@
+package com.tdberg.apps.leaderboard.timing;
+
+import jdk.jfr.EventType;
+import spark.Request;
+
+/**
+ * Measures how long a single request spends in each Phase.  Each call to mark() charges the time since the previous
+ * mark (or since the timer was created) to the param phase, so the request paths only have to mark the end of each
+ * phase.
+ * NOTE: A PhaseTimer is attached to a request (as a request attribute) only when the Server-Timing header is enabled
+ *       or the RequestTimingEvent is being recorded by JFR.  Otherwise, PhaseTimer.of() returns a shared timer that
+ *       ignores all marks, so the request paths do not need to check whether timing is on.
+ */
+public class PhaseTimer {
+    private static String REQUEST_ATTRIBUTE = "phaseTimer";
+    private static PhaseTimer DISABLED = new PhaseTimer(false);
+    private static EventType EVENT_TYPE = EventType.getEventType(RequestTimingEvent.class);
+
+    private boolean enabled;
+    private long startNanos;
+    private long lastNanos;
+    private long[] phaseNanos = new long[Phase.values().length];
+
+    private PhaseTimer(final boolean enabled) {
+        this.enabled = enabled;
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+    }
+
+    /**
+     * Attaches a new PhaseTimer to the param request, if timing is wanted for it.
+     *
+     * @param request Spark HTTP Request
+     * @param serverTimingEnabled True if the Server-Timing header is enabled
+     * @return The attached PhaseTimer, or the disabled timer if timing is not wanted
+     */
+    public static PhaseTimer start(final Request request, final boolean serverTimingEnabled) {
+        if(!serverTimingEnabled && !EVENT_TYPE.isEnabled()) {
+            return DISABLED;
+        }
+        PhaseTimer timer = new PhaseTimer(true);
+        request.attribute(REQUEST_ATTRIBUTE, timer);
+        return timer;
+    }
+
+    /**
+     * Returns the PhaseTimer attached to the param request, or the disabled timer if there is none.
+     *
+     * @param request Spark HTTP Request (may be null)
+     * @return PhaseTimer for the request
+     */
+    public static PhaseTimer of(final Request request) {
+        PhaseTimer timer = (request == null) ? null : request.attribute(REQUEST_ATTRIBUTE);
+        return (timer == null) ? DISABLED : timer;
+    }
+
+    /**
+     * Charges the time since the previous mark to the param phase.
+     *
+     * @param phase Phase that has just ended
+     */
+    public void mark(final Phase phase) {
+        if(!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - lastNanos;
+        lastNanos = now;
+    }
+
+    /**
+     * Returns whether this timer is recording.
+     *
+     * @return True if this timer is recording
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the value of a Server-Timing header describing the recorded phases, in milliseconds, followed by the
+     * total time of the request so far.  Phases with no recorded time are left out.
+     *
+     * @return Server-Timing header value
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for(Phase phase : Phase.values()) {
+            long nanos = phaseNanos[phase.ordinal()];
+            if(nanos > 0) {
+                appendMetric(header, phase.getMetricName(), nanos);
+            }
+        }
+        appendMetric(header, "total", System.nanoTime() - startNanos);
+        return header.toString();
+    }
+
+    /**
+     * Commits a JFR RequestTimingEvent with the recorded phases, if the event is being recorded.
+     *
+     * @param route Route of the request
+     * @param status HTTP status of the response
+     */
+    public void commitEvent(final String route, final int status) {
+        if(!enabled) {
+            return;
+        }
+
+        RequestTimingEvent event = new RequestTimingEvent();
+        if(!event.isEnabled()) {
+            return;
+        }
+        event.route = route;
+        event.status = status;
+        event.resolve = phaseNanos[Phase.RESOLVE.ordinal()];
+        event.cache = phaseNanos[Phase.CACHE.ordinal()];
+        event.wait = phaseNanos[Phase.WAIT.ordinal()];
+        event.coalesce = phaseNanos[Phase.COALESCE.ordinal()];
+        event.read = phaseNanos[Phase.READ.ordinal()];
+        event.write = phaseNanos[Phase.WRITE.ordinal()];
+        event.queue = phaseNanos[Phase.QUEUE.ordinal()];
+        event.queryTime = phaseNanos[Phase.QUERY_TIME.ordinal()];
+        event.encode = phaseNanos[Phase.ENCODE.ordinal()];
+        event.commit();
+    }
+
+    private static void appendMetric(final StringBuilder header, final String name, final long nanos) {
+        if(header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(nanos / 1000 / 1000.0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tdberg.apps.leaderboard.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event describing the phase timings of a single request.  Events are only created and committed
+ * while a recording that enables this event is running, so this costs next to nothing otherwise.
+ */
+@Name("com.tdberg.leaderboard.RequestTiming")
+@Label("Leaderboard Request Timing")
+@Category("Leaderboard")
+@Description("Time spent in each phase of a leaderboard request")
+class RequestTimingEvent extends jdk.jfr.Event {
+    @Label("Route")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Resolve") @Timespan(Timespan.NANOSECONDS)
+    long resolve;
+
+    @Label("Cache") @Timespan(Timespan.NANOSECONDS)
+    long cache;
+
+    @Label("Wait") @Timespan(Timespan.NANOSECONDS)
+    long wait;
+
+    @Label("Coalesce") @Timespan(Timespan.NANOSECONDS)
+    long coalesce;
+
+    @Label("Read") @Timespan(Timespan.NANOSECONDS)
+    long read;
+
+    @Label("Write") @Timespan(Timespan.NANOSECONDS)
+    long write;
+
+    @Label("Queue") @Timespan(Timespan.NANOSECONDS)
+    long queue;
+
+    @Label("Query Time") @Timespan(Timespan.NANOSECONDS)
+    long queryTime;
+
+    @Label("Encode") @Timespan(Timespan.NANOSECONDS)
+    long encode;
+}
@@ -1,8 +1,12 @@
 package com.tdberg.apps.leaderboard.utils;
 
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 public class ApiKey {
+    // Private keys are the first 31 hex digits of a UUID
+    private static Pattern PRIVATE_KEY_PATTERN = Pattern.compile("[0-9a-f]{31}");
+
     /**
      * Creates a new private key and returns it as a String.
      * NOTE: We do not currently check this against the database listings for uniqueness before returning it, 
@@ -17,6 +21,16 @@ public class ApiKey {
         return privKey;
     }
 
+    /**
+     * Returns whether the param String has the form of a private key created by createPrivateKey.
+     *
+     * @param key String to check
+     * @return True if the String could be a private key
+     */
+    public static boolean isPrivateKeyFormat(final String key) {
+        return key != null && PRIVATE_KEY_PATTERN.matcher(key).matches();
+    }
+
     /**
      * Creates a new public key and returns it as a String.
      * NOTE: We do not currently check this against the database listings for uniqueness before returning it, 
@@ -0,0 +1,133 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to a failing dependency (the database) for a while, so that callers fail straight away instead of each
+ * waiting on it to time out.  The breaker opens when 'failureThreshold' failures are reported within 'windowMillis'.
+ * Once it has been open for 'openMillis', a single trial call is let through (HALF_OPEN): if it succeeds the breaker
+ * closes, and if it fails the breaker stays open for another 'openMillis'.
+ * NOTE: Only successes reported while the breaker is HALF_OPEN change its state, so a dependency that succeeds at some
+ *       calls and times out on others still opens the breaker if it fails often enough.
+ */
+public class CircuitBreaker {
+    private static Logger logger = LogManager.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private String name;
+    private int failureThreshold;
+    private long windowNanos;
+    private long openNanos;
+    private State state = State.CLOSED;
+    private int windowFailures;
+    private long windowStartNanos;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+    private long openCount;
+
+    /**
+     * Filled out constructor
+     *
+     * @param name Name of the dependency, for logging
+     * @param failureThreshold Number of failures within the window that opens the breaker
+     * @param windowMillis Length of the window that failures are counted in, in milliseconds
+     * @param openMillis How long the breaker stays open before a trial call, in milliseconds
+     */
+    public CircuitBreaker(final String name, final int failureThreshold, final long windowMillis, final long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        windowStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns whether a call may be made now.  A caller that is allowed through while the breaker is not CLOSED is the
+     * trial call, and must report its outcome.
+     *
+     * @return True if the call may be made
+     */
+    public synchronized boolean allowRequest() {
+        if(state == State.CLOSED) {
+            return true;
+        }
+        if(state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        if(state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports a successful call.
+     */
+    public synchronized void recordSuccess() {
+        if(state == State.HALF_OPEN) {
+            logger.info("Circuit breaker for " + name + " closed");
+            state = State.CLOSED;
+            trialInFlight = false;
+            windowFailures = 0;
+            windowStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reports a failed call.
+     */
+    public synchronized void recordFailure() {
+        long now = System.nanoTime();
+        if(state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAtNanos = now;
+            trialInFlight = false;
+            return;
+        }
+        if(state == State.OPEN) {
+            return;
+        }
+
+        if(now - windowStartNanos > windowNanos) {
+            windowFailures = 0;
+            windowStartNanos = now;
+        }
+        if(++windowFailures >= failureThreshold) {
+            logger.error("Circuit breaker for " + name + " opened after " + windowFailures + " failures");
+            state = State.OPEN;
+            openedAtNanos = now;
+            openCount++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns whether calls are currently being stopped (the breaker is OPEN or HALF_OPEN).
+     *
+     * @return True if the breaker is not CLOSED
+     */
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Returns the number of times the breaker has opened.
+     *
+     * @return Number of times opened
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+}
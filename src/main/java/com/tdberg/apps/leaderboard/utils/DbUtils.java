@@ -1,11 +1,21 @@
 package com.tdberg.apps.leaderboard.utils;
 
+import com.tdberg.apps.leaderboard.export.ExportSink;
+import com.tdberg.apps.leaderboard.formats.RankedRecordSink;
+import com.tdberg.apps.leaderboard.formats.RecordSink;
 import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
 import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+import com.tdberg.apps.leaderboard.stats.BoardStats;
+import com.tdberg.apps.leaderboard.stats.ScoreHistogram;
+import com.tdberg.apps.leaderboard.stats.StatsDelta;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -16,32 +26,176 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * A collection of static methods used to create connections with and perform queries/statements on MySQL database instances.
  */
 public class DbUtils {
-    private static int MAX_LEADERBOARD_SIZE = 1000;
-
-    private static String INSERT_LEADERBOARD_COMMAND = "INSERT INTO leaderboards (privkey, pubkey, last_query) " +
-                                                     "VALUES (?, ?, ?)";
-    private static String INSERT_RECORD_COMMAND = "INSERT INTO records (board_id, name, score, time, notes, ip_address, submission_time) " +
-                                                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    public static int MAX_LEADERBOARD_SIZE = 1000;
+    // Longest name (in characters) and notes (in UTF-8 bytes, as notes are TINYTEXT) that the 'records' table holds
+    public static int MAX_NAME_LENGTH = 30;
+    public static int MAX_NOTES_LENGTH = 255;
+
+    private static String INSERT_LEADERBOARD_COMMAND = "INSERT INTO leaderboards (privkey, pubkey, last_query, window_type, ranking_mode) " +
+                                                     "VALUES (?, ?, ?, ?, ?)";
+    private static String INSERT_RECORD_COMMAND = "INSERT INTO records (board_id, name, score, time, notes, ip_address, submission_time, bucket) " +
+                                                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
     private static String GET_ALL_LEADERBOARDS_COMMAND = "SELECT * FROM leaderboards";
-    private static String GET_LEADER_FROM_PUBKEY_TEMPLATE = "SELECT * FROM leaderboards WHERE pubkey='%s'";
-    private static String GET_LEADER_FROM_PRIVKEY_TEMPLATE = "SELECT * FROM leaderboards WHERE privkey='%s'";
+    private static String GET_LEADER_FROM_PUBKEY_COMMAND = "SELECT * FROM leaderboards WHERE pubkey=?";
+    private static String GET_LEADER_FROM_PRIVKEY_COMMAND = "SELECT * FROM leaderboards WHERE privkey=?";
+    private static String GET_LEADERS_FROM_PUBKEYS_TEMPLATE = "SELECT * FROM leaderboards WHERE pubkey IN (%s)";
     private static String UPDATE_LEADERBOARD_MODTIME_TEMPLATE = "UPDATE leaderboards set last_query=? WHERE board_id=?";
     private static String MODIFY_RECORD_TEMPLATE = "UPDATE records set name=?, score=?, time=?, notes=?, ip_address=?, " +
                                                  "submission_time=? WHERE record_id=?";
     private static String DELETE_RECORD_TEMPLATE = "DELETE FROM records WHERE record_id=%d";
     private static String DELETE_BOARD_TEMPLATE = "DELETE FROM leaderboards WHERE board_id=%d";
-    private static String GET_RECORDS_FROM_BOARD_ID_TEMPLATE = "SELECT * FROM records WHERE board_id=%d ORDER BY score DESC";
+    // Each ranking mode has its own ORDER BY (ending in record_id, so that the order is always well defined), and its own
+    // keyset condition for the records ranked after a cursor record.  The keyset condition takes each ranking value of
+    // the cursor twice, followed by the cursor record ID.
+    private static Map<RankingMode, String> RANKING_ORDER = Map.of(
+            RankingMode.SCORE_DESC, "score DESC, record_id ASC",
+            RankingMode.TIME_ASC, "time ASC, record_id ASC",
+            RankingMode.SCORE_THEN_TIME, "score DESC, time ASC, record_id ASC");
+    private static Map<RankingMode, String> RANKING_AFTER_CONDITION = Map.of(
+            RankingMode.SCORE_DESC, "(score < ? OR (score = ? AND record_id > ?))",
+            RankingMode.TIME_ASC, "(time > ? OR (time = ? AND record_id > ?))",
+            RankingMode.SCORE_THEN_TIME, "(score < ? OR (score = ? AND (time > ? OR (time = ? AND record_id > ?))))");
+    // The records of a leaderboard window that rank above record 'f', for computing the rank of 'f'
+    private static Map<RankingMode, String> RANKING_ABOVE_CONDITION = Map.of(
+            RankingMode.SCORE_DESC, "(r.score > f.score OR (r.score = f.score AND r.record_id < f.record_id))",
+            RankingMode.TIME_ASC, "(r.time < f.time OR (r.time = f.time AND r.record_id < f.record_id))",
+            RankingMode.SCORE_THEN_TIME, "(r.score > f.score OR (r.score = f.score AND (r.time < f.time OR " +
+                                         "(r.time = f.time AND r.record_id < f.record_id))))");
+    private static String GET_RECORDS_FROM_BOARD_ID_TEMPLATE = "SELECT * FROM records WHERE board_id=%d ORDER BY %s";
     private static String GET_RECORD_BY_BOARD_ID_AND_RECORD_ID_TEMPLATE = "SELECT * FROM records WHERE board_id=? AND record_id=?";
+    // Paged reads only select the user facing columns (board_id and ip_address are never sent to the user), and are
+    // ordered by the RANKING_ORDER of the leaderboard's ranking mode.
+    private static String RECORD_PAGE_COLUMNS = "record_id, name, score, time, notes, submission_time";
+    private static String GET_RECORD_PAGE_TEMPLATE = "SELECT " + RECORD_PAGE_COLUMNS + " FROM records WHERE board_id=? AND bucket=? " +
+                                                   "ORDER BY %s LIMIT ? OFFSET ?";
+    private static String GET_RECORD_PAGE_AFTER_TEMPLATE = "SELECT " + RECORD_PAGE_COLUMNS + " FROM records WHERE board_id=? AND bucket=? " +
+                                                         "AND %s ORDER BY %s LIMIT ?";
+    private static String GET_NAMED_RECORDS_TEMPLATE = "SELECT record_id, name, score, time FROM records WHERE board_id=? AND bucket=? " +
+                                                     "AND name IN (%s)";
+    private static String GET_RANKED_NAMED_RECORDS_TEMPLATE = "SELECT f.record_id, f.name, f.score, f.time, f.notes, " +
+                                                            "f.submission_time, (SELECT COUNT(*) FROM records r " +
+                                                            "WHERE r.board_id = f.board_id AND r.bucket = f.bucket " +
+                                                            "AND %s) + 1 AS record_rank FROM records f " +
+                                                            "WHERE f.board_id=? AND f.bucket=? AND f.name IN (%s) " +
+                                                            "ORDER BY record_rank";
+    // Prefix searches escape the LIKE wildcards in the prefix with '!', so that the prefix is matched literally
+    private static String GET_RANKED_NAME_PREFIX_RECORDS_TEMPLATE = "SELECT f.record_id, f.name, f.score, f.time, f.notes, " +
+                                                                  "f.submission_time, (SELECT COUNT(*) FROM records r " +
+                                                                  "WHERE r.board_id = f.board_id AND r.bucket = f.bucket " +
+                                                                  "AND %s) + 1 AS record_rank FROM records f " +
+                                                                  "WHERE f.board_id=? AND f.bucket=? AND f.name LIKE ? ESCAPE '!' " +
+                                                                  "ORDER BY f.name, f.record_id LIMIT ?";
+    private static Pattern LIKE_SPECIAL_CHARACTERS = Pattern.compile("[!%_]");
+    private static String GET_PRUNABLE_RECORDS_TEMPLATE = "SELECT record_id, score FROM records WHERE board_id=? AND bucket=? " +
+                                                        "ORDER BY %s LIMIT 18446744073709551615 OFFSET ?";
+    private static String DELETE_RECORD_BY_ID_COMMAND = "DELETE FROM records WHERE record_id=?";
+    private static String DELETE_BOARD_RECORDS_COMMAND = "DELETE FROM records WHERE board_id=?";
+    private static String DELETE_EXPIRED_BUCKETS_COMMAND = "DELETE records FROM records JOIN leaderboards " +
+                                                         "ON records.board_id = leaderboards.board_id " +
+                                                         "WHERE leaderboards.window_type=? AND records.bucket<?";
+    // Score statistics are kept per leaderboard window, and updated in the same transaction as the records they describe
+    private static String GET_BOARD_STATS_COMMAND = "SELECT record_count, score_sum, score_min, score_max, histogram " +
+                                                  "FROM board_stats WHERE board_id=? AND bucket=?";
+    private static String GET_BOARD_STATS_FOR_UPDATE_COMMAND = GET_BOARD_STATS_COMMAND + " FOR UPDATE";
+    private static String GET_BUCKET_SCORES_COMMAND = "SELECT score FROM records WHERE board_id=? AND bucket=?";
+    private static String GET_BUCKET_MIN_MAX_COMMAND = "SELECT MIN(score), MAX(score) FROM records WHERE board_id=? AND bucket=?";
+    private static String UPSERT_BOARD_STATS_COMMAND = "INSERT INTO board_stats (board_id, bucket, record_count, score_sum, " +
+                                                     "score_min, score_max, histogram) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                                                     "ON DUPLICATE KEY UPDATE record_count=VALUES(record_count), " +
+                                                     "score_sum=VALUES(score_sum), score_min=VALUES(score_min), " +
+                                                     "score_max=VALUES(score_max), histogram=VALUES(histogram)";
+    private static String INSERT_BOARD_STATS_IF_ABSENT_COMMAND = "INSERT IGNORE INTO board_stats (board_id, bucket, " +
+                                                               "record_count, score_sum, score_min, score_max, histogram) " +
+                                                               "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static String DELETE_BOARD_STATS_COMMAND = "DELETE FROM board_stats WHERE board_id=?";
+    private static String DELETE_EXPIRED_BUCKET_STATS_COMMAND = "DELETE board_stats FROM board_stats JOIN leaderboards " +
+                                                              "ON board_stats.board_id = leaderboards.board_id " +
+                                                              "WHERE leaderboards.window_type=? AND board_stats.bucket<?";
+    // Inactive leaderboards are moved (with their records) into compressed archive tables, and moved back on access.
+    // Columns are always listed explicitly, so the archive tables do not need to match the column order of the hot tables.
+    private static String LEADERBOARD_COLUMNS = "board_id, privkey, pubkey, last_query, window_type, ranking_mode";
+    private static String RECORD_COLUMNS = "board_id, record_id, name, score, time, notes, ip_address, submission_time, bucket";
+    private static String GET_INACTIVE_BOARD_IDS_TEMPLATE = "SELECT board_id FROM leaderboards WHERE last_query<? " +
+                                                          "ORDER BY last_query LIMIT ? FOR UPDATE";
+    private static String ARCHIVE_BOARDS_TEMPLATE = "INSERT INTO leaderboards_archive (" + LEADERBOARD_COLUMNS + ", archived_at) " +
+                                                  "SELECT " + LEADERBOARD_COLUMNS + ", ? FROM leaderboards WHERE board_id IN (%s)";
+    private static String ARCHIVE_RECORDS_TEMPLATE = "INSERT INTO records_archive (" + RECORD_COLUMNS + ") " +
+                                                   "SELECT " + RECORD_COLUMNS + " FROM records WHERE board_id IN (%s)";
+    private static String DELETE_RECORDS_OF_BOARDS_TEMPLATE = "DELETE FROM records WHERE board_id IN (%s)";
+    private static String DELETE_BOARDS_TEMPLATE = "DELETE FROM leaderboards WHERE board_id IN (%s)";
+    private static String ARCHIVED_BOARD_EXISTS_TEMPLATE = "SELECT 1 FROM leaderboards_archive WHERE %s=? LIMIT 1";
+    private static String GET_ARCHIVED_BOARD_ID_TEMPLATE = "SELECT board_id FROM leaderboards_archive WHERE %s=? FOR UPDATE";
+    private static String KEY_IN_USE_TEMPLATE = "SELECT 1 FROM leaderboards WHERE %1$s=? UNION ALL " +
+                                                "SELECT 1 FROM leaderboards_archive WHERE %1$s=? LIMIT 1";
+    private static String RESTORE_BOARD_COMMAND = "INSERT INTO leaderboards (" + LEADERBOARD_COLUMNS + ") " +
+                                                "SELECT board_id, privkey, pubkey, ?, window_type, ranking_mode FROM leaderboards_archive " +
+                                                "WHERE board_id=?";
+    private static String RESTORE_RECORDS_COMMAND = "INSERT INTO records (" + RECORD_COLUMNS + ") " +
+                                                  "SELECT " + RECORD_COLUMNS + " FROM records_archive WHERE board_id=?";
+    private static String DELETE_ARCHIVED_RECORDS_COMMAND = "DELETE FROM records_archive WHERE board_id=?";
+    private static String DELETE_ARCHIVED_BOARD_COMMAND = "DELETE FROM leaderboards_archive WHERE board_id=?";
+    private static String GET_ALL_ARCHIVED_LEADERBOARDS_COMMAND = "SELECT board_id, privkey, pubkey FROM leaderboards_archive";
+    // Exports read the user facing columns of each record, along with the public key of its leaderboard.  A full export
+    // also reads the archive tables, so that it covers every record in the database.
+    private static String EXPORT_COLUMNS = "l.pubkey, r.bucket, r.record_id, r.name, r.score, r.time, r.notes, r.submission_time";
+    private static String EXPORT_BOARD_RECORDS_COMMAND = "SELECT " + EXPORT_COLUMNS + " FROM records r JOIN leaderboards l " +
+                                                       "ON r.board_id = l.board_id WHERE r.board_id=? ORDER BY r.bucket";
+    private static String EXPORT_ALL_RECORDS_COMMAND = "SELECT " + EXPORT_COLUMNS + " FROM records r JOIN leaderboards l " +
+                                                     "ON r.board_id = l.board_id UNION ALL " +
+                                                     "SELECT " + EXPORT_COLUMNS + " FROM records_archive r " +
+                                                     "JOIN leaderboards_archive l ON r.board_id = l.board_id";
+    // Streaming connections fetch rows through a server side cursor, a bounded number of rows at a time
+    private static String STREAMING_CONNECTION_OPTIONS = "&useCursorFetch=true";
+    private static String BULK_CONNECTION_OPTIONS = "&rewriteBatchedStatements=true";
+    private static String TIMEOUT_CONNECTION_OPTIONS_TEMPLATE = "&connectTimeout=%d&socketTimeout=%d";
+    // Indexes maintained on the 'records' table, as index name -> CREATE INDEX command.  Indexes listed in
+    // OBSOLETE_RECORDS_INDEXES have been replaced, and are dropped if they are found.
+    private static Map<String, String> RECORDS_INDEXES = Map.of(
+            "records_board_bucket_score_idx", "CREATE INDEX records_board_bucket_score_idx ON records (board_id, bucket, score DESC, record_id)",
+            "records_board_bucket_time_idx", "CREATE INDEX records_board_bucket_time_idx ON records (board_id, bucket, time, record_id)",
+            "records_board_bucket_score_time_idx", "CREATE INDEX records_board_bucket_score_time_idx ON records (board_id, bucket, score DESC, time, record_id)",
+            "records_board_bucket_name_idx", "CREATE INDEX records_board_bucket_name_idx ON records (board_id, bucket, name)");
+    private static List<String> OBSOLETE_RECORDS_INDEXES = List.of("records_board_score_idx");
+    // Indexes maintained on the 'leaderboards' table, for the lookups by key
+    private static Map<String, String> LEADERBOARDS_INDEXES = Map.of(
+            "leaderboards_privkey_idx", "CREATE INDEX leaderboards_privkey_idx ON leaderboards (privkey)",
+            "leaderboards_pubkey_idx", "CREATE INDEX leaderboards_pubkey_idx ON leaderboards (pubkey)");
+    // Columns added to the tables after their initial release, as {table, column, column definition}
+    private static String[][] ADDED_COLUMNS = {
+            {"leaderboards", "window_type", "VARCHAR(10) NOT NULL DEFAULT 'NONE'"},
+            {"records", "bucket", "INTEGER NOT NULL DEFAULT 0"},
+            {"leaderboards", "ranking_mode", "VARCHAR(16) NOT NULL DEFAULT 'SCORE_DESC'"},
+            {"leaderboards_archive", "ranking_mode", "VARCHAR(16) NOT NULL DEFAULT 'SCORE_DESC'"}};
 
     private static final Logger logger = LogManager.getLogger(DbUtils.class);
 
+    /**
+     * Returns whether the param name and notes fit in the 'records' table.  A name that does not fit (or any value that
+     * does not fit, in a batch) would fail the whole statement it is written in.
+     *
+     * @param name Name of a record, or null
+     * @param notes Notes of a record, or null
+     * @return True if both fit in their columns
+     */
+    public static boolean fitsRecordColumns(final String name, final String notes) {
+        return (name == null || name.length() <= MAX_NAME_LENGTH) &&
+               (notes == null || notes.getBytes(StandardCharsets.UTF_8).length <= MAX_NOTES_LENGTH);
+    }
+
     /**
      * Prepares a connection to the MySQL database defined by the parameter values.
      *
@@ -56,6 +210,69 @@ public class DbUtils {
      */
     public static Connection prepareDbConnection(final String url, final String port, final String dbName, 
             final String user, final String password) throws ClassNotFoundException, SQLException {
+        return prepareDbConnection(url, port, dbName, user, password, "");
+    }
+
+    /**
+     * Prepares a connection to the MySQL database defined by the parameter values, which gives up on connecting after
+     * the param connect timeout, and on any statement whose result has not arrived within the param socket timeout,
+     * so that a caller never waits longer than that on an unresponsive database.
+     *
+     * @param url String representing the URL/IP address of the database to connect to
+     * @param port String representing the port to connect to on the param database
+     * @param dbName String name of the datatbase to connect to
+     * @param user Username to authenticate to the param database
+     * @param password Password to authenticate to the param database
+     * @param connectTimeoutMillis Time to wait for the connection to be established, in milliseconds (0 for no limit)
+     * @param socketTimeoutMillis Time to wait for each read from the connection, in milliseconds (0 for no limit)
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    public static Connection prepareDbConnection(final String url, final String port, final String dbName,
+            final String user, final String password, final int connectTimeoutMillis, final int socketTimeoutMillis)
+            throws ClassNotFoundException, SQLException {
+        return prepareDbConnection(url, port, dbName, user, password,
+                String.format(TIMEOUT_CONNECTION_OPTIONS_TEMPLATE, connectTimeoutMillis, socketTimeoutMillis));
+    }
+
+    /**
+     * Prepares a connection to the MySQL database defined by the parameter values, on which statements with a fetch
+     * size read their results through a server side cursor, that many rows at a time, instead of reading the whole
+     * result into memory.
+     *
+     * @param url String representing the URL/IP address of the database to connect to
+     * @param port String representing the port to connect to on the param database
+     * @param dbName String name of the datatbase to connect to
+     * @param user Username to authenticate to the param database
+     * @param password Password to authenticate to the param database
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    public static Connection prepareStreamingDbConnection(final String url, final String port, final String dbName,
+            final String user, final String password) throws ClassNotFoundException, SQLException {
+        return prepareDbConnection(url, port, dbName, user, password, STREAMING_CONNECTION_OPTIONS);
+    }
+
+    /**
+     * Prepares a connection to the MySQL database defined by the parameter values, on which JDBC batches of INSERT
+     * statements are rewritten into multi-row INSERT statements, so that a large batch is sent in a few round trips
+     * instead of one round trip per row.
+     *
+     * @param url String representing the URL/IP address of the database to connect to
+     * @param port String representing the port to connect to on the param database
+     * @param dbName String name of the datatbase to connect to
+     * @param user Username to authenticate to the param database
+     * @param password Password to authenticate to the param database
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    public static Connection prepareBulkDbConnection(final String url, final String port, final String dbName,
+            final String user, final String password) throws ClassNotFoundException, SQLException {
+        return prepareDbConnection(url, port, dbName, user, password, BULK_CONNECTION_OPTIONS);
+    }
+
+    private static Connection prepareDbConnection(final String url, final String port, final String dbName,
+            final String user, final String password, final String options) throws ClassNotFoundException, SQLException {
 
         Class.forName("com.mysql.cj.jdbc.Driver");
 
@@ -63,10 +280,10 @@ public class DbUtils {
 
         if(dbName == null) {
             dbUrl = "jdbc:mysql://" + url + ":" + port + "?useUnicode=true&characterEncoding=UTF-8&user=" + 
-                            user + "&password=" + password;
+                            user + "&password=" + password + options;
         }else {
             dbUrl = "jdbc:mysql://" + url + ":" + port + "/" + dbName + 
-                            "?useUnicode=true&characterEncoding=UTF-8&user=" + user + "&password=" + password;
+                            "?useUnicode=true&characterEncoding=UTF-8&user=" + user + "&password=" + password + options;
         }
 
         return DriverManager.getConnection(dbUrl);
@@ -105,6 +322,8 @@ public class DbUtils {
                     "privkey VARCHAR(31) NOT NULL, " +
                     "pubkey VARCHAR(20) NOT NULL, " +
                     "last_query TIMESTAMP, " +
+                    "window_type VARCHAR(10) NOT NULL DEFAULT 'NONE', " +
+                    "ranking_mode VARCHAR(16) NOT NULL DEFAULT 'SCORE_DESC', " +
                     "PRIMARY KEY (board_id))";
             stmt.executeUpdate(createLeaderTableSql);
 
@@ -125,12 +344,154 @@ public class DbUtils {
                                           "notes TINYTEXT, " +
                                           "ip_address VARCHAR(15), " +
                                           "submission_time TIMESTAMP, " +
+                                          "bucket INTEGER NOT NULL DEFAULT 0, " +
                                           "PRIMARY KEY (record_id), " +
                                           "FOREIGN KEY (board_id) REFERENCES leaderboards(board_id))";
             stmt.executeUpdate(createRecordTableSql);
 
             logger.info("Created table 'records' with command : " + createRecordTableSql);
         }
+
+        // Check if the archive tables exist in the database, and if they do not then create them.  These hold inactive
+        // leaderboards and their records, and are compressed since they are rarely read.
+        resultSet = metaData.getTables(null, null, "leaderboards_archive", new String[] {"TABLE"});
+        if(!resultSet.next()) {
+            Statement stmt = conn.createStatement();
+            String createLeaderArchiveSql = "CREATE TABLE leaderboards_archive " +
+                    "(board_id INTEGER NOT NULL, " +
+                    "privkey VARCHAR(31) NOT NULL, " +
+                    "pubkey VARCHAR(20) NOT NULL, " +
+                    "last_query TIMESTAMP, " +
+                    "window_type VARCHAR(10) NOT NULL DEFAULT 'NONE', " +
+                    "archived_at TIMESTAMP, " +
+                    "ranking_mode VARCHAR(16) NOT NULL DEFAULT 'SCORE_DESC', " +
+                    "PRIMARY KEY (board_id), " +
+                    "INDEX (privkey), " +
+                    "INDEX (pubkey)) " +
+                    "ROW_FORMAT=COMPRESSED";
+            stmt.executeUpdate(createLeaderArchiveSql);
+
+            logger.info("Created table 'leaderboards_archive' with command : " + createLeaderArchiveSql);
+        }
+
+        resultSet = metaData.getTables(null, null, "records_archive", new String[] {"TABLE"});
+        if(!resultSet.next()) {
+            Statement stmt = conn.createStatement();
+            String createRecordArchiveSql = "CREATE TABLE records_archive " +
+                                            "(board_id INTEGER NOT NULL, " +
+                                            "record_id INTEGER NOT NULL, " +
+                                            "name VARCHAR(30), " +
+                                            "score INTEGER, " +
+                                            "time INTEGER, " +
+                                            "notes TINYTEXT, " +
+                                            "ip_address VARCHAR(15), " +
+                                            "submission_time TIMESTAMP, " +
+                                            "bucket INTEGER NOT NULL DEFAULT 0, " +
+                                            "PRIMARY KEY (record_id), " +
+                                            "INDEX (board_id)) " +
+                                            "ROW_FORMAT=COMPRESSED";
+            stmt.executeUpdate(createRecordArchiveSql);
+
+            logger.info("Created table 'records_archive' with command : " + createRecordArchiveSql);
+        }
+
+        // Check if the 'board_stats' table exists in the database, and if it does not then create it.  It has no
+        // foreign key, since the statistics of an archived leaderboard are still valid when it is restored.
+        resultSet = metaData.getTables(null, null, "board_stats", new String[] {"TABLE"});
+        if(!resultSet.next()) {
+            Statement stmt = conn.createStatement();
+            String createBoardStatsSql = "CREATE TABLE board_stats " +
+                                         "(board_id INTEGER NOT NULL, " +
+                                         "bucket INTEGER NOT NULL, " +
+                                         "record_count INTEGER NOT NULL, " +
+                                         "score_sum BIGINT NOT NULL, " +
+                                         "score_min INTEGER, " +
+                                         "score_max INTEGER, " +
+                                         "histogram VARBINARY(8192), " +
+                                         "PRIMARY KEY (board_id, bucket))";
+            stmt.executeUpdate(createBoardStatsSql);
+
+            logger.info("Created table 'board_stats' with command : " + createBoardStatsSql);
+        }
+    }
+
+    /**
+     * Checks for existence of columns that were added to the 'leaderboards' and 'records' tables after those tables
+     * were first released, and adds them to existing tables if they are missing.
+     * NOTE: Added columns always go at the end of the table, so that the column positions read from 'SELECT *'
+     *       queries are the same for new and upgraded databases.
+     *
+     * @param conn Connection to the underlying SQL instance and database
+     * @throws SQLException
+     */
+    public static void checkAndCreateColumns(final Connection conn) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+
+        for(int i=0; i<ADDED_COLUMNS.length; i++) {
+            ResultSet resultSet = metaData.getColumns(null, null, ADDED_COLUMNS[i][0], ADDED_COLUMNS[i][1]);
+            if(!resultSet.next()) {
+                Statement stmt = conn.createStatement();
+                String addColumnSql = "ALTER TABLE " + ADDED_COLUMNS[i][0] + " ADD COLUMN " + ADDED_COLUMNS[i][1] + " " +
+                                      ADDED_COLUMNS[i][2];
+                stmt.executeUpdate(addColumnSql);
+
+                logger.info("Added column with command : " + addColumnSql);
+            }
+        }
+    }
+
+    /**
+     * Checks for existence of the indexes on the 'records' and 'leaderboards' tables, and creates them if they do not
+     * already exist.  Indexes that have been replaced by newer indexes are dropped.
+     * NOTE: There is one (board_id, bucket, ...) index per ranking mode, matching the ORDER BY of the paged reads of
+     *       that mode, so that a page (or a keyset "after" page) of a board only touches the rows that are returned.
+     *
+     * @param conn Connection to the underlying SQL instance and database
+     * @throws SQLException
+     */
+    public static void checkAndCreateIndexes(final Connection conn) throws SQLException {
+        createMissingIndexes("leaderboards", LEADERBOARDS_INDEXES, conn);
+        Set<String> existingIndexes = createMissingIndexes("records", RECORDS_INDEXES, conn);
+
+        for(String indexName : OBSOLETE_RECORDS_INDEXES) {
+            if(existingIndexes.contains(indexName)) {
+                Statement stmt = conn.createStatement();
+                stmt.executeUpdate("DROP INDEX " + indexName + " ON records");
+                logger.info("Dropped obsolete index on 'records' : " + indexName);
+            }
+        }
+    }
+
+    /**
+     * Creates the param indexes on the param table, unless they already exist.
+     *
+     * @param table Name of the table
+     * @param indexes Indexes of the table, as index name -> CREATE INDEX command
+     * @param conn Connection to the underlying SQL instance and database
+     * @return Names (in lower case) of the indexes that existed on the table before any were created
+     * @throws SQLException
+     */
+    private static Set<String> createMissingIndexes(final String table, final Map<String, String> indexes,
+                                                    final Connection conn) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+
+        Set<String> existingIndexes = new HashSet<>();
+        ResultSet resultSet = metaData.getIndexInfo(null, null, table, false, false);
+        while(resultSet.next()) {
+            String indexName = resultSet.getString("INDEX_NAME");
+            if(indexName != null) {
+                existingIndexes.add(indexName.toLowerCase());
+            }
+        }
+
+        for(Map.Entry<String, String> index : indexes.entrySet()) {
+            if(!existingIndexes.contains(index.getKey())) {
+                Statement stmt = conn.createStatement();
+                stmt.executeUpdate(index.getValue());
+                logger.info("Created index on '" + table + "' with command : " + index.getValue());
+            }
+        }
+        return existingIndexes;
     }
 
     /**
@@ -158,38 +519,92 @@ public class DbUtils {
         // Check if the 'leaderboards' and 'records' tables exist in the DB and create them if they don't
         conn = prepareDbConnection(url, port, dbName, user, password);
         checkAndCreateTables(conn);
+        checkAndCreateColumns(conn);
+        checkAndCreateIndexes(conn);
         conn.close();
     }
 
     /**
-     * Inserts the param leaderboard as a new leaderboard entry into the leaderboards DB table.
+     * Inserts the param leaderboard as a new leaderboard entry into the leaderboards DB table, and sets the boardId of
+     * the param leaderboard to the one assigned by the database.
      *
      * @param leaderboard Leaderboard to insert into database
      * @param conn Connection to use to connect to database
      * @throws SQLException
      */
     public static void insertLeaderboard(final Leaderboard leaderboard, final Connection conn) throws SQLException {
-        PreparedStatement preparedStatement = conn.prepareStatement(INSERT_LEADERBOARD_COMMAND);
+        PreparedStatement preparedStatement = conn.prepareStatement(INSERT_LEADERBOARD_COMMAND,
+                                                                    Statement.RETURN_GENERATED_KEYS);
 
         preparedStatement.setString(1, leaderboard.getPrivKey());
         preparedStatement.setString(2, leaderboard.getPubKey());
         // NOTE: Just creating and setting a new time stamp.  May want to change this later.
         preparedStatement.setTimestamp(3, new Timestamp(new Date().getTime()));
+        preparedStatement.setString(4, leaderboard.getWindowType().name());
+        preparedStatement.setString(5, leaderboard.getRankingMode().name());
 
         preparedStatement.executeUpdate();
+        ResultSet rs = preparedStatement.getGeneratedKeys();
+        if(rs.next()) {
+            leaderboard.setBoardId(rs.getInt(1));
+        }
         logger.info("Inserted new leaderboard pubkey: " + leaderboard.getPubKey());
     }
 
     /**
-     * Inserts the param record as a new record entry into the records DB table.
+     * Inserts the param record as a new record entry into the records DB table, and sets the recordId of the param
+     * record to the one assigned by the database.
      *
      * @param record Record to insert into database
      * @param conn Connection to use to connect to database
      * @throws SQLException
      */
     public static void insertRecord(final Record record, final Connection conn) throws SQLException {
-        PreparedStatement preparedStatement = conn.prepareStatement(INSERT_RECORD_COMMAND);
+        PreparedStatement preparedStatement = conn.prepareStatement(INSERT_RECORD_COMMAND, Statement.RETURN_GENERATED_KEYS);
+        bindInsertRecord(record, preparedStatement);
 
+        preparedStatement.executeUpdate();
+        ResultSet rs = preparedStatement.getGeneratedKeys();
+        if(rs.next()) {
+            record.setRecordId(rs.getInt(1));
+        }
+    }
+
+    /**
+     * Inserts all of the param records as new record entries into the records DB table, using a single JDBC batch,
+     * and sets the recordId of each param record to the one assigned by the database.
+     *
+     * @param recordList Records to insert into database
+     * @param conn Connection to use to connect to database
+     * @throws SQLException
+     */
+    public static void insertRecords(final List<Record> recordList, final Connection conn) throws SQLException {
+        if(recordList.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement preparedStatement = conn.prepareStatement(INSERT_RECORD_COMMAND, Statement.RETURN_GENERATED_KEYS);
+        for(int i=0; i<recordList.size(); i++) {
+            bindInsertRecord(recordList.get(i), preparedStatement);
+            preparedStatement.addBatch();
+        }
+
+        preparedStatement.executeBatch();
+        // The generated keys are returned in the order that the records were added to the batch
+        ResultSet rs = preparedStatement.getGeneratedKeys();
+        for(int i=0; i<recordList.size() && rs.next(); i++) {
+            recordList.get(i).setRecordId(rs.getInt(1));
+        }
+    }
+
+    /**
+     * Binds the param record to an INSERT_RECORD_COMMAND PreparedStatement.
+     *
+     * @param record Record to bind
+     * @param preparedStatement PreparedStatement prepared from INSERT_RECORD_COMMAND
+     * @throws SQLException
+     */
+    private static void bindInsertRecord(final Record record, final PreparedStatement preparedStatement) throws SQLException {
         preparedStatement.setInt(1, record.getBoardId());
         if(record.getName() != null) {
             preparedStatement.setString(2, record.getName());
@@ -208,11 +623,13 @@ public class DbUtils {
         }else {
             preparedStatement.setNull(6, Types.VARCHAR);
         }
-        // NOTE: Just creating and setting a new time stamp.  May want to change this later.
-        preparedStatement.setTimestamp(7, new Timestamp(new Date().getTime()));
-
-        preparedStatement.executeUpdate();
-        logger.info("Inserted new record for leaderboard ID:" + record.getBoardId());
+        // Records are stamped with the current time, unless they already carry one (eg. imported records)
+        if(record.getSubmissionTime() != null) {
+            preparedStatement.setTimestamp(7, new Timestamp(record.getSubmissionTime().getTime()));
+        }else {
+            preparedStatement.setTimestamp(7, new Timestamp(new Date().getTime()));
+        }
+        preparedStatement.setInt(8, record.getBucket());
     }
 
     /**
@@ -225,6 +642,41 @@ public class DbUtils {
      */
     public static void updateRecord(final Record record, final Connection conn) throws SQLException {
         PreparedStatement preparedStatement = conn.prepareStatement(MODIFY_RECORD_TEMPLATE);
+        bindUpdateRecord(record, preparedStatement);
+
+        preparedStatement.executeUpdate();
+    }
+
+    /**
+     * Updates all of the param records to new values, using a single JDBC batch.
+     * NOTE: As with updateRecord, the recordId of each Record should be the ID that we want to update.
+     *
+     * @param recordList Records to update
+     * @param conn Connection to the database to use for the query
+     * @throws SQLException
+     */
+    public static void updateRecords(final List<Record> recordList, final Connection conn) throws SQLException {
+        if(recordList.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement preparedStatement = conn.prepareStatement(MODIFY_RECORD_TEMPLATE);
+        for(int i=0; i<recordList.size(); i++) {
+            bindUpdateRecord(recordList.get(i), preparedStatement);
+            preparedStatement.addBatch();
+        }
+
+        preparedStatement.executeBatch();
+    }
+
+    /**
+     * Binds the param record to a MODIFY_RECORD_TEMPLATE PreparedStatement.
+     *
+     * @param record Record to bind
+     * @param preparedStatement PreparedStatement prepared from MODIFY_RECORD_TEMPLATE
+     * @throws SQLException
+     */
+    private static void bindUpdateRecord(final Record record, final PreparedStatement preparedStatement) throws SQLException {
         // Name is allowed to be null, so we check for that here
         if(record.getName() != null) {
             preparedStatement.setString(1, record.getName());
@@ -247,14 +699,13 @@ public class DbUtils {
         }
         preparedStatement.setTimestamp(6, new Timestamp(new Date().getTime()));
         preparedStatement.setInt(7, record.getRecordId());
-
-        preparedStatement.executeUpdate();
-        logger.info("Updated record id: " + record.getRecordId());
     }
 
     /**
      * Return a Leaderboard from the database based on the param public key
      *
+     * NOTE: If the Leaderboard has been archived for inactivity, it is restored before it is returned.
+     *
      * @param pubkey String public key to check against
      * @param conn Connection to the database to use for query
      * @return Leaderboard associated with the param pubkey, or null if Leaderboard doesn't exist
@@ -262,19 +713,19 @@ public class DbUtils {
      */
     public static Leaderboard getLeaderboardFromPubKey(final String pubkey, final Connection conn) throws SQLException {
         Leaderboard retVal = null;
-        String getFromPubKeyCommand = String.format(GET_LEADER_FROM_PUBKEY_TEMPLATE, pubkey);
+        PreparedStatement preparedStatement = conn.prepareStatement(GET_LEADER_FROM_PUBKEY_COMMAND);
+        preparedStatement.setString(1, pubkey);
 
-        Statement selectStatement = conn.createStatement();
-        ResultSet rs = selectStatement.executeQuery(getFromPubKeyCommand);
+        ResultSet rs = preparedStatement.executeQuery();
 
         // If the result set doesn't contain any rows, the while loop skips and we just return null.  Otherwise, we
         // parse the result set for the resultant object.
         while(rs.next()) {
-            retVal = new Leaderboard();
-            retVal.setBoardId(rs.getInt(1));
-            retVal.setPrivKey(rs.getString(2));
-            retVal.setPubKey(rs.getString(3));
-            retVal.setLastQueryTime(rs.getTimestamp(4));
+            retVal = readLeaderboard(rs);
+        }
+
+        if(retVal == null && restoreArchivedLeaderboard("pubkey", pubkey, conn)) {
+            retVal = getLeaderboardFromPubKey(pubkey, conn);
         }
 
         return retVal;
@@ -283,6 +734,8 @@ public class DbUtils {
     /**
      * Return a Leaderboard from the database based on the param public key
      *
+     * NOTE: If the Leaderboard has been archived for inactivity, it is restored before it is returned.
+     *
      * @param privkey String public key to check against
      * @param conn Connection to the database to use for query
      * @return Leaderboard associated with the param pubkey, or null if Leaderboard doesn't exist
@@ -290,24 +743,84 @@ public class DbUtils {
      */
     public static Leaderboard getLeaderboardFromPrivKey(final String privkey, final Connection conn) throws SQLException {
         Leaderboard retVal = null;
-        String getFromPrivKeyCommand = String.format(GET_LEADER_FROM_PRIVKEY_TEMPLATE, privkey);
+        PreparedStatement preparedStatement = conn.prepareStatement(GET_LEADER_FROM_PRIVKEY_COMMAND);
+        preparedStatement.setString(1, privkey);
 
-        Statement selectStatement = conn.createStatement();
-        ResultSet rs = selectStatement.executeQuery(getFromPrivKeyCommand);
+        ResultSet rs = preparedStatement.executeQuery();
 
         // If the result set doesn't contain any rows, the while loop skips and we just return null.  Otherwise, we
         // parse the result set for the resultant object.
         while(rs.next()) {
-            retVal = new Leaderboard();
-            retVal.setBoardId(rs.getInt(1));
-            retVal.setPrivKey(rs.getString(2));
-            retVal.setPubKey(rs.getString(3));
-            retVal.setLastQueryTime(rs.getTimestamp(4));
+            retVal = readLeaderboard(rs);
+        }
+
+        if(retVal == null && restoreArchivedLeaderboard("privkey", privkey, conn)) {
+            retVal = getLeaderboardFromPrivKey(privkey, conn);
         }
 
         return retVal;
     }
 
+    /**
+     * Parses the current row of a 'SELECT * FROM leaderboards' ResultSet into a Leaderboard.
+     *
+     * @param rs ResultSet positioned on a leaderboards row
+     * @return Leaderboard described by the row
+     * @throws SQLException
+     */
+    private static Leaderboard readLeaderboard(final ResultSet rs) throws SQLException {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setBoardId(rs.getInt(1));
+        leaderboard.setPrivKey(rs.getString(2));
+        leaderboard.setPubKey(rs.getString(3));
+        leaderboard.setLastQueryTime(rs.getTimestamp(4));
+
+        WindowType windowType = WindowType.fromName(rs.getString(5));
+        leaderboard.setWindowType((windowType == null) ? WindowType.NONE : windowType);
+        RankingMode rankingMode = RankingMode.fromName(rs.getString(6));
+        leaderboard.setRankingMode((rankingMode == null) ? RankingMode.SCORE_DESC : rankingMode);
+
+        return leaderboard;
+    }
+
+    /**
+     * Return the Leaderboards from the database associated with the param public keys, using a single query.
+     *
+     * @param pubkeys Public keys to look up
+     * @param conn Connection to the database to use for query
+     * @return Map from public key to Leaderboard (keys without a Leaderboard are absent)
+     * @throws SQLException
+     */
+    public static Map<String, Leaderboard> getLeaderboardsFromPubKeys(final Collection<String> pubkeys,
+            final Connection conn) throws SQLException {
+        Map<String, Leaderboard> leaderboardMap = new HashMap<>();
+        if(pubkeys.isEmpty()) {
+            return leaderboardMap;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(pubkeys.size(), "?"));
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_LEADERS_FROM_PUBKEYS_TEMPLATE, placeholders));
+        int parameterIndex = 1;
+        for(String pubkey : pubkeys) {
+            preparedStatement.setString(parameterIndex++, pubkey);
+        }
+
+        ResultSet rs = preparedStatement.executeQuery();
+        while(rs.next()) {
+            Leaderboard leaderboard = readLeaderboard(rs);
+            leaderboardMap.put(leaderboard.getPubKey(), leaderboard);
+        }
+
+        // Any keys that were not found may belong to archived leaderboards, which are restored one at a time
+        for(String pubkey : pubkeys) {
+            if(!leaderboardMap.containsKey(pubkey) && restoreArchivedLeaderboard("pubkey", pubkey, conn)) {
+                leaderboardMap.put(pubkey, getLeaderboardFromPubKey(pubkey, conn));
+            }
+        }
+
+        return leaderboardMap;
+    }
+
     /**
      * Deletes the param Record from the database
      * NOTE: This function works by deleting the record located at the param Record recordId
@@ -321,7 +834,6 @@ public class DbUtils {
 
         Statement deleteStatement = conn.createStatement();
         deleteStatement.executeUpdate(deleteCommand);
-        logger.info("Deleted record: " + record.getRecordId());
     }
 
     /**
@@ -336,7 +848,6 @@ public class DbUtils {
 
         Statement deleteStatement = conn.createStatement();
         deleteStatement.executeUpdate(deleteCommand);
-        logger.info("Deleted record: " + recordId);
     }
 
     /**
@@ -380,6 +891,28 @@ public class DbUtils {
         preparedStatement.executeUpdate();
     }
 
+    /**
+     * Updates the last query time of all of the param Leaderboards to the current time, using a single JDBC batch.
+     *
+     * @param boardIds boardIds of the Leaderboards that we should update
+     * @param conn Connection to the database to use for the query
+     * @throws SQLException
+     */
+    public static void updateLeaderboardQueryTimes(final Collection<Integer> boardIds, final Connection conn) throws SQLException {
+        if(boardIds.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement preparedStatement = conn.prepareStatement(UPDATE_LEADERBOARD_MODTIME_TEMPLATE);
+        Timestamp now = new Timestamp(new Date().getTime());
+        for(Integer boardId : boardIds) {
+            preparedStatement.setTimestamp(1, now);
+            preparedStatement.setInt(2, boardId);
+            preparedStatement.addBatch();
+        }
+        preparedStatement.executeBatch();
+    }
+
     /**
      * Returns a List containing all Leaderboards in the param database
      *
@@ -396,11 +929,7 @@ public class DbUtils {
         Leaderboard leaderboard = null;
 
         while(rs.next()) {
-            leaderboard = new Leaderboard();
-            leaderboard.setBoardId(rs.getInt(1));
-            leaderboard.setPrivKey(rs.getString(2));
-            leaderboard.setPubKey(rs.getString(3));
-            leaderboard.setLastQueryTime(rs.getTimestamp(4));
+            leaderboard = readLeaderboard(rs);
             leaderboardList.add(leaderboard);
         }
 
@@ -422,7 +951,8 @@ public class DbUtils {
         if(leaderboard == null) {
             return recordList;
         }
-        String getRecordsQuery = String.format(GET_RECORDS_FROM_BOARD_ID_TEMPLATE, leaderboard.getBoardId());
+        String getRecordsQuery = String.format(GET_RECORDS_FROM_BOARD_ID_TEMPLATE, leaderboard.getBoardId(),
+                                               RANKING_ORDER.get(leaderboard.getRankingMode()));
 
         Statement statement = conn.createStatement();
         ResultSet rs = statement.executeQuery(getRecordsQuery);
@@ -438,12 +968,211 @@ public class DbUtils {
                                 rs.getString(6),     // notes
                                 rs.getTimestamp(8),  // submission_time
                                 rs.getString(7));    // ip_address
+            record.setBucket(rs.getInt(9));          // bucket
             recordList.add(record);
         }
 
         return recordList;
     }
 
+    /**
+     * Returns a page of records from the param board and bucket, in rank order.  Only the user facing columns are
+     * read, so the returned Records do not contain an IP address.
+     *
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param limit Maximum number of records to return (clamped to the maximum leaderboard size)
+     * @param offset Number of records to skip before the first returned record
+     * @param conn Connection to the database to use for query
+     * @return List containing at most limit records from the param board
+     * @throws SQLException
+     */
+    public static List<Record> getRecordPageFromBoardId(final int boardId, final int bucket, final RankingMode rankingMode,
+            final int limit, final int offset, final Connection conn) throws SQLException {
+        List<Record> recordList = new ArrayList<>();
+
+        writeRecordPageFromBoardId(boardId, bucket, rankingMode, limit, offset, (recordId, name, score, time, notes, recordTime) -> {
+            Record record = new Record(boardId, recordId, name, score, time, notes, recordTime, null);
+            record.setBucket(bucket);
+            recordList.add(record);
+        }, conn);
+
+        return recordList;
+    }
+
+    /**
+     * Writes a page of records from the param board and bucket to the param RecordSink, in rank order.  Records are
+     * passed to the sink as they are read from the ResultSet.
+     *
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param limit Maximum number of records to write (clamped to the maximum leaderboard size)
+     * @param offset Number of records to skip before the first written record
+     * @param sink RecordSink to write the records to
+     * @param conn Connection to the database to use for query
+     * @return Number of records written
+     * @throws SQLException
+     */
+    public static int writeRecordPageFromBoardId(final int boardId, final int bucket, final RankingMode rankingMode,
+            final int limit, final int offset, final RecordSink sink, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_RECORD_PAGE_TEMPLATE,
+                                                                                  RANKING_ORDER.get(rankingMode)));
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        preparedStatement.setInt(3, Math.min(limit, MAX_LEADERBOARD_SIZE));
+        preparedStatement.setInt(4, offset);
+
+        return writeRecordPage(preparedStatement.executeQuery(), sink);
+    }
+
+    /**
+     * Writes a page of records from the param board to the param RecordSink, starting directly after the record
+     * described by the param cursor (keyset pagination).  The cursor record itself does not need to still exist.
+     *
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param limit Maximum number of records to write (clamped to the maximum leaderboard size)
+     * @param afterCursor Ranking values (eg. the score) of the last record the requester has already seen, in the
+     *                    order of the ranking mode, followed by its record ID
+     * @param sink RecordSink to write the records to
+     * @param conn Connection to the database to use for query
+     * @return Number of records written
+     * @throws SQLException
+     */
+    public static int writeRecordPageAfterFromBoardId(final int boardId, final int bucket, final RankingMode rankingMode,
+            final int limit, final int[] afterCursor, final RecordSink sink, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_RECORD_PAGE_AFTER_TEMPLATE,
+                RANKING_AFTER_CONDITION.get(rankingMode), RANKING_ORDER.get(rankingMode)));
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        int parameterIndex = 3;
+        for(int i=0; i<rankingMode.getRankingValueCount(); i++) {
+            preparedStatement.setInt(parameterIndex++, afterCursor[i]);
+            preparedStatement.setInt(parameterIndex++, afterCursor[i]);
+        }
+        preparedStatement.setInt(parameterIndex++, afterCursor[rankingMode.getRankingValueCount()]);
+        preparedStatement.setInt(parameterIndex, Math.min(limit, MAX_LEADERBOARD_SIZE));
+
+        return writeRecordPage(preparedStatement.executeQuery(), sink);
+    }
+
+    /**
+     * Writes the records of the param board and bucket whose name is one of the param names to the param
+     * RankedRecordSink, in rank order, along with their ranks in the window.  The records are found through the
+     * (board_id, bucket, name) index, and each rank is counted from the ranking index of the leaderboard's ranking
+     * mode, so the whole window is never read.
+     *
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param names Names of the records to write
+     * @param sink RankedRecordSink to write the records to
+     * @param conn Connection to the database to use for query
+     * @return Number of records written (names without a record are skipped)
+     * @throws SQLException
+     */
+    public static int writeRankedNamedRecordsFromBoardId(final int boardId, final int bucket,
+            final RankingMode rankingMode, final Collection<String> names, final RankedRecordSink sink,
+            final Connection conn) throws SQLException {
+        if(names.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(names.size(), "?"));
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_RANKED_NAMED_RECORDS_TEMPLATE,
+                RANKING_ABOVE_CONDITION.get(rankingMode), placeholders));
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        int parameterIndex = 3;
+        for(String name : names) {
+            preparedStatement.setString(parameterIndex++, name);
+        }
+
+        ResultSet rs = preparedStatement.executeQuery();
+        int recordCount = 0;
+        while(rs.next()) {
+            sink.writeRecord(rs.getInt(7),          // record_rank
+                             rs.getInt(1),          // record_id
+                             rs.getString(2),       // name
+                             rs.getInt(3),          // score
+                             rs.getInt(4),          // time
+                             rs.getString(5),       // notes
+                             rs.getTimestamp(6));   // submission_time
+            recordCount++;
+        }
+
+        return recordCount;
+    }
+
+    /**
+     * Writes the records of the param board and bucket whose name starts with the param prefix (ignoring case) to the
+     * param RankedRecordSink, in name order, along with their ranks in the window.  The matching names are a range of
+     * the (board_id, bucket, name) index, so only the records that are written are read, and each rank is counted from
+     * the ranking index of the leaderboard's ranking mode.
+     *
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param prefix Prefix of the names to search for
+     * @param limit Maximum number of records to write
+     * @param sink RankedRecordSink to write the records to
+     * @param conn Connection to the database to use for query
+     * @return Number of records written
+     * @throws SQLException
+     */
+    public static int writeRankedNamePrefixRecordsFromBoardId(final int boardId, final int bucket,
+            final RankingMode rankingMode, final String prefix, final int limit, final RankedRecordSink sink,
+            final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_RANKED_NAME_PREFIX_RECORDS_TEMPLATE,
+                RANKING_ABOVE_CONDITION.get(rankingMode)));
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        preparedStatement.setString(3, LIKE_SPECIAL_CHARACTERS.matcher(prefix).replaceAll("!$0") + "%");
+        preparedStatement.setInt(4, Math.min(limit, MAX_LEADERBOARD_SIZE));
+
+        ResultSet rs = preparedStatement.executeQuery();
+        int recordCount = 0;
+        while(rs.next()) {
+            sink.writeRecord(rs.getInt(7),          // record_rank
+                             rs.getInt(1),          // record_id
+                             rs.getString(2),       // name
+                             rs.getInt(3),          // score
+                             rs.getInt(4),          // time
+                             rs.getString(5),       // notes
+                             rs.getTimestamp(6));   // submission_time
+            recordCount++;
+        }
+
+        return recordCount;
+    }
+
+    /**
+     * Passes each row of a ResultSet selected with the RECORD_PAGE_COLUMNS projection to the param RecordSink.
+     *
+     * @param rs ResultSet to read
+     * @param sink RecordSink to write the records to
+     * @return Number of records written
+     * @throws SQLException
+     */
+    private static int writeRecordPage(final ResultSet rs, final RecordSink sink) throws SQLException {
+        int recordCount = 0;
+
+        while(rs.next()) {
+            sink.writeRecord(rs.getInt(1),          // record_id
+                             rs.getString(2),       // name
+                             rs.getInt(3),          // score
+                             rs.getInt(4),          // time
+                             rs.getString(5),       // notes
+                             rs.getTimestamp(6));   // submission_time
+            recordCount++;
+        }
+
+        return recordCount;
+    }
+
     /**
      * Returns all records associated with the param private API key
      *
@@ -489,27 +1218,503 @@ public class DbUtils {
                     rs.getString(6),            // notes
                     rs.getTimestamp(8),         // submission_time
                     rs.getString(7));           // ip_address
+            record.setBucket(rs.getInt(9));     // bucket
         }
 
         return record;
     }
 
     /**
-     * Checks if the Leaderboard defined by the param private API key is over the maximum allowed Leaderboard size,
-     * and if so removes the lowest scoring records until the leaderboard is back within the allowable size limit.
+     * Returns the records of the param board and bucket whose name is one of the param names, keyed by name.  Only the
+     * record ID, name, score and time of each record are read.
      *
-     * @param privKey Private API key of the leaderboard
+     * @param boardId BoardId of the leaderboard to read from
+     * @param bucket Window bucket of the leaderboard to read from (0 for leaderboards without a window)
+     * @param names Names to look up
+     * @param conn Connection to the database to use for query
+     * @return Map from name to the Record with that name (names without a record are absent)
+     * @throws SQLException
+     */
+    public static Map<String, Record> getNamedRecordsFromBoardId(final int boardId, final int bucket,
+            final Collection<String> names, final Connection conn) throws SQLException {
+        Map<String, Record> recordMap = new HashMap<>();
+        if(names.isEmpty()) {
+            return recordMap;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(names.size(), "?"));
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(GET_NAMED_RECORDS_TEMPLATE, placeholders));
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        int parameterIndex = 3;
+        for(String name : names) {
+            preparedStatement.setString(parameterIndex++, name);
+        }
+
+        ResultSet rs = preparedStatement.executeQuery();
+        while(rs.next()) {
+            Record record = new Record();
+            record.setBoardId(boardId);
+            record.setRecordId(rs.getInt(1));
+            record.setName(rs.getString(2));
+            record.setScore(rs.getInt(3));
+            record.setTime(rs.getInt(4));
+            record.setBucket(bucket);
+            recordMap.put(record.getName(), record);
+        }
+
+        return recordMap;
+    }
+
+    /**
+     * Checks if the param board bucket is over the maximum allowed Leaderboard size, and if so removes the lowest
+     * ranked records until the bucket is back within the allowable size limit.  Only the IDs and scores of the
+     * overflowing records are read, and they are deleted in a single JDBC batch.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param bucket Window bucket of the leaderboard to prune (0 for leaderboards without a window)
+     * @param rankingMode Ranking mode of the leaderboard
+     * @param stats StatsDelta to record the removed records in, or null
      * @param conn Connection to the database to user for query
+     * @return Number of records removed from the leaderboard
      * @throws SQLException
      */
-    public static void pruneLeaderboardByPrivKey(final String privKey, final Connection conn) throws SQLException {
-        List<Record> recordList = new ArrayList<>();
-        recordList = getAllRecordsFromPrivKey(privKey, conn);
+    public static int pruneLeaderboardByBoardId(final int boardId, final int bucket, final RankingMode rankingMode,
+            final StatsDelta stats, final Connection conn) throws SQLException {
+        PreparedStatement selectStatement = conn.prepareStatement(String.format(GET_PRUNABLE_RECORDS_TEMPLATE,
+                                                                                RANKING_ORDER.get(rankingMode)));
+        selectStatement.setInt(1, boardId);
+        selectStatement.setInt(2, bucket);
+        selectStatement.setInt(3, MAX_LEADERBOARD_SIZE);
+        ResultSet rs = selectStatement.executeQuery();
+
+        PreparedStatement deleteStatement = conn.prepareStatement(DELETE_RECORD_BY_ID_COMMAND);
+        int prunedCount = 0;
+        while(rs.next()) {
+            deleteStatement.setInt(1, rs.getInt(1));
+            deleteStatement.addBatch();
+            if(stats != null) {
+                stats.recordRemoved(bucket, rs.getInt(2));
+            }
+            prunedCount++;
+        }
+
+        if(prunedCount > 0) {
+            deleteStatement.executeBatch();
+        }
+
+        return prunedCount;
+    }
+
+    /**
+     * Deletes all records (in every bucket) of the param board with a single statement.
+     *
+     * @param boardId BoardId of the leaderboard to clear
+     * @param conn Connection to the database to use for query
+     * @return Number of records deleted
+     * @throws SQLException
+     */
+    public static int deleteAllRecordsFromBoardId(final int boardId, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(DELETE_BOARD_RECORDS_COMMAND);
+        preparedStatement.setInt(1, boardId);
+        return preparedStatement.executeUpdate();
+    }
+
+    /**
+     * Deletes every bucket older than the param bucket (and its score statistics) from all leaderboards of the param
+     * window type.  Expired buckets are removed whole with a single statement, rather than record by record.
+     *
+     * @param windowType Window type of the leaderboards to expire buckets from
+     * @param oldestKeptBucket Oldest bucket to keep; all older buckets are deleted
+     * @param conn Connection to the database to use for query
+     * @return Number of records deleted
+     * @throws SQLException
+     */
+    public static int deleteExpiredBuckets(final WindowType windowType, final int oldestKeptBucket,
+            final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(DELETE_EXPIRED_BUCKETS_COMMAND);
+        preparedStatement.setString(1, windowType.name());
+        preparedStatement.setInt(2, oldestKeptBucket);
+        int deletedCount = preparedStatement.executeUpdate();
+
+        PreparedStatement statsStatement = conn.prepareStatement(DELETE_EXPIRED_BUCKET_STATS_COMMAND);
+        statsStatement.setString(1, windowType.name());
+        statsStatement.setInt(2, oldestKeptBucket);
+        statsStatement.executeUpdate();
+
+        return deletedCount;
+    }
+
+    /**
+     * Returns the stored score statistics of the param board and bucket, or null if none are stored.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param bucket Window bucket of the leaderboard (0 for leaderboards without a window)
+     * @param forUpdate True to lock the statistics until the end of the current transaction
+     * @param conn Connection to the database to use for query
+     * @return BoardStats of the window, or null
+     * @throws SQLException
+     */
+    public static BoardStats getBoardStats(final int boardId, final int bucket, final boolean forUpdate,
+            final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(forUpdate ? GET_BOARD_STATS_FOR_UPDATE_COMMAND :
+                                                                                GET_BOARD_STATS_COMMAND);
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+
+        ResultSet rs = preparedStatement.executeQuery();
+        if(!rs.next()) {
+            return null;
+        }
+        return new BoardStats(rs.getInt(1), rs.getLong(2), (Integer) rs.getObject(3), (Integer) rs.getObject(4),
+                              ScoreHistogram.fromBytes(rs.getBytes(5)));
+    }
+
+    /**
+     * Builds the score statistics of the param board and bucket from its records.  A window holds at most
+     * MAX_LEADERBOARD_SIZE records, so this reads a bounded range of the (board_id, bucket, score) index.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param bucket Window bucket of the leaderboard (0 for leaderboards without a window)
+     * @param conn Connection to the database to use for query
+     * @return BoardStats of the window
+     * @throws SQLException
+     */
+    public static BoardStats computeBoardStats(final int boardId, final int bucket, final Connection conn)
+            throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(GET_BUCKET_SCORES_COMMAND);
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+
+        StatsDelta delta = new StatsDelta();
+        ResultSet rs = preparedStatement.executeQuery();
+        while(rs.next()) {
+            delta.recordAdded(bucket, rs.getInt(1));
+        }
 
-        if(recordList.size() > MAX_LEADERBOARD_SIZE) {
-            for(int i=MAX_LEADERBOARD_SIZE; i<recordList.size(); i++) {
-                deleteRecord(recordList.get(i).getRecordId(), conn);
+        BoardStats stats = new BoardStats();
+        StatsDelta.BucketDelta bucketDelta = delta.getBuckets().get(bucket);
+        if(bucketDelta != null) {
+            stats.apply(bucketDelta);
+        }
+        return stats;
+    }
+
+    /**
+     * Stores the param score statistics of the param board and bucket.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param bucket Window bucket of the leaderboard (0 for leaderboards without a window)
+     * @param stats Statistics to store
+     * @param onlyIfAbsent True to keep the stored statistics if there already are some (eg. when statistics built
+     *                     outside of a leaderboard's writer might be older than the stored ones)
+     * @param conn Connection to the database to use for query
+     * @throws SQLException
+     */
+    public static void writeBoardStats(final int boardId, final int bucket, final BoardStats stats,
+            final boolean onlyIfAbsent, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(onlyIfAbsent ? INSERT_BOARD_STATS_IF_ABSENT_COMMAND :
+                                                                                   UPSERT_BOARD_STATS_COMMAND);
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.setInt(2, bucket);
+        preparedStatement.setInt(3, stats.getRecordCount());
+        preparedStatement.setLong(4, stats.getScoreSum());
+        if(stats.getMinScore() != null) {
+            preparedStatement.setInt(5, stats.getMinScore());
+            preparedStatement.setInt(6, stats.getMaxScore());
+        }else {
+            preparedStatement.setNull(5, Types.INTEGER);
+            preparedStatement.setNull(6, Types.INTEGER);
+        }
+        preparedStatement.setBytes(7, stats.getHistogram().toBytes());
+        preparedStatement.executeUpdate();
+    }
+
+    /**
+     * Applies the param changes to the stored score statistics of the param board, in the current transaction (which
+     * must already hold the changes to the records).  Windows without stored statistics are built from their records
+     * instead, and the lowest and highest scores are read again from the (board_id, bucket, score) index when a
+     * removed record may have held one of them.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param delta Changes made to the records of the leaderboard in the current transaction
+     * @param conn Connection to the database to use for query
+     * @throws SQLException
+     */
+    public static void applyStatsDelta(final int boardId, final StatsDelta delta, final Connection conn)
+            throws SQLException {
+        if(delta.isCleared()) {
+            deleteBoardStats(boardId, conn);
+        }
+
+        for(Map.Entry<Integer, StatsDelta.BucketDelta> entry : delta.getBuckets().entrySet()) {
+            int bucket = entry.getKey();
+            StatsDelta.BucketDelta bucketDelta = entry.getValue();
+
+            BoardStats stats = getBoardStats(boardId, bucket, true, conn);
+            if(stats == null && !delta.isCleared()) {
+                stats = computeBoardStats(boardId, bucket, conn);
+            }else {
+                if(stats == null) {
+                    stats = new BoardStats();
+                }
+                boolean readMinMax = bucketDelta.removesMinOrMax(stats);
+                stats.apply(bucketDelta);
+                if(readMinMax && stats.getRecordCount() > 0) {
+                    PreparedStatement preparedStatement = conn.prepareStatement(GET_BUCKET_MIN_MAX_COMMAND);
+                    preparedStatement.setInt(1, boardId);
+                    preparedStatement.setInt(2, bucket);
+                    ResultSet rs = preparedStatement.executeQuery();
+                    if(rs.next()) {
+                        stats.setMinMaxScore((Integer) rs.getObject(1), (Integer) rs.getObject(2));
+                    }
+                }
+            }
+            writeBoardStats(boardId, bucket, stats, false, conn);
+        }
+    }
+
+    /**
+     * Deletes the stored score statistics of every window of the param board.
+     *
+     * @param boardId BoardId of the leaderboard
+     * @param conn Connection to the database to use for query
+     * @throws SQLException
+     */
+    public static void deleteBoardStats(final int boardId, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(DELETE_BOARD_STATS_COMMAND);
+        preparedStatement.setInt(1, boardId);
+        preparedStatement.executeUpdate();
+    }
+
+    /**
+     * Moves up to batchSize leaderboards whose last query time is older than the param cutoff, along with all of their
+     * records, into the compressed archive tables.  The move is done in a single transaction.
+     *
+     * @param cutoff Leaderboards last queried before this time are archived
+     * @param batchSize Maximum number of leaderboards to archive
+     * @param conn Connection to the database to use for query (must be in auto-commit mode)
+     * @return Number of leaderboards archived
+     * @throws SQLException
+     */
+    public static int archiveInactiveLeaderboards(final Timestamp cutoff, final int batchSize, final Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement selectStatement = conn.prepareStatement(GET_INACTIVE_BOARD_IDS_TEMPLATE);
+            selectStatement.setTimestamp(1, cutoff);
+            selectStatement.setInt(2, batchSize);
+            ResultSet rs = selectStatement.executeQuery();
+
+            List<Integer> boardIds = new ArrayList<>();
+            while(rs.next()) {
+                boardIds.add(rs.getInt(1));
             }
+            if(boardIds.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+
+            String placeholders = String.join(", ", Collections.nCopies(boardIds.size(), "?"));
+
+            PreparedStatement archiveBoards = conn.prepareStatement(String.format(ARCHIVE_BOARDS_TEMPLATE, placeholders));
+            archiveBoards.setTimestamp(1, new Timestamp(new Date().getTime()));
+            bindBoardIds(archiveBoards, 2, boardIds);
+            archiveBoards.executeUpdate();
+
+            // Records are archived (and deleted) before their leaderboards, because of the foreign key on 'records'
+            PreparedStatement archiveRecords = conn.prepareStatement(String.format(ARCHIVE_RECORDS_TEMPLATE, placeholders));
+            bindBoardIds(archiveRecords, 1, boardIds);
+            int recordCount = archiveRecords.executeUpdate();
+
+            PreparedStatement deleteRecords = conn.prepareStatement(String.format(DELETE_RECORDS_OF_BOARDS_TEMPLATE, placeholders));
+            bindBoardIds(deleteRecords, 1, boardIds);
+            deleteRecords.executeUpdate();
+
+            PreparedStatement deleteBoards = conn.prepareStatement(String.format(DELETE_BOARDS_TEMPLATE, placeholders));
+            bindBoardIds(deleteBoards, 1, boardIds);
+            deleteBoards.executeUpdate();
+
+            conn.commit();
+            logger.info("Archived " + boardIds.size() + " inactive leaderboards with " + recordCount + " records");
+            return boardIds.size();
+        }catch(SQLException e) {
+            conn.rollback();
+            throw e;
+        }finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Moves the archived leaderboard with the param key (and all of its records) back into the hot tables.  The
+     * restored leaderboard's last query time is set to now, so that it is not immediately archived again.
+     * NOTE: If the param Connection is already in a transaction, the restore joins that transaction.  Otherwise the
+     *       restore is done in its own transaction.  The archive is first checked with a plain (non-locking) read, so
+     *       that looking up a key that is not archived (the common case, eg. a mistyped key) takes no locks.  Only
+     *       when the key is found is the archived row locked and checked again, since the reaper or another restore
+     *       may have moved it in between.
+     *
+     * @param keyColumn Name of the key column to look up ("pubkey" or "privkey")
+     * @param key Key of the archived leaderboard
+     * @param conn Connection to the database to use for query
+     * @return true if an archived leaderboard was restored, false if there was no such archived leaderboard
+     * @throws SQLException
+     */
+    private static boolean restoreArchivedLeaderboard(final String keyColumn, final String key, final Connection conn) throws SQLException {
+        PreparedStatement existsStatement = conn.prepareStatement(String.format(ARCHIVED_BOARD_EXISTS_TEMPLATE, keyColumn));
+        existsStatement.setString(1, key);
+        if(!existsStatement.executeQuery().next()) {
+            return false;
+        }
+
+        boolean ownTransaction = conn.getAutoCommit();
+        if(ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+
+        try {
+            PreparedStatement selectStatement = conn.prepareStatement(String.format(GET_ARCHIVED_BOARD_ID_TEMPLATE, keyColumn));
+            selectStatement.setString(1, key);
+            ResultSet rs = selectStatement.executeQuery();
+            if(!rs.next()) {
+                if(ownTransaction) {
+                    conn.commit();
+                }
+                return false;
+            }
+            int boardId = rs.getInt(1);
+
+            PreparedStatement restoreBoard = conn.prepareStatement(RESTORE_BOARD_COMMAND);
+            restoreBoard.setTimestamp(1, new Timestamp(new Date().getTime()));
+            restoreBoard.setInt(2, boardId);
+            restoreBoard.executeUpdate();
+
+            PreparedStatement restoreRecords = conn.prepareStatement(RESTORE_RECORDS_COMMAND);
+            restoreRecords.setInt(1, boardId);
+            int recordCount = restoreRecords.executeUpdate();
+
+            PreparedStatement deleteRecords = conn.prepareStatement(DELETE_ARCHIVED_RECORDS_COMMAND);
+            deleteRecords.setInt(1, boardId);
+            deleteRecords.executeUpdate();
+
+            PreparedStatement deleteBoard = conn.prepareStatement(DELETE_ARCHIVED_BOARD_COMMAND);
+            deleteBoard.setInt(1, boardId);
+            deleteBoard.executeUpdate();
+
+            if(ownTransaction) {
+                conn.commit();
+            }
+            logger.info("Restored archived leaderboard id: " + boardId + " with " + recordCount + " records");
+            return true;
+        }catch(SQLException e) {
+            if(ownTransaction) {
+                conn.rollback();
+            }
+            throw e;
+        }finally {
+            if(ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the param key is assigned to a leaderboard, archived or not.  Both lookups use the index on the
+     * key column.
+     *
+     * @param keyColumn Name of the key column to check ("pubkey" or "privkey")
+     * @param key Key to check
+     * @param conn Connection to the database to use for query
+     * @return true if a leaderboard has the param key
+     * @throws SQLException
+     */
+    public static boolean isKeyInUse(final String keyColumn, final String key, final Connection conn) throws SQLException {
+        PreparedStatement preparedStatement = conn.prepareStatement(String.format(KEY_IN_USE_TEMPLATE, keyColumn));
+        preparedStatement.setString(1, key);
+        preparedStatement.setString(2, key);
+        return preparedStatement.executeQuery().next();
+    }
+
+    /**
+     * Returns a List containing all archived Leaderboards in the param database.  Only the board ID and keys of each
+     * Leaderboard are read.
+     *
+     * @param conn Connection to the database to use for query
+     * @return List containing all archived Leaderboards in the database
+     * @throws SQLException
+     */
+    public static List<Leaderboard> getAllArchivedLeaderboards(final Connection conn) throws SQLException {
+        List<Leaderboard> leaderboardList = new ArrayList<>();
+
+        Statement statement = conn.createStatement();
+        ResultSet rs = statement.executeQuery(GET_ALL_ARCHIVED_LEADERBOARDS_COMMAND);
+
+        while(rs.next()) {
+            Leaderboard leaderboard = new Leaderboard();
+            leaderboard.setBoardId(rs.getInt(1));
+            leaderboard.setPrivKey(rs.getString(2));
+            leaderboard.setPubKey(rs.getString(3));
+            leaderboardList.add(leaderboard);
+        }
+
+        return leaderboardList;
+    }
+
+    /**
+     * Writes the records of the param board (or of every board, including archived boards, if the param board ID is
+     * null) to the param ExportSink, as they are read from the database.
+     * NOTE: The records are read with a forward only ResultSet and the param fetch size, so on a connection from
+     *       prepareStreamingDbConnection at most that many rows are held in memory at once, however large the export.
+     *
+     * @param boardId BoardId of the leaderboard to export, or null to export every leaderboard
+     * @param fetchSize Number of rows to fetch from the database at a time
+     * @param sink ExportSink to write the records to
+     * @param conn Connection to the database to use for query
+     * @return Number of records exported
+     * @throws SQLException
+     * @throws IOException If the sink fails to write a record
+     */
+    public static long exportRecords(final Integer boardId, final int fetchSize, final ExportSink sink,
+            final Connection conn) throws SQLException, IOException {
+        PreparedStatement preparedStatement = conn.prepareStatement(
+                (boardId == null) ? EXPORT_ALL_RECORDS_COMMAND : EXPORT_BOARD_RECORDS_COMMAND,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        preparedStatement.setFetchSize(fetchSize);
+        if(boardId != null) {
+            preparedStatement.setInt(1, boardId);
+        }
+
+        long recordCount = 0;
+        ResultSet rs = preparedStatement.executeQuery();
+        while(rs.next()) {
+            sink.writeRecord(rs.getString(1),       // pubkey
+                             rs.getInt(2),          // bucket
+                             rs.getInt(3),          // record_id
+                             rs.getString(4),       // name
+                             rs.getInt(5),          // score
+                             rs.getInt(6),          // time
+                             rs.getString(7),       // notes
+                             rs.getTimestamp(8));   // submission_time
+            recordCount++;
+        }
+        rs.close();
+        preparedStatement.close();
+
+        return recordCount;
+    }
+
+    /**
+     * Binds the param board IDs to consecutive parameters of the param PreparedStatement.
+     *
+     * @param preparedStatement PreparedStatement to bind to
+     * @param firstIndex Parameter index of the first board ID
+     * @param boardIds Board IDs to bind
+     * @throws SQLException
+     */
+    private static void bindBoardIds(final PreparedStatement preparedStatement, final int firstIndex,
+            final List<Integer> boardIds) throws SQLException {
+        for(int i=0; i<boardIds.size(); i++) {
+            preparedStatement.setInt(firstIndex + i, boardIds.get(i));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of requests that were sent with an idempotency key, so that a retried request is answered
+ * with the original result instead of being run again.  A retry that arrives while the original request is still
+ * running waits for it and gets the same result.
+ * NOTE: The table is held in memory only, and is bounded both in size and in time.  Keys are forgotten once they are
+ *       older than the time to live, and the oldest keys are forgotten first when the table is full.  Results that the
+ *       caller marks as retryable (eg. a database error) are forgotten as soon as they are returned, so that a retry
+ *       runs the request again.  Keys whose request is still running are never forgotten (so a retry cannot run the
+ *       request a second time), which lets the table go over its size by at most the number of running requests.
+ */
+public class IdempotencyTable {
+    // Entries are held in insertion order, which is also the order they expire in, since they all live as long
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private int maxEntries;
+    private long ttlNanos;
+    private LongAdder replays = new LongAdder();
+
+    /**
+     * Filled out constructor
+     *
+     * @param maxEntries Maximum number of keys to remember
+     * @param ttlMillis How long to remember each key for, in milliseconds
+     */
+    public IdempotencyTable(final int maxEntries, final long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1000000;
+    }
+
+    /**
+     * Returns the result of the param action for the param key, either by running it, or by returning (or waiting for)
+     * the result of an earlier request with the same key.
+     *
+     * @param key Idempotency key of the request
+     * @param fingerprint Description of the request (eg. its path), which must match that of the earlier request with
+     *                    the same key
+     * @param action Action that runs the request
+     * @param retryable Returns true for the results that should not be remembered
+     * @return Result of the request, or null if the key was already used for a request with a different fingerprint
+     */
+    public String execute(final String key, final String fingerprint, final Supplier<String> action,
+                          final Predicate<String> retryable) {
+        Entry entry = new Entry(fingerprint, System.nanoTime() + ttlNanos);
+        Entry existingEntry;
+        synchronized(entries) {
+            removeExpired(System.nanoTime());
+            existingEntry = entries.get(key);
+            if(existingEntry == null) {
+                entries.put(key, entry);
+                if(entries.size() > maxEntries) {
+                    removeOldestCompleted();
+                }
+            }
+        }
+
+        if(existingEntry != null) {
+            if(!existingEntry.fingerprint.equals(fingerprint)) {
+                return null;
+            }
+            replays.increment();
+            try {
+                return existingEntry.result.join();
+            }catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            String result = action.get();
+            entry.result.complete(result);
+            if(retryable.test(result)) {
+                forget(key, entry);
+            }
+            return result;
+        }catch(RuntimeException | Error e) {
+            entry.result.completeExceptionally(e);
+            forget(key, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of keys currently remembered (including any that have expired but not yet been removed).
+     *
+     * @return Number of keys remembered
+     */
+    public int getKeyCount() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of requests that were answered with the result of an earlier request.
+     *
+     * @return Number of replayed requests
+     */
+    public long getReplayCount() {
+        return replays.sum();
+    }
+
+    private void forget(final String key, final Entry entry) {
+        synchronized(entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private void removeExpired(final long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if(entry.expiresAtNanos - now > 0) {
+                return;
+            }
+            if(entry.result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void removeOldestCompleted() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next().result.isDone()) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * The remembered request for one key.
+     */
+    private static class Entry {
+        private String fingerprint;
+        private long expiresAtNanos;
+        private CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Entry(final String fingerprint, final long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical loads.  The first caller for a key runs the load, and any caller that asks for the
+ * same key while that load is in flight waits for it and gets the same result, rather than running its own load.
+ * NOTE: Results are not kept once the load completes, so this is not a cache.  Callers that need fresh results must
+ *       make the key change whenever the underlying data does (eg. by including a version in the key).
+ *
+ * @param <K> Type of the load keys
+ * @param <V> Type of the load results
+ */
+public class SingleFlight<K, V> {
+    private Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private LongAdder loads = new LongAdder();
+    private LongAdder collapsed = new LongAdder();
+
+    /**
+     * Returns the result of the param loader for the param key, either by running it, or by waiting for a load of the
+     * same key that is already in flight.
+     *
+     * @param key Key of the load
+     * @param loader Loader to run if no load of the key is in flight
+     * @return Result of the load
+     */
+    public V execute(final K key, final Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = inFlight.putIfAbsent(key, flight);
+        if(existingFlight != null) {
+            collapsed.increment();
+            try {
+                return existingFlight.join();
+            }catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        loads.increment();
+        try {
+            V result = loader.get();
+            flight.complete(result);
+            return result;
+        }catch(RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        }finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Returns the number of loads that have been run.
+     *
+     * @return Number of loads run
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns the number of callers that were given the result of another caller's load, instead of running their own.
+     *
+     * @return Number of collapsed callers
+     */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+}
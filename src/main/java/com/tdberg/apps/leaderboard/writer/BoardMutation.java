@@ -0,0 +1,30 @@
+package com.tdberg.apps.leaderboard.writer;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.stats.StatsDelta;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A change to the records of a single leaderboard, applied by a BoardWriter.
+ * NOTE: A mutation may be applied more than once (if the group it was applied in is rolled back, each mutation of
+ *       the group is retried on its own), so it must not keep any state from a previous attempt.
+ *
+ * @param <T> Type of the mutation's result
+ */
+@FunctionalInterface
+public interface BoardMutation<T> {
+    /**
+     * Applies this mutation, as part of the transaction open on the param connection.  Every record the mutation
+     * adds, removes or changes the score of must be recorded in the param StatsDelta, so that the leaderboard's score
+     * statistics are updated in the same transaction.
+     *
+     * @param leaderboard Leaderboard to change (resolved from the private key that the mutation was submitted with)
+     * @param conn Database connection to apply the mutation with (auto-commit is off)
+     * @param stats StatsDelta to record the changed records in
+     * @return Result of the mutation
+     * @throws SQLException If the mutation could not be applied
+     */
+    T apply(Leaderboard leaderboard, Connection conn, StatsDelta stats) throws SQLException;
+}
@@ -0,0 +1,321 @@
+package com.tdberg.apps.leaderboard.writer;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.stats.StatsDelta;
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Applies all changes to the records of leaderboards, so that the changes to any one leaderboard are applied one at a
+ * time and in the order they were submitted, while changes to different leaderboards are applied in parallel.
+ * Leaderboards are spread over a fixed number of stripes by private key, and each stripe has a single writer thread.
+ * NOTE: When a stripe's queue holds consecutive changes to the same leaderboard, they are applied as a group, in one
+ *       transaction followed by a single prune, score statistics update and query time update.  If any change of a
+ *       group fails, the group is rolled back and each of its changes is retried on its own, so one bad change does not
+ *       fail the others.  Only failures before the commit is sent are retried, and only if the connection is still
+ *       usable.  A failed commit may or may not have taken effect, so its changes fail rather than being retried, and a
+ *       change is never applied twice.  The private key of a group is resolved to its leaderboard by the writer, on the
+ *       connection that the group is applied with, so that a change only takes one database connection.
+ */
+public class BoardWriter {
+    private static Logger logger = LogManager.getLogger(BoardWriter.class);
+
+    private DatabaseHandler dbHandler;
+    private List<BlockingQueue<PendingMutation<?>>> stripes = new ArrayList<>();
+    private int maxGroupSize;
+
+    /**
+     * Default constructor
+     *
+     * @param dbHandler DatabaseHandler used to connect to the database
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public BoardWriter(final DatabaseHandler dbHandler, final Properties cfg) {
+        this.dbHandler = dbHandler;
+        int stripeCount = Integer.parseInt(cfg.getProperty("boardWriterStripes", "8"));
+        int queueSize = Integer.parseInt(cfg.getProperty("boardWriterQueueSize", "1024"));
+        maxGroupSize = Integer.parseInt(cfg.getProperty("boardWriterMaxGroupSize", "64"));
+
+        for(int i=0; i<stripeCount; i++) {
+            BlockingQueue<PendingMutation<?>> queue = new LinkedBlockingQueue<>(queueSize);
+            stripes.add(queue);
+            Thread thread = new Thread(() -> drain(queue), "board-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Applies the param mutation to the leaderboard with the param private key, after all changes to the leaderboard
+     * that were submitted before it, and waits for it to be committed.  Every window that the mutation adds records
+     * to is pruned before the commit.
+     *
+     * @param privKey Private API key of the leaderboard to change
+     * @param mutation Mutation to apply
+     * @param <T> Type of the mutation's result
+     * @return The leaderboard and the result of the mutation, or null if the private key could not be resolved (in
+     *         which case the mutation was not applied)
+     * @throws SQLException If the mutation could not be applied, or if too many changes are already waiting
+     */
+    public <T> Applied<T> execute(final String privKey, final BoardMutation<T> mutation) throws SQLException {
+        PendingMutation<T> pending = new PendingMutation<>(privKey, mutation);
+        BlockingQueue<PendingMutation<?>> queue = stripes.get(Math.floorMod(privKey.hashCode(), stripes.size()));
+        if(!queue.offer(pending)) {
+            throw new SQLTransientException("Too many changes are waiting to be applied to a leaderboard");
+        }
+
+        try {
+            return pending.result.get();
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while waiting for a change to be applied", e);
+        }catch(ExecutionException e) {
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Change to a leaderboard failed", e.getCause());
+        }
+    }
+
+    /**
+     * Applies the mutations of the param stripe queue, as groups of consecutive mutations to the same leaderboard.
+     *
+     * @param queue Queue of the stripe
+     */
+    private void drain(final BlockingQueue<PendingMutation<?>> queue) {
+        List<PendingMutation<?>> group = new ArrayList<>();
+        while(true) {
+            try {
+                group.add(queue.take());
+            }catch(InterruptedException e) {
+                return;
+            }
+
+            // This thread is the only consumer of the queue, so the head that is peeked is the head that is polled
+            String privKey = group.get(0).privKey;
+            PendingMutation<?> next = queue.peek();
+            while(next != null && next.privKey.equals(privKey) && group.size() < maxGroupSize) {
+                group.add(queue.poll());
+                next = queue.peek();
+            }
+
+            try {
+                applyGroup(group);
+            }catch(RuntimeException e) {
+                logger.error("Board writer failed for a group of " + group.size() + " changes : " + e);
+                for(PendingMutation<?> pending : group) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Resolves the private key of the param group of mutations to the same leaderboard, and applies them in one
+     * transaction, or each on its own if a mutation of the group fails.
+     *
+     * @param group Mutations to apply, in order
+     */
+    private void applyGroup(final List<PendingMutation<?>> group) {
+        Connection dbConnection = dbHandler.getDbConnection();
+        if(dbConnection == null) {
+            // Nothing has been written, so callers may safely journal or retry the changes
+            fail(group, new SQLTransientConnectionException("No database connection for the board writer"));
+            return;
+        }
+
+        try {
+            Leaderboard leaderboard;
+            try {
+                leaderboard = DbUtils.getLeaderboardFromPrivKey(group.get(0).privKey, dbConnection);
+            }catch(SQLException e) {
+                fail(group, e);
+                return;
+            }
+            if(leaderboard == null) {
+                for(PendingMutation<?> pending : group) {
+                    pending.result.complete(null);
+                }
+                return;
+            }
+
+            List<Object> results;
+            try {
+                results = apply(leaderboard, group, dbConnection);
+            }catch(SQLException e) {
+                dbHandler.rollbackDbConnection(dbConnection);
+                if(group.size() == 1 || DatabaseHandler.isConnectionError(e)) {
+                    fail(group, e);
+                    return;
+                }
+                logger.warn("Group of " + group.size() + " changes to leaderboard id : " +
+                            leaderboard.getBoardId() + " failed, retrying each : " + e.getMessage());
+                applyEach(leaderboard, group, dbConnection);
+                return;
+            }
+
+            try {
+                dbConnection.commit();
+            }catch(SQLException e) {
+                // The commit may have taken effect, so the changes must not be retried
+                dbHandler.rollbackDbConnection(dbConnection);
+                fail(group, e);
+                return;
+            }
+            complete(leaderboard, group, results);
+        }finally {
+            // Resetting auto-commit is kept out of the transaction, since a failure here must not cause committed
+            // changes to be retried
+            try {
+                dbConnection.setAutoCommit(true);
+            }catch(SQLException e) {
+                logger.warn("Failed to reset auto-commit on the board writer connection : " + e.getMessage());
+            }
+            dbHandler.closeDbConnection(dbConnection);
+        }
+    }
+
+    /**
+     * Applies each of the param mutations in its own transaction, after the group they were applied in failed.  Once
+     * the connection fails (or fails to commit), the remaining mutations fail without being applied.
+     *
+     * @param leaderboard Leaderboard that the mutations change
+     * @param group Mutations to apply, in order
+     * @param conn Database connection to apply the mutations with
+     */
+    private void applyEach(final Leaderboard leaderboard, final List<PendingMutation<?>> group, final Connection conn) {
+        for(int i=0; i<group.size(); i++) {
+            List<PendingMutation<?>> single = group.subList(i, i + 1);
+            List<Object> results;
+            try {
+                results = apply(leaderboard, single, conn);
+            }catch(SQLException e) {
+                dbHandler.rollbackDbConnection(conn);
+                if(DatabaseHandler.isConnectionError(e)) {
+                    fail(group.subList(i, group.size()), e);
+                    return;
+                }
+                fail(single, e);
+                continue;
+            }
+
+            try {
+                conn.commit();
+            }catch(SQLException e) {
+                dbHandler.rollbackDbConnection(conn);
+                fail(group.subList(i, group.size()), e);
+                return;
+            }
+            complete(leaderboard, single, results);
+        }
+    }
+
+    /**
+     * Applies the param mutations to the param leaderboard, and prunes the windows that records were added to and
+     * updates its score statistics and query time, in a transaction that is left for the caller to commit.
+     *
+     * @param leaderboard Leaderboard that the mutations change
+     * @param group Mutations to apply, in order
+     * @param conn Database connection to apply the mutations with
+     * @return Results of the mutations, in order
+     * @throws SQLException If any mutation (or the prune) fails, in which case the caller must roll back
+     */
+    private List<Object> apply(final Leaderboard leaderboard, final List<PendingMutation<?>> group,
+                               final Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        List<Object> results = new ArrayList<>();
+        // The delta is created per attempt, so the changes of a rolled back attempt are never applied
+        StatsDelta stats = new StatsDelta();
+        for(PendingMutation<?> pending : group) {
+            results.add(pending.mutation.apply(leaderboard, conn, stats));
+        }
+
+        int boardId = leaderboard.getBoardId();
+        Set<Integer> pruneBuckets = new TreeSet<>();
+        for(Map.Entry<Integer, StatsDelta.BucketDelta> bucket : stats.getBuckets().entrySet()) {
+            if(bucket.getValue().getCountDelta() > 0) {
+                pruneBuckets.add(bucket.getKey());
+            }
+        }
+        for(int bucket : pruneBuckets) {
+            DbUtils.pruneLeaderboardByBoardId(boardId, bucket, leaderboard.getRankingMode(), stats, conn);
+        }
+        DbUtils.applyStatsDelta(boardId, stats, conn);
+        DbUtils.updateLeaderboardQueryTime(boardId, conn);
+        return results;
+    }
+
+    private static void complete(final Leaderboard leaderboard, final List<PendingMutation<?>> group,
+                                 final List<Object> results) {
+        for(int i=0; i<group.size(); i++) {
+            group.get(i).complete(leaderboard, results.get(i));
+        }
+    }
+
+    private static void fail(final List<PendingMutation<?>> group, final SQLException e) {
+        for(PendingMutation<?> pending : group) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * The leaderboard that a mutation was applied to, and the result of the mutation.
+     *
+     * @param <T> Type of the mutation's result
+     */
+    public static class Applied<T> {
+        private Leaderboard leaderboard;
+        private T result;
+
+        private Applied(final Leaderboard leaderboard, final T result) {
+            this.leaderboard = leaderboard;
+            this.result = result;
+        }
+
+        public Leaderboard getLeaderboard() {
+            return leaderboard;
+        }
+
+        public T getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * A mutation waiting to be applied, along with the future its submitter waits on.
+     */
+    private static class PendingMutation<T> {
+        private String privKey;
+        private BoardMutation<T> mutation;
+        private CompletableFuture<Applied<T>> result = new CompletableFuture<>();
+
+        private PendingMutation(final String privKey, final BoardMutation<T> mutation) {
+            this.privKey = privKey;
+            this.mutation = mutation;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(final Leaderboard leaderboard, final Object value) {
+            result.complete(new Applied<>(leaderboard, (T) value));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.tdberg.apps.leaderboard.writer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A bounded, file backed journal of ADD submissions that could not be applied because the database was unavailable.
+ * The journal is replayed (see WriteJournalReplayTask) once the database is available again, and entries left in it
+ * when the service stops are replayed after the next start.
+ * NOTE: Entries are written one JSON object per line, and each append is flushed to the file (but not forced to the
+ *       disk), so a crash of the service loses no entries, but a crash of the host may lose the last few.  At most
+ *       'writeJournalMaxEntries' entries are held, beyond which appends are refused.
+ */
+public class WriteJournal {
+    private static Logger logger = LogManager.getLogger(WriteJournal.class);
+
+    private Gson gson = new Gson();
+    private Path journalPath;
+    private int maxEntries;
+    private List<Entry> entries = new ArrayList<>();
+    private BufferedWriter writer;
+
+    /**
+     * Default constructor.  Entries already in the journal file (from an earlier run) are read back.
+     *
+     * @param cfg Properties file detailing configurable values to use for this application
+     */
+    public WriteJournal(final Properties cfg) {
+        journalPath = Paths.get(cfg.getProperty("writeJournalFile", "leaderboard-writes.journal"));
+        maxEntries = Integer.parseInt(cfg.getProperty("writeJournalMaxEntries", "100000"));
+
+        if(Files.exists(journalPath)) {
+            boolean skippedLines = false;
+            try(BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    try {
+                        Entry entry = gson.fromJson(line, Entry.class);
+                        if(entry != null) {
+                            entries.add(entry);
+                        }
+                    }catch(JsonParseException e) {
+                        // A line cut short by a crash is skipped
+                        logger.warn("Skipped an unreadable write journal entry : " + e.getMessage());
+                        skippedLines = true;
+                    }
+                }
+            }catch(IOException e) {
+                logger.error("Failed to read write journal " + journalPath + " : " + e.getMessage());
+            }
+            // A line cut short has no line break, so it is dropped from the file before anything is appended to it
+            if(skippedLines) {
+                rewrite();
+            }
+            if(!entries.isEmpty()) {
+                logger.info("Write journal holds " + entries.size() + " submissions to replay");
+            }
+        }
+    }
+
+    /**
+     * Appends the param entry to the journal.
+     *
+     * @param entry Entry to append
+     * @return True if the entry was journaled, false if the journal is full or could not be written
+     */
+    public synchronized boolean append(final Entry entry) {
+        if(entries.size() >= maxEntries) {
+            return false;
+        }
+        try {
+            if(writer == null) {
+                writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                                                 StandardOpenOption.APPEND);
+            }
+            writer.write(gson.toJson(entry));
+            writer.newLine();
+            writer.flush();
+        }catch(IOException e) {
+            logger.error("Failed to append to write journal " + journalPath + " : " + e.getMessage());
+            return false;
+        }
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Returns a copy of the entries in the journal, oldest first.
+     *
+     * @return Entries in the journal
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes the param number of oldest entries (which have been replayed) from the journal.  The journal file is
+     * rewritten with the remaining entries.
+     *
+     * @param count Number of entries to remove
+     */
+    public synchronized void remove(final int count) {
+        if(count <= 0) {
+            return;
+        }
+        entries.subList(0, Math.min(count, entries.size())).clear();
+        rewrite();
+    }
+
+    /**
+     * Rewrites the journal file with the entries held, and replaces it in one move.
+     */
+    private void rewrite() {
+        try {
+            if(writer != null) {
+                writer.close();
+                writer = null;
+            }
+            Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+            try(BufferedWriter tempWriter = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                for(Entry entry : entries) {
+                    tempWriter.write(gson.toJson(entry));
+                    tempWriter.newLine();
+                }
+            }
+            Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e) {
+            logger.error("Failed to rewrite write journal " + journalPath + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * This public inner class describes a single journaled ADD submission.  It is serialized into JSON, one line per
+     * entry, in the journal file.
+     */
+    public static class Entry {
+        private String privKey;
+        private String name;
+        private int score;
+        private Integer time;
+        private String notes;
+        private String ipAddress;
+        private long submittedAt;
+
+        public Entry(final String privKey, final String name, final int score, final Integer time, final String notes,
+                     final String ipAddress, final long submittedAt) {
+            this.privKey = privKey;
+            this.name = name;
+            this.score = score;
+            this.time = time;
+            this.notes = notes;
+            this.ipAddress = ipAddress;
+            this.submittedAt = submittedAt;
+        }
+
+        public String getPrivKey() {
+            return privKey;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public Integer getTime() {
+            return time;
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+
+        public String getIpAddress() {
+            return ipAddress;
+        }
+
+        public long getSubmittedAt() {
+            return submittedAt;
+        }
+    }
+}
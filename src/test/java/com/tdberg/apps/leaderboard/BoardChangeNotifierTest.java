@@ -0,0 +1,101 @@
+package com.tdberg.apps.leaderboard;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoardChangeNotifierTest {
+    private static Leaderboard board(final int boardId) {
+        return new Leaderboard(boardId, "priv" + boardId, "pub" + boardId, null);
+    }
+
+    @Test
+    public void versionsAdvancePerBoard() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        long initialVersion = notifier.getVersion(1);
+        assertEquals(initialVersion, notifier.getVersion(2));
+        assertEquals(0, notifier.getChangeCount());
+
+        notifier.boardChanged(board(1));
+        notifier.boardChanged(board(1));
+        assertEquals(initialVersion + 2, notifier.getVersion(1));
+        assertEquals(initialVersion, notifier.getVersion(2));
+        assertEquals(2, notifier.getChangeCount());
+
+        notifier.restoreVersion(2, 42);
+        notifier.boardChanged(board(2));
+        assertEquals(43, notifier.getVersion(2));
+        assertEquals(3, notifier.getChangeCount());
+    }
+
+    @Test
+    public void awaitReturnsImmediatelyForAnOldVersion() throws InterruptedException {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        long knownVersion = notifier.getVersion(1);
+        notifier.boardChanged(board(1));
+
+        long start = System.nanoTime();
+        assertTrue(notifier.awaitChange(1, knownVersion, 5000));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void awaitTimesOutWithoutAChange() throws InterruptedException {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        notifier.boardChanged(board(2));
+        assertFalse(notifier.awaitChange(1, notifier.getVersion(1), 50));
+    }
+
+    @Test(timeout = 5000)
+    public void changeWakesAllWaiters() throws InterruptedException {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        long knownVersion = notifier.getVersion(1);
+        int waiterCount = 3;
+        CountDownLatch woken = new CountDownLatch(waiterCount);
+        List<Thread> waiters = new ArrayList<>();
+        for(int i=0; i<waiterCount; i++) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    if(notifier.awaitChange(1, knownVersion, 10000)) {
+                        woken.countDown();
+                    }
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+        }
+
+        Thread.sleep(50);
+        notifier.boardChanged(board(1));
+        assertTrue(woken.await(2, TimeUnit.SECONDS));
+        for(Thread waiter : waiters) {
+            waiter.join();
+        }
+
+        // The next wait on the new version waits for the next change
+        assertFalse(notifier.awaitChange(1, notifier.getVersion(1), 50));
+    }
+
+    @Test
+    public void failingListenerDoesNotStopOthers() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        List<Integer> seen = new ArrayList<>();
+        notifier.addListener(leaderboard -> {
+            throw new IllegalStateException("listener failure");
+        });
+        notifier.addListener(leaderboard -> seen.add(leaderboard.getBoardId()));
+
+        notifier.boardChanged(board(5));
+        notifier.boardChanged(board(6));
+        assertEquals(List.of(5, 6), seen);
+        assertEquals(2, notifier.getChangeCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.tdberg.apps.leaderboard.accesslog;
+
+import java.util.Properties;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AccessLogTest {
+    private static AccessLog accessLog(final int bufferSize, final String getSampleRate) {
+        Properties cfg = new Properties();
+        cfg.setProperty("accessLogBufferSize", String.valueOf(bufferSize));
+        cfg.setProperty("accessLogSampleRate.GET", getSampleRate);
+        return new AccessLog(cfg);
+    }
+
+    @Test
+    public void fullRingDropsEvents() {
+        // A buffer size of 3 is rounded up to 4 slots.  Nothing frees them, since the writer is not started.
+        AccessLog accessLog = accessLog(3, "1.0");
+        for(int i=0; i<4; i++) {
+            accessLog.access(AccessRoute.ADD, 200, 1000, 10, "127.0.0.1");
+        }
+        assertEquals(0, accessLog.getDroppedCount());
+
+        accessLog.access(AccessRoute.ADD, 200, 1000, 10, "127.0.0.1");
+        accessLog.audit(AccessRoute.ADD, "INSERTED", 1, 2, 3, "127.0.0.1");
+        assertEquals(2, accessLog.getDroppedCount());
+    }
+
+    @Test
+    public void accessEventsAreSampledButAuditEventsAreNot() {
+        AccessLog accessLog = accessLog(4, "0.0");
+        for(int i=0; i<10; i++) {
+            accessLog.access(AccessRoute.GET, 200, 1000, 10, "127.0.0.1");
+        }
+        assertEquals(10, accessLog.getSampledOutCount());
+        assertEquals(0, accessLog.getDroppedCount());
+
+        // The GET rate does not apply to other routes or to AUDIT events, which fill the ring
+        for(int i=0; i<2; i++) {
+            accessLog.access(AccessRoute.ADD, 200, 1000, 10, "127.0.0.1");
+            accessLog.audit(AccessRoute.GET, "READ", 1, 0, 0, null);
+        }
+        assertEquals(10, accessLog.getSampledOutCount());
+        accessLog.audit(AccessRoute.GET, "READ", 1, 0, 0, null);
+        assertEquals(1, accessLog.getDroppedCount());
+    }
+
+    @Test(timeout = 5000)
+    public void writerFreesSlots() throws InterruptedException {
+        AccessLog accessLog = accessLog(4, "1.0");
+        accessLog.start();
+        for(int round=0; round<5; round++) {
+            for(int i=0; i<4; i++) {
+                accessLog.audit(AccessRoute.ADD, "INSERTED", 1, round * 4 + i, 0, "127.0.0.1");
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(0, accessLog.getDroppedCount());
+    }
+}
@@ -0,0 +1,39 @@
+package com.tdberg.apps.leaderboard.accesslog;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AccessRouteTest {
+    @Test
+    public void commandSegmentSelectsTheRoute() {
+        assertEquals(AccessRoute.GET, AccessRoute.fromPath("/lb/GET/abc/json", false));
+        assertEquals(AccessRoute.GET, AccessRoute.fromPath("/lb/get/abc", false));
+        assertEquals(AccessRoute.CREATE, AccessRoute.fromPath("/lb/CREATE", false));
+        assertEquals(AccessRoute.MULTIGET, AccessRoute.fromPath("/lb/MultiGet/a,b", false));
+        assertEquals(AccessRoute.STATS, AccessRoute.fromPath("/lb/STATS/abc", false));
+        assertEquals(AccessRoute.CLEAR, AccessRoute.fromPath("/lb/CLEAR/abc", false));
+    }
+
+    @Test
+    public void postedAddIsABatchAdd() {
+        assertEquals(AccessRoute.ADD, AccessRoute.fromPath("/lb/ADD/abc/name/1", false));
+        assertEquals(AccessRoute.BATCH_ADD, AccessRoute.fromPath("/lb/ADD/abc", true));
+        assertEquals(AccessRoute.GET, AccessRoute.fromPath("/lb/GET/abc", true));
+    }
+
+    @Test
+    public void unknownCommandsAreOther() {
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/", false));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb", false));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb/", false));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb/GETS/abc", false));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb/GE/abc", false));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/admin/export", false));
+    }
+
+    @Test
+    public void internalRoutesAreNotPathCommands() {
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb/BATCH_ADD/abc", true));
+        assertEquals(AccessRoute.OTHER, AccessRoute.fromPath("/lb/INGEST", false));
+    }
+}
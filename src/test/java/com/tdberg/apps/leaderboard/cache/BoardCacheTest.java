@@ -0,0 +1,120 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.BoardChangeNotifier;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoardCacheTest {
+    private static Leaderboard board(final int boardId) {
+        return new Leaderboard(boardId, "priv" + boardId, "pub" + boardId, null);
+    }
+
+    private static BoardCache cache(final BoardChangeNotifier notifier, final int maxBoards) {
+        Properties cfg = new Properties();
+        cfg.setProperty("cacheTopN", "2");
+        cfg.setProperty("cacheMaxBoards", String.valueOf(maxBoards));
+        return new BoardCache(notifier, cfg);
+    }
+
+    private static List<Record> records(final int count) {
+        List<Record> records = new ArrayList<>();
+        for(int i=0; i<count; i++) {
+            records.add(new Record(1, i + 1, "n" + i, 100 - i, 0, null, null, null));
+        }
+        return records;
+    }
+
+    @Test
+    public void putAndGetByPublicKey() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        BoardCache cache = cache(notifier, 10);
+        Leaderboard leaderboard = board(1);
+        CachedBoard cachedBoard = cache.newCachedBoard(leaderboard, 0, notifier.getVersion(1), records(1), false);
+        assertTrue(cachedBoard.isComplete());
+        assertFalse(cache.newCachedBoard(leaderboard, 0, notifier.getVersion(1), records(2), false).isComplete());
+
+        cache.put(cachedBoard);
+        assertSame(cachedBoard, cache.get("pub1"));
+        assertEquals(Integer.valueOf(1), cache.getBoardId("pub1"));
+        assertNull(cache.get("pub2"));
+    }
+
+    @Test
+    public void outOfDateBoardIsNotKept() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        BoardCache cache = cache(notifier, 10);
+        long version = notifier.getVersion(1);
+        notifier.boardChanged(board(1));
+
+        cache.put(cache.newCachedBoard(board(1), 0, version, records(1), false));
+        assertNull(cache.get("pub1"));
+    }
+
+    @Test
+    public void changeDropsTheBoardButKeepsItsKey() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        BoardCache cache = cache(notifier, 10);
+        notifier.addListener(cache);
+        cache.put(cache.newCachedBoard(board(1), 0, notifier.getVersion(1), records(1), false));
+
+        notifier.boardChanged(board(1));
+        assertNull(cache.get("pub1"));
+        assertEquals(Integer.valueOf(1), cache.getBoardId("pub1"));
+
+        // Removing a cached board forgets its key too
+        cache.put(cache.newCachedBoard(board(1), 0, notifier.getVersion(1), records(1), false));
+        assertNotNull(cache.get("pub1"));
+        cache.remove(1);
+        assertNull(cache.get("pub1"));
+        assertNull(cache.getBoardId("pub1"));
+    }
+
+    @Test
+    public void endedWindowIsNotServed() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        BoardCache cache = cache(notifier, 10);
+        Leaderboard leaderboard = board(1);
+        leaderboard.setWindowType(WindowType.DAILY);
+
+        cache.put(cache.newCachedBoard(leaderboard, leaderboard.getCurrentBucket() - 1, notifier.getVersion(1),
+                                       records(1), false));
+        assertNull(cache.get("pub1"));
+    }
+
+    @Test
+    public void fullCacheEvictsABoard() {
+        BoardChangeNotifier notifier = new BoardChangeNotifier();
+        BoardCache cache = cache(notifier, 2);
+        for(int boardId=1; boardId<=3; boardId++) {
+            cache.put(cache.newCachedBoard(board(boardId), 0, notifier.getVersion(boardId), records(1), false));
+        }
+        assertEquals(2, cache.getAll().size());
+        assertNotNull(cache.get("pub3"));
+
+        // Replacing a cached board does not evict another one
+        cache.put(cache.newCachedBoard(board(3), 0, notifier.getVersion(3), records(1), false));
+        assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    public void queriedBoardIdsAreDrainedOnce() {
+        BoardCache cache = cache(new BoardChangeNotifier(), 10);
+        cache.markQueried(4);
+        cache.markQueried(2);
+        cache.markQueried(4);
+
+        List<Integer> boardIds = cache.drainQueriedBoardIds();
+        Collections.sort(boardIds);
+        assertEquals(List.of(2, 4), boardIds);
+        assertTrue(cache.drainQueriedBoardIds().isEmpty());
+    }
+}
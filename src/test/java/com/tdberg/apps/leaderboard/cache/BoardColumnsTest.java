@@ -0,0 +1,81 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoardColumnsTest {
+    private static List<Record> records() {
+        return List.of(
+                new Record(1, 30, "ann", 300, 12, null, new Timestamp(1700000000123L), "10.0.0.1"),
+                new Record(1, 10, null, 200, 0, "first try", null, "10.0.0.2"),
+                new Record(1, 20, "\u00e9lodie \u2603", 100, -4, "", new Timestamp(0), "10.0.0.3"),
+                new Record(1, 40, "", -50, 7, null, new Timestamp(-1000), "10.0.0.4"));
+    }
+
+    @Test
+    public void heapAndOffHeapColumnsHoldTheRecords() {
+        List<Record> records = records();
+        for(boolean offHeap : new boolean[] {false, true}) {
+            BoardColumns columns = BoardColumns.fromRecords(records, offHeap);
+            assertEquals(records.size(), columns.size());
+            for(int i=0; i<records.size(); i++) {
+                Record record = records.get(i);
+                assertEquals(record.getRecordId(), columns.getRecordId(i));
+                assertEquals(record.getName(), columns.getName(i));
+                assertEquals(record.getScore(), columns.getScore(i));
+                assertEquals(record.getTime(), columns.getTime(i));
+                assertEquals(record.getNotes(), columns.getNotes(i));
+                assertEquals(record.getSubmissionTime(), columns.getSubmissionTime(i));
+            }
+        }
+    }
+
+    @Test
+    public void emptyColumns() {
+        for(boolean offHeap : new boolean[] {false, true}) {
+            BoardColumns columns = BoardColumns.fromRecords(List.of(), offHeap);
+            assertEquals(0, columns.size());
+            columns.write(10, (recordId, name, score, time, notes, recordTime) -> fail("No records"));
+        }
+    }
+
+    @Test
+    public void heapNamesAreInterned() {
+        String name = new String("shared");
+        List<Record> records = List.of(new Record(1, 1, name, 1, 0, null, null, null));
+        BoardColumns columns = BoardColumns.fromRecords(records, false);
+        assertSame("shared", columns.getName(0));
+    }
+
+    @Test
+    public void writeStopsAtTheLimit() {
+        BoardColumns columns = BoardColumns.fromRecords(records(), true);
+        List<Integer> recordIds = new ArrayList<>();
+        columns.write(2, (recordId, name, score, time, notes, recordTime) -> recordIds.add(recordId));
+        assertEquals(List.of(30, 10), recordIds);
+
+        recordIds.clear();
+        columns.write(100, (recordId, name, score, time, notes, recordTime) -> recordIds.add(recordId));
+        assertEquals(List.of(30, 10, 20, 40), recordIds);
+    }
+
+    @Test
+    public void onlyCompleteBoardsServeMoreThanTheyHold() {
+        Leaderboard leaderboard = new Leaderboard(1, "priv", "pub", null);
+        BoardColumns columns = BoardColumns.fromRecords(records(), false);
+
+        CachedBoard partial = new CachedBoard(leaderboard, 0, 1, columns, false, false);
+        assertTrue(partial.canServe(4));
+        assertFalse(partial.canServe(5));
+
+        CachedBoard complete = new CachedBoard(leaderboard, 0, 1, columns, true, false);
+        assertTrue(complete.canServe(1000));
+    }
+}
@@ -0,0 +1,116 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.Record;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CacheSnapshotTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cache-snapshot-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try(var paths = Files.list(directory)) {
+            for(Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static CachedBoard cachedBoard(final boolean offHeap) {
+        Leaderboard leaderboard = new Leaderboard(7, "privkey", "pubkey", null);
+        leaderboard.setWindowType(WindowType.WEEKLY);
+        leaderboard.setRankingMode(RankingMode.SCORE_THEN_TIME);
+        List<Record> records = List.of(
+                new Record(7, 3, "ann", 100, 12, "gg", new Timestamp(1700000000123L), "10.0.0.1"),
+                new Record(7, 9, null, 90, 0, null, null, "10.0.0.2"),
+                new Record(7, 4, "caf\u00e9", -5, 40, "", new Timestamp(0), "10.0.0.3"));
+        return new CachedBoard(leaderboard, 2800, 1234567L, BoardColumns.fromRecords(records, offHeap), true, false);
+    }
+
+    @Test
+    public void boardsRoundTrip() throws IOException {
+        Path path = directory.resolve("cache.snapshot");
+        CachedBoard written = cachedBoard(false);
+        long before = System.currentTimeMillis();
+        CacheSnapshot.write(path, List.of(written), true);
+
+        for(boolean offHeap : new boolean[] {false, true}) {
+            CacheSnapshot snapshot = CacheSnapshot.read(path, offHeap);
+            assertNotNull(snapshot);
+            assertTrue(snapshot.isClean());
+            assertTrue(snapshot.getWriteTime() >= before);
+            assertEquals(1, snapshot.getBoards().size());
+
+            CachedBoard read = snapshot.getBoards().get(0);
+            assertEquals(7, read.getBoardId());
+            assertEquals("pubkey", read.getLeaderboard().getPubKey());
+            assertNull(read.getLeaderboard().getPrivKey());
+            assertEquals(WindowType.WEEKLY, read.getLeaderboard().getWindowType());
+            assertEquals(RankingMode.SCORE_THEN_TIME, read.getLeaderboard().getRankingMode());
+            assertEquals(2800, read.getBucket());
+            assertEquals(1234567L, read.getVersion());
+            assertTrue(read.isComplete());
+            assertTrue(read.isStale());
+
+            BoardColumns expected = written.getColumns();
+            BoardColumns actual = read.getColumns();
+            assertEquals(expected.size(), actual.size());
+            for(int i=0; i<expected.size(); i++) {
+                assertEquals(expected.getRecordId(i), actual.getRecordId(i));
+                assertEquals(expected.getName(i), actual.getName(i));
+                assertEquals(expected.getScore(i), actual.getScore(i));
+                assertEquals(expected.getTime(i), actual.getTime(i));
+                assertEquals(expected.getNotes(i), actual.getNotes(i));
+                assertEquals(expected.getSubmissionTime(i), actual.getSubmissionTime(i));
+            }
+        }
+        assertFalse(Files.exists(directory.resolve("cache.snapshot.tmp")));
+    }
+
+    @Test
+    public void uncleanSnapshotIsMarkedSo() throws IOException {
+        Path path = directory.resolve("cache.snapshot");
+        CacheSnapshot.write(path, List.of(), false);
+
+        CacheSnapshot snapshot = CacheSnapshot.read(path, false);
+        assertFalse(snapshot.isClean());
+        assertTrue(snapshot.getBoards().isEmpty());
+    }
+
+    @Test
+    public void missingFileReadsAsNull() throws IOException {
+        assertNull(CacheSnapshot.read(directory.resolve("missing.snapshot"), false));
+    }
+
+    @Test
+    public void damagedFileReadsAsNull() throws IOException {
+        Path path = directory.resolve("cache.snapshot");
+        CacheSnapshot.write(path, List.of(cachedBoard(false)), true);
+        byte[] bytes = Files.readAllBytes(path);
+
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(path, bytes);
+        assertNull(CacheSnapshot.read(path, false));
+
+        Files.write(path, new byte[] {1, 2, 3});
+        assertNull(CacheSnapshot.read(path, false));
+    }
+}
@@ -0,0 +1,51 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CachedBoardNamedTest {
+    private static CachedBoard board(final boolean complete, final boolean offHeap) {
+        List<Record> records = List.of(
+                new Record(1, 11, "ann", 500, 0, null, null, null),
+                new Record(1, 12, "bob", 400, 0, "gg", null, null),
+                new Record(1, 13, null, 300, 0, null, null, null),
+                new Record(1, 14, "cat", 200, 0, null, null, null));
+        return new CachedBoard(new Leaderboard(1, "priv", "pub", null), 0, 1,
+                               BoardColumns.fromRecords(records, offHeap), complete, false);
+    }
+
+    /**
+     * Writes the named records of the param board, returning "rank:recordId:name" for each, or null if the board
+     * could not serve the request.
+     */
+    private static List<String> named(final CachedBoard board, final String... names) {
+        List<String> written = new ArrayList<>();
+        boolean served = board.writeNamedRecords(Set.of(names),
+                (rank, recordId, name, score, time, notes, recordTime) -> written.add(rank + ":" + recordId + ":" + name));
+        return served ? written : null;
+    }
+
+    @Test
+    public void namedRecordsAreWrittenInRankOrderWithTheirRanks() {
+        for(boolean offHeap : new boolean[] {false, true}) {
+            CachedBoard board = board(false, offHeap);
+            assertEquals(List.of("1:11:ann", "4:14:cat"), named(board, "cat", "ann"));
+            assertEquals(List.of("2:12:bob"), named(board, "bob"));
+            assertEquals(List.of(), named(board));
+        }
+    }
+
+    @Test
+    public void incompleteBoardCannotRankMissingNames() {
+        assertNull(named(board(false, false), "ann", "dan"));
+        // A missing name has no record at all if the board is complete
+        assertEquals(List.of("1:11:ann"), named(board(true, false), "ann", "dan"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.tdberg.apps.leaderboard.cache;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CachedBoardPrefixTest {
+    private static CachedBoard board(final boolean complete, final boolean offHeap) {
+        String[] names = {"Sam", "alex", "sally", null, "SAL", "bob", "sal", "Alexis", "samantha"};
+        List<Record> records = new ArrayList<>();
+        for(int i=0; i<names.length; i++) {
+            records.add(new Record(1, 100 + i, names[i], 1000 - i, 0, null, null, null));
+        }
+        return new CachedBoard(new Leaderboard(1, "priv", "pub", null), 0, 1,
+                               BoardColumns.fromRecords(records, offHeap), complete, false);
+    }
+
+    /**
+     * Writes the records of the param board whose name starts with the param prefix, returning "rank:name" for each,
+     * or null if the board could not serve the request.
+     */
+    private static List<String> search(final CachedBoard board, final String prefix, final int limit) {
+        List<String> written = new ArrayList<>();
+        boolean served = board.writeNamePrefixRecords(prefix, limit,
+                (rank, recordId, name, score, time, notes, recordTime) -> written.add(rank + ":" + name));
+        return served ? written : null;
+    }
+
+    @Test
+    public void matchesIgnoreCaseAndComeInNameOrder() {
+        for(boolean offHeap : new boolean[] {false, true}) {
+            CachedBoard board = board(true, offHeap);
+            // Names that are equal ignoring case stay in rank order
+            assertEquals(List.of("5:SAL", "7:sal", "3:sally", "1:Sam", "9:samantha"), search(board, "sa", 10));
+            assertEquals(List.of("2:alex", "8:Alexis"), search(board, "ALEX", 10));
+            assertEquals(List.of("9:samantha"), search(board, "samA", 10));
+            assertEquals(List.of(), search(board, "z", 10));
+            assertEquals(List.of(), search(board, "samanthas", 10));
+        }
+    }
+
+    @Test
+    public void limitCapsTheMatches() {
+        assertEquals(List.of("5:SAL", "7:sal"), search(board(true, false), "sa", 2));
+        assertEquals(List.of(), search(board(true, false), "sa", 0));
+    }
+
+    @Test
+    public void emptyPrefixMatchesEveryName() {
+        assertEquals(8, search(board(true, false), "", 100).size());
+    }
+
+    @Test
+    public void incompleteBoardCannotSearch() {
+        assertNull(search(board(false, false), "sa", 10));
+    }
+}
@@ -0,0 +1,39 @@
+package com.tdberg.apps.leaderboard.capture;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CaptureEntryTest {
+    private Gson gson = new Gson();
+
+    @Test
+    public void boardEntryOnlyHoldsItsBoardFields() {
+        CaptureEntry entry = CaptureEntry.board("b1", "DAILY", "TIME_ASC");
+        assertTrue(entry.isBoard());
+        assertEquals("{\"board\":\"b1\",\"window\":\"DAILY\",\"ranking\":\"TIME_ASC\"}", gson.toJson(entry));
+    }
+
+    @Test
+    public void requestEntryLeavesOutUnsetFields() {
+        CaptureEntry entry = CaptureEntry.request(12, "GET", "/lb/get/{b1.pub}", null, null, 200, 345);
+        assertFalse(entry.isBoard());
+        assertEquals("{\"at\":12,\"method\":\"GET\",\"path\":\"/lb/get/{b1.pub}\",\"status\":200,\"micros\":345}",
+                     gson.toJson(entry));
+    }
+
+    @Test
+    public void requestEntryRoundTrips() {
+        String line = gson.toJson(CaptureEntry.request(7, "POST", "/lb/add/{b2.priv}", "a=1", "[{\"n\":1}]", 400, 9));
+        CaptureEntry entry = gson.fromJson(line, CaptureEntry.class);
+        assertFalse(entry.isBoard());
+        assertEquals(7, entry.getAt());
+        assertEquals("POST", entry.getMethod());
+        assertEquals("/lb/add/{b2.priv}", entry.getPath());
+        assertEquals("a=1", entry.getQuery());
+        assertEquals("[{\"n\":1}]", entry.getBody());
+        assertEquals(400, entry.getStatus());
+        assertEquals(9, entry.getMicros());
+    }
+}
@@ -0,0 +1,173 @@
+package com.tdberg.apps.leaderboard.capture;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+import com.tdberg.apps.leaderboard.objects.WindowType;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TrafficCaptureTest {
+    private Path captureFile;
+    private AtomicInteger lookups = new AtomicInteger();
+    private boolean databaseDown;
+
+    /**
+     * A DatabaseHandler that knows two leaderboards: 1 (keys aa01 and bb01) and 2 (keys aa02 and bb02).
+     */
+    private class StubDatabaseHandler extends DatabaseHandler {
+        private Map<String, Leaderboard> privateKeys = Map.of("aa01", board(1, "aa01", "bb01"),
+                                                              "aa02", board(2, "aa02", "bb02"));
+        private Map<String, Leaderboard> publicKeys = Map.of("bb01", privateKeys.get("aa01"),
+                                                             "bb02", privateKeys.get("aa02"));
+
+        private StubDatabaseHandler(final Properties cfg) {
+            super(cfg);
+        }
+
+        @Override
+        public Leaderboard getLeaderboardFromPrivKey(final String privKey) throws SQLException {
+            return lookUp(privateKeys, privKey);
+        }
+
+        @Override
+        public Leaderboard getLeaderboardFromPubKey(final String pubKey) throws SQLException {
+            return lookUp(publicKeys, pubKey);
+        }
+
+        private Leaderboard lookUp(final Map<String, Leaderboard> keys, final String key) throws SQLException {
+            lookups.incrementAndGet();
+            if(databaseDown) {
+                throw new SQLException("database down");
+            }
+            return keys.get(key);
+        }
+    }
+
+    private static Leaderboard board(final int boardId, final String privKey, final String pubKey) {
+        Leaderboard leaderboard = new Leaderboard(boardId, privKey, pubKey, null);
+        leaderboard.setWindowType((boardId == 1) ? WindowType.NONE : WindowType.WEEKLY);
+        leaderboard.setRankingMode((boardId == 1) ? RankingMode.SCORE_DESC : RankingMode.TIME_ASC);
+        return leaderboard;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        captureFile = Files.createTempFile("traffic-capture-test", ".ndjson");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(captureFile);
+    }
+
+    private TrafficCapture startCapture() throws IOException {
+        Properties cfg = new Properties();
+        cfg.setProperty("writeJournalEnabled", "false");
+        cfg.setProperty("cacheEnabled", "false");
+        cfg.setProperty("trafficCaptureFile", captureFile.toString());
+        TrafficCapture capture = new TrafficCapture(new StubDatabaseHandler(cfg), cfg);
+        capture.start();
+        return capture;
+    }
+
+    private static void capture(final TrafficCapture capture, final boolean post, final String path) {
+        capture.capture(AccessRoute.fromPath(path, post), post, path, null, post ? "[]" : "ignored", 200,
+                        System.nanoTime(), 1000);
+    }
+
+    /**
+     * Returns each line of the capture file, with requests described by their paths only.
+     */
+    private List<String> capturedLines() throws IOException {
+        Gson gson = new Gson();
+        List<String> lines = new ArrayList<>();
+        for(String line : Files.readAllLines(captureFile)) {
+            CaptureEntry entry = gson.fromJson(line, CaptureEntry.class);
+            lines.add(entry.isBoard() ? entry.getBoard() + ":" + entry.getWindow() + ":" + entry.getRanking()
+                                      : entry.getPath());
+        }
+        return lines;
+    }
+
+    @Test
+    public void keysAreReplacedByTokensOfTheirLeaderboards() throws IOException {
+        TrafficCapture capture = startCapture();
+        capture(capture, false, "/lb/get/bb01");
+        capture(capture, true, "/lb/add/aa01");
+        capture(capture, false, "/lb/MULTIGET/bb02:5,bb01,ffff:2");
+        capture(capture, false, "/lb/CLEAR/aa02");
+        capture(capture, false, "/lb/get/not-a-key");
+        capture(capture, false, "/lb/CREATE");
+        capture.stop();
+
+        assertEquals(List.of("b1:NONE:SCORE_DESC",
+                             "/lb/get/{b1.pub}",
+                             "/lb/add/{b1.priv}",
+                             "b2:WEEKLY:TIME_ASC",
+                             "/lb/MULTIGET/{b2.pub}:5,{b1.pub},{x1}:2",
+                             "/lb/CLEAR/{b2.priv}",
+                             "/lb/get/{x2}",
+                             "/lb/CREATE"), capturedLines());
+    }
+
+    @Test
+    public void keysAreOnlyLookedUpOnce() throws IOException {
+        TrafficCapture capture = startCapture();
+        capture(capture, false, "/lb/get/bb01");
+        capture(capture, false, "/lb/get/bb01");
+        capture(capture, false, "/lb/get/ffff");
+        capture(capture, false, "/lb/get/ffff");
+        capture.stop();
+
+        assertEquals(List.of("b1:NONE:SCORE_DESC", "/lb/get/{b1.pub}", "/lb/get/{b1.pub}", "/lb/get/{x1}",
+                             "/lb/get/{x1}"), capturedLines());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void keysThatFailedToLookUpAreLookedUpAgain() throws IOException {
+        databaseDown = true;
+        TrafficCapture capture = startCapture();
+        capture(capture, false, "/lb/get/bb01");
+        capture(capture, false, "/lb/get/bb01");
+        capture.stop();
+
+        assertEquals(List.of("/lb/get/{x1}", "/lb/get/{x2}"), capturedLines());
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void capturingStopsAfterTheMaximumRequests() throws IOException {
+        Properties cfg = new Properties();
+        cfg.setProperty("writeJournalEnabled", "false");
+        cfg.setProperty("cacheEnabled", "false");
+        cfg.setProperty("trafficCaptureFile", captureFile.toString());
+        cfg.setProperty("trafficCaptureMaxRequests", "2");
+        TrafficCapture capture = new TrafficCapture(new StubDatabaseHandler(cfg), cfg);
+        capture.start();
+        capture(capture, false, "/lb/get/not-a-key");
+        capture(capture, false, "/lb/get/not-a-key");
+        capture(capture, false, "/lb/get/not-a-key");
+        capture.stop();
+
+        // Keys that cannot be leaderboard keys are never looked up, so each gets a new token
+        assertEquals(List.of("/lb/get/{x1}", "/lb/get/{x2}"), capturedLines());
+    }
+}
@@ -0,0 +1,155 @@
+package com.tdberg.apps.leaderboard.capture;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TrafficReplayerTest {
+    private Gson gson = new Gson();
+    private HttpServer server;
+    private List<String> created = new CopyOnWriteArrayList<>();
+    private List<String> received = new CopyOnWriteArrayList<>();
+    private Path captureFile;
+
+    /**
+     * Starts a stand-in for the service, which creates leaderboard N with the keys privN and pubN, records every other
+     * request (and its body), and answers ERROR to the requests for /lb/get/bad.
+     */
+    @Before
+    public void setUp() throws IOException {
+        AtomicInteger boards = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String response = "OK";
+            if(path.startsWith("/lb/CREATE/")) {
+                created.add(path);
+                int board = boards.incrementAndGet();
+                response = "{\"tdberg\":{\"leaderboard\":{\"privateKey\":\"priv" + board + "\",\"publicKey\":\"pub" +
+                           board + "\"}}}";
+            }else {
+                received.add(exchange.getRequestMethod() + " " + path + ((query == null) ? "" : "?" + query) +
+                             (body.isEmpty() ? "" : " " + body));
+                if(path.equals("/lb/get/bad")) {
+                    response = "ERROR : bad key";
+                }
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        captureFile = Files.createTempFile("traffic-replayer-test", ".ndjson");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        Files.deleteIfExists(captureFile);
+    }
+
+    private TrafficReplayer.Result replay(final CaptureEntry... entries) throws Exception {
+        StringBuilder capture = new StringBuilder();
+        for(CaptureEntry entry : entries) {
+            capture.append(gson.toJson(entry)).append('\n');
+        }
+        // The last line of a capture that was cut short is skipped
+        capture.append("{\"at\":9,\"method\":\"GET\",\"pa");
+        Files.writeString(captureFile, capture.toString());
+
+        // A single closed model thread sends the requests in the order they were captured
+        return new TrafficReplayer(captureFile.toString(), "127.0.0.1", server.getAddress().getPort(), true, 0, 1,
+                                   new Properties()).run();
+    }
+
+    private static CaptureEntry get(final String path) {
+        return CaptureEntry.request(0, "GET", path, null, null, 200, 100);
+    }
+
+    @Test
+    public void tokensAreReplacedByTheKeysOfTheNewLeaderboards() throws Exception {
+        TrafficReplayer.Result result = replay(
+                CaptureEntry.board("b1", "NONE", "SCORE_DESC"),
+                CaptureEntry.request(0, "POST", "/lb/add/{b1.priv}", null, "[{\"score\":1}]", 200, 100),
+                get("/lb/get/{b1.pub}"),
+                CaptureEntry.board("b2", "WEEKLY", "TIME_ASC"),
+                CaptureEntry.request(0, "GET", "/lb/MULTIGET/{b2.pub}:5,{b1.pub}", "x=1", null, 200, 100));
+
+        assertEquals(List.of("/lb/CREATE/NONE/SCORE_DESC", "/lb/CREATE/WEEKLY/TIME_ASC"), created);
+        assertEquals(List.of("POST /lb/add/priv1 [{\"score\":1}]", "GET /lb/get/pub1",
+                             "GET /lb/MULTIGET/pub2:5,pub1?x=1"), received);
+        assertEquals(3, result.getRequests());
+    }
+
+    @Test
+    public void unknownTokensAreReplacedByTheSameNewKey() throws Exception {
+        replay(get("/lb/get/{x1}"), get("/lb/get/{x2}"), get("/lb/get/{x1}"));
+
+        assertTrue(created.isEmpty());
+        assertEquals(3, received.size());
+        String first = received.get(0).substring("GET /lb/get/".length());
+        String second = received.get(1).substring("GET /lb/get/".length());
+        assertTrue(first.matches("[0-9a-f]+"));
+        assertNotEquals(first, second);
+        assertEquals("GET /lb/get/" + first, received.get(2));
+    }
+
+    @Test
+    public void errorResponsesAreRecordedAsStatus400() throws Exception {
+        TrafficReplayer.Result result = replay(get("/lb/get/ok"), get("/lb/get/bad"),
+                                               CaptureEntry.request(0, "GET", "/lb/get/bad", null, null, 400, 100));
+
+        JsonObject json = gson.toJsonTree(result).getAsJsonObject();
+        assertEquals(1, json.getAsJsonObject("statuses").get("200").getAsLong());
+        assertEquals(2, json.getAsJsonObject("statuses").get("400").getAsLong());
+        // Only the error that was captured with status 200 is a mismatch
+        assertEquals(1, json.get("statusMismatches").getAsLong());
+        assertEquals(3, json.getAsJsonObject("latencyMicros").get("count").getAsLong());
+        assertEquals(3, json.getAsJsonObject("routes").getAsJsonObject("GET").get("count").getAsLong());
+    }
+
+    @Test
+    public void latencyPercentilesAreTakenFromTheSortedLatencies() {
+        long[] sorted = new long[1000];
+        for(int i=0; i<sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+        JsonObject summary = gson.toJsonTree(new TrafficReplayer.LatencySummary(sorted)).getAsJsonObject();
+        assertEquals(1000, summary.get("count").getAsLong());
+        assertEquals(500, summary.get("p50").getAsLong());
+        assertEquals(900, summary.get("p90").getAsLong());
+        assertEquals(990, summary.get("p99").getAsLong());
+        assertEquals(999, summary.get("p999").getAsLong());
+        assertEquals(1000, summary.get("max").getAsLong());
+
+        // With few latencies, the high percentiles are the largest one
+        summary = gson.toJsonTree(new TrafficReplayer.LatencySummary(new long[] {3, 7})).getAsJsonObject();
+        assertEquals(3, summary.get("p50").getAsLong());
+        assertEquals(7, summary.get("p90").getAsLong());
+        assertEquals(7, summary.get("p999").getAsLong());
+
+        summary = gson.toJsonTree(new TrafficReplayer.LatencySummary(new long[0])).getAsJsonObject();
+        assertEquals(0, summary.get("p50").getAsLong());
+        assertEquals(0, summary.get("max").getAsLong());
+    }
+}
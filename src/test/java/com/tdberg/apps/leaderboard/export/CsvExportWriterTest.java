@@ -0,0 +1,30 @@
+package com.tdberg.apps.leaderboard.export;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CsvExportWriterTest {
+    @Test
+    public void headerIsWrittenUpFront() throws IOException {
+        StringWriter out = new StringWriter();
+        new CsvExportWriter(out).finish();
+        assertEquals("board,bucket,recordId,name,score,time,notes,recordTime\r\n", out.toString());
+    }
+
+    @Test
+    public void recordsAreWrittenWithTheirBoardAndBucket() throws IOException {
+        StringWriter out = new StringWriter();
+        ExportSink sink = new CsvExportWriter(out);
+        sink.writeRecord("pub1", 19800, 5, "ann", 100, 12, null, new Timestamp(1700000000123L));
+        sink.writeRecord("pub2", 0, 6, null, -1, 0, "a, \"quoted\"\nnote", null);
+        sink.finish();
+
+        assertEquals("board,bucket,recordId,name,score,time,notes,recordTime\r\n" +
+                     "pub1,19800,5,ann,100,12,,2023-11-14T22:13:20.123Z\r\n" +
+                     "pub2,0,6,,-1,0,\"a, \"\"quoted\"\"\nnote\",\r\n", out.toString());
+    }
+}
@@ -0,0 +1,41 @@
+package com.tdberg.apps.leaderboard.export;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NdjsonExportWriterTest {
+    @Test
+    public void oneObjectPerLine() throws IOException {
+        StringWriter out = new StringWriter();
+        ExportSink sink = new NdjsonExportWriter(out);
+        sink.writeRecord("pub1", 19800, 5, "ann", 100, 12, null, new Timestamp(1700000000123L));
+        sink.writeRecord("pub2", 0, 6, null, -1, 0, "line\nbreak", null);
+        sink.finish();
+
+        assertEquals("{\"board\":\"pub1\",\"bucket\":19800,\"recordId\":5,\"name\":\"ann\",\"score\":100,\"time\":12," +
+                     "\"recordTime\":\"2023-11-14T22:13:20.123Z\"}\n" +
+                     "{\"board\":\"pub2\",\"bucket\":0,\"recordId\":6,\"score\":-1,\"time\":0,\"notes\":\"line\\nbreak\"}\n",
+                     out.toString());
+    }
+
+    @Test
+    public void emptyExportIsEmpty() throws IOException {
+        StringWriter out = new StringWriter();
+        new NdjsonExportWriter(out).finish();
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void formatsNameTheirWriters() throws IOException {
+        assertTrue(ExportFormat.CSV.newWriter(new StringWriter()) instanceof CsvExportWriter);
+        assertTrue(ExportFormat.NDJSON.newWriter(new StringWriter()) instanceof NdjsonExportWriter);
+        assertEquals(ExportFormat.NDJSON, ExportFormat.fromName("ndjson"));
+        assertEquals(ExportFormat.CSV, ExportFormat.fromName("Csv"));
+        assertNull(ExportFormat.fromName("xml"));
+        assertEquals("csv", ExportFormat.CSV.getFileExtension());
+    }
+}
@@ -0,0 +1,52 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CsvRecordWriterTest {
+    private static String body(final EncodedResponse response) {
+        return new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void headerOnlyWhenEmpty() {
+        EncodedResponse response = new CsvRecordWriter().finish();
+        assertEquals("text/csv; charset=utf-8", response.getContentType());
+        assertEquals("recordId,name,score,time,notes,recordTime\r\n", body(response));
+    }
+
+    @Test
+    public void recordsAreWrittenAsRows() {
+        CsvRecordWriter writer = new CsvRecordWriter();
+        writer.writeRecord(1, "ann", 100, 5, "gg", new Timestamp(1700000000123L));
+        writer.writeRecord(2, null, -3, 0, null, null);
+
+        assertEquals("recordId,name,score,time,notes,recordTime\r\n" +
+                     "1,ann,100,5,gg,2023-11-14T22:13:20.123Z\r\n" +
+                     "2,,-3,0,,\r\n", body(writer.finish()));
+    }
+
+    @Test
+    public void fieldsAreQuotedOnlyWhenNeeded() {
+        String[][] cases = {
+                {"plain", "plain"},
+                {"", ""},
+                {"a,b", "\"a,b\""},
+                {"say \"hi\"", "\"say \"\"hi\"\"\""},
+                {"two\nlines", "\"two\nlines\""},
+                {"cr\r", "\"cr\r\""},
+                {"caf\u00e9", "caf\u00e9"}};
+        for(String[] testCase : cases) {
+            StringBuilder buffer = new StringBuilder();
+            CsvRecordWriter.appendField(buffer, testCase[0]);
+            assertEquals(testCase[1], buffer.toString());
+        }
+
+        StringBuilder buffer = new StringBuilder("x");
+        CsvRecordWriter.appendField(buffer, null);
+        assertEquals("x", buffer.toString());
+    }
+}
@@ -0,0 +1,64 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JsonRecordWriterTest {
+    private static JsonArray entries(final EncodedResponse response) {
+        String body = new String(response.getBody(), StandardCharsets.UTF_8);
+        return JsonParser.parseString(body).getAsJsonObject().getAsJsonObject("tdberg")
+                         .getAsJsonObject("leaderboard").getAsJsonArray("entry");
+    }
+
+    @Test
+    public void emptyDocument() {
+        EncodedResponse response = new JsonRecordWriter().finish();
+        assertEquals("application/json", response.getContentType());
+        assertEquals(0, entries(response).size());
+    }
+
+    @Test
+    public void entriesMatchSerializedUserFacingRecords() {
+        List<Record> records = List.of(
+                new Record(1, 10, "ann", 100, 5, "<b>gg</b>", new Timestamp(1700000000123L), "127.0.0.1"),
+                new Record(1, 11, null, -3, 0, null, null, "127.0.0.1"),
+                new Record(1, 12, "caf\u00e9 & \"co\"", 7, 9, "", new Timestamp(0), "127.0.0.1"));
+
+        JsonRecordWriter writer = new JsonRecordWriter();
+        List<Record.UserFacingRecord> userFacingRecords = new ArrayList<>();
+        for(Record record : records) {
+            writer.writeRecord(record.getRecordId(), record.getName(), record.getScore(), record.getTime(),
+                               record.getNotes(), (Timestamp) record.getSubmissionTime());
+            userFacingRecords.add(record.toUserFacingRecord());
+        }
+        String body = new String(writer.finish().getBody(), StandardCharsets.UTF_8);
+
+        assertEquals("{\"tdberg\": {\"leaderboard\": {\"entry\": " + new Gson().toJson(userFacingRecords) + "}}}", body);
+    }
+
+    @Test
+    public void rankedEntriesHaveARank() {
+        JsonRecordWriter writer = new JsonRecordWriter();
+        writer.writeRecord(4, 10, "ann", 100, 5, null, null);
+        writer.writeRecord(11, "bob", 90, 6, null, null);
+
+        JsonArray entries = entries(writer.finish());
+        JsonObject ranked = entries.get(0).getAsJsonObject();
+        assertEquals(4, ranked.get("rank").getAsInt());
+        assertEquals(10, ranked.get("recordId").getAsInt());
+        assertFalse(ranked.has("notes"));
+        assertFalse(entries.get(1).getAsJsonObject().has("rank"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MsgPackRecordWriterTest {
+    /**
+     * Decodes the subset of MessagePack that MsgPackRecordWriter writes.
+     */
+    private static Object decode(final ByteBuffer in) {
+        int type = in.get() & 0xff;
+        if(type <= 0x7f) {
+            return (long) type;
+        }else if(type >= 0xe0) {
+            return (long) (byte) type;
+        }else if((type & 0xf0) == 0x90) {
+            return decodeArray(in, type & 0x0f);
+        }else if((type & 0xe0) == 0xa0) {
+            return decodeString(in, type & 0x1f);
+        }
+        switch(type) {
+            case 0xc0:
+                return null;
+            case 0xd0:
+                return (long) in.get();
+            case 0xd1:
+                return (long) in.getShort();
+            case 0xd2:
+                return (long) in.getInt();
+            case 0xd3:
+                return in.getLong();
+            case 0xd9:
+                return decodeString(in, in.get() & 0xff);
+            case 0xda:
+                return decodeString(in, in.getShort() & 0xffff);
+            case 0xdb:
+                return decodeString(in, in.getInt());
+            case 0xdd:
+                return decodeArray(in, in.getInt());
+            default:
+                throw new AssertionError("Unexpected type byte " + Integer.toHexString(type));
+        }
+    }
+
+    private static List<Object> decodeArray(final ByteBuffer in, final int length) {
+        List<Object> array = new ArrayList<>();
+        for(int i=0; i<length; i++) {
+            array.add(decode(in));
+        }
+        return array;
+    }
+
+    private static String decodeString(final ByteBuffer in, final int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<List<Object>> decodeDocument(final EncodedResponse response) {
+        ByteBuffer in = ByteBuffer.wrap(response.getBody());
+        List<List<Object>> records = (List<List<Object>>) decode(in);
+        assertFalse("Trailing bytes", in.hasRemaining());
+        return records;
+    }
+
+    @Test
+    public void emptyDocumentIsAnEmptyArray32() {
+        EncodedResponse response = new MsgPackRecordWriter().finish();
+        assertEquals("application/x-msgpack", response.getContentType());
+        assertArrayEquals(new byte[] {(byte) 0xdd, 0, 0, 0, 0}, response.getBody());
+    }
+
+    @Test
+    public void recordsRoundTrip() {
+        MsgPackRecordWriter writer = new MsgPackRecordWriter();
+        writer.writeRecord(1, "ann", 100, 0, null, new Timestamp(1700000000123L));
+        writer.writeRecord(300, null, -20, 40000, "note", null);
+        writer.writeRecord(Integer.MAX_VALUE, "b\u00e9a", Integer.MIN_VALUE, -129, "", new Timestamp(0));
+
+        List<List<Object>> records = decodeDocument(writer.finish());
+        assertEquals(3, records.size());
+        assertEquals(List.of(1L, "ann", 100L, 0L), records.get(0).subList(0, 4));
+        assertNull(records.get(0).get(4));
+        assertEquals(1700000000123L, records.get(0).get(5));
+
+        assertEquals(300L, records.get(1).get(0));
+        assertNull(records.get(1).get(1));
+        assertEquals(-20L, records.get(1).get(2));
+        assertEquals(40000L, records.get(1).get(3));
+        assertEquals("note", records.get(1).get(4));
+        assertNull(records.get(1).get(5));
+
+        assertEquals(List.of((long) Integer.MAX_VALUE, "b\u00e9a", (long) Integer.MIN_VALUE, -129L, "", 0L),
+                     records.get(2));
+    }
+
+    @Test
+    public void integersUseTheSmallestEncoding() {
+        long[] values = {0, 127, -32, -33, -128, 128, -129, 32767, 32768, -32769, Integer.MAX_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 3, 3, 5, 5, 5};
+        for(int i=0; i<values.length; i++) {
+            MsgPackRecordWriter writer = new MsgPackRecordWriter();
+            writer.writeRecord((int) values[i], null, 0, 0, null, null);
+            byte[] body = writer.finish().getBody();
+            // array 32 header, fixarray header, the record ID and then 5 single byte fields
+            assertEquals("Size of " + values[i], 5 + 1 + sizes[i] + 5, body.length);
+            assertEquals(values[i], decodeDocument(new EncodedResponse("", body)).get(0).get(0));
+        }
+    }
+
+    @Test
+    public void longStringsUseLongerHeaders() {
+        int[] lengths = {31, 32, 255, 256, 65535, 65536};
+        for(int length : lengths) {
+            String name = "x".repeat(length);
+            MsgPackRecordWriter writer = new MsgPackRecordWriter();
+            writer.writeRecord(1, name, 0, 0, null, null);
+            assertEquals(name, decodeDocument(writer.finish()).get(0).get(1));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.tdberg.apps.leaderboard.formats;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RecordFormatTest {
+    @Test
+    public void newWriterMatchesFormat() {
+        assertTrue(RecordFormat.JSON.newWriter() instanceof JsonRecordWriter);
+        assertTrue(RecordFormat.CSV.newWriter() instanceof CsvRecordWriter);
+        assertTrue(RecordFormat.MSGPACK.newWriter() instanceof MsgPackRecordWriter);
+        assertNotSame(RecordFormat.CSV.newWriter(), RecordFormat.CSV.newWriter());
+    }
+
+    @Test
+    public void fromNameIgnoresCase() {
+        assertEquals(RecordFormat.CSV, RecordFormat.fromName("csv"));
+        assertEquals(RecordFormat.MSGPACK, RecordFormat.fromName("MsgPack"));
+        assertEquals(RecordFormat.JSON, RecordFormat.fromName("JSON"));
+        assertNull(RecordFormat.fromName("xml"));
+        assertNull(RecordFormat.fromName(null));
+    }
+}
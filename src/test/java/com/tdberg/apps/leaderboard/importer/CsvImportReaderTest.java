@@ -0,0 +1,62 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CsvImportReaderTest {
+    @Test
+    public void rowsAreReadByHeaderColumn() throws IOException {
+        CsvImportReader reader = new CsvImportReader(new StringReader(
+                "\uFEFFscore,name,board\r\n" +
+                "100,ann,pub1\r\n" +
+                "\r\n" +
+                "90,\"b, \"\"the\"\"\r\nsecond\",pub2\n" +
+                "80\n"));
+
+        ImportRow first = reader.nextRow();
+        assertEquals(Integer.valueOf(100), first.getScore());
+        assertEquals("ann", first.getName());
+        assertEquals("pub1", first.getBoard());
+
+        // The blank line is skipped, and quoted fields keep their commas, quotes and line breaks
+        ImportRow second = reader.nextRow();
+        assertEquals("b, \"the\"\r\nsecond", second.getName());
+        assertEquals("pub2", second.getBoard());
+
+        // Short rows leave the remaining columns missing
+        ImportRow third = reader.nextRow();
+        assertEquals(Integer.valueOf(80), third.getScore());
+        assertNull(third.getName());
+
+        assertNull(reader.nextRow());
+        assertNull(reader.nextRow());
+    }
+
+    @Test
+    public void emptyInputHasNoRows() throws IOException {
+        assertNull(new CsvImportReader(new StringReader("")).nextRow());
+        assertNull(new CsvImportReader(new StringReader("score,name\r\n")).nextRow());
+    }
+
+    @Test
+    public void lastRowNeedsNoLineBreak() throws IOException {
+        CsvImportReader reader = new CsvImportReader(new StringReader("name,score\nann,\"5\""));
+        ImportRow row = reader.nextRow();
+        assertEquals("ann", row.getName());
+        assertEquals(Integer.valueOf(5), row.getScore());
+        assertNull(reader.nextRow());
+    }
+
+    @Test(expected = IOException.class)
+    public void extraFieldsAreRejected() throws IOException {
+        new CsvImportReader(new StringReader("name,score\nann,5,extra\n")).nextRow();
+    }
+
+    @Test(expected = IOException.class)
+    public void unclosedQuoteIsRejected() throws IOException {
+        new CsvImportReader(new StringReader("name,score\n\"ann,5\n")).nextRow();
+    }
+}
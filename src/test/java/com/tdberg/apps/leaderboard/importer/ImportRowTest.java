@@ -0,0 +1,63 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ImportRowTest {
+    @Test
+    public void columnsAreParsedByName() {
+        ImportRow row = new ImportRow();
+        row.setColumn("recordTime", "2023-11-14T22:13:20.123Z");
+        row.setColumn("score", " 42 ");
+        row.setColumn("board", "pub1");
+        row.setColumn("bucket", "19800");
+        row.setColumn("name", "ann");
+        row.setColumn("time", "-7");
+        row.setColumn("notes", "gg");
+        row.setColumn("recordId", "not imported");
+        row.setColumn("unknown", "ignored");
+
+        assertTrue(row.isValid());
+        assertEquals("pub1", row.getBoard());
+        assertEquals(Integer.valueOf(19800), row.getBucket());
+        assertEquals("ann", row.getName());
+        assertEquals(Integer.valueOf(42), row.getScore());
+        assertEquals(Integer.valueOf(-7), row.getTime());
+        assertEquals("gg", row.getNotes());
+        assertEquals(new Timestamp(1700000000123L), row.getRecordTime());
+    }
+
+    @Test
+    public void emptyValuesAreMissing() {
+        ImportRow row = new ImportRow();
+        row.setColumn("name", "");
+        row.setColumn("score", "");
+        row.setColumn("recordTime", null);
+
+        assertTrue(row.isValid());
+        assertNull(row.getName());
+        assertNull(row.getScore());
+        assertNull(row.getRecordTime());
+    }
+
+    @Test
+    public void unparseableValuesMakeTheRowInvalid() {
+        String[][] cases = {{"score", "ten"}, {"time", "1.5"}, {"bucket", "99999999999"}, {"recordTime", "yesterday"}};
+        for(String[] testCase : cases) {
+            ImportRow row = new ImportRow();
+            row.setColumn(testCase[0], testCase[1]);
+            assertFalse(testCase[0], row.isValid());
+        }
+    }
+
+    @Test
+    public void unsupportedValuesOnlyMatterForImportedColumns() {
+        ImportRow row = new ImportRow();
+        row.setUnsupportedColumn("extra");
+        assertTrue(row.isValid());
+        row.setUnsupportedColumn("notes");
+        assertFalse(row.isValid());
+    }
+}
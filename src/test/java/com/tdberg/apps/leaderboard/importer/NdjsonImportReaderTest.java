@@ -0,0 +1,73 @@
+package com.tdberg.apps.leaderboard.importer;
+
+import com.tdberg.apps.leaderboard.export.ExportFormat;
+import com.tdberg.apps.leaderboard.export.ExportSink;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NdjsonImportReaderTest {
+    @Test
+    public void oneRowPerObject() throws IOException {
+        NdjsonImportReader reader = new NdjsonImportReader(new StringReader(
+                "{\"board\":\"pub1\",\"score\":100,\"name\":\"ann\",\"extra\":{\"a\":[1]}}\n" +
+                "\n" +
+                "{\"board\":\"pub2\",\"score\":\"90\",\"name\":null,\"notes\":[\"x\"]}\n"));
+
+        ImportRow first = reader.nextRow();
+        assertTrue(first.isValid());
+        assertEquals("pub1", first.getBoard());
+        assertEquals(Integer.valueOf(100), first.getScore());
+        assertEquals("ann", first.getName());
+
+        ImportRow second = reader.nextRow();
+        assertEquals(Integer.valueOf(90), second.getScore());
+        assertNull(second.getName());
+        // An array is not a supported value of an imported column
+        assertFalse(second.isValid());
+
+        assertNull(reader.nextRow());
+    }
+
+    @Test
+    public void emptyInputHasNoRows() throws IOException {
+        assertNull(new NdjsonImportReader(new StringReader("")).nextRow());
+        assertNull(new NdjsonImportReader(new StringReader("\n\n")).nextRow());
+    }
+
+    @Test
+    public void exportsImportInTheSameFormat() throws IOException {
+        for(ExportFormat format : ExportFormat.values()) {
+            StringWriter out = new StringWriter();
+            ExportSink sink = format.newWriter(out);
+            sink.writeRecord("pub1", 19800, 5, "ann, \"the\"\nfirst", 100, 12, null, new Timestamp(1700000000123L));
+            sink.writeRecord("pub2", 0, 6, null, -1, 0, "gg", null);
+            sink.finish();
+
+            ImportSource source = format.newReader(new StringReader(out.toString()));
+            ImportRow first = source.nextRow();
+            assertTrue(format.name(), first.isValid());
+            assertEquals(format.name(), "pub1", first.getBoard());
+            assertEquals(format.name(), Integer.valueOf(19800), first.getBucket());
+            assertEquals(format.name(), "ann, \"the\"\nfirst", first.getName());
+            assertEquals(format.name(), Integer.valueOf(100), first.getScore());
+            assertEquals(format.name(), Integer.valueOf(12), first.getTime());
+            assertNull(format.name(), first.getNotes());
+            assertEquals(format.name(), new Timestamp(1700000000123L), first.getRecordTime());
+
+            ImportRow second = source.nextRow();
+            assertEquals(format.name(), "pub2", second.getBoard());
+            assertNull(format.name(), second.getName());
+            assertEquals(format.name(), Integer.valueOf(-1), second.getScore());
+            assertEquals(format.name(), "gg", second.getNotes());
+            assertNull(format.name(), second.getRecordTime());
+
+            assertNull(format.name(), source.nextRow());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.tdberg.apps.leaderboard.ingest;
+
+import com.tdberg.apps.leaderboard.objects.RecordSubmission;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IngestFrameTest {
+    /**
+     * Checks the header of the SUBMIT frame at the start of the param buffer, and returns its body after the sequence.
+     */
+    private static ByteBuffer submitBody(final ByteBuffer buffer, final int sequence) {
+        buffer.flip();
+        int length = buffer.getInt();
+        assertEquals(buffer.remaining(), length);
+        assertEquals(IngestFrame.SUBMIT, buffer.get());
+        assertEquals(sequence, buffer.getInt());
+        return buffer.slice();
+    }
+
+    @Test
+    public void submitRoundTripsWithEveryField() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        IngestFrame.writeSubmit(buffer, 42, "bob", 1500, 37, "speedrun");
+
+        RecordSubmission submission = IngestFrame.readSubmit(submitBody(buffer, 42));
+        assertEquals("bob", submission.getName());
+        assertEquals(Integer.valueOf(1500), submission.getScore());
+        assertEquals(Integer.valueOf(37), submission.getTime());
+        assertEquals("speedrun", submission.getNotes());
+    }
+
+    @Test
+    public void submitRoundTripsWithoutOptionalFields() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        IngestFrame.writeSubmit(buffer, -1, null, -20, null, null);
+
+        ByteBuffer body = submitBody(buffer, -1);
+        RecordSubmission submission = IngestFrame.readSubmit(body);
+        assertNull(submission.getName());
+        assertEquals(Integer.valueOf(-20), submission.getScore());
+        assertNull(submission.getTime());
+        assertNull(submission.getNotes());
+        assertFalse(body.hasRemaining());
+    }
+
+    @Test
+    public void submitKeepsMultiByteCharacters() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        IngestFrame.writeSubmit(buffer, 1, "Zo\u00eb", 1, null, "\u00e9t\u00e9");
+
+        RecordSubmission submission = IngestFrame.readSubmit(submitBody(buffer, 1));
+        assertEquals("Zo\u00eb", submission.getName());
+        assertEquals("\u00e9t\u00e9", submission.getNotes());
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedSubmitUnderflows() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        IngestFrame.writeSubmit(buffer, 7, "bob", 100, 12, null);
+        ByteBuffer body = submitBody(buffer, 7);
+        body.limit(body.limit() - 2);
+        IngestFrame.readSubmit(body);
+    }
+
+    @Test
+    public void boardRoundTrips() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        IngestFrame.writeBoard(buffer, "0123456789abcdef0123456789abcde");
+        buffer.flip();
+        assertEquals(buffer.remaining() - 4, buffer.getInt());
+        assertEquals(IngestFrame.BOARD, buffer.get());
+        assertEquals("0123456789abcdef0123456789abcde", IngestFrame.readBoard(buffer));
+    }
+
+    @Test
+    public void statusesMatchBatchResults() {
+        assertEquals(IngestFrame.STATUS_INSERTED, IngestFrame.statusOf("INSERTED"));
+        assertEquals(IngestFrame.STATUS_UPDATED, IngestFrame.statusOf("UPDATED"));
+        assertEquals(IngestFrame.STATUS_NOT_IMPROVED, IngestFrame.statusOf("NOT_IMPROVED"));
+        assertEquals(IngestFrame.STATUS_SUPERSEDED, IngestFrame.statusOf("SUPERSEDED"));
+        assertEquals(IngestFrame.STATUS_INVALID, IngestFrame.statusOf("INVALID"));
+        assertEquals(IngestFrame.STATUS_ERROR, IngestFrame.statusOf("SOMETHING_ELSE"));
+        assertEquals(IngestFrame.STATUS_ERROR, IngestFrame.statusOf(null));
+
+        for(byte status=0; status<IngestFrame.statusCount(); status++) {
+            assertEquals(status, IngestFrame.statusOf(IngestFrame.statusName(status)));
+        }
+        assertNull(IngestFrame.statusName((byte) -1));
+        assertNull(IngestFrame.statusName((byte) IngestFrame.statusCount()));
+    }
+}
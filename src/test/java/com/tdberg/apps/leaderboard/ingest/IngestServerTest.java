@@ -0,0 +1,246 @@
+package com.tdberg.apps.leaderboard.ingest;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.accesslog.AccessRoute;
+import com.tdberg.apps.leaderboard.objects.RecordSubmission;
+import com.tdberg.apps.leaderboard.timing.PhaseTimer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IngestServerTest {
+    private static String PRIV_KEY = "0123456789abcdef0123456789abcde";
+    // Adding submissions to this leaderboard fails with an unexpected error
+    private static String FAILING_KEY = "eeeeeeeeeeeeeeeeeeeeeeeeeeeeeee";
+
+    private IngestServer server;
+    private int port;
+
+    private List<String> addedKeys = new CopyOnWriteArrayList<>();
+
+    /**
+     * DatabaseHandler that accepts every valid submission for PRIV_KEY, without a database.
+     */
+    private class StubDatabaseHandler extends DatabaseHandler {
+        private StubDatabaseHandler(final Properties cfg) {
+            super(cfg);
+        }
+
+        @Override
+        public List<RecordSubmission.Result> addSubmissions(final String privKey, final RecordSubmission[] submissions,
+                                                            final String ipAddress, final AccessRoute route,
+                                                            final PhaseTimer timer) {
+            addedKeys.add(privKey);
+            if(FAILING_KEY.equals(privKey)) {
+                throw new IllegalStateException("unexpected failure");
+            }
+            if(!PRIV_KEY.equals(privKey)) {
+                return null;
+            }
+            List<RecordSubmission.Result> results = new ArrayList<>();
+            for(int i=0; i<submissions.length; i++) {
+                String outcome = (submissions[i] == null) ? "INVALID" : "INSERTED";
+                results.add(new RecordSubmission.Result(i, null, outcome));
+            }
+            return results;
+        }
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        try(ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Properties cfg = new Properties();
+        cfg.setProperty("ingestPort", String.valueOf(port));
+        cfg.setProperty("writeJournalEnabled", "false");
+        cfg.setProperty("cacheEnabled", "false");
+        server = new IngestServer(new StubDatabaseHandler(cfg), cfg);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    private static byte[] frames(final ByteBuffer buffer) {
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads ACK frames until the param number of submissions have been acknowledged, and returns their
+     * (sequence, status) pairs.
+     */
+    private static List<int[]> readAcks(final InputStream in, final int expected) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        List<int[]> acks = new ArrayList<>();
+        while(acks.size() < expected) {
+            int length = data.readInt();
+            assertEquals(IngestFrame.ACK, data.readByte());
+            int count = data.readInt();
+            assertEquals(length, 5 + count * IngestFrame.ACK_ENTRY_LENGTH);
+            for(int i=0; i<count; i++) {
+                acks.add(new int[] {data.readInt(), data.readByte()});
+            }
+        }
+        return acks;
+    }
+
+    @Test(timeout = 10000)
+    public void framesSplitAcrossReadsAreReassembled() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeBoard(buffer, PRIV_KEY);
+        for(int i=0; i<5; i++) {
+            IngestFrame.writeSubmit(buffer, 100 + i, "player" + i, i * 10, null, (i % 2 == 0) ? "notes" : null);
+        }
+        byte[] bytes = frames(buffer);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            // Send the frames a few bytes at a time, so that the listener sees partial lengths and partial bodies
+            for(int i=0; i<bytes.length; i+=3) {
+                out.write(bytes, i, Math.min(3, bytes.length - i));
+                out.flush();
+                Thread.sleep(2);
+            }
+
+            List<int[]> acks = readAcks(socket.getInputStream(), 5);
+            assertEquals(5, acks.size());
+            for(int i=0; i<5; i++) {
+                assertEquals(100 + i, acks.get(i)[0]);
+                assertEquals(IngestFrame.STATUS_INSERTED, acks.get(i)[1]);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void submitBeforeBoardIsKeyNotFound() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeSubmit(buffer, 1, "early", 10, null, null);
+        IngestFrame.writeBoard(buffer, PRIV_KEY);
+        IngestFrame.writeSubmit(buffer, 2, "late", 10, null, null);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            List<int[]> acks = readAcks(socket.getInputStream(), 2);
+            assertEquals(1, acks.get(0)[0]);
+            assertEquals(IngestFrame.STATUS_KEY_NOT_FOUND, acks.get(0)[1]);
+            assertEquals(2, acks.get(1)[0]);
+            assertEquals(IngestFrame.STATUS_INSERTED, acks.get(1)[1]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void unknownBoardIsKeyNotFound() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeBoard(buffer, "ffffffffffffffffffffffffffffff0");
+        IngestFrame.writeSubmit(buffer, 9, "bob", 10, null, null);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            List<int[]> acks = readAcks(socket.getInputStream(), 1);
+            assertEquals(IngestFrame.STATUS_KEY_NOT_FOUND, acks.get(0)[1]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void malformedBoardKeyIsKeyNotFoundWithoutALookup() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeBoard(buffer, "x' OR '1'='1");
+        IngestFrame.writeSubmit(buffer, 9, "bob", 10, null, null);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            List<int[]> acks = readAcks(socket.getInputStream(), 1);
+            assertEquals(9, acks.get(0)[0]);
+            assertEquals(IngestFrame.STATUS_KEY_NOT_FOUND, acks.get(0)[1]);
+        }
+        assertTrue(addedKeys.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void failedBatchIsAcknowledgedAsAnError() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeBoard(buffer, FAILING_KEY);
+        IngestFrame.writeSubmit(buffer, 1, "bob", 10, null, null);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            List<int[]> acks = readAcks(socket.getInputStream(), 1);
+            assertEquals(1, acks.get(0)[0]);
+            assertEquals(IngestFrame.STATUS_ERROR, acks.get(0)[1]);
+
+            // The connection goes on adding and acknowledging batches
+            buffer.clear();
+            IngestFrame.writeBoard(buffer, PRIV_KEY);
+            IngestFrame.writeSubmit(buffer, 2, "bob", 10, null, null);
+            socket.getOutputStream().write(frames(buffer));
+            acks = readAcks(socket.getInputStream(), 1);
+            assertEquals(2, acks.get(0)[0]);
+            assertEquals(IngestFrame.STATUS_INSERTED, acks.get(0)[1]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void submitTooShortForItsFieldsIsInvalid() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        IngestFrame.writeBoard(buffer, PRIV_KEY);
+        // A SUBMIT frame holding only its sequence and part of the score
+        buffer.putInt(1 + 4 + 2);
+        buffer.put(IngestFrame.SUBMIT);
+        buffer.putInt(5);
+        buffer.putShort((short) 0);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            List<int[]> acks = readAcks(socket.getInputStream(), 1);
+            assertEquals(5, acks.get(0)[0]);
+            assertEquals(IngestFrame.STATUS_INVALID, acks.get(0)[1]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void overLengthFrameClosesTheConnection() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(IngestFrame.MAX_FRAME_LENGTH + 1);
+        buffer.put(IngestFrame.SUBMIT);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void truncatedFrameClosesTheConnection() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        // A SUBMIT frame too short to hold its sequence
+        buffer.putInt(1 + 2);
+        buffer.put(IngestFrame.SUBMIT);
+        buffer.putShort((short) 0);
+
+        try(Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(frames(buffer));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RankingModeTest {
+    private static Record record(final int recordId, final int score, final int time) {
+        return new Record(1, recordId, "n" + recordId, score, time, null, null, null);
+    }
+
+    private static List<Integer> sortedIds(final RankingMode rankingMode) {
+        List<Record> records = new ArrayList<>(List.of(
+                record(1, 50, 30), record(2, 80, 40), record(3, 80, 20), record(4, 10, 10), record(5, 50, 30)));
+        records.sort(rankingMode);
+        List<Integer> recordIds = new ArrayList<>();
+        for(Record record : records) {
+            recordIds.add(record.getRecordId());
+        }
+        return recordIds;
+    }
+
+    @Test
+    public void scoreDescRanksHighestScoreFirst() {
+        assertTrue(RankingMode.SCORE_DESC.compare(100, 50, 90, 10) < 0);
+        assertTrue(RankingMode.SCORE_DESC.compare(90, 10, 100, 50) > 0);
+        assertEquals(0, RankingMode.SCORE_DESC.compare(100, 10, 100, 50));
+        // The sort is stable, so equal records keep their order
+        assertEquals(List.of(2, 3, 1, 5, 4), sortedIds(RankingMode.SCORE_DESC));
+    }
+
+    @Test
+    public void timeAscRanksLowestTimeFirst() {
+        assertTrue(RankingMode.TIME_ASC.compare(0, 10, 100, 20) < 0);
+        assertEquals(0, RankingMode.TIME_ASC.compare(5, 10, 100, 10));
+        assertEquals(List.of(4, 3, 1, 5, 2), sortedIds(RankingMode.TIME_ASC));
+    }
+
+    @Test
+    public void scoreThenTimeBreaksScoreTiesByTime() {
+        assertTrue(RankingMode.SCORE_THEN_TIME.compare(100, 50, 90, 10) < 0);
+        assertTrue(RankingMode.SCORE_THEN_TIME.compare(100, 10, 100, 50) < 0);
+        assertEquals(0, RankingMode.SCORE_THEN_TIME.compare(100, 10, 100, 10));
+        assertEquals(List.of(3, 2, 1, 5, 4), sortedIds(RankingMode.SCORE_THEN_TIME));
+    }
+
+    @Test
+    public void extremeValuesDoNotOverflow() {
+        for(RankingMode rankingMode : RankingMode.values()) {
+            assertTrue(rankingMode.name(), rankingMode.compare(Integer.MAX_VALUE, Integer.MIN_VALUE,
+                                                               Integer.MIN_VALUE, Integer.MAX_VALUE) < 0);
+            assertTrue(rankingMode.name(), rankingMode.compare(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                                                               Integer.MAX_VALUE, Integer.MIN_VALUE) > 0);
+        }
+    }
+
+    @Test
+    public void rankingValueCountsAndTimeRequirements() {
+        assertEquals(1, RankingMode.SCORE_DESC.getRankingValueCount());
+        assertEquals(1, RankingMode.TIME_ASC.getRankingValueCount());
+        assertEquals(2, RankingMode.SCORE_THEN_TIME.getRankingValueCount());
+        assertFalse(RankingMode.SCORE_DESC.isTimeRequired());
+        assertTrue(RankingMode.TIME_ASC.isTimeRequired());
+        assertTrue(RankingMode.SCORE_THEN_TIME.isTimeRequired());
+    }
+
+    @Test
+    public void fromNameIgnoresCase() {
+        assertEquals(RankingMode.TIME_ASC, RankingMode.fromName("time_asc"));
+        assertEquals(RankingMode.SCORE_THEN_TIME, RankingMode.fromName("Score_Then_Time"));
+        assertNull(RankingMode.fromName("score"));
+        assertNull(RankingMode.fromName(null));
+    }
+}
@@ -0,0 +1,52 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import com.tdberg.apps.leaderboard.utils.DbUtils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RecordSubmissionTest {
+    private static String repeat(final char c, final int count) {
+        return String.valueOf(c).repeat(count);
+    }
+
+    @Test
+    public void scoreIsRequired() {
+        assertFalse(new RecordSubmission("bob", null, 10, null).isValid(RankingMode.SCORE_DESC));
+        assertTrue(new RecordSubmission("bob", 100, null, null).isValid(RankingMode.SCORE_DESC));
+    }
+
+    @Test
+    public void timeIsRequiredByTimeRankedModes() {
+        RecordSubmission noTime = new RecordSubmission("bob", 100, null, null);
+        assertFalse(noTime.isValid(RankingMode.TIME_ASC));
+        assertFalse(noTime.isValid(RankingMode.SCORE_THEN_TIME));
+        assertTrue(new RecordSubmission("bob", 100, 35, null).isValid(RankingMode.TIME_ASC));
+    }
+
+    @Test
+    public void nameAndNotesMayBeNull() {
+        assertTrue(new RecordSubmission(null, 100, null, null).isValid(RankingMode.SCORE_DESC));
+    }
+
+    @Test
+    public void nameLongerThanColumnIsInvalid() {
+        assertTrue(new RecordSubmission(repeat('a', DbUtils.MAX_NAME_LENGTH), 1, null, null).isValid(RankingMode.SCORE_DESC));
+        assertFalse(new RecordSubmission(repeat('a', DbUtils.MAX_NAME_LENGTH + 1), 1, null, null).isValid(RankingMode.SCORE_DESC));
+    }
+
+    @Test
+    public void notesLongerThanColumnAreInvalid() {
+        assertTrue(new RecordSubmission("bob", 1, null, repeat('n', DbUtils.MAX_NOTES_LENGTH)).isValid(RankingMode.SCORE_DESC));
+        assertFalse(new RecordSubmission("bob", 1, null, repeat('n', DbUtils.MAX_NOTES_LENGTH + 1)).isValid(RankingMode.SCORE_DESC));
+    }
+
+    @Test
+    public void notesAreMeasuredInUtf8Bytes() {
+        // Each of these takes two bytes, so the column only holds half as many of them
+        String half = repeat('\u00e9', DbUtils.MAX_NOTES_LENGTH / 2);
+        assertTrue(new RecordSubmission("bob", 1, null, half).isValid(RankingMode.SCORE_DESC));
+        assertFalse(new RecordSubmission("bob", 1, null, half + "\u00e9").isValid(RankingMode.SCORE_DESC));
+        assertFalse(new RecordSubmission("bob", 1, null, repeat('\u2603', 100)).isValid(RankingMode.SCORE_DESC));
+    }
+}
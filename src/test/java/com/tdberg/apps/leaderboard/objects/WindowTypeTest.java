@@ -0,0 +1,70 @@
+package com.tdberg.apps.leaderboard.objects;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class WindowTypeTest {
+    private static long utc(final int year, final int month, final int day, final int hour, final int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void noneAlwaysUsesBucketZero() {
+        assertEquals(0, WindowType.NONE.bucketAt(0));
+        assertEquals(0, WindowType.NONE.bucketAt(utc(2024, 2, 29, 12, 0)));
+        assertEquals(0, WindowType.NONE.currentBucket());
+    }
+
+    @Test
+    public void dailyBucketsChangeAtUtcMidnight() {
+        assertEquals(0, WindowType.DAILY.bucketAt(0));
+        assertEquals(WindowType.DAILY.bucketAt(utc(2024, 3, 10, 0, 0)), WindowType.DAILY.bucketAt(utc(2024, 3, 10, 23, 59)));
+        assertEquals(WindowType.DAILY.bucketAt(utc(2024, 3, 10, 23, 59)) + 1, WindowType.DAILY.bucketAt(utc(2024, 3, 11, 0, 0)));
+        assertEquals(-1, WindowType.DAILY.bucketAt(-1));
+    }
+
+    @Test
+    public void weeklyBucketsStartOnMonday() {
+        // 2024-03-11 was a Monday
+        int week = WindowType.WEEKLY.bucketAt(utc(2024, 3, 11, 0, 0));
+        assertEquals(week - 1, WindowType.WEEKLY.bucketAt(utc(2024, 3, 10, 23, 59)));
+        assertEquals(week, WindowType.WEEKLY.bucketAt(utc(2024, 3, 17, 23, 59)));
+        assertEquals(week + 1, WindowType.WEEKLY.bucketAt(utc(2024, 3, 18, 0, 0)));
+
+        // The epoch (a Thursday) falls in the week that started on Monday 1969-12-29
+        assertEquals(0, WindowType.WEEKLY.bucketAt(0));
+        assertEquals(0, WindowType.WEEKLY.bucketAt(utc(1969, 12, 29, 0, 0)));
+        assertEquals(-1, WindowType.WEEKLY.bucketAt(utc(1969, 12, 28, 23, 59)));
+    }
+
+    @Test
+    public void monthlyBucketsFollowCalendarMonths() {
+        int february = WindowType.MONTHLY.bucketAt(utc(2024, 2, 1, 0, 0));
+        assertEquals(2024 * 12 + 1, february);
+        assertEquals(february, WindowType.MONTHLY.bucketAt(utc(2024, 2, 29, 23, 59)));
+        assertEquals(february + 1, WindowType.MONTHLY.bucketAt(utc(2024, 3, 1, 0, 0)));
+        assertEquals(WindowType.MONTHLY.bucketAt(utc(2023, 12, 31, 23, 59)) + 1, WindowType.MONTHLY.bucketAt(utc(2024, 1, 1, 0, 0)));
+    }
+
+    @Test
+    public void currentBucketMatchesNow() {
+        for(WindowType windowType : WindowType.values()) {
+            int before = windowType.bucketAt(System.currentTimeMillis());
+            int current = windowType.currentBucket();
+            int after = windowType.bucketAt(System.currentTimeMillis());
+            assertTrue(windowType.name(), before <= current && current <= after);
+        }
+    }
+
+    @Test
+    public void fromNameIgnoresCase() {
+        assertEquals(WindowType.DAILY, WindowType.fromName("daily"));
+        assertEquals(WindowType.WEEKLY, WindowType.fromName("Weekly"));
+        assertEquals(WindowType.NONE, WindowType.fromName("NONE"));
+        assertNull(WindowType.fromName("hourly"));
+        assertNull(WindowType.fromName(null));
+    }
+}
@@ -0,0 +1,87 @@
+package com.tdberg.apps.leaderboard.profiling;
+
+import com.tdberg.apps.leaderboard.utils.RecordingConnection;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StatementProfilerTest {
+    private static JsonObject statsFor(final StatementProfiler profiler, final String sql) {
+        JsonArray statsArray = profiler.toJson();
+        for(int i=0; i<statsArray.size(); i++) {
+            JsonObject stats = statsArray.get(i).getAsJsonObject();
+            if(stats.get("sql").getAsString().equals(sql)) {
+                return stats;
+            }
+        }
+        fail("No statistics for " + sql + " in " + statsArray);
+        return null;
+    }
+
+    @Test
+    public void literalsAreReplaced() {
+        assertEquals("SELECT * FROM records WHERE board_id=? AND name=?",
+                     StatementProfiler.normalize("SELECT * FROM records WHERE board_id=42 AND name='o''brien'"));
+        assertEquals("DELETE FROM records WHERE name=? AND notes=?",
+                     StatementProfiler.normalize("DELETE FROM records WHERE name='a\\'b' AND notes=''"));
+        assertEquals("SELECT ? FROM leaderboards_archive WHERE pub_key=? LIMIT ?",
+                     StatementProfiler.normalize("SELECT 1 FROM leaderboards_archive WHERE pub_key='abc123' LIMIT 1"));
+    }
+
+    @Test
+    public void inListsAndWhitespaceAreCollapsed() {
+        assertEquals("SELECT * FROM records WHERE record_id IN (?...)",
+                     StatementProfiler.normalize("SELECT *\n  FROM records\tWHERE record_id IN (1, 2,3 , 4)"));
+        assertEquals("SELECT * FROM records WHERE name IN (?...)",
+                     StatementProfiler.normalize("SELECT * FROM records WHERE name IN (?,?,?)"));
+        assertEquals(StatementProfiler.normalize("UPDATE leaderboards SET last_query=NOW() WHERE board_id IN (1,2)"),
+                     StatementProfiler.normalize("UPDATE leaderboards SET last_query=NOW() WHERE board_id IN (7,8,9)"));
+    }
+
+    @Test
+    public void wrappedConnectionRecordsCallsAndRows() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        recording.setRows(query -> query.sql.startsWith("SELECT") ? List.of(new Object[] {1}, new Object[] {2})
+                                                          : Collections.emptyList());
+        StatementProfiler profiler = new StatementProfiler(new Properties());
+        Connection conn = profiler.wrap(recording.connection());
+
+        for(int boardId=1; boardId<=3; boardId++) {
+            PreparedStatement preparedStatement = conn.prepareStatement("SELECT score FROM records WHERE board_id=?");
+            preparedStatement.setInt(1, boardId);
+            ResultSet rs = preparedStatement.executeQuery();
+            while(rs.next()) {
+                rs.getInt(1);
+            }
+        }
+        Statement statement = conn.createStatement();
+        statement.executeUpdate("DELETE FROM records WHERE record_id=5");
+        statement.executeUpdate("DELETE FROM records WHERE record_id=6");
+
+        JsonObject select = statsFor(profiler, "SELECT score FROM records WHERE board_id=?");
+        assertEquals(3, select.get("calls").getAsLong());
+        assertEquals(6, select.get("rows").getAsLong());
+        JsonObject delete = statsFor(profiler, "DELETE FROM records WHERE record_id=?");
+        assertEquals(2, delete.get("calls").getAsLong());
+        assertEquals(2, delete.get("rows").getAsLong());
+
+        // The wrapped connection still ran every statement
+        assertEquals(5, recording.getExecuted().size());
+        assertEquals(3, recording.getExecuted().get(2).params.get(1));
+
+        profiler.reset();
+        assertEquals(0, profiler.toJson().size());
+    }
+}
@@ -0,0 +1,220 @@
+package com.tdberg.apps.leaderboard.push;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+import com.tdberg.apps.leaderboard.objects.Record;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoardSubscriptionHubTest {
+    private static Leaderboard BOARD = new Leaderboard(1, "priv1", "pub1", null);
+    // The top records of this leaderboard fail to be read
+    private static Leaderboard BROKEN_BOARD = new Leaderboard(2, "priv2", "pub2", null);
+
+    private volatile List<Record> records = List.of(record(11, "ann", 500), record(12, "bob", 400),
+                                                    record(13, "cat", 300));
+    private AtomicInteger reads = new AtomicInteger();
+    private volatile CountDownLatch reading;
+    private volatile CountDownLatch releaseRead;
+
+    /**
+     * A DatabaseHandler that serves the top records of the test's leaderboard.
+     */
+    private class StubDatabaseHandler extends DatabaseHandler {
+        private StubDatabaseHandler(final Properties cfg) {
+            super(cfg);
+        }
+
+        @Override
+        public Leaderboard getLeaderboardFromPubKey(final String pubKey) throws SQLException {
+            switch(pubKey) {
+                case "pub1":
+                    return BOARD;
+                case "pub2":
+                    return BROKEN_BOARD;
+                case "down":
+                    throw new SQLException("database down");
+                case "boom":
+                    throw new IllegalStateException("boom");
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public List<Record> getTopRecords(final Leaderboard leaderboard, final int limit) {
+            if(leaderboard == BROKEN_BOARD) {
+                throw new IllegalStateException("unreadable");
+            }
+            reads.incrementAndGet();
+            List<Record> top = records;
+            if(releaseRead != null) {
+                reading.countDown();
+                try {
+                    releaseRead.await(5, TimeUnit.SECONDS);
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return top;
+        }
+    }
+
+    private static Record record(final int recordId, final String name, final int score) {
+        return new Record(1, recordId, name, score, 0, null, null, null);
+    }
+
+    private BoardSubscriptionHub hub(final int maxConnections) {
+        Properties cfg = new Properties();
+        cfg.setProperty("writeJournalEnabled", "false");
+        cfg.setProperty("cacheEnabled", "false");
+        cfg.setProperty("subscriptionMaxConnections", String.valueOf(maxConnections));
+        cfg.setProperty("subscriptionRefreshThreads", "1");
+        return new BoardSubscriptionHub(new StubDatabaseHandler(cfg), cfg);
+    }
+
+    private static FakeSession subscribe(final BoardSubscriptionHub hub, final String pubKey) throws InterruptedException {
+        FakeSession session = new FakeSession(true);
+        hub.subscribe(session.session(), pubKey);
+        FakeSession.await(() -> !session.getSent().isEmpty() || !session.getCloses().isEmpty());
+        return session;
+    }
+
+    private static JsonObject message(final FakeSession session, final int index) {
+        return JsonParser.parseString(session.getSent().get(index)).getAsJsonObject();
+    }
+
+    private static String describe(final JsonObject entry) {
+        return entry.get("rank").getAsInt() + ":" + entry.get("recordId").getAsInt() + ":" +
+               entry.get("name").getAsString() + ":" + entry.get("score").getAsInt();
+    }
+
+    private static String describe(final JsonArray entries) {
+        StringBuilder description = new StringBuilder();
+        entries.forEach(entry -> description.append(description.length() == 0 ? "" : ",")
+                                            .append(describe(entry.getAsJsonObject())));
+        return description.toString();
+    }
+
+    @Test(timeout = 10000)
+    public void newSubscriberGetsASnapshot() throws InterruptedException {
+        FakeSession session = subscribe(hub(10), "pub1");
+
+        JsonObject snapshot = message(session, 0);
+        assertEquals("snapshot", snapshot.get("type").getAsString());
+        assertEquals("1:11:ann:500,2:12:bob:400,3:13:cat:300", describe(snapshot.getAsJsonArray("entries")));
+    }
+
+    @Test(timeout = 10000)
+    public void diffHoldsOnlyChangedAndRemovedEntries() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(10);
+        FakeSession session = subscribe(hub, "pub1");
+
+        records = List.of(record(11, "ann", 500), record(14, "dan", 450), record(12, "bob", 400));
+        hub.boardChanged(BOARD);
+        FakeSession.await(() -> session.getSent().size() == 2);
+
+        JsonObject diff = message(session, 1);
+        assertEquals("diff", diff.get("type").getAsString());
+        // ann kept her rank and values, bob only moved down
+        assertEquals("2:14:dan:450,3:12:bob:400", describe(diff.getAsJsonArray("changed")));
+        assertEquals("[13]", diff.getAsJsonArray("removed").toString());
+    }
+
+    @Test(timeout = 10000)
+    public void unchangedTopSendsNothing() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(10);
+        FakeSession session = subscribe(hub, "pub1");
+
+        hub.boardChanged(BOARD);
+        FakeSession.await(() -> reads.get() == 2);
+        records = List.of(record(11, "ann", 600));
+        hub.boardChanged(BOARD);
+        FakeSession.await(() -> session.getSent().size() == 2);
+
+        JsonObject diff = message(session, 1);
+        assertEquals("1:11:ann:600", describe(diff.getAsJsonArray("changed")));
+        assertEquals("[12,13]", diff.getAsJsonArray("removed").toString());
+    }
+
+    @Test(timeout = 10000)
+    public void burstOfChangesIsCoalesced() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(10);
+        FakeSession session = subscribe(hub, "pub1");
+
+        reading = new CountDownLatch(1);
+        releaseRead = new CountDownLatch(1);
+        records = List.of(record(11, "ann", 600));
+        hub.boardChanged(BOARD);
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        // Changes made while the leaderboard is being read are all picked up by one more read
+        records = List.of(record(11, "ann", 700));
+        for(int i=0; i<10; i++) {
+            hub.boardChanged(BOARD);
+        }
+        releaseRead.countDown();
+        FakeSession.await(() -> session.getSent().size() == 3);
+        Thread.sleep(100);
+
+        assertEquals(3, reads.get());
+        assertEquals(3, session.getSent().size());
+        assertEquals("1:11:ann:700", describe(message(session, 2).getAsJsonArray("changed")));
+    }
+
+    @Test(timeout = 10000)
+    public void unsubscribedSessionGetsNoDiffs() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(10);
+        FakeSession leaving = subscribe(hub, "pub1");
+        FakeSession staying = subscribe(hub, "pub1");
+        hub.unsubscribe(leaving.session());
+
+        records = List.of(record(11, "ann", 600));
+        hub.boardChanged(BOARD);
+        FakeSession.await(() -> staying.getSent().size() == 2);
+        assertEquals(1, leaving.getSent().size());
+
+        // The leaderboard is only read once for both snapshots
+        assertEquals(2, reads.get());
+    }
+
+    @Test(timeout = 10000)
+    public void connectionsOverTheLimitAreRefused() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(1);
+        FakeSession first = subscribe(hub, "pub1");
+        FakeSession refused = subscribe(hub, "pub1");
+        assertEquals(List.of("1013:Too many connections"), refused.getCloses());
+
+        hub.unsubscribe(first.session());
+        // Unsubscribing twice (eg. on both an error and the close) only frees the slot once
+        hub.unsubscribe(first.session());
+        assertEquals(1, subscribe(hub, "pub1").getSent().size());
+        assertEquals(List.of("1013:Too many connections"), subscribe(hub, "pub1").getCloses());
+    }
+
+    @Test(timeout = 10000)
+    public void failedSubscriptionsFreeTheirSlot() throws InterruptedException {
+        BoardSubscriptionHub hub = hub(1);
+        assertEquals(List.of("1008:Key not found"), subscribe(hub, "ffff").getCloses());
+        assertEquals(List.of("1011:database down"), subscribe(hub, "down").getCloses());
+        assertEquals(List.of("1011:boom"), subscribe(hub, "boom").getCloses());
+        // Fails after the subscriber has been registered
+        assertEquals(List.of("1011:unreadable"), subscribe(hub, "pub2").getCloses());
+
+        FakeSession session = subscribe(hub, "pub1");
+        assertTrue(session.getCloses().isEmpty());
+        assertEquals(1, session.getSent().size());
+    }
+}
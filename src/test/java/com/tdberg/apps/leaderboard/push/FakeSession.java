@@ -0,0 +1,107 @@
+package com.tdberg.apps.leaderboard.push;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A WebSocket Session stand-in that records the messages sent to it and the ways it was closed.  Writes either
+ * complete as soon as they are started, or wait for the test to complete (or fail) them one at a time.
+ */
+class FakeSession {
+    private List<String> sent = new CopyOnWriteArrayList<>();
+    private List<String> closes = new CopyOnWriteArrayList<>();
+    private Queue<WriteCallback> unfinishedWrites = new ConcurrentLinkedQueue<>();
+    private boolean completeWrites;
+    private volatile boolean open = true;
+
+    /**
+     * Filled out constructor
+     *
+     * @param completeWrites True to complete each write as soon as it is started
+     */
+    FakeSession(final boolean completeWrites) {
+        this.completeWrites = completeWrites;
+    }
+
+    private Session session = proxy(Session.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "getRemote":
+                return proxy(RemoteEndpoint.class, (remote, remoteMethod, remoteArgs) -> {
+                    sent.add((String) remoteArgs[0]);
+                    if(completeWrites) {
+                        ((WriteCallback) remoteArgs[1]).writeSuccess();
+                    }else {
+                        unfinishedWrites.add((WriteCallback) remoteArgs[1]);
+                    }
+                    return null;
+                });
+            case "close":
+                open = false;
+                closes.add((args == null) ? "" : args[0] + ":" + args[1]);
+                return null;
+            case "isOpen":
+                return open;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                return null;
+        }
+    });
+
+    Session session() {
+        return session;
+    }
+
+    List<String> getSent() {
+        return sent;
+    }
+
+    /**
+     * Returns the ways the session was closed, as "<status code>:<reason>".
+     */
+    List<String> getCloses() {
+        return closes;
+    }
+
+    int getUnfinishedWriteCount() {
+        return unfinishedWrites.size();
+    }
+
+    void completeWrite() {
+        unfinishedWrites.remove().writeSuccess();
+    }
+
+    void failWrite(final Throwable x) {
+        unfinishedWrites.remove().writeFailed(x);
+    }
+
+    /**
+     * Waits for the param condition to hold, failing after a few seconds.
+     */
+    static void await(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!condition.getAsBoolean()) {
+            if(System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Timed out waiting");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeSession.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+}
@@ -0,0 +1,124 @@
+package com.tdberg.apps.leaderboard.push;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SubscriberTest {
+    @Test
+    public void messagesAreSentOneAtATimeInOrder() {
+        FakeSession session = new FakeSession(false);
+        Subscriber subscriber = new Subscriber(session.session(), 1, 10);
+        subscriber.offer("a");
+        subscriber.offer("b");
+        subscriber.offer("c");
+        assertEquals(List.of("a"), session.getSent());
+
+        session.completeWrite();
+        assertEquals(List.of("a", "b"), session.getSent());
+        session.completeWrite();
+        session.completeWrite();
+        assertEquals(List.of("a", "b", "c"), session.getSent());
+        assertEquals(0, session.getUnfinishedWriteCount());
+
+        // Once idle, the next message is sent right away
+        subscriber.offer("d");
+        assertEquals(List.of("a", "b", "c", "d"), session.getSent());
+    }
+
+    @Test
+    public void slowConsumerIsEvicted() {
+        FakeSession session = new FakeSession(false);
+        Subscriber subscriber = new Subscriber(session.session(), 1, 2);
+        subscriber.offer("a");
+        subscriber.offer("b");
+        subscriber.offer("c");
+        assertTrue(session.getCloses().isEmpty());
+
+        // "a" is being sent, and "b" and "c" are already waiting
+        subscriber.offer("d");
+        assertEquals(List.of("1008:Slow consumer"), session.getCloses());
+
+        session.completeWrite();
+        subscriber.offer("e");
+        assertEquals(List.of("a"), session.getSent());
+    }
+
+    @Test
+    public void failedWriteEvicts() {
+        FakeSession session = new FakeSession(false);
+        Subscriber subscriber = new Subscriber(session.session(), 1, 10);
+        subscriber.offer("a");
+        subscriber.offer("b");
+        session.failWrite(new IOException("Broken pipe"));
+
+        assertEquals(List.of("1008:Broken pipe"), session.getCloses());
+        subscriber.offer("c");
+        assertEquals(List.of("a"), session.getSent());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentOffersAreNeverSentAtTheSameTime() throws InterruptedException {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        // Writes complete on another thread, as they do for a real connection
+        ExecutorService network = Executors.newSingleThreadExecutor();
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if(inFlight.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    sent.add((String) args[0]);
+                    network.execute(() -> {
+                        inFlight.decrementAndGet();
+                        ((WriteCallback) args[1]).writeSuccess();
+                    });
+                    return null;
+                });
+        Session session = (Session) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {Session.class},
+                (proxy, method, args) -> method.getName().equals("getRemote") ? remote : null);
+
+        int threadCount = 4;
+        int perThread = 2000;
+        Subscriber subscriber = new Subscriber(session, 1, threadCount * perThread);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<threadCount; t++) {
+            String prefix = t + ":";
+            Thread thread = new Thread(() -> {
+                for(int i=0; i<perThread; i++) {
+                    subscriber.offer(prefix + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        FakeSession.await(() -> sent.size() == threadCount * perThread);
+        network.shutdown();
+
+        assertEquals(0, overlaps.get());
+        assertEquals(threadCount * perThread, sent.size());
+        // Each thread's messages are sent in the order it offered them
+        int[] next = new int[threadCount];
+        for(String message : sent) {
+            String[] parts = message.split(":");
+            assertEquals(next[Integer.parseInt(parts[0])]++, Integer.parseInt(parts[1]));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.tdberg.apps.leaderboard.stats;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScoreHistogramTest {
+    @Test
+    public void smallScoresHaveTheirOwnBucket() {
+        for(int score=-16; score<16; score++) {
+            int bucket = ScoreHistogram.bucketOf(score);
+            assertEquals(score, ScoreHistogram.lowerBound(bucket));
+            assertEquals(score, ScoreHistogram.upperBound(bucket));
+        }
+    }
+
+    @Test
+    public void everyScoreFallsWithinTheBoundsOfItsBucket() {
+        int[] scores = {16, 17, 31, 32, 33, 1000, 65535, 65536, 123456789, Integer.MAX_VALUE,
+                        -17, -33, -1000, -123456789, Integer.MIN_VALUE};
+        for(int score : scores) {
+            int bucket = ScoreHistogram.bucketOf(score);
+            assertTrue(score + " below bucket " + bucket, ScoreHistogram.lowerBound(bucket) <= score);
+            assertTrue(score + " above bucket " + bucket, ScoreHistogram.upperBound(bucket) >= score);
+        }
+    }
+
+    @Test
+    public void bucketsCoverEveryIntWithoutGaps() {
+        assertEquals(Integer.MIN_VALUE, ScoreHistogram.lowerBound(0));
+        assertEquals(Integer.MAX_VALUE, ScoreHistogram.upperBound(ScoreHistogram.NUM_BUCKETS - 1));
+        for(int bucket=1; bucket<ScoreHistogram.NUM_BUCKETS; bucket++) {
+            assertEquals(ScoreHistogram.upperBound(bucket - 1) + 1, ScoreHistogram.lowerBound(bucket));
+        }
+    }
+
+    @Test
+    public void bucketsAreNeverWiderThanASixteenth() {
+        for(int bucket=0; bucket<ScoreHistogram.NUM_BUCKETS; bucket++) {
+            long lower = ScoreHistogram.lowerBound(bucket);
+            long upper = ScoreHistogram.upperBound(bucket);
+            long magnitude = Math.min(Math.abs(lower), Math.abs(upper));
+            assertTrue("bucket " + bucket, upper - lower <= Math.max(0, magnitude / 16));
+        }
+    }
+
+    @Test
+    public void scoreAtRankWalksTheBuckets() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        histogram.add(ScoreHistogram.bucketOf(1), 2);
+        histogram.add(ScoreHistogram.bucketOf(5), 1);
+        histogram.add(ScoreHistogram.bucketOf(-3), 1);
+
+        assertEquals(-3, histogram.scoreAtRank(0));
+        assertEquals(1, histogram.scoreAtRank(1));
+        assertEquals(1, histogram.scoreAtRank(2));
+        assertEquals(5, histogram.scoreAtRank(3));
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        histogram.add(ScoreHistogram.bucketOf(Integer.MIN_VALUE), 3);
+        histogram.add(ScoreHistogram.bucketOf(42), 7);
+        histogram.add(ScoreHistogram.bucketOf(Integer.MAX_VALUE), -1);
+
+        ScoreHistogram copy = ScoreHistogram.fromBytes(histogram.toBytes());
+        for(int bucket=0; bucket<ScoreHistogram.NUM_BUCKETS; bucket++) {
+            assertEquals(histogram.getCount(bucket), copy.getCount(bucket));
+        }
+        assertEquals(0, ScoreHistogram.fromBytes(null).getCount(ScoreHistogram.bucketOf(42)));
+    }
+}
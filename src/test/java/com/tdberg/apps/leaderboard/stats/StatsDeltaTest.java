@@ -0,0 +1,126 @@
+package com.tdberg.apps.leaderboard.stats;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StatsDeltaTest {
+    private static BoardStats rebuilt(final int... scores) {
+        StatsDelta delta = new StatsDelta();
+        for(int score : scores) {
+            delta.recordAdded(0, score);
+        }
+        BoardStats stats = new BoardStats();
+        if(!delta.getBuckets().isEmpty()) {
+            stats.apply(delta.getBuckets().get(0));
+        }
+        return stats;
+    }
+
+    private static void assertSameStats(final BoardStats expected, final BoardStats actual) {
+        assertEquals(expected.getRecordCount(), actual.getRecordCount());
+        assertEquals(expected.getScoreSum(), actual.getScoreSum());
+        assertEquals(expected.getMinScore(), actual.getMinScore());
+        assertEquals(expected.getMaxScore(), actual.getMaxScore());
+        for(int bucket=0; bucket<ScoreHistogram.NUM_BUCKETS; bucket++) {
+            assertEquals(expected.getHistogram().getCount(bucket), actual.getHistogram().getCount(bucket));
+        }
+    }
+
+    @Test
+    public void changesAreCollectedPerWindow() {
+        StatsDelta delta = new StatsDelta();
+        delta.recordAdded(1, 100);
+        delta.recordAdded(1, 50);
+        delta.recordAdded(2, 7);
+        delta.recordRemoved(2, 3);
+
+        StatsDelta.BucketDelta first = delta.getBuckets().get(1);
+        assertEquals(2, first.getCountDelta());
+        assertEquals(150, first.getSumDelta());
+        assertEquals(Integer.valueOf(50), first.getAddedMin());
+        assertEquals(Integer.valueOf(100), first.getAddedMax());
+
+        StatsDelta.BucketDelta second = delta.getBuckets().get(2);
+        assertEquals(0, second.getCountDelta());
+        assertEquals(4, second.getSumDelta());
+        assertEquals(Integer.valueOf(1), second.getHistogramDelta().get(ScoreHistogram.bucketOf(7)));
+        assertEquals(Integer.valueOf(-1), second.getHistogramDelta().get(ScoreHistogram.bucketOf(3)));
+    }
+
+    @Test
+    public void unchangedScoreIsNotAChange() {
+        StatsDelta delta = new StatsDelta();
+        delta.recordChanged(0, 10, 10);
+        assertTrue(delta.getBuckets().isEmpty());
+
+        delta.recordChanged(0, 10, 20);
+        assertEquals(0, delta.getBuckets().get(0).getCountDelta());
+        assertEquals(10, delta.getBuckets().get(0).getSumDelta());
+    }
+
+    @Test
+    public void appliedDeltasMatchRebuiltStats() {
+        BoardStats stats = rebuilt(10, 20, 30);
+
+        StatsDelta delta = new StatsDelta();
+        delta.recordChanged(0, 20, 25);
+        delta.recordAdded(0, 5);
+        stats.apply(delta.getBuckets().get(0));
+
+        assertSameStats(rebuilt(10, 25, 30, 5), stats);
+    }
+
+    @Test
+    public void removingTheLowestOrHighestScoreNeedsARead() {
+        BoardStats stats = rebuilt(10, 20, 30);
+
+        StatsDelta middle = new StatsDelta();
+        middle.recordRemoved(0, 20);
+        assertFalse(middle.getBuckets().get(0).removesMinOrMax(stats));
+
+        StatsDelta lowest = new StatsDelta();
+        lowest.recordRemoved(0, 10);
+        assertTrue(lowest.getBuckets().get(0).removesMinOrMax(stats));
+
+        StatsDelta highest = new StatsDelta();
+        highest.recordRemoved(0, 30);
+        assertTrue(highest.getBuckets().get(0).removesMinOrMax(stats));
+    }
+
+    @Test
+    public void expiringEveryRecordEmptiesTheStats() {
+        BoardStats stats = rebuilt(10, 20);
+
+        StatsDelta delta = new StatsDelta();
+        delta.recordRemoved(0, 10);
+        delta.recordRemoved(0, 20);
+        stats.apply(delta.getBuckets().get(0));
+
+        assertSameStats(new BoardStats(), stats);
+        assertNull(stats.getPercentile(50));
+    }
+
+    @Test
+    public void clearDiscardsEarlierChanges() {
+        StatsDelta delta = new StatsDelta();
+        delta.recordAdded(0, 10);
+        delta.recordAdded(3, 10);
+        delta.boardCleared();
+        assertTrue(delta.isCleared());
+        assertTrue(delta.getBuckets().isEmpty());
+
+        // Changes after the clear are kept, and applied to empty statistics
+        delta.recordAdded(0, 40);
+        BoardStats stats = new BoardStats();
+        stats.apply(delta.getBuckets().get(0));
+        assertSameStats(rebuilt(40), stats);
+    }
+
+    @Test
+    public void percentilesAreExactAtTheEnds() {
+        BoardStats stats = rebuilt(1, 2, 3, 4, 1000);
+        assertEquals(Long.valueOf(1), stats.getPercentile(0));
+        assertEquals(Long.valueOf(3), stats.getPercentile(50));
+        assertEquals(Long.valueOf(1000), stats.getPercentile(100));
+    }
+}
@@ -0,0 +1,85 @@
+package com.tdberg.apps.leaderboard.timing;
+
+import spark.Request;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PhaseTimerTest {
+    /**
+     * A Request that only holds attributes.
+     */
+    private static class AttributeRequest extends Request {
+        private Map<String, Object> attributes = new HashMap<>();
+
+        @Override
+        public void attribute(final String attribute, final Object value) {
+            attributes.put(attribute, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T attribute(final String attribute) {
+            return (T) attributes.get(attribute);
+        }
+    }
+
+    private static void spin(final long millis) {
+        long end = System.nanoTime() + millis * 1000000;
+        while(System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    public void timerIsAttachedToTheRequest() {
+        Request request = new AttributeRequest();
+        PhaseTimer timer = PhaseTimer.start(request, true);
+        assertTrue(timer.isEnabled());
+        assertSame(timer, PhaseTimer.of(request));
+    }
+
+    @Test
+    public void requestsWithoutATimerGetTheDisabledTimer() {
+        PhaseTimer timer = PhaseTimer.of(new AttributeRequest());
+        assertFalse(timer.isEnabled());
+        assertSame(timer, PhaseTimer.of(null));
+
+        timer.mark(Phase.READ);
+        assertTrue(timer.toServerTiming().startsWith("total;dur="));
+    }
+
+    @Test
+    public void marksChargeTheTimeSinceThePreviousMark() {
+        PhaseTimer timer = PhaseTimer.start(new AttributeRequest(), true);
+        spin(5);
+        timer.mark(Phase.RESOLVE);
+        spin(20);
+        timer.mark(Phase.READ);
+        timer.mark(Phase.READ);
+
+        String[] metrics = timer.toServerTiming().split(", ");
+        assertEquals(3, metrics.length);
+        assertTrue(metrics[0], metrics[0].startsWith("resolve;dur="));
+        assertTrue(metrics[1], metrics[1].startsWith("read;dur="));
+        assertTrue(metrics[2], metrics[2].startsWith("total;dur="));
+
+        double resolve = Double.parseDouble(metrics[0].substring("resolve;dur=".length()));
+        double read = Double.parseDouble(metrics[1].substring("read;dur=".length()));
+        double total = Double.parseDouble(metrics[2].substring("total;dur=".length()));
+        assertTrue(metrics[0], resolve >= 5);
+        assertTrue(metrics[1], read >= 20);
+        assertTrue(total >= resolve + read);
+    }
+
+    @Test
+    public void commitEventWithoutRecordingIsHarmless() {
+        PhaseTimer timer = PhaseTimer.start(new AttributeRequest(), true);
+        timer.mark(Phase.WRITE);
+        timer.commitEvent("ADD", 200);
+        PhaseTimer.of(null).commitEvent("GET", 200);
+    }
+}
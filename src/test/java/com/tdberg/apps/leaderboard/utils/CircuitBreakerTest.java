@@ -0,0 +1,77 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    @Test
+    public void opensAtTheFailureThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getOpenCount());
+    }
+
+    @Test
+    public void successesWhileClosedDoNotResetTheCount() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 60000, 60000);
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void failuresOutsideTheWindowAreForgotten() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 20, 60000);
+        breaker.recordFailure();
+        Thread.sleep(50);
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void oneTrialIsLetThroughAfterTheOpenTime() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 60000, 20);
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+        Thread.sleep(50);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        // Only the one trial is let through
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialReopensTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 60000, 20);
+        breaker.recordFailure();
+        Thread.sleep(50);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        // Reopening after a failed trial is not counted as another opening
+        assertEquals(1, breaker.getOpenCount());
+
+        Thread.sleep(50);
+        assertTrue(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,102 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import com.tdberg.apps.leaderboard.objects.Leaderboard;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the statements run when a key is looked up: keys that are not archived must not take any locks or open a
+ * transaction, and archived keys are restored in one transaction.
+ */
+public class DbUtilsArchiveTest {
+    private static String ARCHIVED_KEY = "0123456789abcdef0123456789abcde";
+
+    /**
+     * Returns a RecordingConnection holding one archived leaderboard, which moves to the leaderboards table once it has
+     * been restored.
+     */
+    private static RecordingConnection archivedBoard() {
+        RecordingConnection recording = new RecordingConnection();
+        recording.setRows(query -> {
+            boolean restored = recording.getExecuted().stream()
+                                        .anyMatch(statement -> statement.sql.startsWith("DELETE FROM leaderboards_archive"));
+            if(query.sql.contains("FROM leaderboards WHERE privkey=?") && ARCHIVED_KEY.equals(query.params.get(1)) && restored) {
+                return List.<Object[]>of(new Object[] {9, ARCHIVED_KEY, "pubkey", new Timestamp(0), "DAILY", "TIME_ASC"});
+            }else if(query.sql.contains("FROM leaderboards_archive") && !restored) {
+                return List.<Object[]>of(new Object[] {9});
+            }
+            return Collections.emptyList();
+        });
+        return recording;
+    }
+
+    @Test
+    public void unknownKeyTakesNoLocks() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        assertNull(DbUtils.getLeaderboardFromPrivKey("ffffffffffffffffffffffffffffff0", recording.connection()));
+
+        assertEquals(2, recording.getExecuted().size());
+        for(RecordingConnection.Executed statement : recording.getExecuted()) {
+            assertFalse(statement.sql, statement.sql.contains("FOR UPDATE"));
+        }
+        assertTrue(recording.getTransactionCalls().isEmpty());
+    }
+
+    @Test
+    public void keysAreBoundAsParameters() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        String key = "x' OR '1'='1";
+        assertNull(DbUtils.getLeaderboardFromPubKey(key, recording.connection()));
+        assertNull(DbUtils.getLeaderboardFromPrivKey(key, recording.connection()));
+
+        for(RecordingConnection.Executed statement : recording.getExecuted()) {
+            assertFalse(statement.sql, statement.sql.contains(key));
+            assertEquals(statement.sql, key, statement.params.get(1));
+        }
+    }
+
+    @Test
+    public void archivedKeyIsRestoredInOneTransaction() throws SQLException {
+        RecordingConnection recording = archivedBoard();
+        Leaderboard leaderboard = DbUtils.getLeaderboardFromPrivKey(ARCHIVED_KEY, recording.connection());
+
+        assertEquals(9, leaderboard.getBoardId());
+        assertEquals("pubkey", leaderboard.getPubKey());
+        assertEquals(List.of("setAutoCommit(false)", "commit", "setAutoCommit(true)"), recording.getTransactionCalls());
+        assertTrue(recording.getExecuted().stream().anyMatch(statement -> statement.sql.endsWith("FOR UPDATE")));
+        assertTrue(recording.getExecuted().stream().anyMatch(statement -> statement.sql.startsWith("INSERT INTO records")));
+    }
+
+    @Test
+    public void restoreJoinsTheCallersTransaction() throws SQLException {
+        RecordingConnection recording = archivedBoard();
+        Connection conn = recording.connection();
+        conn.setAutoCommit(false);
+        assertNotNull(DbUtils.getLeaderboardFromPrivKey(ARCHIVED_KEY, conn));
+
+        // Only the caller's own setAutoCommit call, the caller commits
+        assertEquals(List.of("setAutoCommit(false)"), recording.getTransactionCalls());
+    }
+
+    @Test
+    public void keyInUseChecksBothTables() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        recording.setRows(query -> List.<Object[]>of(new Object[] {1}));
+        assertTrue(DbUtils.isKeyInUse("pubkey", "abc", recording.connection()));
+
+        RecordingConnection.Executed query = recording.getExecuted().get(0);
+        assertTrue(query.sql, query.sql.contains("FROM leaderboards WHERE pubkey=?"));
+        assertTrue(query.sql, query.sql.contains("FROM leaderboards_archive WHERE pubkey=?"));
+        assertEquals("abc", query.params.get(1));
+        assertEquals("abc", query.params.get(2));
+
+        assertFalse(DbUtils.isKeyInUse("privkey", "abc", new RecordingConnection().connection()));
+    }
+}
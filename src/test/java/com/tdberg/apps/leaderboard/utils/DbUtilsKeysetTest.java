@@ -0,0 +1,241 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import com.tdberg.apps.leaderboard.objects.RankingMode;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the keyset page query of each ranking mode against RankingMode itself: the after-condition has to select
+ * exactly the records that rank below the cursor record, and the ORDER BY has to list them in rank order.  The SQL
+ * is captured from a RecordingConnection, and evaluated here against a grid of records with tied scores and times.
+ */
+public class DbUtilsKeysetTest {
+    private static Pattern QUERY_PATTERN = Pattern.compile(".* AND bucket=\\? AND (.*) ORDER BY (.*) LIMIT \\?");
+    private static int[] VALUES = {5, 10, 15};
+
+    private static List<int[]> records() {
+        // Each record is {score, time, record_id}
+        List<int[]> records = new ArrayList<>();
+        int recordId = 1;
+        for(int score : VALUES) {
+            for(int time : VALUES) {
+                for(int copy=0; copy<3; copy++) {
+                    records.add(new int[] {score, time, recordId});
+                    recordId += 2;
+                }
+            }
+        }
+        return records;
+    }
+
+    private static int[] cursorOf(final RankingMode rankingMode, final int[] record) {
+        switch(rankingMode) {
+            case SCORE_DESC:
+                return new int[] {record[0], record[2]};
+            case TIME_ASC:
+                return new int[] {record[1], record[2]};
+            default:
+                return new int[] {record[0], record[1], record[2]};
+        }
+    }
+
+    private static int rankCompare(final RankingMode rankingMode, final int[] record, final int[] other) {
+        int compare = rankingMode.compare(record[0], record[1], other[0], other[1]);
+        return (compare != 0) ? compare : Integer.compare(record[2], other[2]);
+    }
+
+    private static RecordingConnection.Executed runPageQuery(final RankingMode rankingMode, final int[] cursor)
+            throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        int written = DbUtils.writeRecordPageAfterFromBoardId(7, 3, rankingMode, 50, cursor,
+                (recordId, name, score, time, notes, recordTime) -> fail("No rows were returned"),
+                recording.connection());
+        assertEquals(0, written);
+        assertEquals(1, recording.getExecuted().size());
+        return recording.getExecuted().get(0);
+    }
+
+    @Test
+    public void parametersMatchPlaceholders() throws SQLException {
+        for(RankingMode rankingMode : RankingMode.values()) {
+            int[] cursor = cursorOf(rankingMode, new int[] {100, 200, 300});
+            RecordingConnection.Executed query = runPageQuery(rankingMode, cursor);
+
+            long placeholders = query.sql.chars().filter(c -> c == '?').count();
+            assertEquals(rankingMode.name(), placeholders, query.params.size());
+            assertEquals(7, query.params.get(1));
+            assertEquals(3, query.params.get(2));
+            assertEquals(300, query.params.get((int) placeholders - 1));
+            assertEquals(50, query.params.get((int) placeholders));
+        }
+    }
+
+    @Test
+    public void afterConditionSelectsRecordsRankedBelowCursor() throws SQLException {
+        List<int[]> records = records();
+        for(RankingMode rankingMode : RankingMode.values()) {
+            for(int[] cursorRecord : records) {
+                RecordingConnection.Executed query = runPageQuery(rankingMode, cursorOf(rankingMode, cursorRecord));
+                Matcher matcher = QUERY_PATTERN.matcher(query.sql);
+                assertTrue(query.sql, matcher.matches());
+                String condition = bind(matcher.group(1), query.params, 3);
+
+                for(int[] record : records) {
+                    boolean expected = rankCompare(rankingMode, record, cursorRecord) > 0;
+                    assertEquals(rankingMode + " " + condition + " for " + record[0] + "," + record[1] + "," + record[2],
+                                 expected, new Condition(condition, record).evaluate());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void orderByMatchesRankingMode() throws SQLException {
+        for(RankingMode rankingMode : RankingMode.values()) {
+            RecordingConnection.Executed query = runPageQuery(rankingMode, cursorOf(rankingMode, new int[] {1, 1, 1}));
+            Matcher matcher = QUERY_PATTERN.matcher(query.sql);
+            assertTrue(query.sql, matcher.matches());
+
+            Comparator<int[]> orderBy = null;
+            for(String term : matcher.group(2).split(",")) {
+                String[] parts = term.trim().split(" ");
+                int column = Condition.columnIndex(parts[0]);
+                Comparator<int[]> termOrder = Comparator.comparingInt(record -> record[column]);
+                if(parts.length > 1 && parts[1].equals("DESC")) {
+                    termOrder = termOrder.reversed();
+                }
+                orderBy = (orderBy == null) ? termOrder : orderBy.thenComparing(termOrder);
+            }
+
+            List<int[]> sortedBySql = records();
+            sortedBySql.sort(orderBy);
+            List<int[]> sortedByMode = records();
+            sortedByMode.sort((record, other) -> rankCompare(rankingMode, record, other));
+            for(int i=0; i<sortedBySql.size(); i++) {
+                assertEquals(rankingMode.name(), sortedByMode.get(i)[2], sortedBySql.get(i)[2]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the placeholders of the param condition with the bound parameters, starting at the param index.
+     */
+    private static String bind(final String condition, final Map<Integer, Object> params, final int firstIndex) {
+        StringBuilder bound = new StringBuilder();
+        int parameterIndex = firstIndex;
+        for(char c : condition.toCharArray()) {
+            if(c == '?') {
+                bound.append(params.get(parameterIndex++));
+            }else {
+                bound.append(c);
+            }
+        }
+        return bound.toString();
+    }
+
+    /**
+     * Evaluates a bound after-condition (comparisons of score, time and record_id with numbers, joined by AND, OR and
+     * parentheses) against one record.
+     */
+    private static class Condition {
+        private static Pattern TOKEN_PATTERN = Pattern.compile("\\s*([()<>=]|[A-Za-z_]+|-?[0-9]+)");
+        private Iterator<String> tokens;
+        private String current;
+        private int[] record;
+
+        private Condition(final String condition, final int[] record) {
+            List<String> tokenList = new ArrayList<>();
+            Matcher matcher = TOKEN_PATTERN.matcher(condition);
+            int end = 0;
+            while(matcher.find() && matcher.start() == end) {
+                tokenList.add(matcher.group(1));
+                end = matcher.end();
+            }
+            assertEquals("Unexpected token in " + condition, condition.length(), end);
+            this.tokens = tokenList.iterator();
+            this.record = record;
+            advance();
+        }
+
+        private static int columnIndex(final String column) {
+            switch(column) {
+                case "score":
+                    return 0;
+                case "time":
+                    return 1;
+                case "record_id":
+                    return 2;
+                default:
+                    throw new IllegalArgumentException("Unknown column " + column);
+            }
+        }
+
+        private boolean evaluate() {
+            boolean result = or();
+            assertNull("Trailing tokens", current);
+            return result;
+        }
+
+        private void advance() {
+            current = tokens.hasNext() ? tokens.next() : null;
+        }
+
+        private void expect(final String token) {
+            assertEquals(token, current);
+            advance();
+        }
+
+        private boolean or() {
+            boolean result = and();
+            while("OR".equals(current)) {
+                advance();
+                result |= and();
+            }
+            return result;
+        }
+
+        private boolean and() {
+            boolean result = term();
+            while("AND".equals(current)) {
+                advance();
+                result &= term();
+            }
+            return result;
+        }
+
+        private boolean term() {
+            if("(".equals(current)) {
+                advance();
+                boolean result = or();
+                expect(")");
+                return result;
+            }
+            int value = record[columnIndex(current)];
+            advance();
+            String operator = current;
+            advance();
+            int operand = Integer.parseInt(current);
+            advance();
+            switch(operator) {
+                case "<":
+                    return value < operand;
+                case ">":
+                    return value > operand;
+                case "=":
+                    return value == operand;
+                default:
+                    throw new IllegalArgumentException("Unknown operator " + operator);
+            }
+        }
+    }
+}
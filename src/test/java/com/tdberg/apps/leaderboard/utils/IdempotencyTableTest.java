@@ -0,0 +1,113 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IdempotencyTableTest {
+    private static Supplier<String> counting(final AtomicInteger runs, final String result) {
+        return () -> {
+            runs.incrementAndGet();
+            return result;
+        };
+    }
+
+    @Test
+    public void repeatedKeyReplaysTheFirstResult() {
+        IdempotencyTable table = new IdempotencyTable(10, 60000);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals("OK", table.execute("k1", "/lb/add/a", counting(runs, "OK"), "ERROR"::equals));
+        assertEquals("OK", table.execute("k1", "/lb/add/a", counting(runs, "OTHER"), "ERROR"::equals));
+        assertEquals(1, runs.get());
+        assertEquals(1, table.getReplayCount());
+    }
+
+    @Test
+    public void fingerprintMismatchIsRejected() {
+        IdempotencyTable table = new IdempotencyTable(10, 60000);
+        AtomicInteger runs = new AtomicInteger();
+
+        table.execute("k1", "/lb/add/a/100", counting(runs, "OK"), "ERROR"::equals);
+        assertNull(table.execute("k1", "/lb/add/a/200", counting(runs, "OK"), "ERROR"::equals));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void retryableResultsAreForgotten() {
+        IdempotencyTable table = new IdempotencyTable(10, 60000);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals("ERROR", table.execute("k1", "f", counting(runs, "ERROR"), "ERROR"::equals));
+        assertEquals("OK", table.execute("k1", "f", counting(runs, "OK"), "ERROR"::equals));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void expiredKeysRunAgain() throws InterruptedException {
+        IdempotencyTable table = new IdempotencyTable(10, 20);
+        AtomicInteger runs = new AtomicInteger();
+
+        table.execute("k1", "f", counting(runs, "OK"), "ERROR"::equals);
+        Thread.sleep(50);
+        table.execute("k1", "f", counting(runs, "OK"), "ERROR"::equals);
+        assertEquals(2, runs.get());
+        assertEquals(0, table.getReplayCount());
+    }
+
+    @Test
+    public void oldestKeyIsEvictedWhenFull() {
+        IdempotencyTable table = new IdempotencyTable(2, 60000);
+        AtomicInteger runs = new AtomicInteger();
+
+        table.execute("k1", "f", counting(runs, "OK"), "ERROR"::equals);
+        table.execute("k2", "f", counting(runs, "OK"), "ERROR"::equals);
+        table.execute("k3", "f", counting(runs, "OK"), "ERROR"::equals);
+        assertEquals(2, table.getKeyCount());
+
+        // k2 and k3 are still remembered, k1 was evicted
+        table.execute("k3", "f", counting(runs, "OK"), "ERROR"::equals);
+        table.execute("k1", "f", counting(runs, "OK"), "ERROR"::equals);
+        assertEquals(4, runs.get());
+    }
+
+    @Test(timeout = 5000)
+    public void runningKeyIsNotEvicted() throws InterruptedException {
+        IdempotencyTable table = new IdempotencyTable(1, 60000);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread first = new Thread(() -> table.execute("slow", "f", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "OK";
+        }, "ERROR"::equals));
+        first.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        // Filling the table past its size must not evict the running key
+        table.execute("k1", "f", counting(new AtomicInteger(), "OK"), "ERROR"::equals);
+        table.execute("k2", "f", counting(new AtomicInteger(), "OK"), "ERROR"::equals);
+
+        String[] retryResult = new String[1];
+        Thread retry = new Thread(() -> retryResult[0] = table.execute("slow", "f", counting(runs, "SECOND"),
+                                                                       "ERROR"::equals));
+        retry.start();
+        release.countDown();
+        first.join();
+        retry.join();
+
+        assertEquals("OK", retryResult[0]);
+        assertEquals(1, runs.get());
+    }
+}
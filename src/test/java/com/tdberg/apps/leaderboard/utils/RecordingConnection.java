@@ -0,0 +1,178 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A JDBC Connection stand-in for tests of the SQL that DbUtils runs.  Every statement that is run is recorded along
+ * with its bound parameters, as are the transaction calls made on the connection, and queries are answered with the
+ * rows returned by a function of their SQL and parameters (no rows by default).  Transaction calls can be made to fail.
+ */
+public class RecordingConnection {
+    /**
+     * A statement that was run, with its parameters by index.
+     */
+    public static class Executed {
+        public String sql;
+        public Map<Integer, Object> params = new TreeMap<>();
+
+        private Executed(final String sql) {
+            this.sql = sql;
+        }
+    }
+
+    // The connection may be used by a thread other than the test's
+    private List<Executed> executed = new CopyOnWriteArrayList<>();
+    private List<String> transactionCalls = new CopyOnWriteArrayList<>();
+    private Set<String> failingCalls = new HashSet<>();
+    private Function<Executed, List<Object[]>> rows = query -> Collections.emptyList();
+    private boolean autoCommit = true;
+
+    /**
+     * Answers queries with the rows returned by the param function of the query (its SQL and parameters).  Columns are
+     * read by index only.
+     *
+     * @param rows Rows of each query, as arrays of column values
+     */
+    public void setRows(final Function<Executed, List<Object[]>> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Makes every later call of the param transaction method (eg. "commit") throw an SQLException, after it has been
+     * recorded.
+     *
+     * @param call Name of the transaction method
+     */
+    public void failOn(final String call) {
+        failingCalls.add(call);
+    }
+
+    public List<Executed> getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the transaction calls made on the connection, eg. "setAutoCommit(false)", "commit" and "rollback".
+     *
+     * @return Transaction calls, in the order they were made
+     */
+    public List<String> getTransactionCalls() {
+        return transactionCalls;
+    }
+
+    public Connection connection() {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "prepareStatement":
+                    return preparedStatement((String) args[0]);
+                case "createStatement":
+                    return statement();
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    transactionCalls.add("setAutoCommit(" + autoCommit + ")");
+                    return null;
+                case "commit":
+                case "rollback":
+                    transactionCalls.add(method.getName());
+                    if(failingCalls.contains(method.getName())) {
+                        throw new SQLException(method.getName() + " failed");
+                    }
+                    return null;
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private PreparedStatement preparedStatement(final String sql) {
+        Map<Integer, Object> params = new TreeMap<>();
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return null;
+            }
+            switch(name) {
+                case "executeQuery":
+                    return resultSet(record(sql, params));
+                case "executeUpdate":
+                    record(sql, params);
+                    return 1;
+                case "getGeneratedKeys":
+                    return resultSet(null);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private Statement statement() {
+        return proxy(Statement.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "executeQuery":
+                    return resultSet(record((String) args[0], Collections.emptyMap()));
+                case "executeUpdate":
+                    record((String) args[0], Collections.emptyMap());
+                    return 1;
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private Executed record(final String sql, final Map<Integer, Object> params) {
+        Executed statement = new Executed(sql);
+        statement.params.putAll(params);
+        executed.add(statement);
+        return statement;
+    }
+
+    private ResultSet resultSet(final Executed query) {
+        List<Object[]> result = (query == null) ? Collections.emptyList() : rows.apply(query);
+        int[] row = {-1};
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            if(method.getName().equals("next")) {
+                return ++row[0] < result.size();
+            }
+            if(method.getName().startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+                Object value = result.get(row[0])[(Integer) args[0] - 1];
+                return (value == null) ? defaultValue(method) : value;
+            }
+            return defaultValue(method);
+        });
+    }
+
+    private static Object defaultValue(final Method method) {
+        Class<?> type = method.getReturnType();
+        if(type == boolean.class) {
+            return false;
+        }else if(type == int.class) {
+            return 0;
+        }else if(type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(RecordingConnection.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+}
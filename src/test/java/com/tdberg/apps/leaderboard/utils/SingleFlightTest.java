@@ -0,0 +1,117 @@
+package com.tdberg.apps.leaderboard.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    @Test
+    public void sequentialLoadsAllRun() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals(Integer.valueOf(1), singleFlight.execute("k", runs::incrementAndGet));
+        assertEquals(Integer.valueOf(2), singleFlight.execute("k", runs::incrementAndGet));
+        assertEquals(2, singleFlight.getLoadCount());
+        assertEquals(0, singleFlight.getCollapsedCount());
+    }
+
+    @Test(timeout = 5000)
+    public void concurrentLoadsOfOneKeyShareTheResult() throws InterruptedException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callerCount = 4;
+        int[] results = new int[callerCount];
+
+        Thread leader = new Thread(() -> results[0] = singleFlight.execute("k", () -> {
+            started.countDown();
+            try {
+                release.await();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 100 + runs.incrementAndGet();
+        }));
+        leader.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        List<Thread> followers = new ArrayList<>();
+        for(int i=1; i<callerCount; i++) {
+            int caller = i;
+            Thread follower = new Thread(() -> results[caller] = singleFlight.execute("k", () -> -runs.incrementAndGet()));
+            follower.start();
+            followers.add(follower);
+        }
+        while(singleFlight.getCollapsedCount() < callerCount - 1) {
+            Thread.sleep(5);
+        }
+
+        // A different key is not held up by the flight in progress
+        assertEquals(Integer.valueOf(7), singleFlight.execute("other", () -> 7));
+
+        release.countDown();
+        leader.join();
+        for(Thread follower : followers) {
+            follower.join();
+        }
+        for(int result : results) {
+            assertEquals(101, result);
+        }
+        assertEquals(1, runs.get());
+        assertEquals(2, singleFlight.getLoadCount());
+    }
+
+    @Test(timeout = 5000)
+    public void failuresAreSharedAndNotRemembered() throws InterruptedException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RuntimeException[] failures = new RuntimeException[2];
+
+        Thread leader = new Thread(() -> {
+            try {
+                singleFlight.execute("k", () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    }catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("load failed");
+                });
+            }catch(RuntimeException e) {
+                failures[0] = e;
+            }
+        });
+        leader.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        Thread follower = new Thread(() -> {
+            try {
+                singleFlight.execute("k", () -> 1);
+            }catch(RuntimeException e) {
+                failures[1] = e;
+            }
+        });
+        follower.start();
+        while(singleFlight.getCollapsedCount() < 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        leader.join();
+        follower.join();
+
+        assertTrue(failures[0] instanceof IllegalStateException);
+        assertSame(failures[0], failures[1]);
+
+        // The failed flight is gone, so the next caller loads again
+        assertEquals(Integer.valueOf(2), singleFlight.execute("k", () -> 2));
+    }
+}
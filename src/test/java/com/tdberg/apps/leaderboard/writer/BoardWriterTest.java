@@ -0,0 +1,225 @@
+package com.tdberg.apps.leaderboard.writer;
+
+import com.tdberg.apps.leaderboard.DatabaseHandler;
+import com.tdberg.apps.leaderboard.utils.RecordingConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoardWriterTest {
+    private static String PRIV_KEY = "0123456789abcdef0123456789abcde";
+
+    private RecordingConnection recording;
+    private BoardWriter boardWriter;
+
+    /**
+     * A DatabaseHandler whose connections all record to the test's RecordingConnection.
+     */
+    private class RecordingDatabaseHandler extends DatabaseHandler {
+        private RecordingDatabaseHandler(final Properties cfg) {
+            super(cfg);
+        }
+
+        @Override
+        public Connection getDbConnection() {
+            return recording.connection();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        recording = new RecordingConnection();
+        // Only the known private key resolves to a leaderboard
+        recording.setRows(query -> query.sql.contains("WHERE privkey=?") && PRIV_KEY.equals(query.params.get(1))
+                ? List.<Object[]>of(new Object[] {7, PRIV_KEY, "pubkey", new Timestamp(0), "NONE", "SCORE_DESC"})
+                : Collections.emptyList());
+
+        Properties cfg = new Properties();
+        cfg.setProperty("writeJournalEnabled", "false");
+        cfg.setProperty("cacheEnabled", "false");
+        cfg.setProperty("boardWriterStripes", "1");
+        boardWriter = new BoardWriter(new RecordingDatabaseHandler(cfg), cfg);
+    }
+
+    private static BoardMutation<String> counting(final AtomicInteger applied, final String result) {
+        return (leaderboard, conn, stats) -> {
+            applied.incrementAndGet();
+            return result;
+        };
+    }
+
+    private static void awaitWaiting(final List<Thread> threads) throws InterruptedException {
+        for(Thread thread : threads) {
+            while(thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    /**
+     * Waits for the writer to reset auto-commit, which it does after completing the changes of a transaction.
+     */
+    private void awaitAutoCommitReset(final int transactionCount) throws InterruptedException {
+        while(Collections.frequency(recording.getTransactionCalls(), "setAutoCommit(true)") < transactionCount) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void unknownKeyIsNotApplied() throws SQLException {
+        AtomicInteger applied = new AtomicInteger();
+        assertNull(boardWriter.execute("ffffffffffffffffffffffffffffff0", counting(applied, "OK")));
+        assertEquals(0, applied.get());
+        assertFalse(recording.getTransactionCalls().contains("commit"));
+    }
+
+    @Test(timeout = 5000)
+    public void mutationIsAppliedInOneTransaction() throws SQLException, InterruptedException {
+        AtomicInteger applied = new AtomicInteger();
+        BoardWriter.Applied<String> result = boardWriter.execute(PRIV_KEY, counting(applied, "OK"));
+        awaitAutoCommitReset(1);
+
+        assertEquals("OK", result.getResult());
+        assertEquals(7, result.getLeaderboard().getBoardId());
+        assertEquals(1, applied.get());
+        assertEquals(List.of("setAutoCommit(false)", "commit", "setAutoCommit(true)"), recording.getTransactionCalls());
+        assertTrue(recording.getExecuted().stream().anyMatch(statement -> statement.sql.startsWith("UPDATE leaderboards")));
+    }
+
+    /**
+     * Submits the param mutations while the writer is busy with another change, so that they are applied as one
+     * group, and returns the result (or SQLException) of each once all have been completed.
+     */
+    private Object[] applyAsGroup(final List<BoardMutation<String>> mutations) throws InterruptedException {
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocker = new Thread(() -> {
+            try {
+                boardWriter.execute(PRIV_KEY, (leaderboard, conn, stats) -> {
+                    blockerStarted.countDown();
+                    try {
+                        release.await();
+                    }catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "BLOCKER";
+                });
+            }catch(SQLException e) {
+                // Only the outcomes of the group are checked
+            }
+        });
+        blocker.start();
+        assertTrue(blockerStarted.await(2, TimeUnit.SECONDS));
+
+        // These queue up behind the blocker, so they are applied as one group
+        Object[] results = new Object[mutations.size()];
+        List<Thread> submitters = new ArrayList<>();
+        for(int i=0; i<mutations.size(); i++) {
+            int submitter = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    results[submitter] = boardWriter.execute(PRIV_KEY, mutations.get(submitter)).getResult();
+                }catch(SQLException e) {
+                    results[submitter] = e;
+                }
+            });
+            thread.start();
+            submitters.add(thread);
+            awaitWaiting(List.of(thread));
+        }
+        awaitWaiting(submitters);
+
+        release.countDown();
+        blocker.join();
+        for(Thread thread : submitters) {
+            thread.join();
+        }
+        awaitAutoCommitReset(2);
+        return results;
+    }
+
+    private static BoardMutation<String> failing(final SQLException e) {
+        return (leaderboard, conn, stats) -> {
+            throw e;
+        };
+    }
+
+    @Test(timeout = 5000)
+    public void failedGroupRetriesEachChange() throws InterruptedException {
+        AtomicInteger goodApplied = new AtomicInteger();
+        Object[] results = applyAsGroup(List.of(counting(goodApplied, "OK0"), failing(new SQLException("bad change")),
+                                                counting(goodApplied, "OK2")));
+
+        assertEquals("OK0", results[0]);
+        assertTrue(results[1] instanceof SQLException);
+        assertEquals("bad change", ((SQLException) results[1]).getMessage());
+        assertEquals("OK2", results[2]);
+        // The first change was applied in the rolled back group (which stopped at the bad change), and then the good
+        // changes were applied on their own
+        assertEquals(3, goodApplied.get());
+        // Blocker, then the two good changes on their own
+        assertEquals(3, Collections.frequency(recording.getTransactionCalls(), "commit"));
+        assertEquals(2, Collections.frequency(recording.getTransactionCalls(), "rollback"));
+    }
+
+    @Test(timeout = 5000)
+    public void connectionErrorFailsTheGroupWithoutRetries() throws InterruptedException {
+        AtomicInteger goodApplied = new AtomicInteger();
+        SQLException connectionError = new SQLRecoverableException("connection lost");
+        Object[] results = applyAsGroup(List.of(counting(goodApplied, "OK0"), failing(connectionError),
+                                                counting(goodApplied, "OK2")));
+
+        for(Object result : results) {
+            assertSame(connectionError, result);
+        }
+        assertEquals(1, goodApplied.get());
+        // Only the blocker was committed
+        assertEquals(1, Collections.frequency(recording.getTransactionCalls(), "commit"));
+        assertEquals(1, Collections.frequency(recording.getTransactionCalls(), "rollback"));
+    }
+
+    @Test(timeout = 5000)
+    public void failedGroupCommitIsNotRetried() throws InterruptedException {
+        recording.failOn("commit");
+        AtomicInteger applied = new AtomicInteger();
+        Object[] results = applyAsGroup(List.of(counting(applied, "OK0"), counting(applied, "OK1"),
+                                                counting(applied, "OK2")));
+
+        for(Object result : results) {
+            assertEquals("commit failed", ((SQLException) result).getMessage());
+        }
+        // Each change was applied once, in the group whose commit failed
+        assertEquals(3, applied.get());
+        // The blocker's commit, and then the group's
+        assertEquals(2, Collections.frequency(recording.getTransactionCalls(), "commit"));
+    }
+
+    @Test(timeout = 5000)
+    public void failedCommitIsNotRetried() throws InterruptedException {
+        recording.failOn("commit");
+        AtomicInteger applied = new AtomicInteger();
+        try {
+            boardWriter.execute(PRIV_KEY, counting(applied, "OK"));
+            fail("The commit failure was not reported");
+        }catch(SQLException e) {
+            assertEquals("commit failed", e.getMessage());
+        }
+        awaitAutoCommitReset(1);
+        assertEquals(1, applied.get());
+        assertEquals(List.of("setAutoCommit(false)", "commit", "rollback", "setAutoCommit(true)"),
+                     recording.getTransactionCalls());
+    }
+}
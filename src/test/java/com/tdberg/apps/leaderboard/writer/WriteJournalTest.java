@@ -0,0 +1,120 @@
+package com.tdberg.apps.leaderboard.writer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class WriteJournalTest {
+    private Path directory;
+    private Path journalPath;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("write-journal-test");
+        journalPath = directory.resolve("writes.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try(var paths = Files.list(directory)) {
+            for(Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private WriteJournal journal(final int maxEntries) {
+        Properties cfg = new Properties();
+        cfg.setProperty("writeJournalFile", journalPath.toString());
+        cfg.setProperty("writeJournalMaxEntries", String.valueOf(maxEntries));
+        return new WriteJournal(cfg);
+    }
+
+    private static WriteJournal.Entry entry(final String name, final int score) {
+        return new WriteJournal.Entry("0123456789abcdef0123456789abcde", name, score, null, null, "10.0.0.1", 1000L);
+    }
+
+    private static String names(final List<WriteJournal.Entry> entries) {
+        StringBuilder names = new StringBuilder();
+        for(WriteJournal.Entry entry : entries) {
+            names.append(entry.getName());
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void entriesSurviveARestart() {
+        WriteJournal journal = journal(10);
+        assertEquals(0, journal.size());
+        assertTrue(journal.append(new WriteJournal.Entry("0123456789abcdef0123456789abcde", "ann", 100, 12, "gg",
+                                                         "10.0.0.1", 1700000000123L)));
+        assertTrue(journal.append(entry("b", 2)));
+
+        List<WriteJournal.Entry> entries = journal(10).getEntries();
+        assertEquals(2, entries.size());
+        WriteJournal.Entry first = entries.get(0);
+        assertEquals("0123456789abcdef0123456789abcde", first.getPrivKey());
+        assertEquals("ann", first.getName());
+        assertEquals(100, first.getScore());
+        assertEquals(Integer.valueOf(12), first.getTime());
+        assertEquals("gg", first.getNotes());
+        assertEquals("10.0.0.1", first.getIpAddress());
+        assertEquals(1700000000123L, first.getSubmittedAt());
+        assertNull(entries.get(1).getTime());
+    }
+
+    @Test
+    public void fullJournalRefusesAppends() {
+        WriteJournal journal = journal(2);
+        assertTrue(journal.append(entry("a", 1)));
+        assertTrue(journal.append(entry("b", 2)));
+        assertFalse(journal.append(entry("c", 3)));
+        assertEquals(2, journal.size());
+
+        journal.remove(1);
+        assertTrue(journal.append(entry("c", 3)));
+        assertEquals("bc", names(journal.getEntries()));
+    }
+
+    @Test
+    public void removedEntriesAreGoneFromTheFile() {
+        WriteJournal journal = journal(10);
+        journal.append(entry("a", 1));
+        journal.append(entry("b", 2));
+        journal.append(entry("c", 3));
+
+        journal.remove(2);
+        assertEquals("c", names(journal.getEntries()));
+        journal.append(entry("d", 4));
+        assertEquals("cd", names(journal(10).getEntries()));
+
+        journal.remove(0);
+        journal.remove(10);
+        assertEquals(0, journal.size());
+        assertEquals(0, journal(10).size());
+        assertFalse(Files.exists(directory.resolve("writes.journal.tmp")));
+    }
+
+    @Test
+    public void lineCutShortIsSkippedAndLaterAppendsKept() throws IOException {
+        WriteJournal journal = journal(10);
+        journal.append(entry("a", 1));
+        // A crash part way through writing the next line
+        Files.write(journalPath, "{\"privKey\":\"01234".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        WriteJournal reloaded = journal(10);
+        assertEquals("a", names(reloaded.getEntries()));
+        reloaded.append(entry("b", 2));
+        assertEquals("ab", names(journal(10).getEntries()));
+    }
+}